@@ -0,0 +1,58 @@
+package net.spacive.apps.ejazdybackend.config;
+
+import com.amazonaws.util.DateUtils;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of conversions between ISO8601 strings and dates,
+ * done for every date in path, query and DynamoDB key.
+ *
+ * <p>DateUtils of AWS SDK is measured as baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateParsingBenchmark {
+
+    private final String isoString = "2018-05-01T10:00:00.000Z";
+
+    private final Instant instant = Instant.ofEpochMilli(1525168800000L);
+
+    private final Date date = new Date(1525168800000L);
+
+    @Benchmark
+    public Instant parseISOString() {
+        return Utils.parseISOString(isoString);
+    }
+
+    @Benchmark
+    public String formatISO8601() {
+        return Iso8601.format(instant);
+    }
+
+    @Benchmark
+    public Date parseISO8601DateBaseline() {
+        return DateUtils.parseISO8601Date(isoString);
+    }
+
+    @Benchmark
+    public String formatISO8601DateBaseline() {
+        return DateUtils.formatISO8601Date(date);
+    }
+}
@@ -0,0 +1,132 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building DynamoDB requests, of conversion
+ * between items and lessons and of writing lessons to JSON.
+ *
+ * <p>Client is never called, so no AWS access is needed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LessonMappingBenchmark {
+
+    /**
+     * Number of lessons in single page.
+     */
+    @Param({"1", "50"})
+    private int pageSize;
+
+    private DynamoDBMapper dbMapper;
+
+    private DynamoDBMapperTableModel<Lesson> tableModel;
+
+    private final String instructorId = UUID.randomUUID().toString();
+
+    private final String studentId = UUID.randomUUID().toString();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Instant from;
+
+    private Instant to;
+
+    private List<Lesson> lessons;
+
+    private List<Map<String, AttributeValue>> items;
+
+    @Setup
+    public void setUp() {
+        dbMapper = new DynamoDBMapper(AmazonDynamoDBClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("x", "y")))
+                .withRegion("eu-central-1")
+                .build());
+
+        tableModel = dbMapper.getTableModel(Lesson.class);
+
+        from = Instant.ofEpochMilli(1525168800000L);
+        to = from.plus(Duration.ofDays(7));
+
+        lessons = new ArrayList<>(pageSize);
+        items = new ArrayList<>(pageSize);
+
+        for (int i = 0; i < pageSize; i++) {
+            Instant startTime = from.plus(Duration.ofHours(i));
+            Instant stopTime = startTime.plus(Duration.ofMinutes(50));
+
+            Lesson lesson = new Lesson()
+                    .withInstructorId(instructorId)
+                    .withStartTime(startTime)
+                    .withStopTime(stopTime)
+                    .withInstructorName("John Doe")
+                    .withStudentId(studentId)
+                    .withStudentName("Jane Doe");
+
+            lessons.add(lesson);
+            items.add(tableModel.convert(lesson));
+        }
+    }
+
+    @Benchmark
+    public QueryRequest instructorRangeQuery() {
+        return LessonRequests.instructorQuery(instructorId, from, to, pageSize, null);
+    }
+
+    @Benchmark
+    public UpdateItemRequest registerStudentUpdate() {
+        return LessonRequests.registerStudent(instructorId, from, studentId, "Jane Doe");
+    }
+
+    @Benchmark
+    public List<Lesson> itemsToLessons() {
+        return dbMapper.marshallIntoObjects(Lesson.class, items);
+    }
+
+    @Benchmark
+    public List<Map<String, AttributeValue>> lessonsToItems() {
+        List<Map<String, AttributeValue>> converted = new ArrayList<>(lessons.size());
+        for (Lesson lesson : lessons) {
+            converted.add(tableModel.convert(lesson));
+        }
+        return converted;
+    }
+
+    @Benchmark
+    public byte[] lessonsToJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(lessons);
+    }
+}
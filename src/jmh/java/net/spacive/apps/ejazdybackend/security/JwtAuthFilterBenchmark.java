@@ -0,0 +1,153 @@
+package net.spacive.apps.ejazdybackend.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.CognitoConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authentication of single request.
+ *
+ * <p>Keys and tokens are generated locally, JWK set is
+ * loaded from temporary file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthFilterBenchmark {
+
+    private static final String ISSUER = "https://cognito-idp.eu-central-1.amazonaws.com/benchmark";
+
+    private static final String KEY_ID = "benchmark";
+
+    private File jwksFile;
+
+    private CachedJWKSource jwkSource;
+
+    private JwtAuthFilter filter;
+
+    private DefaultJWTProcessor jwtProcessor;
+
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        RSAKey key = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .keyID(KEY_ID)
+                .build();
+
+        jwksFile = File.createTempFile("jwks", ".json");
+        Files.write(
+                jwksFile.toPath(),
+                new JWKSet(key).toJSONObject().toJSONString().getBytes(StandardCharsets.UTF_8)
+        );
+
+        Map<String, String> groupRole = new HashMap<>();
+        groupRole.put("student", "ROLE_STUDENT");
+
+        CognitoConfiguration config = new CognitoConfiguration();
+        config.setIssuer(ISSUER);
+        config.setGroupRole(groupRole);
+        config.setJwksUrl(jwksFile.toURI().toURL().toString());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        jwkSource = new CachedJWKSource(config, meterRegistry);
+        jwkSource.start();
+
+        filter = new JwtAuthFilter(config, jwkSource, meterRegistry);
+
+        jwtProcessor = new DefaultJWTProcessor();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector(JWSAlgorithm.RS256, jwkSource));
+
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject(UUID.randomUUID().toString())
+                .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .claim("cognito:groups", Collections.singletonList("student"))
+                .claim("email", "john.doe@example.com")
+                .claim("phone_number", "+421900000000")
+                .claim("given_name", "John")
+                .claim("family_name", "Doe")
+                .build();
+
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(KEY_ID).build(),
+                claims
+        );
+        jwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        token = jwt.serialize();
+    }
+
+    @TearDown
+    public void tearDown() {
+        jwkSource.stop();
+        jwksFile.delete();
+    }
+
+    /**
+     * Whole filter with token already in cache of verified tokens.
+     */
+    @Benchmark
+    public Object filterCachedToken() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    /**
+     * Parsing and signature verification, done by filter
+     * for tokens which are not cached yet.
+     */
+    @Benchmark
+    public Object verifyToken() throws Exception {
+        return jwtProcessor.process(JWTParser.parse(token), null);
+    }
+}
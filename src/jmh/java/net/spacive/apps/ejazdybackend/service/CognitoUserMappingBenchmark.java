@@ -0,0 +1,55 @@
+package net.spacive.apps.ejazdybackend.service;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.UserType;
+import net.spacive.apps.ejazdybackend.model.CognitoUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of conversion of Cognito user to CognitoUser,
+ * done for every user in listings of students and instructors.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CognitoUserMappingBenchmark {
+
+    private UserType user;
+
+    @Setup
+    public void setUp() {
+        user = new UserType()
+                .withUsername("john.doe@example.com")
+                .withUserStatus("CONFIRMED")
+                .withUserCreateDate(new Date())
+                .withUserLastModifiedDate(new Date())
+                .withAttributes(
+                        new AttributeType().withName("sub").withValue(UUID.randomUUID().toString()),
+                        new AttributeType().withName("email").withValue("john.doe@example.com"),
+                        new AttributeType().withName("phone_number").withValue("+421900000000"),
+                        new AttributeType().withName("given_name").withValue("John"),
+                        new AttributeType().withName("family_name").withValue("Doe")
+                );
+    }
+
+    @Benchmark
+    public CognitoUser userTypeToCognitoUser() {
+        return CognitoService.userTypeToCognitoUser(user, "student");
+    }
+}
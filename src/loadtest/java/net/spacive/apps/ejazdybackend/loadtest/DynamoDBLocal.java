@@ -0,0 +1,147 @@
+package net.spacive.apps.ejazdybackend.loadtest;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.util.TableUtils;
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.StudentBookings;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * DynamoDB Local running in child process.
+ *
+ * <p>Directory must contain DynamoDBLocal jar and its libraries,
+ * either directly or in DynamoDBLocal_lib as in the distribution
+ * downloaded from AWS.
+ */
+public class DynamoDBLocal {
+
+    private static final String MAIN_CLASS = "com.amazonaws.services.dynamodbv2.local.main.ServerRunner";
+
+    private static final long START_TIMEOUT = 30000;
+
+    private final Process process;
+
+    private final int port;
+
+    /**
+     * Start in-memory DynamoDB Local on random port.
+     *
+     * @param directory directory of DynamoDB Local.
+     * @throws IOException if process cannot be started.
+     * @throws InterruptedException if interrupted while waiting for start.
+     */
+    public DynamoDBLocal(File directory) throws IOException, InterruptedException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final String lib = new File(directory, "DynamoDBLocal_lib").getPath();
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final File log = File.createTempFile("dynamodb-local", ".log");
+
+        process = new ProcessBuilder(
+                java,
+                "-Djava.library.path=" + directory.getPath() + File.pathSeparator + lib,
+                "-cp", directory.getPath() + File.separator + "*" + File.pathSeparator + lib + File.separator + "*",
+                MAIN_CLASS,
+                "-inMemory",
+                "-port", String.valueOf(port)
+        )
+                .directory(log.getParentFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+
+        final long deadline = System.currentTimeMillis() + START_TIMEOUT;
+        while (!isListening()) {
+            if (!process.isAlive() || System.currentTimeMillis() > deadline) {
+                process.destroy();
+                throw new IOException("DynamoDB Local did not start from " + directory + ", see " + log);
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    /**
+     * @return url of DynamoDB Local.
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + port;
+    }
+
+    /**
+     * Stop the process.
+     */
+    public void stop() {
+        process.destroy();
+    }
+
+    private boolean isListening() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create table Lesson with its indexes and tables
+     * CompletedHours and StudentBookings, if they do not exist.
+     *
+     * @param endpoint url of DynamoDB.
+     * @param region region used for signing requests.
+     * @throws InterruptedException if interrupted while waiting for the tables.
+     */
+    public static void createTables(String endpoint, String region) throws InterruptedException {
+        final AmazonDynamoDB dynamoDB = AmazonDynamoDBClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("local", "local")))
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+                .build();
+
+        try {
+            final ProvisionedThroughput throughput = new ProvisionedThroughput(1000L, 1000L);
+
+            // key schema and index are taken from annotations of Lesson
+            final CreateTableRequest request = new DynamoDBMapper(dynamoDB)
+                    .generateCreateTableRequest(Lesson.class)
+                    .withProvisionedThroughput(throughput);
+
+            request.getGlobalSecondaryIndexes().forEach(index -> index
+                    .withProvisionedThroughput(throughput)
+                    .withProjection(new Projection().withProjectionType(ProjectionType.ALL)));
+
+            final CreateTableRequest hoursRequest = new DynamoDBMapper(dynamoDB)
+                    .generateCreateTableRequest(CompletedHours.class)
+                    .withProvisionedThroughput(throughput);
+
+            final CreateTableRequest bookingsRequest = new DynamoDBMapper(dynamoDB)
+                    .generateCreateTableRequest(StudentBookings.class)
+                    .withProvisionedThroughput(throughput);
+
+            TableUtils.createTableIfNotExists(dynamoDB, request);
+            TableUtils.createTableIfNotExists(dynamoDB, hoursRequest);
+            TableUtils.createTableIfNotExists(dynamoDB, bookingsRequest);
+            TableUtils.waitUntilActive(dynamoDB, request.getTableName());
+            TableUtils.waitUntilActive(dynamoDB, hoursRequest.getTableName());
+            TableUtils.waitUntilActive(dynamoDB, bookingsRequest.getTableName());
+        } finally {
+            dynamoDB.shutdown();
+        }
+    }
+}
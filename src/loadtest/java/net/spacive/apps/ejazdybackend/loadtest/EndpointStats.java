@@ -0,0 +1,75 @@
+package net.spacive.apps.ejazdybackend.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and failures of requests, per endpoint.
+ */
+public class EndpointStats {
+
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+    private static final class Endpoint {
+
+        private final Histogram latency = new ConcurrentHistogram(MAX_LATENCY, 3);
+
+        private final LongAdder failures = new LongAdder();
+    }
+
+    /**
+     * Record finished request.
+     *
+     * @param endpoint name of endpoint, e.g. GET /students/me/lessons
+     * @param nanos duration of the request.
+     * @param success false if request failed.
+     */
+    public void record(String endpoint, long nanos, boolean success) {
+        final Endpoint stats = endpoints.computeIfAbsent(endpoint, e -> new Endpoint());
+        stats.latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_LATENCY));
+
+        if (!success) {
+            stats.failures.increment();
+        }
+    }
+
+    /**
+     * Print throughput and latency percentiles of every endpoint.
+     *
+     * @param out output stream.
+     * @param seconds duration of measurement.
+     */
+    public void print(PrintStream out, double seconds) {
+        final String format = "%-56s %9s %9s %9s %9s %9s %9s%n";
+        out.printf(format, "endpoint", "requests", "failed", "req/s", "p50 ms", "p99 ms", "max ms");
+
+        long total = 0;
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            final Histogram latency = entry.getValue().latency;
+            total += latency.getTotalCount();
+
+            out.printf(format,
+                    entry.getKey(),
+                    latency.getTotalCount(),
+                    entry.getValue().failures.sum(),
+                    String.format("%.1f", latency.getTotalCount() / seconds),
+                    millis(latency.getValueAtPercentile(50)),
+                    millis(latency.getValueAtPercentile(99)),
+                    millis(latency.getMaxValue()));
+        }
+
+        out.printf("total %d requests, %.1f req/s%n", total, total / seconds);
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+}
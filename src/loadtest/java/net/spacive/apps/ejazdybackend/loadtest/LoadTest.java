@@ -0,0 +1,314 @@
+package net.spacive.apps.ejazdybackend.loadtest;
+
+import com.amazonaws.util.DateUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import net.spacive.apps.ejazdybackend.EjazdyBackendApplication;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test running without AWS account.
+ *
+ * <p>Starts DynamoDB Local with Lesson table, stub of Cognito,
+ * the backend itself and drives booking and browsing traffic
+ * against it. Latency percentiles and throughput are printed
+ * per endpoint.
+ *
+ * <p>Configured by system properties:
+ * <ul>
+ *     <li>loadtest.dynamodb-local - directory of DynamoDB Local distribution, started in child process</li>
+ *     <li>loadtest.dynamo-endpoint - url of already running DynamoDB Local, e.g. docker amazon/dynamodb-local</li>
+ *     <li>loadtest.store - dynamodb (default) or memory, memory profile needs no DynamoDB</li>
+ *     <li>loadtest.instructors, loadtest.students - number of users</li>
+ *     <li>loadtest.lessons - number of lessons of every instructor</li>
+ *     <li>loadtest.threads - number of concurrent clients</li>
+ *     <li>loadtest.warmup, loadtest.duration - seconds of warm up and of measurement</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final String REGION = "eu-central-1";
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static final long LESSON_LENGTH = TimeUnit.MINUTES.toMillis(50);
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String BROWSE_INSTRUCTOR = "GET /instructors/{id}/lessons";
+
+    private static final String BROWSE_MY_LESSONS = "GET /students/me/lessons";
+
+    private static final String BOOK = "POST /instructors/{id}/lessons/{startTime}/student/me";
+
+    private static final String CANCEL = "DELETE /instructors/{id}/lessons/{startTime}/student/me";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final EndpointStats stats = new EndpointStats();
+
+    private final List<String> instructors = new ArrayList<>();
+
+    private final List<String> students = new ArrayList<>();
+
+    private final Map<String, String> tokens = new HashMap<>();
+
+    /**
+     * Urls of lessons booked by each student, which can be cancelled.
+     */
+    private final Map<String, Queue<String>> bookings = new ConcurrentHashMap<>();
+
+    private final int lessons = Integer.getInteger("loadtest.lessons", 200);
+
+    private final int threads = Integer.getInteger("loadtest.threads", 32);
+
+    /**
+     * Start of the first lesson, far enough in future to allow cancellation.
+     */
+    private final long firstLesson = Instant.now().plus(2, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS).toEpochMilli();
+
+    private CloseableHttpClient client;
+
+    private String baseUrl;
+
+    private volatile boolean recording;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        final boolean memory = "memory".equals(System.getProperty("loadtest.store", "dynamodb"));
+        DynamoDBLocal dynamoDBLocal = null;
+        StubCognito cognito = null;
+        ConfigurableApplicationContext app = null;
+
+        try {
+            String dynamoEndpoint = System.getProperty("loadtest.dynamo-endpoint");
+
+            if (!memory) {
+                if (dynamoEndpoint == null) {
+                    final String directory = System.getProperty("loadtest.dynamodb-local");
+
+                    if (directory == null) {
+                        throw new IllegalArgumentException(
+                                "set loadtest.dynamodb-local, loadtest.dynamo-endpoint or loadtest.store=memory");
+                    }
+
+                    dynamoDBLocal = new DynamoDBLocal(new File(directory));
+                    dynamoEndpoint = dynamoDBLocal.getEndpoint();
+                }
+
+                DynamoDBLocal.createTables(dynamoEndpoint, REGION);
+            }
+
+            cognito = new StubCognito(8);
+
+            final Map<String, Object> properties = new HashMap<>();
+            properties.put("server.port", 0);
+            properties.put("logging.level.root", "WARN");
+            properties.put("cognito.pool-id", cognito.getPoolId());
+            properties.put("cognito.issuer", cognito.getIssuer());
+            properties.put("cognito.endpoint", cognito.getEndpoint());
+            properties.put("cognito.access-key", "local");
+            properties.put("cognito.secret-key", "local");
+            properties.put("cognito.region", REGION);
+            properties.put("dynamo.access-key", "local");
+            properties.put("dynamo.secret-key", "local");
+            properties.put("dynamo.region", REGION);
+
+            if (dynamoEndpoint != null) {
+                properties.put("dynamo.endpoint", dynamoEndpoint);
+            }
+
+            if (memory) {
+                properties.put("spring.profiles.active", "memory");
+            }
+
+            // passed as arguments to take precedence over application.properties
+            app = new SpringApplicationBuilder(EjazdyBackendApplication.class).run(properties.entrySet().stream()
+                    .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                    .toArray(String[]::new));
+            baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+
+            client = HttpClients.custom()
+                    .setMaxConnTotal(threads)
+                    .setMaxConnPerRoute(threads)
+                    .build();
+
+            createUsers(cognito);
+            createLessons();
+            drive();
+        } finally {
+            if (client != null) client.close();
+            if (app != null) app.close();
+            if (cognito != null) cognito.stop();
+            if (dynamoDBLocal != null) dynamoDBLocal.stop();
+        }
+    }
+
+    private void createUsers(StubCognito cognito) {
+        final int instructorCount = Integer.getInteger("loadtest.instructors", 10);
+        final int studentCount = Integer.getInteger("loadtest.students", 200);
+
+        for (int i = 0; i < instructorCount + studentCount; i++) {
+            final String group = i < instructorCount ? "instructor" : "student";
+            final StubCognito.User user = cognito.addUser(UUID.randomUUID().toString(), group);
+
+            (i < instructorCount ? instructors : students).add(user.getId());
+            tokens.put(user.getId(), cognito.issueToken(user));
+        }
+
+        students.forEach(student -> bookings.put(student, new ConcurrentLinkedQueue<>()));
+    }
+
+    private void createLessons() throws IOException {
+        for (String instructor : instructors) {
+            for (int from = 0; from < lessons; from += BATCH_SIZE) {
+                final ArrayNode batch = mapper.createArrayNode();
+
+                for (int i = from; i < Math.min(from + BATCH_SIZE, lessons); i++) {
+                    batch.addObject()
+                            .put("startTime", lessonStart(i))
+                            .put("stopTime", lessonStart(i) + LESSON_LENGTH);
+                }
+
+                final HttpPost post = new HttpPost(baseUrl + "/instructors/" + instructor + "/lessons/batch");
+                post.setEntity(new StringEntity(batch.toString(), ContentType.APPLICATION_JSON));
+
+                if (!execute(null, instructor, post)) {
+                    throw new IOException("lessons of instructor " + instructor + " were not created");
+                }
+            }
+        }
+    }
+
+    private void drive() throws InterruptedException {
+        final long warmup = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.warmup", 10));
+        final long duration = TimeUnit.SECONDS.toMillis(Long.getLong("loadtest.duration", 60));
+        final long end = System.currentTimeMillis() + warmup + duration;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                while (System.currentTimeMillis() < end) {
+                    request();
+                }
+            });
+        }
+
+        Thread.sleep(warmup);
+        recording = true;
+        final long start = System.nanoTime();
+
+        executor.shutdown();
+        executor.awaitTermination(duration + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
+
+        stats.print(System.out, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Single request of random student, mostly browsing.
+     */
+    private void request() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String student = students.get(random.nextInt(students.size()));
+        final String instructor = instructors.get(random.nextInt(instructors.size()));
+        final int action = random.nextInt(100);
+
+        if (action < 60) {
+            // week of lessons of an instructor
+            final long from = lessonStart(random.nextInt(lessons));
+            execute(BROWSE_INSTRUCTOR, student, new HttpGet(baseUrl + "/instructors/" + instructor
+                    + "/lessons?from=" + iso(from) + "&to=" + iso(from + TimeUnit.DAYS.toMillis(7))));
+        } else if (action < 80) {
+            execute(BROWSE_MY_LESSONS, student, new HttpGet(baseUrl + "/students/me/lessons"));
+        } else {
+            final Queue<String> booked = bookings.get(student);
+            final String cancel = action < 92 ? null : booked.poll();
+
+            if (cancel != null) {
+                execute(CANCEL, student, new HttpDelete(cancel));
+            } else {
+                final String lesson = baseUrl + "/instructors/" + instructor
+                        + "/lessons/" + iso(lessonStart(random.nextInt(lessons))) + "/student/me";
+
+                if (execute(BOOK, student, new HttpPost(lesson))) {
+                    booked.add(lesson);
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute request and record its latency.
+     *
+     * @param endpoint name of endpoint, nothing is recorded if null.
+     * @param user id of user sending the request.
+     * @param request the request.
+     * @return true if response status was 2xx.
+     */
+    private boolean execute(String endpoint, String user, HttpUriRequest request) {
+        request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + tokens.get(user));
+
+        final long start = System.nanoTime();
+        boolean success;
+
+        try (CloseableHttpResponse response = client.execute(request)) {
+            EntityUtils.consume(response.getEntity());
+            success = response.getStatusLine().getStatusCode() / 100 == 2;
+        } catch (IOException e) {
+            success = false;
+        }
+
+        if (endpoint != null && recording) {
+            stats.record(endpoint, System.nanoTime() - start, success);
+        }
+
+        return success;
+    }
+
+    private long lessonStart(int lesson) {
+        return firstLesson + lesson * HOUR;
+    }
+
+    private static String iso(long millis) {
+        try {
+            return URLEncoder.encode(DateUtils.formatISO8601Date(new Date(millis)), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package net.spacive.apps.ejazdybackend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in of Cognito user pool.
+ *
+ * <p>Serves JWK set of the pool, issues tokens signed by
+ * locally generated key and answers ListUsers and
+ * ListUsersInGroup calls of AWS SDK.
+ */
+public class StubCognito {
+
+    private static final String POOL_ID = "loadtest";
+
+    private static final String KEY_ID = "loadtest";
+
+    private static final String JSON_CONTENT_TYPE = "application/x-amz-json-1.1";
+
+    private static final Pattern SUB_FILTER = Pattern.compile("sub\\s*=\\s*\"([^\"]+)\"");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final RSAKey key;
+
+    private final RSASSASigner signer;
+
+    /**
+     * Registered user of the pool.
+     */
+    public static final class User {
+
+        private final String id;
+
+        private final String group;
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private User(String id, String group, String firstName, String lastName) {
+            this.id = id;
+            this.group = group;
+            this.firstName = firstName;
+            this.lastName = lastName;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        private String getEmail() {
+            return id + "@loadtest.local";
+        }
+    }
+
+    /**
+     * Start stub on random local port.
+     *
+     * @param threads number of threads serving requests.
+     * @throws IOException if server cannot be started.
+     * @throws NoSuchAlgorithmException if RSA is not supported.
+     */
+    public StubCognito(int threads) throws IOException, NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        key = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .keyID(KEY_ID)
+                .build();
+        signer = new RSASSASigner(keyPair.getPrivate());
+
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/" + POOL_ID + "/.well-known/jwks.json", this::handleJwks);
+        server.createContext("/", this::handleApi);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stop the stub.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return url of cognito API.
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return issuer of tokens, JWK set is at issuer + /.well-known/jwks.json
+     */
+    public String getIssuer() {
+        return getEndpoint() + "/" + POOL_ID;
+    }
+
+    /**
+     * @return id of the user pool.
+     */
+    public String getPoolId() {
+        return POOL_ID;
+    }
+
+    /**
+     * Register new user.
+     *
+     * @param id an unique id of the user.
+     * @param group group of the user, e.g. student.
+     * @return the user.
+     */
+    public User addUser(String id, String group) {
+        final User user = new User(id, group, "Load", "Test " + users.size());
+        users.put(id, user);
+        return user;
+    }
+
+    /**
+     * Issue id token of the user valid for one day.
+     *
+     * @param user registered user.
+     * @return serialized jwt.
+     */
+    public String issueToken(User user) {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(getIssuer())
+                .subject(user.id)
+                .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .claim("token_use", "id")
+                .claim("cognito:groups", Collections.singletonList(user.group))
+                .claim("email", user.getEmail())
+                .claim("given_name", user.firstName)
+                .claim("family_name", user.lastName)
+                .build();
+
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(KEY_ID).build(),
+                claims
+        );
+
+        try {
+            jwt.sign(signer);
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return jwt.serialize();
+    }
+
+    private void handleJwks(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "application/json", new JWKSet(key).toJSONObject().toJSONString());
+    }
+
+    private void handleApi(HttpExchange exchange) throws IOException {
+        final String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+        final JsonNode request;
+
+        try (InputStream in = exchange.getRequestBody()) {
+            request = mapper.readTree(in);
+        }
+
+        final ObjectNode response = mapper.createObjectNode();
+        final ArrayNode result = response.putArray("Users");
+
+        if ("AWSCognitoIdentityProviderService.ListUsers".equals(target)) {
+            final Matcher matcher = SUB_FILTER.matcher(request.path("Filter").asText());
+            final User user = matcher.find() ? users.get(matcher.group(1)) : null;
+
+            if (user != null) {
+                result.add(userType(user));
+            }
+        } else if ("AWSCognitoIdentityProviderService.ListUsersInGroup".equals(target)) {
+            final String group = request.path("GroupName").asText();
+            users.values().stream()
+                    .filter(user -> user.group.equals(group))
+                    .forEach(user -> result.add(userType(user)));
+        } else {
+            final ObjectNode error = mapper.createObjectNode();
+            error.put("__type", "InvalidParameterException");
+            error.put("message", "operation is not supported by stub: " + target);
+            respond(exchange, 400, JSON_CONTENT_TYPE, error.toString());
+            return;
+        }
+
+        respond(exchange, 200, JSON_CONTENT_TYPE, response.toString());
+    }
+
+    private ObjectNode userType(User user) {
+        final ObjectNode node = mapper.createObjectNode();
+        node.put("Username", user.id);
+        node.put("UserStatus", "CONFIRMED");
+        node.put("Enabled", true);
+        node.put("UserCreateDate", 1525168800);
+        node.put("UserLastModifiedDate", 1525168800);
+
+        final ArrayNode attributes = node.putArray("Attributes");
+        attributes.addObject().put("Name", "sub").put("Value", user.id);
+        attributes.addObject().put("Name", "email").put("Value", user.getEmail());
+        attributes.addObject().put("Name", "given_name").put("Value", user.firstName);
+        attributes.addObject().put("Name", "family_name").put("Value", user.lastName);
+        return node;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
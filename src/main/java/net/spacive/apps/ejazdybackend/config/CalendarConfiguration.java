@@ -0,0 +1,26 @@
+package net.spacive.apps.ejazdybackend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configs related to merged calendar of several instructors.
+ */
+@Component
+@ConfigurationProperties(prefix = "calendar")
+public class CalendarConfiguration {
+
+    /**
+     * Maximum number of instructors in merged calendar, every
+     * instructor is single query.
+     */
+    private int maxInstructors = 50;
+
+    public int getMaxInstructors() {
+        return maxInstructors;
+    }
+
+    public void setMaxInstructors(int maxInstructors) {
+        this.maxInstructors = maxInstructors;
+    }
+}
@@ -3,6 +3,7 @@ package net.spacive.apps.ejazdybackend.config;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
 import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProviderClientBuilder;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -55,6 +56,50 @@ public class CognitoConfiguration {
      */
     private String region;
 
+    /**
+     * Url of cognito API, overrides default endpoint of
+     * the region if set, e.g. local stub in load tests.
+     */
+    private String endpoint;
+
+    /**
+     * Time to live of cached users in seconds.
+     */
+    private long userCacheTtl = 300;
+
+    /**
+     * Maximum number of cached users.
+     */
+    private long userCacheSize = 10000;
+
+    /**
+     * Maximum number of cached verified tokens.
+     */
+    private long tokenCacheSize = 10000;
+
+    /**
+     * Url of JWK set, overrides issuer + keyStorePath if set.
+     *
+     * <p>Any url supported by java can be used, e.g. file: url in tests.
+     */
+    private String jwksUrl;
+
+    /**
+     * Interval of background refresh of JWK set in seconds.
+     */
+    private long jwksRefreshInterval = 3600;
+
+    /**
+     * Minimal interval between two fetches of JWK set in seconds,
+     * limits on demand fetches caused by unknown key ids.
+     */
+    private long jwksMinRefreshInterval = 30;
+
+    /**
+     * Connect and read timeout of JWK set fetch in milliseconds.
+     */
+    private int jwksTimeout = 2000;
+
     public String getPoolId() {
         return poolId;
     }
@@ -111,6 +156,70 @@ public class CognitoConfiguration {
         this.region = region;
     }
 
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public long getUserCacheTtl() {
+        return userCacheTtl;
+    }
+
+    public void setUserCacheTtl(long userCacheTtl) {
+        this.userCacheTtl = userCacheTtl;
+    }
+
+    public long getUserCacheSize() {
+        return userCacheSize;
+    }
+
+    public void setUserCacheSize(long userCacheSize) {
+        this.userCacheSize = userCacheSize;
+    }
+
+    public long getTokenCacheSize() {
+        return tokenCacheSize;
+    }
+
+    public void setTokenCacheSize(long tokenCacheSize) {
+        this.tokenCacheSize = tokenCacheSize;
+    }
+
+    public String getJwksUrl() {
+        return jwksUrl != null ? jwksUrl : issuer + keyStorePath;
+    }
+
+    public void setJwksUrl(String jwksUrl) {
+        this.jwksUrl = jwksUrl;
+    }
+
+    public long getJwksRefreshInterval() {
+        return jwksRefreshInterval;
+    }
+
+    public void setJwksRefreshInterval(long jwksRefreshInterval) {
+        this.jwksRefreshInterval = jwksRefreshInterval;
+    }
+
+    public long getJwksMinRefreshInterval() {
+        return jwksMinRefreshInterval;
+    }
+
+    public void setJwksMinRefreshInterval(long jwksMinRefreshInterval) {
+        this.jwksMinRefreshInterval = jwksMinRefreshInterval;
+    }
+
+    public int getJwksTimeout() {
+        return jwksTimeout;
+    }
+
+    public void setJwksTimeout(int jwksTimeout) {
+        this.jwksTimeout = jwksTimeout;
+    }
+
     /**
      * AWSCognitoIdentityProvider bean definition - this will allow us to
      * use AWSCognitoIdentityProvider with DI.
@@ -125,11 +234,17 @@ public class CognitoConfiguration {
                 secretKey
         );
 
-        return AWSCognitoIdentityProviderClientBuilder.standard()
+        final AWSCognitoIdentityProviderClientBuilder builder = AWSCognitoIdentityProviderClientBuilder.standard()
                 .withCredentials(
                         new AWSStaticCredentialsProvider(credentials)
-                )
-                .withRegion(region)
-                .build();
+                );
+
+        if (endpoint != null && !endpoint.isEmpty()) {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        } else {
+            builder.withRegion(region);
+        }
+
+        return builder.build();
     }
 }
@@ -1,14 +1,22 @@
 package net.spacive.apps.ejazdybackend.config;
 
 import com.amazonaws.auth.*;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsyncClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import net.spacive.apps.ejazdybackend.database.ConsumedCapacityHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Configs related to DynamoDB service.
  *
@@ -33,6 +41,117 @@ public class DynamoConfiguration {
      */
     private String region;
 
+    /**
+     * Url of DynamoDB API, overrides default endpoint of
+     * the region if set, e.g. DynamoDB Local in load tests.
+     */
+    private String endpoint;
+
+    /**
+     * Default number of lessons in single page.
+     */
+    private int pageSize = 50;
+
+    /**
+     * Maximum number of lessons in single page which
+     * can be requested by client.
+     */
+    private int maxPageSize = 500;
+
+    /**
+     * Maximum number of days of range in which free lessons
+     * are searched, every day is single query.
+     */
+    private int maxAvailableDays = 31;
+
+    /**
+     * Maximum number of lessons created by single recurring series.
+     */
+    private int maxSeriesLessons = 1000;
+
+    /**
+     * Maximum number of students waiting for single lesson.
+     */
+    private int maxWaitlist = 10;
+
+    /**
+     * Maximum number of future lessons booked by single student, 0 is unlimited.
+     */
+    private int maxStudentBookings = 20;
+
+    /**
+     * Seconds by which global secondary indexes may lag behind
+     * the table. Watermark of completed hours is kept this far
+     * behind now, so that lessons booked or unbooked shortly
+     * before are not missing from the index when folded in.
+     */
+    private long indexLag = 60;
+
+    /**
+     * Maximum number of retries of unprocessed items in batch writes.
+     */
+    private int batchMaxRetries = 8;
+
+    /**
+     * Delay limit of the first retry of batch write in milliseconds.
+     */
+    private long batchBaseDelay = 50;
+
+    /**
+     * Upper bound of the delay between retries of batch write in milliseconds.
+     */
+    private long batchMaxDelay = 2000;
+
+    /**
+     * Maximum number of DynamoDB requests executed in parallel
+     * by single operation.
+     */
+    private int parallelism = 8;
+
+    /**
+     * Whether asynchronous DynamoDB client is used by
+     * lesson endpoints.
+     */
+    private boolean async = false;
+
+    /**
+     * Number of threads of asynchronous DynamoDB client.
+     */
+    private int asyncThreads = 50;
+
+    /**
+     * Operations taking longer than this number of milliseconds
+     * are logged as slow.
+     */
+    private long slowOperationThreshold = 100;
+
+    /**
+     * Whether lesson listings have ETags derived from versions
+     * of lessons. Versions are persisted in table LessonVersion,
+     * every write of lesson costs one more update per user.
+     */
+    private boolean lessonEtags = true;
+
+    /**
+     * Whether lessons written before index DayStartTime existed
+     * get their day when the application starts, intended to be
+     * enabled once.
+     */
+    private boolean backfillLessonDays = false;
+
+    /**
+     * Length in days of windows of lessons of instructor which
+     * are loaded at once for overlap detection.
+     */
+    private int intervalWindowDays = 7;
+
+    /**
+     * Seconds after which loaded windows of lessons are dropped,
+     * bounds how long lessons written by other instances are not
+     * seen by overlap detection.
+     */
+    private long intervalTtl = 300;
+
     public String getAccessKey() {
         return accessKey;
     }
@@ -57,10 +176,165 @@ public class DynamoConfiguration {
         this.region = region;
     }
 
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int getMaxAvailableDays() {
+        return maxAvailableDays;
+    }
+
+    public void setMaxAvailableDays(int maxAvailableDays) {
+        this.maxAvailableDays = maxAvailableDays;
+    }
+
+    public int getMaxSeriesLessons() {
+        return maxSeriesLessons;
+    }
+
+    public void setMaxSeriesLessons(int maxSeriesLessons) {
+        this.maxSeriesLessons = maxSeriesLessons;
+    }
+
+    public int getMaxWaitlist() {
+        return maxWaitlist;
+    }
+
+    public void setMaxWaitlist(int maxWaitlist) {
+        this.maxWaitlist = maxWaitlist;
+    }
+
+    public int getMaxStudentBookings() {
+        return maxStudentBookings;
+    }
+
+    public void setMaxStudentBookings(int maxStudentBookings) {
+        this.maxStudentBookings = maxStudentBookings;
+    }
+
+    public long getIndexLag() {
+        return indexLag;
+    }
+
+    public void setIndexLag(long indexLag) {
+        this.indexLag = indexLag;
+    }
+
+    public int getBatchMaxRetries() {
+        return batchMaxRetries;
+    }
+
+    public void setBatchMaxRetries(int batchMaxRetries) {
+        this.batchMaxRetries = batchMaxRetries;
+    }
+
+    public long getBatchBaseDelay() {
+        return batchBaseDelay;
+    }
+
+    public void setBatchBaseDelay(long batchBaseDelay) {
+        this.batchBaseDelay = batchBaseDelay;
+    }
+
+    public long getBatchMaxDelay() {
+        return batchMaxDelay;
+    }
+
+    public void setBatchMaxDelay(long batchMaxDelay) {
+        this.batchMaxDelay = batchMaxDelay;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    public long getSlowOperationThreshold() {
+        return slowOperationThreshold;
+    }
+
+    public void setSlowOperationThreshold(long slowOperationThreshold) {
+        this.slowOperationThreshold = slowOperationThreshold;
+    }
+
+    public boolean isLessonEtags() {
+        return lessonEtags;
+    }
+
+    public void setLessonEtags(boolean lessonEtags) {
+        this.lessonEtags = lessonEtags;
+    }
+
+    public boolean isBackfillLessonDays() {
+        return backfillLessonDays;
+    }
+
+    public void setBackfillLessonDays(boolean backfillLessonDays) {
+        this.backfillLessonDays = backfillLessonDays;
+    }
+
+    public int getIntervalWindowDays() {
+        return intervalWindowDays;
+    }
+
+    public void setIntervalWindowDays(int intervalWindowDays) {
+        this.intervalWindowDays = intervalWindowDays;
+    }
+
+    public long getIntervalTtl() {
+        return intervalTtl;
+    }
+
+    public void setIntervalTtl(long intervalTtl) {
+        this.intervalTtl = intervalTtl;
+    }
+
     /**
      * AmazonDynamoDB bean definition - this will allow us to
      * use AmazonDynamoDB with DI.
      *
+     * <p>Consumed capacity of every request is collected
+     * for metrics of DynamoDao.
+     *
      * @return new dynamo client.
      */
     @Bean
@@ -71,14 +345,52 @@ public class DynamoConfiguration {
                 secretKey
         );
 
-        return AmazonDynamoDBClientBuilder.standard()
+        return configure(AmazonDynamoDBClientBuilder.standard()
                 .withCredentials(
                         new AWSStaticCredentialsProvider(credentials)
-                )
-                .withRegion(region)
+                ))
+                .withRequestHandlers(new ConsumedCapacityHandler())
                 .build();
     }
 
+    /**
+     * AmazonDynamoDBAsync bean definition - created only if
+     * dynamo.async is true.
+     *
+     * @return new asynchronous dynamo client.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(prefix = "dynamo", name = "async", havingValue = "true")
+    public AmazonDynamoDBAsync dynamoDBAsync() {
+
+        final AWSCredentials credentials = new BasicAWSCredentials(
+                accessKey,
+                secretKey
+        );
+
+        return configure(AmazonDynamoDBAsyncClientBuilder.standard()
+                .withCredentials(
+                        new AWSStaticCredentialsProvider(credentials)
+                ))
+                .withExecutorFactory(() -> Executors.newFixedThreadPool(asyncThreads))
+                .build();
+    }
+
+    /**
+     * Set region or endpoint of client.
+     *
+     * @param builder client builder.
+     * @param <B> type of builder.
+     * @return the same builder.
+     */
+    private <B extends AwsClientBuilder<B, ?>> B configure(B builder) {
+        if (endpoint != null && !endpoint.isEmpty()) {
+            return builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region));
+        } else {
+            return builder.withRegion(region);
+        }
+    }
+
     /**
      * DynamoDBMapper bean definition - this will allow us to
      * use DynamoDBMapper with DI.
@@ -89,4 +401,15 @@ public class DynamoConfiguration {
     public DynamoDBMapper dynamoDBMapper() {
         return new DynamoDBMapper(dynamoDB());
     }
+
+    /**
+     * Executor bean definition - bounded thread pool used for
+     * parallel DynamoDB requests.
+     *
+     * @return new executor.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService dynamoExecutor() {
+        return Executors.newFixedThreadPool(parallelism);
+    }
 }
@@ -0,0 +1,52 @@
+package net.spacive.apps.ejazdybackend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configs related to requests with header Idempotency-Key.
+ */
+@Component
+@ConfigurationProperties(prefix = "idempotency")
+public class IdempotencyConfiguration {
+
+    /**
+     * Time to live of outcomes of requests in seconds.
+     */
+    private long ttl = 600;
+
+    /**
+     * Maximum number of outcomes of requests.
+     */
+    private long cacheSize = 10000;
+
+    /**
+     * Maximum time in seconds a retry waits for the first
+     * request which is still running.
+     */
+    private long waitTimeout = 30;
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getWaitTimeout() {
+        return waitTimeout;
+    }
+
+    public void setWaitTimeout(long waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+}
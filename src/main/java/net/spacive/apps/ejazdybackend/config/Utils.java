@@ -1,8 +1,8 @@
 package net.spacive.apps.ejazdybackend.config;
 
-import com.amazonaws.util.DateUtils;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
 
-import java.util.Calendar;
+import java.time.Instant;
 
 /**
  * Handy utility class.
@@ -14,14 +14,12 @@ import java.util.Calendar;
 public class Utils {
 
     /**
-     * Parse date formated in ISO string to calendar.
+     * Parse date formated in ISO string to instant.
      *
      * @param date contains ISO8601 date string
-     * @return new instance of calendar
+     * @return the instant
      */
-    public static Calendar parseISOString(String date) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(DateUtils.parseISO8601Date(date));
-        return calendar;
+    public static Instant parseISOString(String date) {
+        return Iso8601.parse(date);
     }
 }
@@ -0,0 +1,55 @@
+package net.spacive.apps.ejazdybackend.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Config of web layer.
+ */
+@Configuration
+public class WebConfig {
+
+    /**
+     * ETags of listings of instructors and students.
+     *
+     * <p>Users are managed in Cognito, so their changes cannot be
+     * tracked and ETag is computed from the response body. It
+     * saves transfer of unchanged listings, not the Cognito calls.
+     *
+     * @return registration of the filter.
+     */
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> userListEtagFilter() {
+        final FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+                new FilterRegistrationBean<>(new RevalidatedEtagHeaderFilter());
+
+        registration.addUrlPatterns("/instructors", "/students");
+        return registration;
+    }
+
+    /**
+     * ShallowEtagHeaderFilter which allows clients to cache
+     * responses, but only if they revalidate them on every request.
+     */
+    private static final class RevalidatedEtagHeaderFilter extends ShallowEtagHeaderFilter {
+
+        @Override
+        protected void doFilterInternal(
+                HttpServletRequest request,
+                HttpServletResponse response,
+                FilterChain filterChain) throws ServletException, IOException {
+
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            super.doFilterInternal(request, response, filterChain);
+        }
+    }
+}
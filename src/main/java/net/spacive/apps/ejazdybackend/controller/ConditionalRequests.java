@@ -0,0 +1,44 @@
+package net.spacive.apps.ejazdybackend.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Handling of conditional GET requests with If-None-Match.
+ *
+ * <p>Responses with ETag may be cached by client, but have
+ * to be revalidated on every request. Spring Security would
+ * otherwise forbid caching by Cache-Control no-store.
+ */
+final class ConditionalRequests {
+
+    /**
+     * Value of Cache-Control of responses with ETag.
+     */
+    static final String REVALIDATE = "private, no-cache";
+
+    /**
+     * Constructor.
+     */
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Check ETag of request and set caching headers of response.
+     *
+     * <p>If true is returned, status 304 is already set and
+     * the handler should return null without fetching the body.
+     *
+     * @param request current request.
+     * @param etag current ETag of the resource, null if unknown.
+     * @return true if client has current version of the resource.
+     */
+    static boolean notModified(ServletWebRequest request, String etag) {
+        if (etag == null) {
+            return false;
+        }
+
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+        return request.checkNotModified(etag);
+    }
+}
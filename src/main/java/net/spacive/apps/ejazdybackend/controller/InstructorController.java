@@ -1,19 +1,28 @@
 package net.spacive.apps.ejazdybackend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import net.spacive.apps.ejazdybackend.config.Utils;
 import net.spacive.apps.ejazdybackend.model.CognitoUser;
 import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonCreateResult;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import net.spacive.apps.ejazdybackend.model.LessonSeries;
+import net.spacive.apps.ejazdybackend.service.IdempotencyStore;
 import net.spacive.apps.ejazdybackend.service.LessonService;
 import net.spacive.apps.ejazdybackend.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Calendar;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST API for instructors resource.
@@ -35,16 +44,35 @@ public class InstructorController {
      */
     private final LessonService lessonService;
 
+    /**
+     * Object mapper used for streamed responses.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Outcomes of retried requests with Idempotency-Key.
+     */
+    private final IdempotencyStore idempotencyStore;
+
     /**
      * Constructor.
      *
      * @param userService injected param.
      * @param lessonService injected param.
+     * @param objectMapper injected param.
+     * @param idempotencyStore injected param.
      */
     @Autowired
-    public InstructorController(UserService userService, LessonService lessonService) {
+    public InstructorController(
+            UserService userService,
+            LessonService lessonService,
+            ObjectMapper objectMapper,
+            IdempotencyStore idempotencyStore) {
+
         this.userService = userService;
         this.lessonService = lessonService;
+        this.objectMapper = objectMapper;
+        this.idempotencyStore = idempotencyStore;
     }
 
     /**
@@ -80,10 +108,11 @@ public class InstructorController {
      *
      * @param id an unique id of instructor.
      * @return instance of deleted instructor.
+     * @throws Exception if lessons of the instructor could not be cleaned up.
      */
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public CognitoUser deleteInstructor(@PathVariable String id) {
+    public CognitoUser deleteInstructor(@PathVariable String id) throws Exception {
         return userService.deleteInstructor(id);
     }
 
@@ -106,38 +135,93 @@ public class InstructorController {
      * <p>When since is used, from and to cannot be used too.
      * From and to have to be used together.
      *
+     * <p>Lessons are returned in pages, next page can be fetched
+     * by passing nextCursor of the previous page as cursor.
+     *
+     * <p>Response has ETag, if none of lessons of instructor
+     * changed, 304 is returned without querying the lessons.
+     *
      * <p>Allowed for every role.
      *
      * @param id id an unique id of instructor.
      * @param since optional date since.
      * @param from optional date from.
      * @param to optional date to.
-     * @return list of lessons.
+     * @param limit optional page size.
+     * @param cursor optional cursor of the page returned as nextCursor.
+     * @param webRequest current request, used for If-None-Match.
+     * @return future page of lessons, null if not modified.
      */
     @GetMapping("/{id}/lessons")
-    public List<Lesson> getInstructorsLessons(
+    public CompletableFuture<LessonPage> getInstructorsLessons(
+            @PathVariable String id,
+            @RequestParam("since") Optional<String> since,
+            @RequestParam("from") Optional<String> from,
+            @RequestParam("to") Optional<String> to,
+            @RequestParam("limit") Optional<Integer> limit,
+            @RequestParam("cursor") Optional<String> cursor,
+            ServletWebRequest webRequest) {
+
+        final String etag = lessonService.getLessonsETag(id, webRequest.getRequest().getQueryString());
+        if (ConditionalRequests.notModified(webRequest, etag)) {
+            return null;
+        }
+
+        Instant fromTime = null;
+        Instant toTime = null;
+
+        if (since.isPresent()) {
+            fromTime = Utils.parseISOString(since.get());
+        } else if(from.isPresent() && to.isPresent()) {
+            fromTime = Utils.parseISOString(from.get());
+            toTime = Utils.parseISOString(to.get());
+        }
+
+        return lessonService.getLessonsByInstructorAsync(
+                id,
+                fromTime,
+                toTime,
+                limit.orElse(null),
+                cursor.orElse(null)
+        );
+    }
+
+    /**
+     * Stream all lessons of instructor as single JSON array.
+     *
+     * <p>Intended for clients fetching whole history, lessons are
+     * written as pages are fetched, so the response starts before
+     * all lessons are loaded.
+     *
+     * <p>When since is used, from and to cannot be used too.
+     * From and to have to be used together.
+     *
+     * <p>Allowed for every role.
+     *
+     * @param id id an unique id of instructor.
+     * @param since optional date since.
+     * @param from optional date from.
+     * @param to optional date to.
+     * @return streamed array of lessons.
+     */
+    @GetMapping("/{id}/lessons/stream")
+    public ResponseEntity<StreamingResponseBody> streamLessonsByInstructor(
             @PathVariable String id,
             @RequestParam("since") Optional<String> since,
             @RequestParam("from") Optional<String> from,
             @RequestParam("to") Optional<String> to) {
 
+        Instant fromTime = null;
+        Instant toTime = null;
+
         if (since.isPresent()) {
-            Calendar sinceCal = Utils.parseISOString(since.get());
-            return lessonService.getLessonsByInstructorSince(
-                    id,
-                    sinceCal
-            );
+            fromTime = Utils.parseISOString(since.get());
         } else if(from.isPresent() && to.isPresent()) {
-            Calendar fromCal = Utils.parseISOString(from.get());
-            Calendar toCal = Utils.parseISOString(to.get());
-            return lessonService.getLessonsByInstructorRange(
-                    id,
-                    fromCal,
-                    toCal
-            );
-        } else {
-            return lessonService.getLessonsByInstructor(id);
+            fromTime = Utils.parseISOString(from.get());
+            toTime = Utils.parseISOString(to.get());
         }
+
+        return LessonStreams.jsonArray(objectMapper, lessonService.getAllLessonPagesByInstructor(id, fromTime, toTime));
     }
 
     /**
@@ -147,8 +231,12 @@ public class InstructorController {
      *
      * <p>Accessible only by instructor.
      *
+     * <p>Retry with the same Idempotency-Key gets the lesson
+     * created by the first request.
+     *
      * @param id id of instructor.
      * @param lesson lesson to create.
+     * @param idempotencyKey optional key of the request.
      * @param auth security object containing principal.
      * @return new lesson.
      * @throws Exception if id in lesson is not same as id of calling instructor.
@@ -158,6 +246,77 @@ public class InstructorController {
     public Lesson createLesson(
             @PathVariable String id,
             @RequestBody Lesson lesson,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Authentication auth) throws Exception {
+
+        // check if instructor's id in token is same as id in path
+        CognitoUser instructor = (CognitoUser) auth.getPrincipal();
+
+        if (instructor.getId().equals(id)) {
+            final CognitoUser caller = instructor;
+            return idempotencyStore.execute(
+                    caller.getId(),
+                    idempotencyKey,
+                    "POST /instructors/" + id + "/lessons " + lesson.getStartTime() + " " + lesson.getStopTime(),
+                    () -> lessonService.createLessonByInstructor(userService.getUser(caller.getId()), lesson)
+            );
+        } else {
+            throw new Exception("instructor id must be same as instructor id in token");
+        }
+    }
+
+    /**
+     * Create multiple lessons at once.
+     *
+     * <p>Instructors are allowed to create lessons only for themselves.
+     *
+     * <p>Accessible only by instructor.
+     *
+     * @param id id of instructor.
+     * @param lessons lessons to create.
+     * @param auth security object containing principal.
+     * @return result for every lesson, in the same order.
+     * @throws Exception if id in lesson is not same as id of calling instructor.
+     */
+    @PostMapping("/{id}/lessons/batch")
+    @PreAuthorize("hasRole('ROLE_INSTRUCTOR')")
+    public List<LessonCreateResult> createLessons(
+            @PathVariable String id,
+            @RequestBody List<Lesson> lessons,
+            Authentication auth) throws Exception {
+
+        // check if instructor's id in token is same as id in path
+        CognitoUser instructor = (CognitoUser) auth.getPrincipal();
+        instructor = userService.getUser(instructor.getId());
+
+        if (instructor.getId().equals(id)) {
+            return lessonService.createLessonsByInstructor(instructor, lessons);
+        } else {
+            throw new Exception("instructor id must be same as instructor id in token");
+        }
+    }
+
+    /**
+     * Publish weekly recurring series of lessons.
+     *
+     * <p>Series is expanded to lessons on the server, at most
+     * dynamo.max-series-lessons of them.
+     *
+     * <p>Instructors are allowed to create lessons only for themselves.
+     *
+     * <p>Accessible only by instructor.
+     *
+     * @param id id of instructor.
+     * @param series weekly pattern with date range and exclusions.
+     * @param auth security object containing principal.
+     * @return result for every lesson, sorted by start time.
+     * @throws Exception if id in lesson is not same as id of calling instructor.
+     */
+    @PostMapping("/{id}/lessons/series")
+    @PreAuthorize("hasRole('ROLE_INSTRUCTOR')")
+    public List<LessonCreateResult> createLessonSeries(
+            @PathVariable String id,
+            @RequestBody LessonSeries series,
             Authentication auth) throws Exception {
 
         // check if instructor's id in token is same as id in path
@@ -165,7 +324,7 @@ public class InstructorController {
         instructor = userService.getUser(instructor.getId());
 
         if (instructor.getId().equals(id)) {
-            return lessonService.createLessonByInstructor(instructor, lesson);
+            return lessonService.createLessonSeriesByInstructor(instructor, series);
         } else {
             throw new Exception("instructor id must be same as instructor id in token");
         }
@@ -214,12 +373,12 @@ public class InstructorController {
      * @param startTime start time of lesson.
      * @param studentId student who should be registered.
      * @param auth security object which contains principal.
-     * @return updated lesson instance.
+     * @return future updated lesson instance.
      * @throws Exception if instructor id is wrong.
      */
     @PostMapping("/{id}/lessons/{startTime}/student/{studentId}")
     @PreAuthorize("hasAnyRole('ROLE_INSTRUCTOR', 'ROLE_ADMIN')")
-    public Lesson addStudentToLesson(
+    public CompletableFuture<Lesson> addStudentToLesson(
             @PathVariable String id,
             @PathVariable String startTime,
             @PathVariable String studentId,
@@ -239,7 +398,7 @@ public class InstructorController {
 
         CognitoUser student = userService.getUser(studentId);
 
-        return lessonService.registerStudentToLesson(
+        return lessonService.registerStudentToLessonAsync(
                 student,
                 id,
                 Utils.parseISOString(startTime)
@@ -253,26 +412,35 @@ public class InstructorController {
      *
      * <p>Allowed only to student.
      *
+     * <p>Retry with the same Idempotency-Key gets the lesson
+     * registered by the first request.
+     *
      * @param id id of instructor.
      * @param startTime start time.
+     * @param idempotencyKey optional key of the request.
      * @param auth security object which contains principal.
-     * @return updated lesson.
+     * @return future updated lesson.
      * @throws Exception if deleting wrong lesson.
      */
     @PostMapping("/{id}/lessons/{startTime}/student/me")
     @PreAuthorize("hasRole('ROLE_STUDENT')")
-    public Lesson addInvokingStudentToLesson(
+    public CompletableFuture<Lesson> addInvokingStudentToLesson(
             @PathVariable String id,
             @PathVariable String startTime,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication auth) throws Exception {
 
-        CognitoUser student = (CognitoUser) auth.getPrincipal();
-        student = userService.getUser(student.getId());
-
-        return lessonService.registerStudentToLesson(
-                student,
-                id,
-                Utils.parseISOString(startTime)
+        final CognitoUser caller = (CognitoUser) auth.getPrincipal();
+
+        return idempotencyStore.executeAsync(
+                caller.getId(),
+                idempotencyKey,
+                "POST /instructors/" + id + "/lessons/" + startTime + "/student/me",
+                () -> lessonService.registerStudentToLessonAsync(
+                        userService.getUser(caller.getId()),
+                        id,
+                        Utils.parseISOString(startTime)
+                )
         );
     }
 
@@ -284,12 +452,12 @@ public class InstructorController {
      * @param startTime starting time of lesson.
      * @param studentId id of student to be removed.
      * @param auth security object which contains principal.
-     * @return updated lesson.
+     * @return future updated lesson.
      * @throws Exception wrong instructor id.
      */
     @DeleteMapping("/{id}/lessons/{startTime}/student/{studentId}")
     @PreAuthorize("hasAnyRole('ROLE_INSTRUCTOR', 'ROLE_ADMIN')")
-    public Lesson deleteStudentFromLesson(
+    public CompletableFuture<Lesson> deleteStudentFromLesson(
             @PathVariable String id,
             @PathVariable String startTime,
             @PathVariable String studentId,
@@ -307,7 +475,7 @@ public class InstructorController {
             }
         }
 
-        return lessonService.unregisterStudentFromLesson(
+        return lessonService.unregisterStudentFromLessonAsync(
                 studentId,
                 id,
                 Utils.parseISOString(startTime),
@@ -321,23 +489,76 @@ public class InstructorController {
      * @param id id of instructor.s
      * @param startTime start time.
      * @param auth security object which contains principal.
-     * @return updated lesson.
+     * @return future updated lesson.
      * @throws Exception if deleting wrong lesson.
      */
     @DeleteMapping("/{id}/lessons/{startTime}/student/me")
     @PreAuthorize("hasRole('ROLE_STUDENT')")
-    public Lesson deleteInvokingStudentFromLesson(
+    public CompletableFuture<Lesson> deleteInvokingStudentFromLesson(
             @PathVariable String id,
             @PathVariable String startTime,
             Authentication auth) throws Exception {
 
         CognitoUser student = (CognitoUser) auth.getPrincipal();
 
-        return lessonService.unregisterStudentFromLesson(
+        return lessonService.unregisterStudentFromLessonAsync(
                 student.getId(),
                 id,
                 Utils.parseISOString(startTime),
                 false
         );
     }
+
+    /**
+     * Put calling student on waitlist of booked lesson.
+     *
+     * <p>Allowed only to student.
+     *
+     * @param id id of instructor.
+     * @param startTime start time.
+     * @param auth security object which contains principal.
+     * @return updated lesson.
+     * @throws Exception if waitlist is full.
+     */
+    @PostMapping("/{id}/lessons/{startTime}/waitlist/me")
+    @PreAuthorize("hasRole('ROLE_STUDENT')")
+    public Lesson addInvokingStudentToWaitlist(
+            @PathVariable String id,
+            @PathVariable String startTime,
+            Authentication auth) throws Exception {
+
+        CognitoUser student = (CognitoUser) auth.getPrincipal();
+        student = userService.getUser(student.getId());
+
+        return lessonService.joinWaitlist(
+                student,
+                id,
+                Utils.parseISOString(startTime)
+        );
+    }
+
+    /**
+     * Remove calling student from waitlist of lesson.
+     *
+     * @param id id of instructor.
+     * @param startTime start time.
+     * @param auth security object which contains principal.
+     * @return updated lesson.
+     * @throws Exception if the student does not wait for the lesson.
+     */
+    @DeleteMapping("/{id}/lessons/{startTime}/waitlist/me")
+    @PreAuthorize("hasRole('ROLE_STUDENT')")
+    public Lesson deleteInvokingStudentFromWaitlist(
+            @PathVariable String id,
+            @PathVariable String startTime,
+            Authentication auth) throws Exception {
+
+        CognitoUser student = (CognitoUser) auth.getPrincipal();
+
+        return lessonService.leaveWaitlist(
+                student.getId(),
+                id,
+                Utils.parseISOString(startTime)
+        );
+    }
 }
@@ -0,0 +1,137 @@
+package net.spacive.apps.ejazdybackend.controller;
+
+import net.spacive.apps.ejazdybackend.config.Utils;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * REST API for lessons of all instructors.
+ */
+@RestController
+@CrossOrigin
+@RequestMapping("/lessons")
+public class LessonController {
+
+    /**
+     * Instance of LessonService.
+     */
+    private final LessonService lessonService;
+
+    /**
+     * Constructor.
+     *
+     * @param lessonService injected param.
+     */
+    @Autowired
+    public LessonController(LessonService lessonService) {
+        this.lessonService = lessonService;
+    }
+
+    /**
+     * List lessons of several instructors within date range,
+     * merged into single calendar sorted by start time.
+     *
+     * <p>Instructors are passed as comma separated list, at most
+     * calendar.max-instructors of them.
+     *
+     * <p>Allowed for every role.
+     *
+     * @param instructors unique ids of instructors.
+     * @param from date from.
+     * @param to date to.
+     * @return list of lessons sorted by start time.
+     */
+    @GetMapping("/calendar")
+    public List<Lesson> getCalendar(
+            @RequestParam("instructors") List<String> instructors,
+            @RequestParam("from") String from,
+            @RequestParam("to") String to) {
+
+        return lessonService.getLessonsByInstructorsRange(
+                instructors,
+                Utils.parseISOString(from),
+                Utils.parseISOString(to)
+        );
+    }
+
+    /**
+     * List daily schedule, lessons of all instructors which start
+     * on the day, optionally within date range.
+     *
+     * <p>From and to have to be used together.
+     *
+     * <p>Days are UTC dates of start time of lessons, local day
+     * in another zone may span two of them.
+     *
+     * <p>Lessons are returned in pages, next page can be fetched
+     * by passing nextCursor of the previous page as cursor.
+     *
+     * <p>Allowed for every role.
+     *
+     * @param day day in UTC, yyyy-MM-dd.
+     * @param from optional date from.
+     * @param to optional date to.
+     * @param limit optional page size.
+     * @param cursor optional cursor of the page returned as nextCursor.
+     * @return page of lessons sorted by start time.
+     */
+    @GetMapping("/day/{day}")
+    public LessonPage getLessonsByDay(
+            @PathVariable String day,
+            @RequestParam("from") Optional<String> from,
+            @RequestParam("to") Optional<String> to,
+            @RequestParam("limit") Optional<Integer> limit,
+            @RequestParam("cursor") Optional<String> cursor) {
+
+        Instant fromTime = null;
+        Instant toTime = null;
+
+        if (from.isPresent() && to.isPresent()) {
+            fromTime = Utils.parseISOString(from.get());
+            toTime = Utils.parseISOString(to.get());
+        }
+
+        return lessonService.getLessonsByDay(
+                day,
+                fromTime,
+                toTime,
+                limit.orElse(null),
+                cursor.orElse(null)
+        );
+    }
+
+    /**
+     * List free lessons of all instructors within date range.
+     *
+     * <p>Range can be at most dynamo.max-available-days long,
+     * counted in UTC dates of start time of lessons.
+     *
+     * <p>Allowed for every role.
+     *
+     * @param from date from.
+     * @param to date to.
+     * @return list of lessons sorted by start time.
+     */
+    @GetMapping("/available")
+    public List<Lesson> getAvailableLessons(
+            @RequestParam("from") String from,
+            @RequestParam("to") String to) {
+
+        return lessonService.getAvailableLessons(
+                Utils.parseISOString(from),
+                Utils.parseISOString(to)
+        );
+    }
+}
@@ -0,0 +1,57 @@
+package net.spacive.apps.ejazdybackend.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Streaming of lessons to response as JSON array.
+ *
+ * <p>Lessons are written by JSON generator as pages are fetched
+ * and output is flushed after every page, so the first lessons
+ * are sent before the last page is fetched and memory used by
+ * request does not depend on number of lessons.
+ *
+ * <p>If fetching fails in the middle, the response is already
+ * committed and the array is left unterminated.
+ */
+final class LessonStreams {
+
+    /**
+     * Constructor.
+     */
+    private LessonStreams() {
+    }
+
+    /**
+     * Response streaming lessons of all pages.
+     *
+     * @param mapper object mapper used for lessons.
+     * @param pages lazily fetched pages of lessons.
+     * @return streaming response.
+     */
+    static ResponseEntity<StreamingResponseBody> jsonArray(ObjectMapper mapper, Iterable<LessonPage> pages) {
+        final StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+
+                for (LessonPage page : pages) {
+                    for (Lesson lesson : page.getItems()) {
+                        generator.writeObject(lesson);
+                    }
+                    generator.flush();
+                }
+
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(body);
+    }
+}
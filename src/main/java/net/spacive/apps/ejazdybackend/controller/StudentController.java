@@ -1,18 +1,24 @@
 package net.spacive.apps.ejazdybackend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import net.spacive.apps.ejazdybackend.config.Utils;
 import net.spacive.apps.ejazdybackend.model.CognitoUser;
 import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
 import net.spacive.apps.ejazdybackend.service.LessonService;
 import net.spacive.apps.ejazdybackend.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Calendar;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST API for students resource.
@@ -34,16 +40,23 @@ public class StudentController {
      */
     private final LessonService lessonService;
 
+    /**
+     * Object mapper used for streamed responses.
+     */
+    private final ObjectMapper objectMapper;
+
     /**
      * Constructor.
      *
      * @param userService injected param.
      * @param lessonService injected param.
+     * @param objectMapper injected param.
      */
     @Autowired
-    public StudentController(UserService userService, LessonService lessonService) {
+    public StudentController(UserService userService, LessonService lessonService, ObjectMapper objectMapper) {
         this.userService = userService;
         this.lessonService = lessonService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -80,10 +93,11 @@ public class StudentController {
      *
      * @param id an unique id of student.
      * @return instance of deleted student.
+     * @throws Exception if lessons of the student could not be cleaned up.
      */
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public CognitoUser deleteStudent(@PathVariable String id) {
+    public CognitoUser deleteStudent(@PathVariable String id) throws Exception {
         return userService.deleteStudent(id);
     }
 
@@ -107,39 +121,95 @@ public class StudentController {
      * <p>When since is used, from and to cannot be used too.
      * From and to have to be used together.
      *
+     * <p>Lessons are returned in pages, next page can be fetched
+     * by passing nextCursor of the previous page as cursor.
+     *
+     * <p>Response has ETag, if none of lessons of student
+     * changed, 304 is returned without querying the lessons.
+     *
      * <p>Allowed only for admin and instructor.
      *
      * @param id id an unique id of student.
      * @param since optional date since.
      * @param from optional date from.
      * @param to optional date to.
-     * @return list of lessons.
+     * @param limit optional page size.
+     * @param cursor optional cursor of the page returned as nextCursor.
+     * @param webRequest current request, used for If-None-Match.
+     * @return future page of lessons, null if not modified.
      */
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_INSTRUCTOR')")
     @GetMapping("/{id}/lessons")
-    public List<Lesson> getLessonsByStudent(
+    public CompletableFuture<LessonPage> getLessonsByStudent(
+            @PathVariable String id,
+            @RequestParam("since") Optional<String> since,
+            @RequestParam("from") Optional<String> from,
+            @RequestParam("to") Optional<String> to,
+            @RequestParam("limit") Optional<Integer> limit,
+            @RequestParam("cursor") Optional<String> cursor,
+            ServletWebRequest webRequest) {
+
+        final String etag = lessonService.getLessonsETag(id, webRequest.getRequest().getQueryString());
+        if (ConditionalRequests.notModified(webRequest, etag)) {
+            return null;
+        }
+
+        Instant fromTime = null;
+        Instant toTime = null;
+
+        if (since.isPresent()) {
+            fromTime = Utils.parseISOString(since.get());
+        } else if(from.isPresent() && to.isPresent()) {
+            fromTime = Utils.parseISOString(from.get());
+            toTime = Utils.parseISOString(to.get());
+        }
+
+        return lessonService.getLessonsByStudentAsync(
+                id,
+                fromTime,
+                toTime,
+                limit.orElse(null),
+                cursor.orElse(null)
+        );
+    }
+
+    /**
+     * Stream all lessons of student as single JSON array.
+     *
+     * <p>Intended for clients fetching whole history, lessons are
+     * written as pages are fetched, so the response starts before
+     * all lessons are loaded.
+     *
+     * <p>When since is used, from and to cannot be used too.
+     * From and to have to be used together.
+     *
+     * <p>Allowed only for admin and instructor.
+     *
+     * @param id id an unique id of student.
+     * @param since optional date since.
+     * @param from optional date from.
+     * @param to optional date to.
+     * @return streamed array of lessons.
+     */
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_INSTRUCTOR')")
+    @GetMapping("/{id}/lessons/stream")
+    public ResponseEntity<StreamingResponseBody> streamLessonsByStudent(
             @PathVariable String id,
             @RequestParam("since") Optional<String> since,
             @RequestParam("from") Optional<String> from,
             @RequestParam("to") Optional<String> to) {
 
+        Instant fromTime = null;
+        Instant toTime = null;
+
         if (since.isPresent()) {
-            Calendar sinceCal = Utils.parseISOString(since.get());
-            return lessonService.getLessonsByStudentSince(
-                    id,
-                    sinceCal
-            );
+            fromTime = Utils.parseISOString(since.get());
         } else if(from.isPresent() && to.isPresent()) {
-            Calendar fromCal = Utils.parseISOString(from.get());
-            Calendar toCal = Utils.parseISOString(to.get());
-            return lessonService.getLessonsByStudentRange(
-                    id,
-                    fromCal,
-                    toCal
-            );
-        } else {
-            return lessonService.getLessonsByStudent(id);
+            fromTime = Utils.parseISOString(from.get());
+            toTime = Utils.parseISOString(to.get());
         }
+
+        return LessonStreams.jsonArray(objectMapper, lessonService.getAllLessonPagesByStudent(id, fromTime, toTime));
     }
 
     /**
@@ -154,15 +224,21 @@ public class StudentController {
      * @param since optional date since.
      * @param from optional date from.
      * @param to optional date to.
-     * @return list of lessons.
+     * @param limit optional page size.
+     * @param cursor optional cursor of the page returned as nextCursor.
+     * @param webRequest current request, used for If-None-Match.
+     * @return future page of lessons, null if not modified.
      */
     @PreAuthorize("hasRole('ROLE_STUDENT')")
     @GetMapping("/me/lessons")
-    public List<Lesson> getLessonsByMe(
+    public CompletableFuture<LessonPage> getLessonsByMe(
             Authentication auth,
             @RequestParam("since") Optional<String> since,
             @RequestParam("from") Optional<String> from,
-            @RequestParam("to") Optional<String> to) {
+            @RequestParam("to") Optional<String> to,
+            @RequestParam("limit") Optional<Integer> limit,
+            @RequestParam("cursor") Optional<String> cursor,
+            ServletWebRequest webRequest) {
 
         CognitoUser student = (CognitoUser) auth.getPrincipal();
         student = userService.getUser(student.getId());
@@ -171,7 +247,10 @@ public class StudentController {
                 student.getId(),
                 since,
                 from,
-                to
+                to,
+                limit,
+                cursor,
+                webRequest
         );
     }
 
@@ -0,0 +1,197 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics.Operation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Single requests issued by asynchronous client, shared by
+ * AsyncDynamoDao and the tables of aggregates.
+ *
+ * <p>Metrics are recorded when DynamoDB responds.
+ */
+final class AsyncCalls {
+
+    private AsyncCalls() {
+    }
+
+    /**
+     * Execute UpdateItem.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param metrics metrics of DynamoDB operations.
+     * @param operation operation recorded in metrics.
+     * @param request the update.
+     * @param key key of the item for slow operation log.
+     * @return future result.
+     */
+    static CompletableFuture<UpdateItemResult> updateItem(
+            AmazonDynamoDBAsync dynamoDBAsync,
+            DynamoMetrics metrics,
+            Operation operation,
+            UpdateItemRequest request,
+            Object... key) {
+
+        final FutureHandler<UpdateItemRequest, UpdateItemResult> handler = new FutureHandler<>();
+        final long start = System.nanoTime();
+
+        dynamoDBAsync.updateItemAsync(request.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL), handler);
+
+        return handler.future.whenComplete((result, e) -> metrics.record(
+                operation,
+                System.nanoTime() - start,
+                result != null ? 1 : 0,
+                result != null ? ConsumedCapacityHandler.units(result.getConsumedCapacity()) : 0,
+                key
+        ));
+    }
+
+    /**
+     * Execute conditional UpdateItem.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param metrics metrics of DynamoDB operations.
+     * @param operation operation recorded in metrics.
+     * @param request the update.
+     * @param key key of the item for slow operation log.
+     * @return future result, null if condition failed.
+     */
+    static CompletableFuture<UpdateItemResult> conditionalUpdateItem(
+            AmazonDynamoDBAsync dynamoDBAsync,
+            DynamoMetrics metrics,
+            Operation operation,
+            UpdateItemRequest request,
+            Object... key) {
+
+        return updateItem(dynamoDBAsync, metrics, operation, request, key).exceptionally(e -> {
+            final Throwable cause = cause(e);
+            if (cause instanceof ConditionalCheckFailedException) {
+                return null;
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Execute GetItem.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param metrics metrics of DynamoDB operations.
+     * @param operation operation recorded in metrics.
+     * @param request the read.
+     * @param key key of the item for slow operation log.
+     * @return future result.
+     */
+    static CompletableFuture<GetItemResult> getItem(
+            AmazonDynamoDBAsync dynamoDBAsync,
+            DynamoMetrics metrics,
+            Operation operation,
+            GetItemRequest request,
+            Object... key) {
+
+        final FutureHandler<GetItemRequest, GetItemResult> handler = new FutureHandler<>();
+        final long start = System.nanoTime();
+
+        dynamoDBAsync.getItemAsync(request.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL), handler);
+
+        return handler.future.whenComplete((result, e) -> metrics.record(
+                operation,
+                System.nanoTime() - start,
+                result != null && result.getItem() != null ? 1 : 0,
+                result != null ? ConsumedCapacityHandler.units(result.getConsumedCapacity()) : 0,
+                key
+        ));
+    }
+
+    /**
+     * Execute TransactWriteItems.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param metrics metrics of DynamoDB operations.
+     * @param operation operation recorded in metrics.
+     * @param request the transaction.
+     * @param key key of the item for slow operation log.
+     * @return future empty list if written, otherwise reasons of cancellation per item.
+     * @see Transactions#write(com.amazonaws.services.dynamodbv2.AmazonDynamoDB, TransactWriteItemsRequest)
+     */
+    static CompletableFuture<List<CancellationReason>> transactWriteItems(
+            AmazonDynamoDBAsync dynamoDBAsync,
+            DynamoMetrics metrics,
+            Operation operation,
+            TransactWriteItemsRequest request,
+            Object... key) {
+
+        final FutureHandler<TransactWriteItemsRequest, TransactWriteItemsResult> handler = new FutureHandler<>();
+        final long start = System.nanoTime();
+
+        dynamoDBAsync.transactWriteItemsAsync(request.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL), handler);
+
+        return handler.future
+                .whenComplete((result, e) -> metrics.record(
+                        operation,
+                        System.nanoTime() - start,
+                        result != null ? 1 : 0,
+                        result != null ? ConsumedCapacityHandler.units(result.getConsumedCapacity()) : 0,
+                        key
+                ))
+                .handle((result, e) -> {
+                    if (e == null) {
+                        return Collections.<CancellationReason>emptyList();
+                    }
+
+                    final Throwable cause = cause(e);
+                    if (cause instanceof TransactionCanceledException) {
+                        return Transactions.reasons((TransactionCanceledException) cause);
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
+    /**
+     * Failure without wrapping of CompletableFuture.
+     *
+     * @param e failure of future.
+     * @return the cause.
+     */
+    static Throwable cause(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Bridge between AWS SDK callbacks and CompletableFuture.
+     *
+     * @param <Q> type of request.
+     * @param <R> type of result.
+     */
+    static final class FutureHandler<Q extends AmazonWebServiceRequest, R>
+            implements AsyncHandler<Q, R> {
+
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        @Override
+        public void onError(Exception exception) {
+            future.completeExceptionally(exception);
+        }
+
+        @Override
+        public void onSuccess(Q request, R result) {
+            future.complete(result);
+        }
+    }
+}
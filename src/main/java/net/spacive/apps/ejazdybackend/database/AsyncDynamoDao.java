@@ -0,0 +1,505 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics.Operation;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class is an asynchronous variant of DynamoDao.
+ *
+ * <p>Methods return immediately and complete the returned
+ * futures when DynamoDB responds, so the calling thread is
+ * not blocked while the request is in flight.
+ *
+ * <p>Enabled only if dynamo.async is true and spring
+ * profile memory is not active.
+ *
+ * @see DynamoDao
+ */
+@Repository
+@Profile("!memory")
+@ConditionalOnProperty(prefix = "dynamo", name = "async", havingValue = "true")
+public class AsyncDynamoDao {
+
+    /**
+     * reference to asynchronous dynamo db client provided by AWS SDK.
+     */
+    private final AmazonDynamoDBAsync dynamoDBAsync;
+
+    /**
+     * reference to dynamo db mapper, used only for conversion
+     * between items and lessons.
+     */
+    private final DynamoDBMapper dbMapper;
+
+    /**
+     * Reference to dynamo configuration.
+     */
+    private final DynamoConfiguration config;
+
+    /**
+     * Metrics of DynamoDB operations.
+     */
+    private final DynamoMetrics metrics;
+
+    /**
+     * Versions of partitions, bumped by every write.
+     */
+    private final LessonVersions versions;
+
+    /**
+     * Aggregates of completed hours, adjusted by booking changes.
+     */
+    private final CompletedHoursTable hours;
+
+    /**
+     * Counters of future bookings, limiting bookings of students.
+     */
+    private final StudentBookingsTable bookings;
+
+    /**
+     * Constructor.
+     * @param dynamoDBAsync injected param.
+     * @param dbMapper injected param.
+     * @param config injected param.
+     * @param metrics injected param.
+     * @param versions injected param.
+     * @param hours injected param.
+     * @param bookings injected param.
+     */
+    @Autowired
+    public AsyncDynamoDao(
+            AmazonDynamoDBAsync dynamoDBAsync,
+            DynamoDBMapper dbMapper,
+            DynamoConfiguration config,
+            DynamoMetrics metrics,
+            LessonVersions versions,
+            CompletedHoursTable hours,
+            StudentBookingsTable bookings) {
+
+        this.dynamoDBAsync = dynamoDBAsync;
+        this.dbMapper = dbMapper;
+        this.config = config;
+        this.metrics = metrics;
+        this.versions = versions;
+        this.hours = hours;
+        this.bookings = bookings;
+    }
+
+    /**
+     * Get single page of lessons by instructor.
+     *
+     * <p>If only from is set, lessons since from are fetched.
+     * If none of from and to is set, all lessons are fetched.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param from optional starting date.
+     * @param to optional ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return future page of lessons.
+     */
+    public CompletableFuture<LessonPage> getLessonsByInstructor(
+            String instructorId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return queryPage(Operation.instructorQuery(from, to), LessonRequests.instructorQuery(
+                instructorId,
+                from,
+                to,
+                LessonRequests.pageSize(config, limit),
+                cursor
+        ), instructorId, from, to);
+    }
+
+    /**
+     * Get single page of lessons by student.
+     *
+     * <p>If only from is set, lessons since from are fetched.
+     * If none of from and to is set, all lessons are fetched.
+     *
+     * @param studentId an unique id of student.
+     * @param from optional starting date.
+     * @param to optional ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return future page of lessons.
+     */
+    public CompletableFuture<LessonPage> getLessonsByStudent(
+            String studentId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return queryPage(Operation.studentQuery(from, to), LessonRequests.studentQuery(
+                studentId,
+                from,
+                to,
+                LessonRequests.pageSize(config, limit),
+                cursor
+        ), studentId, from, to);
+    }
+
+    /**
+     * Get details of single lesson by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @return future lesson instance, null if it does not exist.
+     */
+    public CompletableFuture<Lesson> getLessonByInstructor(String instructorId, Instant startTime) {
+        return getLesson(Operation.GET_LESSON_BY_INSTRUCTOR, LessonRequests.getLesson(instructorId, startTime),
+                instructorId, startTime);
+    }
+
+    /**
+     * Register student to lesson.
+     *
+     * <p>If the lesson is counted in bookings of the student, it is
+     * registered together with its key in counter of the student by
+     * single TransactWriteItems, as in DynamoDao.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of student.
+     * @param studentName name of the student.
+     * @return future updated lesson, null if lesson does not exist, another
+     * student is already registered to it or the student has too many
+     * future bookings.
+     * @see DynamoDao#registerStudent(String, Instant, String, String)
+     */
+    public CompletableFuture<Lesson> registerStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String studentName) {
+
+        final Lesson booked = new Lesson().withInstructorId(instructorId).withStartTime(startTime);
+        final UpdateItemRequest registration = LessonRequests.registerStudent(
+                instructorId,
+                startTime,
+                studentId,
+                studentName
+        );
+
+        if (!bookings.counted(booked)) {
+            return conditionalUpdate(Operation.REGISTER_STUDENT, registration, studentId, true, instructorId, startTime);
+        }
+
+        return transact(Operation.REGISTER_STUDENT, Transactions.request(
+                Transactions.update(registration),
+                Transactions.update(bookings.reserveRequest(booked, studentId))
+        ), studentId, instructorId, startTime).thenCompose(reasons -> reasons.isEmpty()
+                ? transacted(instructorId, startTime, studentId, true)
+                : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Unregister student from lesson.
+     *
+     * <p>If somebody waits for the lesson, a waiting student
+     * is registered instead, as in DynamoDao.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @return future updated lesson, null if lesson does not exist, the student
+     * is not registered to it or waitlist kept changing concurrently.
+     * @see DynamoDao#unregisterStudent(String, Instant, String)
+     */
+    public CompletableFuture<Lesson> unregisterStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId) {
+
+        return unregisterStudent(instructorId, startTime, studentId, 0);
+    }
+
+    /**
+     * Single attempt of unregistration, the next one is
+     * started if waitlist changed concurrently.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @param attempt number of failed attempts.
+     * @return future updated lesson or null.
+     */
+    private CompletableFuture<Lesson> unregisterStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            int attempt) {
+
+        if (attempt >= DynamoDao.waitlistAttempts) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Lesson booked = new Lesson().withInstructorId(instructorId).withStartTime(startTime);
+
+        if (!bookings.counted(booked)) {
+            return conditionalUpdate(Operation.UNREGISTER_STUDENT, LessonRequests.unregisterStudent(
+                    instructorId,
+                    startTime,
+                    studentId
+            ), studentId, false, instructorId, startTime).thenCompose(unregistered -> unregistered != null
+                    ? CompletableFuture.completedFuture(unregistered)
+                    : getLessonConsistently(instructorId, startTime).thenCompose(current ->
+                            promoteWaitlist(current, instructorId, startTime, studentId, attempt)));
+        }
+
+        return transact(Operation.UNREGISTER_STUDENT, Transactions.request(
+                Transactions.update(LessonRequests.unregisterStudent(instructorId, startTime, studentId)),
+                Transactions.update(bookings.releaseRequest(booked, studentId))
+        ), studentId, instructorId, startTime).thenCompose(reasons -> reasons.isEmpty()
+                ? transacted(instructorId, startTime, studentId, false)
+                : promoteWaitlist(toLesson(Transactions.item(reasons, 0)), instructorId, startTime, studentId, attempt));
+    }
+
+    /**
+     * Promote waiting student after unregistration failed, or
+     * start the next attempt if nobody waits.
+     *
+     * @param current lesson as it was read, may be null.
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @param attempt number of failed attempts.
+     * @return future updated lesson or null.
+     */
+    private CompletableFuture<Lesson> promoteWaitlist(
+            Lesson current,
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            int attempt) {
+
+        if (current == null || !studentId.equals(current.getStudentId())) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (current.getWaitlist() == null || current.getWaitlist().isEmpty()) {
+            return unregisterStudent(instructorId, startTime, studentId, attempt + 1);
+        }
+
+        return promoteWaitlist(current, studentId, 0).thenCompose(promoted -> promoted != null
+                ? CompletableFuture.completedFuture(promoted)
+                : unregisterStudent(instructorId, startTime, studentId, attempt + 1));
+    }
+
+    /**
+     * Replace registered student by waiting student at position,
+     * or by the following one if the student has too many future
+     * bookings. If none of them can be promoted, the student is
+     * unregistered and the waitlist is cleared.
+     *
+     * @param current lesson as it was read.
+     * @param studentId an unique id of currently registered student.
+     * @param position position of the first student which is tried.
+     * @return future updated lesson, null if waitlist or student changed meanwhile.
+     * @see DynamoDao#unregisterStudent(String, Instant, String)
+     */
+    private CompletableFuture<Lesson> promoteWaitlist(Lesson current, String studentId, int position) {
+        final String instructorId = current.getInstructorId();
+        final Instant startTime = current.getStartTime();
+        final List<String> waitlist = current.getWaitlist();
+
+        if (position >= waitlist.size()) {
+            return transact(
+                    Operation.UNREGISTER_STUDENT,
+                    Transactions.clear(bookings, current, studentId),
+                    studentId,
+                    instructorId, startTime
+            ).thenCompose(reasons -> reasons.isEmpty()
+                    ? transacted(instructorId, startTime, studentId, false)
+                    : CompletableFuture.completedFuture(null));
+        }
+
+        final String nextId = waitlist.get(position);
+        final TransactWriteItemsRequest request = Transactions.promote(bookings, current, studentId, position);
+
+        return transact(Operation.PROMOTE_WAITLIST, request, nextId, instructorId, startTime).thenCompose(reasons -> {
+            if (reasons.isEmpty()) {
+                return versions.bumpAsync(dynamoDBAsync, studentId).thenCompose(bumped ->
+                        transacted(instructorId, startTime, nextId, true)).thenCompose(promoted -> promoted != null
+                        ? hours.adjustAsync(dynamoDBAsync, promoted, studentId, false).thenApply(adjusted -> promoted)
+                        : CompletableFuture.completedFuture(null));
+            }
+            if (Transactions.failed(reasons, 0)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return promoteWaitlist(current, studentId, position + 1);
+        });
+    }
+
+    /**
+     * Execute transaction, which adds key of lesson to counter
+     * of student as its second item.
+     *
+     * @param operation operation recorded in metrics.
+     * @param request the transaction, lesson is its first item.
+     * @param studentId an unique id of student whose counter is added to.
+     * @param key key of the lesson for slow operation log.
+     * @return future empty list if written, otherwise reasons of cancellation per item.
+     * @see DynamoDao
+     */
+    private CompletableFuture<List<CancellationReason>> transact(
+            Operation operation,
+            TransactWriteItemsRequest request,
+            String studentId,
+            Object... key) {
+
+        return AsyncCalls.transactWriteItems(dynamoDBAsync, metrics, operation, request, key).thenCompose(reasons -> {
+            if (!Transactions.failed(reasons, 1) || Transactions.failed(reasons, 0)) {
+                return CompletableFuture.completedFuture(reasons);
+            }
+
+            return bookings.removeStartedAsync(dynamoDBAsync, studentId).thenCompose(removed -> removed
+                    ? AsyncCalls.transactWriteItems(dynamoDBAsync, metrics, operation, request, key)
+                    : CompletableFuture.completedFuture(reasons));
+        });
+    }
+
+    /**
+     * Read lesson written by transaction, which returns no values,
+     * and bump versions and completed hours as conditionalUpdate.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of registered or unregistered student.
+     * @param registered true if student is registered, false if unregistered.
+     * @return future lesson as it was read.
+     */
+    private CompletableFuture<Lesson> transacted(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            boolean registered) {
+
+        return getLessonConsistently(instructorId, startTime).thenCompose(updated -> versions
+                .bumpAsync(dynamoDBAsync, instructorId, studentId)
+                .thenCompose(bumped -> updated != null
+                        ? hours.adjustAsync(dynamoDBAsync, updated, studentId, registered).thenApply(adjusted -> updated)
+                        : CompletableFuture.completedFuture(null)));
+    }
+
+    /**
+     * Read lesson consistently, with its waitlist as it was
+     * after the last write.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @return future lesson, null if it does not exist.
+     */
+    private CompletableFuture<Lesson> getLessonConsistently(String instructorId, Instant startTime) {
+        return getLesson(
+                Operation.GET_LESSON_BY_INSTRUCTOR,
+                LessonRequests.getLesson(instructorId, startTime).withConsistentRead(true),
+                instructorId, startTime
+        );
+    }
+
+    /**
+     * Execute read of single lesson.
+     *
+     * @param operation operation recorded in metrics.
+     * @param request the read.
+     * @param key key of the lesson for slow operation log.
+     * @return future lesson, null if it does not exist.
+     */
+    private CompletableFuture<Lesson> getLesson(Operation operation, GetItemRequest request, Object... key) {
+        return AsyncCalls.getItem(dynamoDBAsync, metrics, operation, request, key)
+                .thenApply(result -> toLesson(result.getItem()));
+    }
+
+    /**
+     * Execute query of single page.
+     *
+     * @param operation operation recorded in metrics.
+     * @param request query request.
+     * @param key key of the query for slow operation log.
+     * @return future page of lessons.
+     */
+    private CompletableFuture<LessonPage> queryPage(Operation operation, QueryRequest request, Object... key) {
+        final AsyncCalls.FutureHandler<QueryRequest, QueryResult> handler = new AsyncCalls.FutureHandler<>();
+        final long start = System.nanoTime();
+
+        dynamoDBAsync.queryAsync(request, handler);
+
+        return handler.future
+                .whenComplete((result, e) -> metrics.record(
+                        operation,
+                        System.nanoTime() - start,
+                        result != null ? result.getItems().size() : 0,
+                        result != null ? ConsumedCapacityHandler.units(result.getConsumedCapacity()) : 0,
+                        key
+                ))
+                .thenApply(result -> new LessonPage(
+                        dbMapper.marshallIntoObjects(Lesson.class, result.getItems()),
+                        LessonCursor.encode(result.getLastEvaluatedKey())
+                ));
+    }
+
+    /**
+     * Execute conditional update of lesson.
+     *
+     * @param operation operation recorded in metrics.
+     * @param request update request returning ALL_NEW.
+     * @param studentId an unique id of registered or unregistered student.
+     * @param registered true if student is registered, false if unregistered.
+     * @param key key of the lesson for slow operation log.
+     * @return future updated lesson, null if condition failed.
+     */
+    private CompletableFuture<Lesson> conditionalUpdate(
+            Operation operation,
+            UpdateItemRequest request,
+            String studentId,
+            boolean registered,
+            Object... key) {
+
+        return AsyncCalls.conditionalUpdateItem(dynamoDBAsync, metrics, operation, request, key).thenCompose(result -> {
+            if (result == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            final Lesson updated = toLesson(result.getAttributes());
+
+            return versions.bumpAsync(dynamoDBAsync, updated.getInstructorId(), studentId)
+                    .thenCompose(bumped -> hours.adjustAsync(dynamoDBAsync, updated, studentId, registered))
+                    .thenApply(adjusted -> updated);
+        });
+    }
+
+    /**
+     * Convert item to lesson.
+     *
+     * @param item item returned by DynamoDB, may be null.
+     * @return lesson or null.
+     */
+    private Lesson toLesson(Map<String, AttributeValue> item) {
+        return item != null ? dbMapper.marshallIntoObject(Lesson.class, item) : null;
+    }
+}
@@ -0,0 +1,385 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics.Operation;
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Access to table CompletedHours, aggregates of completed
+ * hours of students.
+ *
+ * <p>Every write increments revision of the aggregate. Watermark
+ * is moved only if the revision did not change since the aggregate
+ * was read, so lessons folded in by concurrent readers or booking
+ * changes between read and write are never lost nor counted twice.
+ *
+ * <p>Used by DynamoDao and AsyncDynamoDao, adjustAsync sends
+ * requests by asynchronous client, others by blocking client.
+ *
+ * @see CompletedHours
+ */
+@Component
+@Profile("!memory")
+public class CompletedHoursTable {
+
+    /**
+     * Name of the table of aggregates.
+     */
+    static final String HOURS_TABLE =
+            CompletedHours.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    /**
+     * Maximum number of adjustments of read aggregate, when
+     * the aggregate keeps changing concurrently.
+     */
+    static final int adjustAttempts = 3;
+
+    /**
+     * reference to dynamo db mapper, used only for conversion
+     * of items to aggregates.
+     */
+    private final DynamoDBMapper dbMapper;
+
+    /**
+     * reference to low level dynamo db client.
+     */
+    private final AmazonDynamoDB dynamoDB;
+
+    /**
+     * Metrics of DynamoDB operations.
+     */
+    private final DynamoMetrics metrics;
+
+    /**
+     * Constructor.
+     * @param dbMapper injected param.
+     * @param dynamoDB injected param.
+     * @param metrics injected param.
+     */
+    @Autowired
+    public CompletedHoursTable(
+            DynamoDBMapper dbMapper,
+            @Qualifier("dynamoDB") AmazonDynamoDB dynamoDB,
+            DynamoMetrics metrics) {
+
+        this.dbMapper = dbMapper;
+        this.dynamoDB = dynamoDB;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Read aggregate of student consistently.
+     *
+     * @param studentId an unique id of student.
+     * @return aggregate, empty one with revision 0 if it does not exist.
+     */
+    CompletedHours get(String studentId) {
+        LessonRequests.checkValidId(studentId);
+
+        final GetItemRequest request = new GetItemRequest()
+                .withTableName(HOURS_TABLE)
+                .withKey(key(studentId))
+                .withConsistentRead(true);
+
+        final Map<String, AttributeValue> item = metrics.record(
+                Operation.GET_COMPLETED_HOURS,
+                () -> dynamoDB.getItem(request).getItem(),
+                found -> found != null ? 1 : 0,
+                studentId
+        );
+
+        if (item == null) {
+            return new CompletedHours().withStudentId(studentId);
+        }
+
+        return dbMapper.marshallIntoObject(CompletedHours.class, item);
+    }
+
+    /**
+     * Add duration of lessons after the watermark and move it,
+     * if the aggregate was not written since it was read.
+     *
+     * @param hours aggregate as it was read.
+     * @param millis duration of lessons after the old watermark up to the new one.
+     * @param watermark new watermark.
+     * @return true if advanced, false if aggregate was written meanwhile.
+     */
+    boolean advance(CompletedHours hours, long millis, Instant watermark) {
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":millis", number(millis));
+        values.put(":one", number(1));
+        values.put(":watermark", new AttributeValue(Iso8601.format(watermark)));
+
+        final UpdateItemRequest request = whenNotWritten(new UpdateItemRequest()
+                .withTableName(HOURS_TABLE)
+                .withKey(key(hours.getStudentId()))
+                .withUpdateExpression("SET watermark = :watermark ADD completedMillis :millis, revision :one"),
+                values, hours);
+
+        return metrics.record(
+                Operation.ADVANCE_COMPLETED_HOURS,
+                () -> update(request),
+                advanced -> advanced ? 1 : 0,
+                hours.getStudentId(), watermark
+        );
+    }
+
+    /**
+     * Apply booking change of lesson to aggregate of student.
+     *
+     * <p>Lessons which have not started yet are skipped, they are
+     * folded in by the first read after they start. Duration of
+     * already counted lesson is added or subtracted, otherwise only
+     * revision is incremented, so that readers folding the lesson
+     * in concurrently have to query it again.
+     *
+     * @param lesson the lesson with start and stop time.
+     * @param studentId an unique id of registered or unregistered student, may be null.
+     * @param registered true if student was registered, false if unregistered.
+     */
+    void adjust(Lesson lesson, String studentId, boolean registered) {
+        if (studentId == null || !started(lesson)) {
+            return;
+        }
+
+        final UpdateItemRequest counted = countedRequest(
+                studentId,
+                millis(Collections.singletonList(lesson), registered),
+                lesson.getStartTime()
+        );
+
+        metrics.record(Operation.ADJUST_COMPLETED_HOURS, () -> {
+            if (!update(counted)) {
+                update(notCountedRequest(studentId));
+            }
+            return null;
+        }, adjusted -> 1, studentId, lesson.getStartTime());
+    }
+
+    /**
+     * Asynchronous variant of adjust.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param lesson the lesson with start and stop time.
+     * @param studentId an unique id of registered or unregistered student, may be null.
+     * @param registered true if student was registered, false if unregistered.
+     * @return future completed when the aggregate is adjusted.
+     * @see #adjust(Lesson, String, boolean)
+     */
+    CompletableFuture<Void> adjustAsync(
+            AmazonDynamoDBAsync dynamoDBAsync,
+            Lesson lesson,
+            String studentId,
+            boolean registered) {
+
+        if (studentId == null || !started(lesson)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final UpdateItemRequest counted = countedRequest(
+                studentId,
+                millis(Collections.singletonList(lesson), registered),
+                lesson.getStartTime()
+        );
+
+        return AsyncCalls.conditionalUpdateItem(dynamoDBAsync, metrics, Operation.ADJUST_COMPLETED_HOURS,
+                counted, studentId, lesson.getStartTime())
+                .thenCompose(result -> result != null
+                        ? CompletableFuture.completedFuture(null)
+                        : AsyncCalls.updateItem(dynamoDBAsync, metrics, Operation.ADJUST_COMPLETED_HOURS,
+                                notCountedRequest(studentId), studentId, lesson.getStartTime()))
+                .thenApply(result -> null);
+    }
+
+    /**
+     * Apply booking change of several lessons of one student
+     * to its aggregate, such as deletion of lessons by batch.
+     *
+     * <p>If the watermark covers all of the lessons, their duration
+     * is added or subtracted by single update. Otherwise aggregate
+     * is read and only covered lessons are applied, if the aggregate
+     * was not written since it was read, at most adjustAttempts times.
+     *
+     * @param studentId an unique id of registered or unregistered student, may be null.
+     * @param lessons lessons of the student with start and stop time.
+     * @param registered true if student was registered, false if unregistered.
+     * @throws IllegalStateException if the aggregate kept changing concurrently.
+     */
+    void adjustAll(String studentId, List<Lesson> lessons, boolean registered) {
+        final List<Lesson> started = lessons.stream()
+                .filter(CompletedHoursTable::started)
+                .collect(Collectors.toList());
+
+        if (studentId == null || started.isEmpty()) {
+            return;
+        }
+
+        final Instant latest = started.stream()
+                .map(Lesson::getStartTime)
+                .max(Comparator.naturalOrder())
+                .get();
+
+        final UpdateItemRequest counted = countedRequest(studentId, millis(started, registered), latest);
+        boolean adjusted = metrics.record(
+                Operation.ADJUST_COMPLETED_HOURS,
+                () -> update(counted),
+                updated -> started.size(),
+                studentId, latest
+        );
+
+        for (int attempt = 0; !adjusted; attempt++) {
+            if (attempt >= adjustAttempts) {
+                throw new IllegalStateException("completed hours of student " + studentId
+                        + " kept changing, cannot adjust " + started.size() + " lessons");
+            }
+
+            final CompletedHours hours = get(studentId);
+            final List<Lesson> covered = started.stream()
+                    .filter(lesson -> hours.covers(lesson.getStartTime()))
+                    .collect(Collectors.toList());
+
+            final Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":millis", number(millis(covered, registered)));
+            values.put(":one", number(1));
+
+            final UpdateItemRequest request = whenNotWritten(new UpdateItemRequest()
+                    .withTableName(HOURS_TABLE)
+                    .withKey(key(studentId))
+                    .withUpdateExpression("ADD completedMillis :millis, revision :one"),
+                    values, hours);
+
+            adjusted = metrics.record(
+                    Operation.ADJUST_COMPLETED_HOURS,
+                    () -> update(request),
+                    updated -> covered.size(),
+                    studentId, latest
+            );
+        }
+    }
+
+    /**
+     * Whether lesson already started, so that it may be counted.
+     *
+     * @param lesson the lesson.
+     * @return true if start time is not in the future.
+     */
+    private static boolean started(Lesson lesson) {
+        return lesson.getStartTime() != null && !lesson.getStartTime().isAfter(Instant.now());
+    }
+
+    /**
+     * Duration added to aggregate by booking change.
+     *
+     * @param lessons changed lessons.
+     * @param registered true if student was registered, false if unregistered.
+     * @return total duration, negative if unregistered.
+     */
+    private static long millis(List<Lesson> lessons, boolean registered) {
+        final long duration = lessons.stream().mapToLong(CompletedHours::durationOf).sum();
+        return registered ? duration : -duration;
+    }
+
+    /**
+     * Update of duration of lessons, if watermark covers the latest of them.
+     *
+     * @param studentId an unique id of student.
+     * @param millis added duration.
+     * @param latest start time of the latest lesson.
+     * @return the update.
+     */
+    static UpdateItemRequest countedRequest(String studentId, long millis, Instant latest) {
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":millis", number(millis));
+        values.put(":one", number(1));
+        values.put(":startTime", new AttributeValue(Iso8601.format(latest)));
+
+        return new UpdateItemRequest()
+                .withTableName(HOURS_TABLE)
+                .withKey(key(studentId))
+                .withUpdateExpression("ADD completedMillis :millis, revision :one")
+                .withConditionExpression("watermark >= :startTime")
+                .withExpressionAttributeValues(values);
+    }
+
+    /**
+     * Increment of revision of aggregate, for lessons not counted yet.
+     *
+     * @param studentId an unique id of student.
+     * @return the update.
+     */
+    static UpdateItemRequest notCountedRequest(String studentId) {
+        return new UpdateItemRequest()
+                .withTableName(HOURS_TABLE)
+                .withKey(key(studentId))
+                .withUpdateExpression("ADD revision :one")
+                .withExpressionAttributeValues(Collections.singletonMap(":one", number(1)));
+    }
+
+    /**
+     * Condition update on revision of aggregate as it was read.
+     *
+     * @param request the update.
+     * @param values values of the update, revision is added.
+     * @param hours aggregate as it was read.
+     * @return the update.
+     */
+    private static UpdateItemRequest whenNotWritten(
+            UpdateItemRequest request,
+            Map<String, AttributeValue> values,
+            CompletedHours hours) {
+
+        if (hours.getRevision() == 0) {
+            request.withConditionExpression("attribute_not_exists(studentId)");
+        } else {
+            values.put(":revision", number(hours.getRevision()));
+            request.withConditionExpression("revision = :revision");
+        }
+
+        return request.withExpressionAttributeValues(values);
+    }
+
+    /**
+     * Execute conditional update.
+     *
+     * @param request the update.
+     * @return false if condition failed.
+     */
+    private boolean update(UpdateItemRequest request) {
+        try {
+            dynamoDB.updateItem(request);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    private static Map<String, AttributeValue> key(String studentId) {
+        return Collections.singletonMap("studentId", new AttributeValue(studentId));
+    }
+
+    private static AttributeValue number(long value) {
+        return new AttributeValue().withN(Long.toString(value));
+    }
+}
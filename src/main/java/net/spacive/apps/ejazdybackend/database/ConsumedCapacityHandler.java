@@ -0,0 +1,145 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+
+import java.util.List;
+
+/**
+ * Request handler of blocking DynamoDB client, which requests
+ * consumed capacity of every call and sums it per thread.
+ *
+ * <p>DynamoDBMapper does not expose consumed capacity, so
+ * DynamoDao reads the sum collected on its thread instead.
+ *
+ * @see DynamoMetrics
+ */
+public class ConsumedCapacityHandler extends RequestHandler2 {
+
+    /**
+     * Capacity units consumed by the current thread since last reset.
+     */
+    private static final ThreadLocal<double[]> consumed = ThreadLocal.withInitial(() -> new double[1]);
+
+    /**
+     * Reset capacity consumed by the current thread.
+     */
+    static void reset() {
+        consumed.get()[0] = 0;
+    }
+
+    /**
+     * @return capacity units consumed by the current thread since last reset.
+     */
+    static double consumed() {
+        return consumed.get()[0];
+    }
+
+    /**
+     * Capacity units of single response.
+     *
+     * @param capacity consumed capacity returned by DynamoDB, may be null.
+     * @return capacity units or 0.
+     */
+    static double units(ConsumedCapacity capacity) {
+        return capacity != null && capacity.getCapacityUnits() != null ? capacity.getCapacityUnits() : 0;
+    }
+
+    /**
+     * Capacity units of response touching several tables.
+     *
+     * @param capacities consumed capacity per table, may be null.
+     * @return sum of capacity units or 0.
+     */
+    static double units(List<ConsumedCapacity> capacities) {
+        double units = 0;
+
+        if (capacities != null) {
+            for (ConsumedCapacity capacity : capacities) {
+                units += units(capacity);
+            }
+        }
+        return units;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+        if (request instanceof QueryRequest) {
+            ((QueryRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof ScanRequest) {
+            ((ScanRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof GetItemRequest) {
+            ((GetItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof PutItemRequest) {
+            ((PutItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof UpdateItemRequest) {
+            ((UpdateItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof DeleteItemRequest) {
+            ((DeleteItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof BatchGetItemRequest) {
+            ((BatchGetItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof BatchWriteItemRequest) {
+            ((BatchWriteItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        } else if (request instanceof TransactWriteItemsRequest) {
+            ((TransactWriteItemsRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL.toString());
+        }
+
+        return request;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        final Object result = response.getAwsResponse();
+        double units = 0;
+
+        if (result instanceof QueryResult) {
+            units = units(((QueryResult) result).getConsumedCapacity());
+        } else if (result instanceof ScanResult) {
+            units = units(((ScanResult) result).getConsumedCapacity());
+        } else if (result instanceof GetItemResult) {
+            units = units(((GetItemResult) result).getConsumedCapacity());
+        } else if (result instanceof PutItemResult) {
+            units = units(((PutItemResult) result).getConsumedCapacity());
+        } else if (result instanceof UpdateItemResult) {
+            units = units(((UpdateItemResult) result).getConsumedCapacity());
+        } else if (result instanceof DeleteItemResult) {
+            units = units(((DeleteItemResult) result).getConsumedCapacity());
+        } else if (result instanceof BatchGetItemResult) {
+            units = units(((BatchGetItemResult) result).getConsumedCapacity());
+        } else if (result instanceof BatchWriteItemResult) {
+            units = units(((BatchWriteItemResult) result).getConsumedCapacity());
+        } else if (result instanceof TransactWriteItemsResult) {
+            units = units(((TransactWriteItemsResult) result).getConsumedCapacity());
+        }
+
+        consumed.get()[0] += units;
+    }
+}
@@ -1,20 +1,44 @@
 package net.spacive.apps.ejazdybackend.database;
 
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
-import com.amazonaws.util.DateUtils;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics.Operation;
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
 import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import net.spacive.apps.ejazdybackend.model.StudentBookings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This class is an implementation of database access object
@@ -22,24 +46,96 @@ import java.util.UUID;
  *
  * <p>This class manipulates mainly with Lesson.
  *
+ * <p>Used unless spring profile memory is active.
+ *
  * @author  Juraj Haluska
  * @see Lesson
  */
 @Repository
-public class DynamoDao {
+@Profile("!memory")
+public class DynamoDao implements LessonStore {
+
+    /**
+     * How many times unregistration or leaving waitlist is
+     * tried, if waitlist is changed concurrently.
+     */
+    static final int waitlistAttempts = 3;
 
     /**
      * reference to dynamo db mapper provided by AWS SDK.
      */
     private final DynamoDBMapper dbMapper;
 
+    /**
+     * reference to low level dynamo db client, used for
+     * conditional updates which mapper does not support.
+     */
+    private final AmazonDynamoDB dynamoDB;
+
+    /**
+     * Reference to dynamo configuration.
+     */
+    private final DynamoConfiguration config;
+
+    /**
+     * Mapper config used for batch writes.
+     */
+    private final DynamoDBMapperConfig batchWriteConfig;
+
+    /**
+     * Metrics of DynamoDB operations.
+     */
+    private final DynamoMetrics metrics;
+
+    /**
+     * Versions of partitions, bumped by every write.
+     */
+    private final LessonVersions versions;
+
+    /**
+     * Aggregates of completed hours, adjusted by booking changes.
+     */
+    private final CompletedHoursTable hours;
+
+    /**
+     * Counters of future bookings, limiting bookings of students.
+     */
+    private final StudentBookingsTable bookings;
+
     /**
      * Constructor.
      * @param dbMapper injected param.
+     * @param dynamoDB injected param.
+     * @param config injected param.
+     * @param metrics injected param.
+     * @param versions injected param.
+     * @param hours injected param.
+     * @param bookings injected param.
      */
     @Autowired
-    public DynamoDao(DynamoDBMapper dbMapper) {
+    public DynamoDao(
+            DynamoDBMapper dbMapper,
+            @Qualifier("dynamoDB") AmazonDynamoDB dynamoDB,
+            DynamoConfiguration config,
+            DynamoMetrics metrics,
+            LessonVersions versions,
+            CompletedHoursTable hours,
+            StudentBookingsTable bookings) {
+
         this.dbMapper = dbMapper;
+        this.dynamoDB = dynamoDB;
+        this.config = config;
+        this.metrics = metrics;
+        this.versions = versions;
+        this.hours = hours;
+        this.bookings = bookings;
+        this.batchWriteConfig = DynamoDBMapperConfig.builder()
+                .withBatchWriteRetryStrategy(new JitteredBatchWriteRetryStrategy(
+                        config.getBatchMaxRetries(),
+                        config.getBatchBaseDelay(),
+                        config.getBatchMaxDelay()
+                ))
+                .build();
     }
 
     /**
@@ -48,16 +144,27 @@ public class DynamoDao {
      * @param instructorId an unique id of instructor.
      * @return list of lessons.
      */
+    @Override
     public List<Lesson> getLessonsByInstructor(String instructorId) {
-        checkValidId(instructorId);
-
-        final DynamoDBQueryExpression<Lesson> queryExpression =
-                new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withInstructorId(instructorId)
-                        );
+        return metrics.record(
+                Operation.QUERY_BY_INSTRUCTOR,
+                () -> dbMapper.query(Lesson.class, instructorQuery(instructorId, null)),
+                List::size,
+                instructorId
+        );
+    }
 
-        return dbMapper.query(Lesson.class, queryExpression);
+    /**
+     * Get single page of lessons by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    @Override
+    public LessonPage getLessonsByInstructor(String instructorId, Integer limit, String cursor) {
+        return queryPage(Operation.QUERY_BY_INSTRUCTOR, instructorQuery(instructorId, null), limit, cursor, instructorId);
     }
 
     /**
@@ -67,28 +174,42 @@ public class DynamoDao {
      * @param since the date since which the lessons should be fetched.
      * @return list of lessons.
      */
+    @Override
     public List<Lesson> getLessonsByInstructorSince(
             String instructorId,
-            Calendar since) {
+            Instant since) {
 
-        checkValidId(instructorId);
+        return metrics.record(
+                Operation.QUERY_BY_INSTRUCTOR_SINCE,
+                () -> dbMapper.query(Lesson.class, instructorQuery(instructorId, sinceCondition(since))),
+                List::size,
+                instructorId, since
+        );
+    }
 
-        final DynamoDBQueryExpression<Lesson> queryExpression =
-                new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withInstructorId(instructorId)
-                        ).withRangeKeyCondition(
-                        "startTime",
-                        new Condition()
-                                .withComparisonOperator(ComparisonOperator.GE)
-                                .withAttributeValueList(
-                                        new AttributeValue(
-                                                DateUtils.formatISO8601Date(since.getTime())
-                                        )
-                                )
-                );
+    /**
+     * Get single page of lessons by instructor since date.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param since the date since which the lessons should be fetched.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    @Override
+    public LessonPage getLessonsByInstructorSince(
+            String instructorId,
+            Instant since,
+            Integer limit,
+            String cursor) {
 
-        return dbMapper.query(Lesson.class, queryExpression);
+        return queryPage(
+                Operation.QUERY_BY_INSTRUCTOR_SINCE,
+                instructorQuery(instructorId, sinceCondition(since)),
+                limit,
+                cursor,
+                instructorId, since
+        );
     }
 
     /**
@@ -99,32 +220,45 @@ public class DynamoDao {
      * @param to ending date.
      * @return list of lessons.
      */
+    @Override
     public List<Lesson> getLessonsByInstructorRange(
             String instructorId,
-            Calendar from,
-            Calendar to) {
+            Instant from,
+            Instant to) {
 
-        checkValidId(instructorId);
+        return metrics.record(
+                Operation.QUERY_BY_INSTRUCTOR_RANGE,
+                () -> dbMapper.query(Lesson.class, instructorQuery(instructorId, rangeCondition(from, to))),
+                List::size,
+                instructorId, from, to
+        );
+    }
 
-        final DynamoDBQueryExpression<Lesson> queryExpression =
-                new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withInstructorId(instructorId)
-                        ).withRangeKeyCondition(
-                        "startTime",
-                        new Condition()
-                                .withComparisonOperator(ComparisonOperator.BETWEEN)
-                                .withAttributeValueList(
-                                        new AttributeValue(
-                                                DateUtils.formatISO8601Date(from.getTime())
-                                        ),
-                                        new AttributeValue(
-                                                DateUtils.formatISO8601Date(to.getTime())
-                                        )
-                                )
-                );
+    /**
+     * Get single page of lessons within the date range by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param from starting date.
+     * @param to ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    @Override
+    public LessonPage getLessonsByInstructorRange(
+            String instructorId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
 
-        return dbMapper.query(Lesson.class, queryExpression);
+        return queryPage(
+                Operation.QUERY_BY_INSTRUCTOR_RANGE,
+                instructorQuery(instructorId, rangeCondition(from, to)),
+                limit,
+                cursor,
+                instructorId, from, to
+        );
     }
 
     /**
@@ -133,17 +267,74 @@ public class DynamoDao {
      * @param studentId an unique id of student.
      * @return list of lessons.
      */
+    @Override
     public List<Lesson> getLessonsByStudent(String studentId) {
-        checkValidId(studentId);
+        return metrics.record(
+                Operation.QUERY_BY_STUDENT,
+                () -> dbMapper.query(Lesson.class, studentQuery(studentId, null)),
+                List::size,
+                studentId
+        );
+    }
 
-        final DynamoDBQueryExpression<Lesson> queryExpression =
-                new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withStudentId(studentId)
-                        )
-                        .withConsistentRead(false);
+    /**
+     * Get lessons for which the student waits.
+     *
+     * <p>Waitlist is not indexed, keys of the lessons are read
+     * from counter of the student and the lessons by batch. Keys
+     * of lessons which do not exist or for which the student no
+     * longer waits are removed.
+     *
+     * @param studentId an unique id of student.
+     * @return list of lessons.
+     */
+    @Override
+    public List<Lesson> getLessonsWaitedByStudent(String studentId) {
+        LessonRequests.checkValidId(studentId);
 
-        return dbMapper.query(Lesson.class, queryExpression);
+        final List<String> keys = bookings.waitlisted(studentId);
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Object> loaded = metrics.record(
+                Operation.GET_WAITLISTED_LESSONS,
+                () -> dbMapper.batchLoad(keys.stream()
+                        .map(StudentBookings::lessonOf)
+                        .collect(Collectors.toList()))
+                        .getOrDefault(LessonRequests.LESSON_TABLE, Collections.emptyList()),
+                List::size,
+                studentId
+        );
+
+        final List<Lesson> lessons = loaded.stream()
+                .map(Lesson.class::cast)
+                .filter(lesson -> lesson.getWaitlist() != null && lesson.getWaitlist().contains(studentId))
+                .sorted(Comparator.comparing(Lesson::getStartTime))
+                .collect(Collectors.toList());
+
+        final Set<String> waited = lessons.stream()
+                .map(StudentBookings::keyOf)
+                .collect(Collectors.toSet());
+
+        bookings.removeWaitlisted(studentId, keys.stream()
+                .filter(key -> !waited.contains(key))
+                .collect(Collectors.toList()));
+
+        return lessons;
+    }
+
+    /**
+     * Get single page of lessons by student.
+     *
+     * @param studentId an unique id of student.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    @Override
+    public LessonPage getLessonsByStudent(String studentId, Integer limit, String cursor) {
+        return queryPage(Operation.QUERY_BY_STUDENT, studentQuery(studentId, null), limit, cursor, studentId);
     }
 
     /**
@@ -153,30 +344,42 @@ public class DynamoDao {
      * @param since the date since which the lessons should be fetched.
      * @return list of lessons.
      */
+    @Override
     public List<Lesson> getLessonsByStudentSince(
             String studentId,
-            Calendar since) {
+            Instant since) {
 
-        checkValidId(studentId);
+        return metrics.record(
+                Operation.QUERY_BY_STUDENT_SINCE,
+                () -> dbMapper.query(Lesson.class, studentQuery(studentId, sinceCondition(since))),
+                List::size,
+                studentId, since
+        );
+    }
 
-        final DynamoDBQueryExpression<Lesson> queryExpression =
-                new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withStudentId(studentId)
-                        )
-                        .withConsistentRead(false)
-                        .withRangeKeyCondition(
-                                "startTime",
-                                new Condition()
-                                        .withComparisonOperator(ComparisonOperator.GE)
-                                        .withAttributeValueList(
-                                                new AttributeValue(
-                                                        DateUtils.formatISO8601Date(since.getTime())
-                                                )
-                                        )
-                        );
+    /**
+     * Get single page of lessons by student since date.
+     *
+     * @param studentId an unique id of student.
+     * @param since the date since which the lessons should be fetched.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    @Override
+    public LessonPage getLessonsByStudentSince(
+            String studentId,
+            Instant since,
+            Integer limit,
+            String cursor) {
 
-        return dbMapper.query(Lesson.class, queryExpression);
+        return queryPage(
+                Operation.QUERY_BY_STUDENT_SINCE,
+                studentQuery(studentId, sinceCondition(since)),
+                limit,
+                cursor,
+                studentId, since
+        );
     }
 
     /**
@@ -187,34 +390,115 @@ public class DynamoDao {
      * @param to ending date.
      * @return list of lessons.
      */
+    @Override
     public List<Lesson> getLessonsByStudentRange(
             String studentId,
-            Calendar from,
-            Calendar to) {
+            Instant from,
+            Instant to) {
 
-        checkValidId(studentId);
+        return metrics.record(
+                Operation.QUERY_BY_STUDENT_RANGE,
+                () -> dbMapper.query(Lesson.class, studentQuery(studentId, rangeCondition(from, to))),
+                List::size,
+                studentId, from, to
+        );
+    }
 
+    /**
+     * Get single page of lessons within the date range by student.
+     *
+     * @param studentId an unique id of student.
+     * @param from starting date.
+     * @param to ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    @Override
+    public LessonPage getLessonsByStudentRange(
+            String studentId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return queryPage(
+                Operation.QUERY_BY_STUDENT_RANGE,
+                studentQuery(studentId, rangeCondition(from, to)),
+                limit,
+                cursor,
+                studentId, from, to
+        );
+    }
+
+    /**
+     * Get single page of lessons of all instructors which start on single day.
+     *
+     * @param day day bucket of index DayStartTime, yyyy-MM-dd.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons sorted by start time.
+     */
+    @Override
+    public LessonPage getLessonsByDay(String day, Integer limit, String cursor) {
+        return queryPage(Operation.QUERY_BY_DAY, dayQuery(day, null), limit, cursor, day);
+    }
+
+    /**
+     * Get single page of lessons of all instructors which start
+     * on single day within the date range.
+     *
+     * @param day day bucket of index DayStartTime, yyyy-MM-dd.
+     * @param from starting date.
+     * @param to ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons sorted by start time.
+     */
+    @Override
+    public LessonPage getLessonsByDayRange(
+            String day,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return queryPage(
+                Operation.QUERY_BY_DAY_RANGE,
+                dayQuery(day, rangeCondition(from, to)),
+                limit,
+                cursor,
+                day, from, to
+        );
+    }
+
+    /**
+     * Get free lessons of all instructors which start on single
+     * day within the date range.
+     *
+     * <p>Single query on sparse index AvailableDayStartTime,
+     * which is eventually consistent.
+     *
+     * @param day day bucket of index AvailableDayStartTime, yyyy-MM-dd.
+     * @param from starting date.
+     * @param to ending date.
+     * @return list of lessons sorted by start time.
+     */
+    @Override
+    public List<Lesson> getAvailableLessons(String day, Instant from, Instant to) {
         final DynamoDBQueryExpression<Lesson> queryExpression =
                 new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withStudentId(studentId)
-                        )
-                        .withConsistentRead(false)
-                        .withRangeKeyCondition(
-                                "startTime",
-                                new Condition()
-                                        .withComparisonOperator(ComparisonOperator.BETWEEN)
-                                        .withAttributeValueList(
-                                                new AttributeValue(
-                                                        DateUtils.formatISO8601Date(from.getTime())
-                                                ),
-                                                new AttributeValue(
-                                                        DateUtils.formatISO8601Date(to.getTime())
-                                                )
-                                        )
-                        );
+                        .withIndexName(LessonRequests.AVAILABLE_INDEX)
+                        .withHashKeyValues(new Lesson().withAvailableDay(day))
+                        .withRangeKeyCondition("startTime", rangeCondition(from, to))
+                        .withConsistentRead(false);
 
-        return dbMapper.query(Lesson.class, queryExpression);
+        return metrics.record(
+                Operation.QUERY_AVAILABLE,
+                () -> dbMapper.query(Lesson.class, queryExpression),
+                List::size,
+                day, from, to
+        );
     }
 
     /**
@@ -224,31 +508,17 @@ public class DynamoDao {
      * @param startTime start time of the lesson.
      * @return lesson instance.
      */
-    public Lesson getLessonByInstructor(String instructorId, Calendar startTime) {
-        checkValidId(instructorId);
-
-        final String startTimeString = DateUtils.formatISO8601Date(startTime.getTime());
-
+    @Override
+    public Lesson getLessonByInstructor(String instructorId, Instant startTime) {
         final DynamoDBQueryExpression<Lesson> queryExpression =
-                new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withInstructorId(instructorId)
-                        ).withRangeKeyCondition(
-                        "startTime",
-                        new Condition()
-                                .withComparisonOperator(ComparisonOperator.EQ)
-                                .withAttributeValueList(
-                                        new AttributeValue(startTimeString)
-                                )
-                );
-
-        List<Lesson> lessons = dbMapper.query(Lesson.class, queryExpression);
+                instructorQuery(instructorId, equalCondition(startTime));
 
-        if (lessons != null && lessons.size() > 0) {
-            return lessons.get(0);
-        } else {
-            return null;
-        }
+        return metrics.record(
+                Operation.GET_LESSON_BY_INSTRUCTOR,
+                () -> firstLesson(dbMapper.query(Lesson.class, queryExpression)),
+                DynamoDao::count,
+                instructorId, startTime
+        );
     }
 
     /**
@@ -258,33 +528,17 @@ public class DynamoDao {
      * @param startTime start time of the lesson.
      * @return lesson instance.
      */
-    public Lesson getLessonByStudent(String studentId, Calendar startTime) {
-        checkValidId(studentId);
-
-        final String startTimeString = DateUtils.formatISO8601Date(startTime.getTime());
-
+    @Override
+    public Lesson getLessonByStudent(String studentId, Instant startTime) {
         final DynamoDBQueryExpression<Lesson> queryExpression =
-                new DynamoDBQueryExpression<Lesson>()
-                        .withHashKeyValues(
-                                new Lesson().withStudentId(studentId)
-                        )
-                        .withConsistentRead(false)
-                        .withRangeKeyCondition(
-                                "startTime",
-                                new Condition()
-                                        .withComparisonOperator(ComparisonOperator.EQ)
-                                        .withAttributeValueList(
-                                                new AttributeValue(startTimeString)
-                                        )
-                        );
+                studentQuery(studentId, equalCondition(startTime));
 
-        List<Lesson> lessons = dbMapper.query(Lesson.class, queryExpression);
-
-        if (lessons != null && lessons.size() > 0) {
-            return lessons.get(0);
-        } else {
-            return null;
-        }
+        return metrics.record(
+                Operation.GET_LESSON_BY_STUDENT,
+                () -> firstLesson(dbMapper.query(Lesson.class, queryExpression)),
+                DynamoDao::count,
+                studentId, startTime
+        );
     }
 
     /**
@@ -293,29 +547,133 @@ public class DynamoDao {
      * <p>instructorId and startTime have to be present in
      * lesson object passed as param.
      *
+     * <p>Lesson is written by single conditional put, so
+     * concurrent creates of the same lesson cannot overwrite
+     * each other.
+     *
+     * <p>Day of the lesson is set, so that it is in index DayStartTime.
+     *
      * @param lesson lesson which should be created.
-     * @return true if lesson was created.
+     * @return true if lesson was created, false if it already exists.
      */
+    @Override
     public boolean createLesson(Lesson lesson) {
-        Lesson exists = getLessonByInstructor(
-                lesson.getInstructorId(),
-                lesson.getStartTime()
-        );
-        if (exists == null) {
-            dbMapper.save(lesson);
-            return true;
+        LessonRequests.withDay(lesson);
+
+        // attribute_not_exists(instructorId)
+        final DynamoDBSaveExpression saveExpression = new DynamoDBSaveExpression()
+                .withExpectedEntry("instructorId", new ExpectedAttributeValue(false));
+
+        final boolean created = metrics.record(Operation.CREATE_LESSON, () -> {
+            try {
+                dbMapper.save(lesson, saveExpression);
+                return true;
+            } catch (ConditionalCheckFailedException e) {
+                return false;
+            }
+        }, success -> success ? 1 : 0, lesson.getInstructorId(), lesson.getStartTime());
+
+        if (created) {
+            versions.bump(lesson);
         }
 
-        return false;
+        return created;
+    }
+
+    /**
+     * Delete multiple lessons using BatchWriteItem.
+     *
+     * <p>Mapper splits lessons into batches of 25 items and
+     * unprocessed items are retried with jittered exponential backoff.
+     *
+     * <p>Lessons should contain studentId, so that version
+     * and completed hours of registered student are updated too.
+     * Completed hours and bookings are updated once per student.
+     *
+     * @param lessons lessons which should be deleted.
+     * @return lessons which could not be deleted.
+     * @throws IllegalStateException if completed hours of some student
+     * could not be adjusted, after aggregates of the others were updated.
+     */
+    @Override
+    public List<Lesson> batchDeleteLessons(List<Lesson> lessons) {
+        if (lessons.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Lesson> failed;
+        try {
+            failed = metrics.record(
+                    Operation.BATCH_DELETE_LESSONS,
+                    () -> failedLessons(lessons, dbMapper.batchWrite(Collections.emptyList(), lessons, batchWriteConfig)),
+                    notDeleted -> lessons.size() - notDeleted.size(),
+                    lessons.size() + " lessons"
+            );
+        } finally {
+            // one bump per user, not per lesson
+            lessons.stream()
+                    .flatMap(lesson -> Stream.of(lesson.getInstructorId(), lesson.getStudentId()))
+                    .distinct()
+                    .forEach(versions::bump);
+        }
+
+        // one update of aggregates per student, not per lesson
+        final Set<Lesson> notDeleted = new HashSet<>(failed);
+        final Map<String, List<Lesson>> deletedByStudent = lessons.stream()
+                .filter(lesson -> lesson.getStudentId() != null && !notDeleted.contains(lesson))
+                .collect(Collectors.groupingBy(Lesson::getStudentId));
+
+        IllegalStateException notAdjusted = null;
+        for (Map.Entry<String, List<Lesson>> deleted : deletedByStudent.entrySet()) {
+            bookings.releaseAll(deleted.getKey(), deleted.getValue());
+            try {
+                hours.adjustAll(deleted.getKey(), deleted.getValue(), false);
+            } catch (IllegalStateException e) {
+                if (notAdjusted == null) {
+                    notAdjusted = e;
+                } else {
+                    notAdjusted.addSuppressed(e);
+                }
+            }
+        }
+
+        if (notAdjusted != null) {
+            throw notAdjusted;
+        }
+
+        return failed;
     }
 
     /**
      * Delete lesson.
      *
+     * <p>Only instructorId and startTime of lesson are used,
+     * the deleted item is returned by DynamoDB, so version and
+     * completed hours of registered student are updated too.
+     *
      * @param lesson lesson which should be deleted.
      */
+    @Override
     public void deleteLesson(Lesson lesson) {
-        dbMapper.delete(lesson);
+        final DeleteItemRequest request = LessonRequests.deleteLesson(
+                lesson.getInstructorId(),
+                lesson.getStartTime()
+        );
+
+        final Map<String, AttributeValue> deleted = metrics.record(
+                Operation.DELETE_LESSON,
+                () -> dynamoDB.deleteItem(request).getAttributes(),
+                item -> item != null ? 1 : 0,
+                lesson.getInstructorId(), lesson.getStartTime()
+        );
+
+        versions.bump(lesson.getInstructorId());
+        if (deleted != null && deleted.containsKey("studentId")) {
+            final Lesson deletedLesson = dbMapper.marshallIntoObject(Lesson.class, deleted);
+            versions.bump(deletedLesson.getStudentId());
+            hours.adjust(deletedLesson, deletedLesson.getStudentId(), false);
+            bookings.release(deletedLesson, deletedLesson.getStudentId());
+        }
     }
 
     /**
@@ -324,10 +682,21 @@ public class DynamoDao {
      * <p>if ignoreNullAttrs is true, corresponding null
      * params in lesson will be unchanged.
      *
+     * <p>Only versions of instructor and of studentId in lesson
+     * are bumped, previously registered student is not known.
+     * Completed hours are not adjusted for the same reason,
+     * registerStudent and unregisterStudent have to be used
+     * to change booking of lesson which already started.
+     *
+     * <p>Day of the lesson is set, so that it is in index DayStartTime.
+     *
      * @param lesson lesson which should be updated.
      * @param ignoreNullAttrs ignore null attributes.
      */
+    @Override
     public void updateLesson(Lesson lesson, boolean ignoreNullAttrs) {
+        LessonRequests.withDay(lesson);
+
         DynamoDBMapperConfig.Builder config = DynamoDBMapperConfig.builder();
         if (ignoreNullAttrs) {
             config.setSaveBehavior(DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES);
@@ -335,20 +704,632 @@ public class DynamoDao {
             config.setSaveBehavior(DynamoDBMapperConfig.SaveBehavior.UPDATE);
         }
 
-        dbMapper.save(lesson, config.build());
+        metrics.record(Operation.UPDATE_LESSON, () -> {
+            dbMapper.save(lesson, config.build());
+            return lesson;
+        }, updated -> 1, lesson.getInstructorId(), lesson.getStartTime());
+
+        versions.bump(lesson);
     }
 
     /**
-     * Check format of id
+     * Register student to lesson.
      *
-     * <p>If the format is invalid, method will cause
-     * runtime exception.
+     * <p>Lesson is updated by single conditional UpdateItem, so
+     * only one of concurrently registering students can succeed.
+     * If the lesson is counted in bookings of the student, the
+     * update and conditional ADD of its key to counter of the
+     * student are written by single TransactWriteItems, and the
+     * lesson is read after.
      *
-     * @param id
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of student.
+     * @param studentName name of the student.
+     * @return updated lesson or null if lesson does not exist, another
+     * student is already registered to it or the student has too many
+     * future bookings.
      */
-    private void checkValidId(String id) {
-        if (id == null) throw new IllegalArgumentException("ID cannot be null");
-        if (id.length() == 0) throw new IllegalArgumentException("ID cannot be empty string");
-        UUID.fromString(id);
+    @Override
+    public Lesson registerStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String studentName) {
+
+        final Lesson booked = new Lesson().withInstructorId(instructorId).withStartTime(startTime);
+        final UpdateItemRequest registration = LessonRequests.registerStudent(
+                instructorId,
+                startTime,
+                studentId,
+                studentName
+        );
+
+        if (!bookings.counted(booked)) {
+            return metrics.record(
+                    Operation.REGISTER_STUDENT,
+                    () -> conditionalUpdate(registration, studentId, true),
+                    DynamoDao::count,
+                    instructorId, startTime
+            );
+        }
+
+        final TransactWriteItemsRequest request = Transactions.request(
+                Transactions.update(registration),
+                Transactions.update(bookings.reserveRequest(booked, studentId))
+        );
+
+        final List<CancellationReason> reasons = transact(Operation.REGISTER_STUDENT, request, studentId,
+                instructorId, startTime);
+        return reasons.isEmpty() ? transacted(instructorId, startTime, studentId, true) : null;
+    }
+
+    /**
+     * Unregister student from lesson.
+     *
+     * <p>Lesson is updated by single conditional UpdateItem, which
+     * succeeds only if the student is still registered to it and
+     * nobody waits for it. Otherwise a waiting student replaces
+     * the registered one, see promoteWaitlist. If the lesson is
+     * counted in bookings, its key is moved between counters of
+     * students by the same TransactWriteItems.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @return updated lesson or null if lesson does not exist, the student
+     * is not registered to it or waitlist kept changing concurrently.
+     */
+    @Override
+    public Lesson unregisterStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId) {
+
+        final Lesson booked = new Lesson().withInstructorId(instructorId).withStartTime(startTime);
+
+        for (int attempt = 0; attempt < waitlistAttempts; attempt++) {
+            final Lesson current;
+
+            if (!bookings.counted(booked)) {
+                final Lesson unregistered = metrics.record(
+                        Operation.UNREGISTER_STUDENT,
+                        () -> conditionalUpdate(LessonRequests.unregisterStudent(
+                                instructorId,
+                                startTime,
+                                studentId
+                        ), studentId, false),
+                        DynamoDao::count,
+                        instructorId, startTime
+                );
+
+                if (unregistered != null) {
+                    return unregistered;
+                }
+                current = getLessonConsistently(instructorId, startTime);
+            } else {
+                final List<CancellationReason> reasons = transact(Operation.UNREGISTER_STUDENT, Transactions.request(
+                        Transactions.update(LessonRequests.unregisterStudent(instructorId, startTime, studentId)),
+                        Transactions.update(bookings.releaseRequest(booked, studentId))
+                ), studentId, instructorId, startTime);
+
+                if (reasons.isEmpty()) {
+                    return transacted(instructorId, startTime, studentId, false);
+                }
+                current = toLesson(Transactions.item(reasons, 0));
+            }
+
+            if (current == null || !studentId.equals(current.getStudentId())) {
+                return null;
+            }
+
+            if (current.getWaitlist() == null || current.getWaitlist().isEmpty()) {
+                continue;
+            }
+
+            final Lesson promoted = promoteWaitlist(current, studentId);
+            if (promoted != null) {
+                return promoted;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Replace registered student by the first waiting student.
+     *
+     * <p>Student is promoted by conditional update, which succeeds
+     * only if the waiting student did not change meanwhile. Keys of
+     * the lesson are moved between counters of both students by the
+     * same TransactWriteItems, the promoted student has to pass the
+     * limit of bookings as by registration. Students with too many
+     * future bookings keep waiting and the next one is tried. If none
+     * of them can be promoted, the student is unregistered and the
+     * waitlist is cleared.
+     *
+     * @param current lesson as it was read.
+     * @param studentId an unique id of currently registered student.
+     * @return updated lesson, null if waitlist or student changed meanwhile.
+     */
+    private Lesson promoteWaitlist(Lesson current, String studentId) {
+        final String instructorId = current.getInstructorId();
+        final Instant startTime = current.getStartTime();
+        final List<String> waitlist = current.getWaitlist();
+
+        for (int position = 0; position < waitlist.size(); position++) {
+            final String nextId = waitlist.get(position);
+            final List<CancellationReason> reasons = transact(
+                    Operation.PROMOTE_WAITLIST,
+                    Transactions.promote(bookings, current, studentId, position),
+                    nextId,
+                    instructorId, startTime
+            );
+
+            if (reasons.isEmpty()) {
+                versions.bump(studentId);
+                final Lesson promoted = transacted(instructorId, startTime, nextId, true);
+                if (promoted != null) {
+                    hours.adjust(promoted, studentId, false);
+                }
+                return promoted;
+            }
+            if (Transactions.failed(reasons, 0)) {
+                return null;
+            }
+        }
+
+        final List<CancellationReason> reasons = transact(
+                Operation.UNREGISTER_STUDENT,
+                Transactions.clear(bookings, current, studentId),
+                studentId,
+                instructorId, startTime
+        );
+
+        return reasons.isEmpty() ? transacted(instructorId, startTime, studentId, false) : null;
+    }
+
+    /**
+     * Append student to waitlist of lesson booked by another student.
+     *
+     * <p>Lesson is updated by conditional update, waitlist is limited
+     * by dynamo.max-waitlist. Key of the lesson is added to counter of
+     * the student by the same TransactWriteItems.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of student.
+     * @param studentName name of the student.
+     * @return updated lesson or null if lesson does not exist, is free,
+     * the student is registered or waits already, or waitlist is full.
+     */
+    @Override
+    public Lesson joinWaitlist(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String studentName) {
+
+        final Lesson waited = new Lesson().withInstructorId(instructorId).withStartTime(startTime);
+
+        final List<CancellationReason> reasons = transact(Operation.JOIN_WAITLIST, Transactions.request(
+                Transactions.update(LessonRequests.joinWaitlist(
+                        instructorId,
+                        startTime,
+                        studentId,
+                        studentName,
+                        config.getMaxWaitlist()
+                )),
+                Transactions.update(bookings.waitRequest(waited, studentId))
+        ), studentId, instructorId, startTime);
+
+        return reasons.isEmpty() ? transacted(instructorId, startTime, null, false) : null;
+    }
+
+    /**
+     * Remove student from waitlist of lesson.
+     *
+     * <p>Lesson is read to find position of the student, which is
+     * removed by conditional update, so students which joined or
+     * left meanwhile are never removed instead. Key of the lesson
+     * is removed from counter of the student by the same
+     * TransactWriteItems.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of waiting student.
+     * @return updated lesson or null if lesson does not exist, the student
+     * does not wait for it or waitlist kept changing concurrently.
+     */
+    @Override
+    public Lesson leaveWaitlist(
+            String instructorId,
+            Instant startTime,
+            String studentId) {
+
+        for (int attempt = 0; attempt < waitlistAttempts; attempt++) {
+            final Lesson current = getLessonConsistently(instructorId, startTime);
+            final int position = current != null && current.getWaitlist() != null
+                    ? current.getWaitlist().indexOf(studentId)
+                    : -1;
+
+            if (position < 0) {
+                return null;
+            }
+
+            final List<CancellationReason> reasons = transact(Operation.LEAVE_WAITLIST, Transactions.request(
+                    Transactions.update(LessonRequests.leaveWaitlist(
+                            instructorId,
+                            startTime,
+                            studentId,
+                            position
+                    )),
+                    Transactions.update(bookings.leaveRequest(current, studentId))
+            ), studentId, instructorId, startTime);
+
+            if (reasons.isEmpty()) {
+                return transacted(instructorId, startTime, null, false);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Read lesson consistently, with its waitlist as it was
+     * after the last write.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @return lesson or null if it does not exist.
+     */
+    private Lesson getLessonConsistently(String instructorId, Instant startTime) {
+        final Map<String, AttributeValue> item = metrics.record(
+                Operation.GET_LESSON_BY_INSTRUCTOR,
+                () -> dynamoDB.getItem(LessonRequests.getLesson(instructorId, startTime)
+                        .withConsistentRead(true)).getItem(),
+                found -> found != null ? 1 : 0,
+                instructorId, startTime
+        );
+
+        return toLesson(item);
+    }
+
+    /**
+     * Convert item to lesson.
+     *
+     * @param item item returned by DynamoDB, may be null.
+     * @return lesson or null.
+     */
+    private Lesson toLesson(Map<String, AttributeValue> item) {
+        return item != null ? dbMapper.marshallIntoObject(Lesson.class, item) : null;
+    }
+
+    /**
+     * Execute transaction, which adds key of lesson to counter
+     * of student as its second item.
+     *
+     * <p>If the limit of bookings is reached, keys of lessons which
+     * started are removed and the transaction is tried once again.
+     *
+     * @param operation operation recorded in metrics.
+     * @param request the transaction, lesson is its first item.
+     * @param studentId an unique id of student whose counter is added to.
+     * @param key key of the lesson for slow operation log.
+     * @return empty list if written, otherwise reasons of cancellation per item.
+     */
+    private List<CancellationReason> transact(
+            Operation operation,
+            TransactWriteItemsRequest request,
+            String studentId,
+            Object... key) {
+
+        List<CancellationReason> reasons = metrics.record(
+                operation,
+                () -> Transactions.write(dynamoDB, request),
+                written -> written.isEmpty() ? 1 : 0,
+                key
+        );
+
+        if (Transactions.failed(reasons, 1) && !Transactions.failed(reasons, 0)
+                && bookings.removeStarted(studentId)) {
+            reasons = metrics.record(
+                    operation,
+                    () -> Transactions.write(dynamoDB, request),
+                    written -> written.isEmpty() ? 1 : 0,
+                    key
+            );
+        }
+
+        return reasons;
+    }
+
+    /**
+     * Read lesson written by transaction, which returns no values,
+     * and bump versions and completed hours as conditionalUpdate.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of registered or unregistered student.
+     * @param registered true if student is registered, false if unregistered.
+     * @return lesson as it was read.
+     */
+    private Lesson transacted(String instructorId, Instant startTime, String studentId, boolean registered) {
+        final Lesson updated = getLessonConsistently(instructorId, startTime);
+
+        versions.bump(instructorId);
+        versions.bump(studentId);
+        if (updated != null) {
+            hours.adjust(updated, studentId, registered);
+        }
+        return updated;
+    }
+
+    /**
+     * Execute conditional update of lesson.
+     *
+     * @param request update request returning ALL_NEW.
+     * @param studentId an unique id of registered or unregistered student,
+     * null if booking is not changed.
+     * @param registered true if student is registered, false if unregistered.
+     * @return updated lesson or null if condition failed.
+     */
+    private Lesson conditionalUpdate(UpdateItemRequest request, String studentId, boolean registered) {
+        final Lesson updated;
+        try {
+            updated = dbMapper.marshallIntoObject(
+                    Lesson.class,
+                    dynamoDB.updateItem(request).getAttributes()
+            );
+        } catch (ConditionalCheckFailedException e) {
+            return null;
+        }
+
+        versions.bump(updated.getInstructorId());
+        versions.bump(studentId);
+        hours.adjust(updated, studentId, registered);
+        return updated;
+    }
+
+    /**
+     * Get aggregate of completed hours of student, read consistently.
+     *
+     * @param studentId an unique id of student.
+     * @return aggregate, empty one with revision 0 if it does not exist yet.
+     */
+    @Override
+    public CompletedHours getCompletedHours(String studentId) {
+        return hours.get(studentId);
+    }
+
+    /**
+     * Atomically add duration of lessons after the watermark of
+     * aggregate and move the watermark.
+     *
+     * @param hours aggregate as it was read.
+     * @param millis duration of lessons after the old watermark up to the new one.
+     * @param watermark new watermark.
+     * @return true if advanced, false if aggregate was written since it was read.
+     */
+    @Override
+    public boolean advanceCompletedHours(CompletedHours hours, long millis, Instant watermark) {
+        return this.hours.advance(hours, millis, watermark);
+    }
+
+    /**
+     * Find lessons which are part of failed batches.
+     *
+     * @param lessons all lessons of batch write or delete.
+     * @param failedBatches failed batches returned by mapper.
+     * @return failed lessons.
+     */
+    private List<Lesson> failedLessons(
+            List<Lesson> lessons,
+            List<DynamoDBMapper.FailedBatch> failedBatches) {
+
+        if (failedBatches.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Set<String> failedKeys = new HashSet<>();
+        failedBatches.forEach(batch -> batch.getUnprocessedItems().values().forEach(requests -> {
+            for (WriteRequest request : requests) {
+                final Map<String, AttributeValue> key = request.getPutRequest() != null
+                        ? request.getPutRequest().getItem()
+                        : request.getDeleteRequest().getKey();
+
+                failedKeys.add(key.get("instructorId").getS() + "/" + key.get("startTime").getS());
+            }
+        }));
+
+        final List<Lesson> failed = new ArrayList<>();
+        for (Lesson lesson : lessons) {
+            final String key = lesson.getInstructorId() + "/"
+                    + Iso8601.format(lesson.getStartTime());
+            if (failedKeys.contains(key)) {
+                failed.add(lesson);
+            }
+        }
+
+        return failed;
+    }
+
+    /**
+     * Fetch single page of lessons.
+     *
+     * <p>Only one request is sent to DynamoDB, so memory and latency
+     * do not depend on the size of the whole partition.
+     *
+     * @param operation operation recorded in metrics.
+     * @param queryExpression query to execute.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @param key key of the query for slow operation log.
+     * @return page of lessons.
+     */
+    private LessonPage queryPage(
+            Operation operation,
+            DynamoDBQueryExpression<Lesson> queryExpression,
+            Integer limit,
+            String cursor,
+            Object... key) {
+
+        queryExpression
+                .withLimit(LessonRequests.pageSize(config, limit))
+                .withExclusiveStartKey(LessonCursor.decode(cursor));
+
+        return metrics.record(operation, () -> {
+            QueryResultPage<Lesson> page = dbMapper.queryPage(Lesson.class, queryExpression);
+
+            return new LessonPage(
+                    page.getResults(),
+                    LessonCursor.encode(page.getLastEvaluatedKey())
+            );
+        }, page -> page.getItems().size(), key);
+    }
+
+    /**
+     * First lesson of query result.
+     *
+     * @param lessons result of query, may be null.
+     * @return the first lesson or null if there is none.
+     */
+    private static Lesson firstLesson(List<Lesson> lessons) {
+        if (lessons != null && lessons.size() > 0) {
+            return lessons.get(0);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Number of lessons in result of single lesson operation.
+     *
+     * @param lesson the lesson, may be null.
+     * @return 1 if lesson is not null, 0 otherwise.
+     */
+    private static int count(Lesson lesson) {
+        return lesson != null ? 1 : 0;
+    }
+
+    /**
+     * Build query on Lesson table by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTimeCondition optional condition on startTime, may be null.
+     * @return query expression.
+     */
+    private DynamoDBQueryExpression<Lesson> instructorQuery(
+            String instructorId,
+            Condition startTimeCondition) {
+
+        LessonRequests.checkValidId(instructorId);
+
+        final DynamoDBQueryExpression<Lesson> queryExpression =
+                new DynamoDBQueryExpression<Lesson>()
+                        .withHashKeyValues(
+                                new Lesson().withInstructorId(instructorId)
+                        );
+
+        if (startTimeCondition != null) {
+            queryExpression.withRangeKeyCondition("startTime", startTimeCondition);
+        }
+
+        return queryExpression;
+    }
+
+    /**
+     * Build query on index StudentIdStartTime by student.
+     *
+     * @param studentId an unique id of student.
+     * @param startTimeCondition optional condition on startTime, may be null.
+     * @return query expression.
+     */
+    private DynamoDBQueryExpression<Lesson> studentQuery(
+            String studentId,
+            Condition startTimeCondition) {
+
+        LessonRequests.checkValidId(studentId);
+
+        final DynamoDBQueryExpression<Lesson> queryExpression =
+                new DynamoDBQueryExpression<Lesson>()
+                        .withHashKeyValues(
+                                new Lesson().withStudentId(studentId)
+                        )
+                        .withConsistentRead(false);
+
+        if (startTimeCondition != null) {
+            queryExpression.withRangeKeyCondition("startTime", startTimeCondition);
+        }
+
+        return queryExpression;
+    }
+
+    /**
+     * Build query on index DayStartTime by day.
+     *
+     * @param day day bucket, yyyy-MM-dd.
+     * @param startTimeCondition optional condition on startTime, may be null.
+     * @return query expression.
+     */
+    private DynamoDBQueryExpression<Lesson> dayQuery(
+            String day,
+            Condition startTimeCondition) {
+
+        final DynamoDBQueryExpression<Lesson> queryExpression =
+                new DynamoDBQueryExpression<Lesson>()
+                        .withIndexName(LessonRequests.DAY_INDEX)
+                        .withHashKeyValues(new Lesson().withDay(day))
+                        .withConsistentRead(false);
+
+        if (startTimeCondition != null) {
+            queryExpression.withRangeKeyCondition("startTime", startTimeCondition);
+        }
+
+        return queryExpression;
+    }
+
+    /**
+     * Condition startTime == time.
+     *
+     * @param time the time.
+     * @return condition.
+     */
+    private Condition equalCondition(Instant time) {
+        return new Condition()
+                .withComparisonOperator(ComparisonOperator.EQ)
+                .withAttributeValueList(
+                        new AttributeValue(Iso8601.format(time))
+                );
+    }
+
+    /**
+     * Condition startTime >= since.
+     *
+     * @param since the date since.
+     * @return condition.
+     */
+    private Condition sinceCondition(Instant since) {
+        return new Condition()
+                .withComparisonOperator(ComparisonOperator.GE)
+                .withAttributeValueList(
+                        new AttributeValue(Iso8601.format(since))
+                );
+    }
+
+    /**
+     * Condition from <= startTime <= to.
+     *
+     * @param from starting date.
+     * @param to ending date.
+     * @return condition.
+     */
+    private Condition rangeCondition(Instant from, Instant to) {
+        return new Condition()
+                .withComparisonOperator(ComparisonOperator.BETWEEN)
+                .withAttributeValueList(
+                        new AttributeValue(Iso8601.format(from)),
+                        new AttributeValue(Iso8601.format(to))
+                );
     }
 }
@@ -0,0 +1,243 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Metrics of DynamoDB operations.
+ *
+ * <p>Latency, number of returned items and consumed capacity
+ * are recorded per operation and per table or index it reads.
+ * Operations slower than dynamo.slow-operation-threshold
+ * are logged together with their key.
+ */
+@Component
+@Profile("!memory")
+public class DynamoMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(DynamoMetrics.class.getName());
+
+    /**
+     * Operations of DAO, with table or index they use.
+     */
+    public enum Operation {
+        QUERY_BY_INSTRUCTOR("queryByInstructor", LessonRequests.LESSON_TABLE, false),
+        QUERY_BY_INSTRUCTOR_SINCE("queryByInstructorSince", LessonRequests.LESSON_TABLE, false),
+        QUERY_BY_INSTRUCTOR_RANGE("queryByInstructorRange", LessonRequests.LESSON_TABLE, false),
+        QUERY_BY_STUDENT("queryByStudent", LessonRequests.STUDENT_INDEX, false),
+        QUERY_BY_STUDENT_SINCE("queryByStudentSince", LessonRequests.STUDENT_INDEX, false),
+        QUERY_BY_STUDENT_RANGE("queryByStudentRange", LessonRequests.STUDENT_INDEX, false),
+        QUERY_BY_DAY("queryByDay", LessonRequests.DAY_INDEX, false),
+        QUERY_BY_DAY_RANGE("queryByDayRange", LessonRequests.DAY_INDEX, false),
+        QUERY_AVAILABLE("queryAvailable", LessonRequests.AVAILABLE_INDEX, false),
+        GET_LESSON_BY_INSTRUCTOR("getLessonByInstructor", LessonRequests.LESSON_TABLE, false),
+        GET_LESSON_BY_STUDENT("getLessonByStudent", LessonRequests.STUDENT_INDEX, false),
+        GET_WAITLISTED_LESSONS("getWaitlistedLessons", LessonRequests.LESSON_TABLE, false),
+        CREATE_LESSON("createLesson", LessonRequests.LESSON_TABLE, true),
+        BATCH_DELETE_LESSONS("batchDeleteLessons", LessonRequests.LESSON_TABLE, true),
+        SCAN_LESSONS_WITHOUT_DAY("scanLessonsWithoutDay", LessonRequests.LESSON_TABLE, false),
+        BACKFILL_DAY("backfillDay", LessonRequests.LESSON_TABLE, true),
+        DELETE_LESSON("deleteLesson", LessonRequests.LESSON_TABLE, true),
+        UPDATE_LESSON("updateLesson", LessonRequests.LESSON_TABLE, true),
+        REGISTER_STUDENT("registerStudent", LessonRequests.LESSON_TABLE, true),
+        UNREGISTER_STUDENT("unregisterStudent", LessonRequests.LESSON_TABLE, true),
+        PROMOTE_WAITLIST("promoteWaitlist", LessonRequests.LESSON_TABLE, true),
+        JOIN_WAITLIST("joinWaitlist", LessonRequests.LESSON_TABLE, true),
+        LEAVE_WAITLIST("leaveWaitlist", LessonRequests.LESSON_TABLE, true),
+        GET_COMPLETED_HOURS("getCompletedHours", CompletedHoursTable.HOURS_TABLE, false),
+        ADVANCE_COMPLETED_HOURS("advanceCompletedHours", CompletedHoursTable.HOURS_TABLE, true),
+        ADJUST_COMPLETED_HOURS("adjustCompletedHours", CompletedHoursTable.HOURS_TABLE, true),
+        RELEASE_BOOKING("releaseBooking", StudentBookingsTable.BOOKINGS_TABLE, true),
+        GET_STUDENT_BOOKINGS("getStudentBookings", StudentBookingsTable.BOOKINGS_TABLE, false),
+        REMOVE_STARTED_BOOKINGS("removeStartedBookings", StudentBookingsTable.BOOKINGS_TABLE, true),
+        REMOVE_WAITLISTED_LESSONS("removeWaitlistedLessons", StudentBookingsTable.BOOKINGS_TABLE, true),
+        GET_LESSON_VERSION("getLessonVersion", LessonVersionsTable.VERSIONS_TABLE, false),
+        BUMP_LESSON_VERSION("bumpLessonVersion", LessonVersionsTable.VERSIONS_TABLE, true);
+
+        private final String operationName;
+
+        private final String index;
+
+        private final boolean write;
+
+        Operation(String operationName, String index, boolean write) {
+            this.operationName = operationName;
+            this.index = index;
+            this.write = write;
+        }
+
+        /**
+         * Query of instructor's lessons matching optional from and to.
+         *
+         * @param from optional starting date.
+         * @param to optional ending date.
+         * @return the operation.
+         */
+        public static Operation instructorQuery(Instant from, Instant to) {
+            if (from == null) return QUERY_BY_INSTRUCTOR;
+            return to == null ? QUERY_BY_INSTRUCTOR_SINCE : QUERY_BY_INSTRUCTOR_RANGE;
+        }
+
+        /**
+         * Query of student's lessons matching optional from and to.
+         *
+         * @param from optional starting date.
+         * @param to optional ending date.
+         * @return the operation.
+         */
+        public static Operation studentQuery(Instant from, Instant to) {
+            if (from == null) return QUERY_BY_STUDENT;
+            return to == null ? QUERY_BY_STUDENT_SINCE : QUERY_BY_STUDENT_RANGE;
+        }
+    }
+
+    /**
+     * Meters of single operation.
+     */
+    private static final class Meters {
+
+        private final Timer latency;
+
+        private final DistributionSummary items;
+
+        private final Counter capacity;
+
+        private Meters(Operation operation, MeterRegistry registry) {
+            latency = Timer.builder("dynamo.operation")
+                    .description("latency of DynamoDB operation")
+                    .tag("operation", operation.operationName)
+                    .tag("index", operation.index)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            items = DistributionSummary.builder("dynamo.operation.items")
+                    .description("number of items returned by DynamoDB operation")
+                    .tag("operation", operation.operationName)
+                    .tag("index", operation.index)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            capacity = Counter.builder("dynamo.consumed.capacity")
+                    .description("capacity units consumed by DynamoDB operation")
+                    .tag("operation", operation.operationName)
+                    .tag("index", operation.index)
+                    .tag("capacity", operation.write ? "write" : "read")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Meters of every operation.
+     */
+    private final Map<Operation, Meters> meters = new EnumMap<>(Operation.class);
+
+    /**
+     * Threshold of slow operations in nanoseconds.
+     */
+    private final long slowThreshold;
+
+    /**
+     * Constructor.
+     *
+     * @param meterRegistry injected registry of metrics.
+     * @param config injected dynamo configuration.
+     */
+    @Autowired
+    public DynamoMetrics(MeterRegistry meterRegistry, DynamoConfiguration config) {
+        for (Operation operation : Operation.values()) {
+            meters.put(operation, new Meters(operation, meterRegistry));
+        }
+
+        this.slowThreshold = TimeUnit.MILLISECONDS.toNanos(config.getSlowOperationThreshold());
+    }
+
+    /**
+     * Execute blocking operation and record its metrics.
+     *
+     * <p>Consumed capacity is taken from ConsumedCapacityHandler,
+     * so the operation has to use blocking client on the calling thread.
+     *
+     * @param operation the operation.
+     * @param call the operation itself.
+     * @param items number of items in result, evaluated within measured time,
+     *              so lazily loaded results are fetched completely.
+     * @param key key of the operation, used only by slow operation log.
+     * @param <T> type of result.
+     * @return result of the call.
+     */
+    public <T> T record(Operation operation, Supplier<T> call, ToIntFunction<T> items, Object... key) {
+        ConsumedCapacityHandler.reset();
+        final long start = System.nanoTime();
+        int count = 0;
+
+        try {
+            final T result = call.get();
+            count = items.applyAsInt(result);
+            return result;
+        } finally {
+            record(operation, System.nanoTime() - start, count, ConsumedCapacityHandler.consumed(), key);
+        }
+    }
+
+    /**
+     * Record metrics of finished operation.
+     *
+     * @param operation the operation.
+     * @param nanos duration of the operation.
+     * @param items number of items returned.
+     * @param capacity consumed capacity units.
+     * @param key key of the operation, used only by slow operation log.
+     */
+    public void record(Operation operation, long nanos, int items, double capacity, Object... key) {
+        final Meters meters = this.meters.get(operation);
+        meters.latency.record(nanos, TimeUnit.NANOSECONDS);
+        meters.items.record(items);
+        meters.capacity.increment(capacity);
+
+        if (nanos > slowThreshold) {
+            log.warn("slow dynamo operation {} on {}, key {}: {} ms, {} items, {} capacity units",
+                    operation.operationName,
+                    operation.index,
+                    formatKey(key),
+                    TimeUnit.NANOSECONDS.toMillis(nanos),
+                    items,
+                    capacity);
+        }
+    }
+
+    /**
+     * Format key of operation for log.
+     *
+     * @param key parts of key, instants are formatted as ISO8601.
+     * @return parts separated by slash.
+     */
+    private static String formatKey(Object[] key) {
+        final StringBuilder builder = new StringBuilder();
+
+        for (Object part : key) {
+            if (builder.length() > 0) builder.append('/');
+
+            if (part instanceof Instant) {
+                builder.append(Iso8601.format((Instant) part));
+            } else {
+                builder.append(part);
+            }
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,956 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory implementation of LessonStore.
+ *
+ * <p>Lessons are kept in the same layout as in DynamoDB - sorted
+ * partition per instructor, index StudentIdStartTime sorted
+ * partition per student, index DayStartTime sorted partition per
+ * day and index AvailableDayStartTime sorted partition of free
+ * lessons per day. Reads are lock free, writes to single
+ * instructor partition are serialized, so conditional writes
+ * are atomic like in DynamoDB.
+ *
+ * <p>Cursors have the same format as cursors of DynamoDao.
+ *
+ * <p>Enabled by spring profile memory. Lessons are lost when
+ * the application stops.
+ */
+@Repository
+@Profile("memory")
+public class InMemoryLessonStore implements LessonStore {
+
+    /**
+     * Partitions of lessons by instructorId, sorted by startTime in milliseconds.
+     */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Long, Lesson>> instructors =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Index StudentIdStartTime - partitions of lessons by studentId.
+     */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<IndexKey, Lesson>> students =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Index DayStartTime - partitions of lessons by day.
+     */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<IndexKey, Lesson>> days =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Index AvailableDayStartTime - partitions of free lessons by availableDay.
+     */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<IndexKey, Lesson>> availableDays =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Aggregates of completed hours by studentId, never shared with callers.
+     */
+    private final ConcurrentMap<String, CompletedHours> hours = new ConcurrentHashMap<>();
+
+    /**
+     * Reference to dynamo configuration, used for page sizes.
+     */
+    private final DynamoConfiguration config;
+
+    /**
+     * Versions of partitions, bumped by every write.
+     */
+    private final LessonVersions versions;
+
+    /**
+     * Constructor.
+     * @param config injected param.
+     * @param versions injected param.
+     */
+    @Autowired
+    public InMemoryLessonStore(DynamoConfiguration config, LessonVersions versions) {
+        this.config = config;
+        this.versions = versions;
+    }
+
+    @Override
+    public List<Lesson> getLessonsByInstructor(String instructorId) {
+        return copyOf(instructorPartition(instructorId));
+    }
+
+    @Override
+    public LessonPage getLessonsByInstructor(String instructorId, Integer limit, String cursor) {
+        return instructorPage(instructorPartition(instructorId), limit, cursor);
+    }
+
+    @Override
+    public List<Lesson> getLessonsByInstructorSince(String instructorId, Instant since) {
+        return copyOf(instructorPartition(instructorId).tailMap(millis(since), true));
+    }
+
+    @Override
+    public LessonPage getLessonsByInstructorSince(
+            String instructorId,
+            Instant since,
+            Integer limit,
+            String cursor) {
+
+        return instructorPage(
+                instructorPartition(instructorId).tailMap(millis(since), true),
+                limit,
+                cursor
+        );
+    }
+
+    @Override
+    public List<Lesson> getLessonsByInstructorRange(String instructorId, Instant from, Instant to) {
+        return copyOf(instructorPartition(instructorId).subMap(millis(from), true, millis(to), true));
+    }
+
+    @Override
+    public LessonPage getLessonsByInstructorRange(
+            String instructorId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return instructorPage(
+                instructorPartition(instructorId).subMap(millis(from), true, millis(to), true),
+                limit,
+                cursor
+        );
+    }
+
+    @Override
+    public List<Lesson> getLessonsByStudent(String studentId) {
+        return copyOf(studentPartition(studentId));
+    }
+
+    @Override
+    public List<Lesson> getLessonsWaitedByStudent(String studentId) {
+        LessonRequests.checkValidId(studentId);
+
+        // contains(waitlist, :studentId)
+        return instructors.values().stream()
+                .flatMap(partition -> partition.values().stream())
+                .filter(lesson -> lesson.getWaitlist() != null && lesson.getWaitlist().contains(studentId))
+                .map(InMemoryLessonStore::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public LessonPage getLessonsByStudent(String studentId, Integer limit, String cursor) {
+        return indexPage(studentPartition(studentId), "studentId", Lesson::getStudentId, limit, cursor);
+    }
+
+    @Override
+    public List<Lesson> getLessonsByStudentSince(String studentId, Instant since) {
+        return copyOf(studentPartition(studentId).tailMap(IndexKey.lowest(millis(since)), true));
+    }
+
+    @Override
+    public LessonPage getLessonsByStudentSince(
+            String studentId,
+            Instant since,
+            Integer limit,
+            String cursor) {
+
+        return indexPage(
+                studentPartition(studentId).tailMap(IndexKey.lowest(millis(since)), true),
+                "studentId",
+                Lesson::getStudentId,
+                limit,
+                cursor
+        );
+    }
+
+    @Override
+    public List<Lesson> getLessonsByStudentRange(String studentId, Instant from, Instant to) {
+        return copyOf(studentRange(studentId, from, to));
+    }
+
+    @Override
+    public LessonPage getLessonsByStudentRange(
+            String studentId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return indexPage(studentRange(studentId, from, to), "studentId", Lesson::getStudentId, limit, cursor);
+    }
+
+    @Override
+    public LessonPage getLessonsByDay(String day, Integer limit, String cursor) {
+        return indexPage(dayPartition(day), "day", Lesson::getDay, limit, cursor);
+    }
+
+    @Override
+    public LessonPage getLessonsByDayRange(
+            String day,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        final NavigableMap<IndexKey, Lesson> range = dayPartition(day).subMap(
+                IndexKey.lowest(millis(from)), true,
+                IndexKey.lowest(millis(to) + 1), false
+        );
+
+        return indexPage(range, "day", Lesson::getDay, limit, cursor);
+    }
+
+    @Override
+    public List<Lesson> getAvailableLessons(String day, Instant from, Instant to) {
+        final NavigableMap<IndexKey, Lesson> partition = availableDays.get(day);
+
+        if (partition == null) {
+            return Collections.emptyList();
+        }
+
+        return copyOf(partition.subMap(
+                IndexKey.lowest(millis(from)), true,
+                IndexKey.lowest(millis(to) + 1), false
+        ));
+    }
+
+    @Override
+    public Lesson getLessonByInstructor(String instructorId, Instant startTime) {
+        return copy(instructorPartition(instructorId).get(millis(startTime)));
+    }
+
+    @Override
+    public Lesson getLessonByStudent(String studentId, Instant startTime) {
+        final List<Lesson> lessons = getLessonsByStudentRange(studentId, startTime, startTime);
+        return lessons.isEmpty() ? null : lessons.get(0);
+    }
+
+    @Override
+    public boolean createLesson(Lesson lesson) {
+        final ConcurrentNavigableMap<Long, Lesson> partition = partitionOf(LessonRequests.withDay(lesson));
+
+        synchronized (partition) {
+            final Long key = millis(lesson.getStartTime());
+            if (partition.containsKey(key)) {
+                return false;
+            }
+
+            write(partition, key, copy(lesson));
+            return true;
+        }
+    }
+
+    @Override
+    public List<Lesson> batchDeleteLessons(List<Lesson> lessons) {
+        lessons.forEach(this::deleteLesson);
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void deleteLesson(Lesson lesson) {
+        final ConcurrentNavigableMap<Long, Lesson> partition = partitionOf(lesson);
+
+        synchronized (partition) {
+            write(partition, millis(lesson.getStartTime()), null);
+        }
+    }
+
+    @Override
+    public void updateLesson(Lesson lesson, boolean ignoreNullAttrs) {
+        final ConcurrentNavigableMap<Long, Lesson> partition = partitionOf(LessonRequests.withDay(lesson));
+
+        synchronized (partition) {
+            final Long key = millis(lesson.getStartTime());
+            final Lesson current = partition.get(key);
+            final Lesson updated = copy(lesson);
+
+            if (ignoreNullAttrs && current != null) {
+                if (updated.getStopTime() == null) updated.setStopTime(current.getStopTime());
+                if (updated.getStudentId() == null) updated.setStudentId(current.getStudentId());
+                if (updated.getAvailableDay() == null) updated.setAvailableDay(current.getAvailableDay());
+                if (updated.getInstructorName() == null) updated.setInstructorName(current.getInstructorName());
+                if (updated.getStudentName() == null) updated.setStudentName(current.getStudentName());
+                if (updated.getWaitlist() == null) updated.setWaitlist(copyOf(current.getWaitlist()));
+                if (updated.getWaitlistNames() == null) updated.setWaitlistNames(copyOf(current.getWaitlistNames()));
+            }
+
+            write(partition, key, updated);
+        }
+    }
+
+    @Override
+    public Lesson registerStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String studentName) {
+
+        LessonRequests.checkValidId(instructorId);
+        LessonRequests.checkValidId(studentId);
+
+        final ConcurrentNavigableMap<Long, Lesson> partition = instructors.get(instructorId);
+
+        if (partition == null) {
+            return null;
+        }
+
+        // bookings of the student are counted and written under its lock
+        final ConcurrentNavigableMap<IndexKey, Lesson> studentPartition =
+                students.computeIfAbsent(studentId, id -> new ConcurrentSkipListMap<>());
+
+        synchronized (studentPartition) {
+            if (startTime.isAfter(Instant.now()) && bookingLimitReached(studentPartition)) {
+                return null;
+            }
+
+            return registerStudent(partition, startTime, studentId, studentName);
+        }
+    }
+
+    /**
+     * Register student to lesson in partition of instructor.
+     *
+     * @param partition partition of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of student.
+     * @param studentName name of the student.
+     * @return updated lesson or null if lesson does not exist
+     * or another student is already registered to it.
+     */
+    private Lesson registerStudent(
+            ConcurrentNavigableMap<Long, Lesson> partition,
+            Instant startTime,
+            String studentId,
+            String studentName) {
+
+        synchronized (partition) {
+            final Long key = millis(startTime);
+            final Lesson current = partition.get(key);
+
+            // attribute_exists(instructorId) AND attribute_not_exists(studentId)
+            if (current == null || current.getStudentId() != null) {
+                return null;
+            }
+
+            final Lesson updated = copy(current)
+                    .withStudentId(studentId)
+                    .withStudentName(studentName)
+                    .withAvailableDay(null);
+
+            write(partition, key, updated);
+            return copy(updated);
+        }
+    }
+
+    /**
+     * Whether student has dynamo.max-student-bookings lessons
+     * which have not started yet.
+     *
+     * @param studentPartition lessons of the student.
+     * @return true if no more lessons can be booked.
+     */
+    private boolean bookingLimitReached(ConcurrentNavigableMap<IndexKey, Lesson> studentPartition) {
+        final int limit = config.getMaxStudentBookings();
+        return limit > 0 && studentPartition
+                .tailMap(IndexKey.lowest(System.currentTimeMillis() + 1), true)
+                .size() >= limit;
+    }
+
+    @Override
+    public Lesson unregisterStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId) {
+
+        LessonRequests.checkValidId(instructorId);
+        LessonRequests.checkValidId(studentId);
+
+        final ConcurrentNavigableMap<Long, Lesson> partition = instructors.get(instructorId);
+
+        if (partition == null) {
+            return null;
+        }
+
+        synchronized (partition) {
+            final Long key = millis(startTime);
+            final Lesson current = partition.get(key);
+
+            // studentId = :studentId
+            if (current == null || !studentId.equals(current.getStudentId())) {
+                return null;
+            }
+
+            final Lesson updated = copy(current);
+            final int position = promotedPosition(updated);
+
+            if (position >= 0) {
+                // SET studentId = :nextId REMOVE waitlist[i]
+                updated.withStudentId(updated.getWaitlist().remove(position))
+                        .withStudentName(updated.getWaitlistNames().remove(position));
+            } else {
+                // nobody waits or nobody can be promoted
+                updated.withStudentId(null)
+                        .withStudentName(null)
+                        .withWaitlist(null)
+                        .withWaitlistNames(null)
+                        .withAvailableDay(Lesson.dayOf(current.getStartTime()));
+            }
+
+            write(partition, key, updated);
+            return copy(updated);
+        }
+    }
+
+    /**
+     * Position of the first waiting student which can be promoted,
+     * students with too many future bookings keep waiting.
+     *
+     * <p>Bookings of waiting students are counted without their
+     * locks, which are always taken before lock of instructor.
+     *
+     * @param lesson the lesson.
+     * @return position in waitlist or -1 if nobody can be promoted.
+     */
+    private int promotedPosition(Lesson lesson) {
+        final List<String> waitlist = lesson.getWaitlist();
+        if (waitlist == null) {
+            return -1;
+        }
+
+        for (int position = 0; position < waitlist.size(); position++) {
+            final ConcurrentNavigableMap<IndexKey, Lesson> studentPartition = students.get(waitlist.get(position));
+
+            if (!lesson.getStartTime().isAfter(Instant.now())
+                    || studentPartition == null
+                    || !bookingLimitReached(studentPartition)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Lesson joinWaitlist(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String studentName) {
+
+        LessonRequests.checkValidId(instructorId);
+        LessonRequests.checkValidId(studentId);
+
+        final ConcurrentNavigableMap<Long, Lesson> partition = instructors.get(instructorId);
+
+        if (partition == null) {
+            return null;
+        }
+
+        synchronized (partition) {
+            final Long key = millis(startTime);
+            final Lesson current = partition.get(key);
+
+            // attribute_exists(studentId) AND studentId <> :studentId
+            if (current == null || current.getStudentId() == null || studentId.equals(current.getStudentId())) {
+                return null;
+            }
+
+            final Lesson updated = copy(current);
+            if (updated.getWaitlist() == null) {
+                updated.withWaitlist(new ArrayList<>()).withWaitlistNames(new ArrayList<>());
+            }
+
+            // size(waitlist) < :max AND NOT contains(waitlist, :studentId)
+            if (updated.getWaitlist().size() >= config.getMaxWaitlist() || updated.getWaitlist().contains(studentId)) {
+                return null;
+            }
+
+            updated.getWaitlist().add(studentId);
+            updated.getWaitlistNames().add(studentName);
+
+            write(partition, key, updated);
+            return copy(updated);
+        }
+    }
+
+    @Override
+    public Lesson leaveWaitlist(
+            String instructorId,
+            Instant startTime,
+            String studentId) {
+
+        LessonRequests.checkValidId(instructorId);
+        LessonRequests.checkValidId(studentId);
+
+        final ConcurrentNavigableMap<Long, Lesson> partition = instructors.get(instructorId);
+
+        if (partition == null) {
+            return null;
+        }
+
+        synchronized (partition) {
+            final Long key = millis(startTime);
+            final Lesson current = partition.get(key);
+            final int position = current != null && current.getWaitlist() != null
+                    ? current.getWaitlist().indexOf(studentId)
+                    : -1;
+
+            // waitlist[i] = :studentId
+            if (position < 0) {
+                return null;
+            }
+
+            final Lesson updated = copy(current);
+            updated.getWaitlist().remove(position);
+            updated.getWaitlistNames().remove(position);
+
+            write(partition, key, updated);
+            return copy(updated);
+        }
+    }
+
+    @Override
+    public CompletedHours getCompletedHours(String studentId) {
+        LessonRequests.checkValidId(studentId);
+        final CompletedHours current = hours.get(studentId);
+        return current != null ? copy(current) : new CompletedHours().withStudentId(studentId);
+    }
+
+    @Override
+    public boolean advanceCompletedHours(CompletedHours read, long millis, Instant watermark) {
+        final AtomicBoolean advanced = new AtomicBoolean();
+
+        hours.compute(read.getStudentId(), (id, current) -> {
+            // revision = :revision
+            final long revision = current != null ? current.getRevision() : 0;
+            if (revision != read.getRevision()) {
+                return current;
+            }
+
+            advanced.set(true);
+            return new CompletedHours()
+                    .withStudentId(id)
+                    .withCompletedMillis((current != null ? current.getCompletedMillis() : 0) + millis)
+                    .withWatermark(watermark)
+                    .withRevision(revision + 1);
+        });
+
+        return advanced.get();
+    }
+
+    /**
+     * Apply booking change of lesson to aggregate of its student.
+     *
+     * <p>Lessons which have not started yet are skipped. Duration
+     * of already counted lesson is added or subtracted, otherwise
+     * only revision is incremented.
+     *
+     * @param lesson the lesson, may be null.
+     * @param registered true if the lesson was written, false if it was replaced.
+     */
+    private void adjustHours(Lesson lesson, boolean registered) {
+        if (lesson == null
+                || lesson.getStudentId() == null
+                || lesson.getStartTime().isAfter(Instant.now())) {
+            return;
+        }
+
+        final long duration = CompletedHours.durationOf(lesson);
+
+        hours.compute(lesson.getStudentId(), (id, current) -> {
+            final CompletedHours adjusted = current != null
+                    ? copy(current)
+                    : new CompletedHours().withStudentId(id);
+
+            if (adjusted.covers(lesson.getStartTime())) {
+                adjusted.setCompletedMillis(adjusted.getCompletedMillis() + (registered ? duration : -duration));
+            }
+
+            adjusted.setRevision(adjusted.getRevision() + 1);
+            return adjusted;
+        });
+    }
+
+    /**
+     * Put or remove lesson, update indexes StudentIdStartTime,
+     * DayStartTime and AvailableDayStartTime, completed hours
+     * and versions of affected partitions.
+     *
+     * <p>Must be called with lock of the partition held.
+     *
+     * @param partition partition of instructor.
+     * @param key start time of the lesson in milliseconds.
+     * @param lesson new value, null to remove the lesson.
+     */
+    private void write(ConcurrentNavigableMap<Long, Lesson> partition, Long key, Lesson lesson) {
+        final Lesson previous = lesson != null ? partition.put(key, lesson) : partition.remove(key);
+
+        if (previous != null && previous.getStudentId() != null) {
+            final ConcurrentNavigableMap<IndexKey, Lesson> studentPartition =
+                    students.get(previous.getStudentId());
+
+            if (studentPartition != null) {
+                studentPartition.remove(IndexKey.of(previous));
+            }
+        }
+
+        if (lesson != null && lesson.getStudentId() != null) {
+            students.computeIfAbsent(lesson.getStudentId(), id -> new ConcurrentSkipListMap<>())
+                    .put(IndexKey.of(lesson), lesson);
+        }
+
+        if (previous != null && previous.getDay() != null) {
+            final ConcurrentNavigableMap<IndexKey, Lesson> dayPartition = days.get(previous.getDay());
+
+            if (dayPartition != null) {
+                dayPartition.remove(IndexKey.of(previous));
+            }
+        }
+
+        if (lesson != null && lesson.getDay() != null) {
+            days.computeIfAbsent(lesson.getDay(), day -> new ConcurrentSkipListMap<>())
+                    .put(IndexKey.of(lesson), lesson);
+        }
+
+        if (previous != null && previous.getAvailableDay() != null) {
+            final ConcurrentNavigableMap<IndexKey, Lesson> dayPartition =
+                    availableDays.get(previous.getAvailableDay());
+
+            if (dayPartition != null) {
+                dayPartition.remove(IndexKey.of(previous));
+            }
+        }
+
+        if (lesson != null && lesson.getAvailableDay() != null) {
+            availableDays.computeIfAbsent(lesson.getAvailableDay(), day -> new ConcurrentSkipListMap<>())
+                    .put(IndexKey.of(lesson), lesson);
+        }
+
+        adjustHours(previous, false);
+        adjustHours(lesson, true);
+
+        versions.bump(previous);
+        versions.bump(lesson);
+    }
+
+    /**
+     * Partition of instructor for reading.
+     *
+     * @param instructorId an unique id of instructor.
+     * @return partition, empty if instructor has no lessons.
+     */
+    private NavigableMap<Long, Lesson> instructorPartition(String instructorId) {
+        LessonRequests.checkValidId(instructorId);
+        final NavigableMap<Long, Lesson> partition = instructors.get(instructorId);
+        return partition != null ? partition : Collections.emptyNavigableMap();
+    }
+
+    /**
+     * Partition of instructor for writing, created if it does not exist.
+     *
+     * @param instructorId an unique id of instructor.
+     * @return partition.
+     */
+    private ConcurrentNavigableMap<Long, Lesson> writablePartition(String instructorId) {
+        LessonRequests.checkValidId(instructorId);
+        return instructors.computeIfAbsent(instructorId, id -> new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * Partition of instructor which owns the lesson.
+     *
+     * @param lesson the lesson, its startTime must be set.
+     * @return partition.
+     */
+    private ConcurrentNavigableMap<Long, Lesson> partitionOf(Lesson lesson) {
+        if (lesson.getStartTime() == null) throw new IllegalArgumentException("startTime cannot be null");
+        return writablePartition(lesson.getInstructorId());
+    }
+
+    /**
+     * Partition of student in index StudentIdStartTime.
+     *
+     * @param studentId an unique id of student.
+     * @return partition, empty if student has no lessons.
+     */
+    private NavigableMap<IndexKey, Lesson> studentPartition(String studentId) {
+        LessonRequests.checkValidId(studentId);
+        final NavigableMap<IndexKey, Lesson> partition = students.get(studentId);
+        return partition != null ? partition : Collections.emptyNavigableMap();
+    }
+
+    /**
+     * Partition of day in index DayStartTime.
+     *
+     * @param day day bucket, yyyy-MM-dd.
+     * @return partition, empty if there are no lessons on the day.
+     */
+    private NavigableMap<IndexKey, Lesson> dayPartition(String day) {
+        if (day == null) throw new IllegalArgumentException("day cannot be null");
+        final NavigableMap<IndexKey, Lesson> partition = days.get(day);
+        return partition != null ? partition : Collections.emptyNavigableMap();
+    }
+
+    /**
+     * Lessons of student within the date range, both inclusive.
+     *
+     * @param studentId an unique id of student.
+     * @param from starting date.
+     * @param to ending date.
+     * @return view of student partition.
+     */
+    private NavigableMap<IndexKey, Lesson> studentRange(String studentId, Instant from, Instant to) {
+        return studentPartition(studentId).subMap(
+                IndexKey.lowest(millis(from)), true,
+                IndexKey.lowest(millis(to) + 1), false
+        );
+    }
+
+    /**
+     * Single page of instructor partition.
+     *
+     * @param lessons lessons matching the query.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    private LessonPage instructorPage(NavigableMap<Long, Lesson> lessons, Integer limit, String cursor) {
+        final Map<String, AttributeValue> startKey = LessonCursor.decode(cursor);
+
+        return page(
+                startKey != null ? lessons.tailMap(parseMillis(startKey), false) : lessons,
+                limit,
+                lesson -> {
+                    final Map<String, AttributeValue> key = new HashMap<>();
+                    key.put("instructorId", new AttributeValue(lesson.getInstructorId()));
+                    key.put("startTime", new AttributeValue(format(lesson.getStartTime())));
+                    return key;
+                }
+        );
+    }
+
+    /**
+     * Single page of index partition.
+     *
+     * @param lessons lessons matching the query.
+     * @param hashKey name of hash key attribute of the index.
+     * @param hashKeyValue hash key of the lesson in the index.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    private LessonPage indexPage(
+            NavigableMap<IndexKey, Lesson> lessons,
+            String hashKey,
+            Function<Lesson, String> hashKeyValue,
+            Integer limit,
+            String cursor) {
+
+        final Map<String, AttributeValue> startKey = LessonCursor.decode(cursor);
+
+        final NavigableMap<IndexKey, Lesson> remaining;
+        if (startKey != null) {
+            final AttributeValue instructorId = startKey.get("instructorId");
+            if (instructorId == null) throw new IllegalArgumentException("invalid cursor");
+            remaining = lessons.tailMap(new IndexKey(parseMillis(startKey), instructorId.getS()), false);
+        } else {
+            remaining = lessons;
+        }
+
+        return page(remaining, limit, lesson -> {
+            final Map<String, AttributeValue> key = new HashMap<>();
+            key.put("instructorId", new AttributeValue(lesson.getInstructorId()));
+            key.put("startTime", new AttributeValue(format(lesson.getStartTime())));
+            key.put(hashKey, new AttributeValue(hashKeyValue.apply(lesson)));
+            return key;
+        });
+    }
+
+    /**
+     * Take single page from sorted lessons.
+     *
+     * @param lessons remaining lessons of the query.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param lastKey builds last evaluated key of the lesson.
+     * @param <K> type of sort key.
+     * @return page of lessons.
+     */
+    private <K> LessonPage page(
+            NavigableMap<K, Lesson> lessons,
+            Integer limit,
+            Function<Lesson, Map<String, AttributeValue>> lastKey) {
+
+        final int pageSize = LessonRequests.pageSize(config, limit);
+        final List<Lesson> items = new ArrayList<>(Math.min(pageSize, 64));
+        final Iterator<Lesson> iterator = lessons.values().iterator();
+
+        Lesson last = null;
+        while (items.size() < pageSize && iterator.hasNext()) {
+            last = iterator.next();
+            items.add(copy(last));
+        }
+
+        final String nextCursor = last != null && iterator.hasNext()
+                ? LessonCursor.encode(lastKey.apply(last))
+                : null;
+
+        return new LessonPage(items, nextCursor);
+    }
+
+    /**
+     * Copy lessons of sorted map.
+     *
+     * @param lessons sorted lessons.
+     * @return list of copies.
+     */
+    private static List<Lesson> copyOf(Map<?, Lesson> lessons) {
+        final List<Lesson> copies = new ArrayList<>(lessons.size());
+        lessons.values().forEach(lesson -> copies.add(copy(lesson)));
+        return copies;
+    }
+
+    /**
+     * Copy of the lesson, stored lessons are never shared with callers.
+     *
+     * @param lesson lesson to copy, may be null.
+     * @return copy or null.
+     */
+    private static Lesson copy(Lesson lesson) {
+        if (lesson == null) {
+            return null;
+        }
+
+        return new Lesson()
+                .withInstructorId(lesson.getInstructorId())
+                .withStartTime(lesson.getStartTime())
+                .withStopTime(lesson.getStopTime())
+                .withStudentId(lesson.getStudentId())
+                .withDay(lesson.getDay())
+                .withAvailableDay(lesson.getAvailableDay())
+                .withInstructorName(lesson.getInstructorName())
+                .withStudentName(lesson.getStudentName())
+                .withWaitlist(copyOf(lesson.getWaitlist()))
+                .withWaitlistNames(copyOf(lesson.getWaitlistNames()));
+    }
+
+    /**
+     * Copy of waitlist.
+     *
+     * @param list list to copy, may be null.
+     * @return copy or null.
+     */
+    private static List<String> copyOf(List<String> list) {
+        return list != null ? new ArrayList<>(list) : null;
+    }
+
+    /**
+     * Copy of the aggregate.
+     *
+     * @param hours aggregate to copy.
+     * @return copy.
+     */
+    private static CompletedHours copy(CompletedHours hours) {
+        return new CompletedHours()
+                .withStudentId(hours.getStudentId())
+                .withCompletedMillis(hours.getCompletedMillis())
+                .withWatermark(hours.getWatermark())
+                .withRevision(hours.getRevision());
+    }
+
+    private static long millis(Instant instant) {
+        return instant.toEpochMilli();
+    }
+
+    private static String format(Instant instant) {
+        return Iso8601.format(instant);
+    }
+
+    /**
+     * Start time of cursor in milliseconds.
+     *
+     * @param startKey decoded cursor.
+     * @return start time.
+     */
+    private static long parseMillis(Map<String, AttributeValue> startKey) {
+        final AttributeValue startTime = startKey.get("startTime");
+        if (startTime == null) throw new IllegalArgumentException("invalid cursor");
+
+        try {
+            return Iso8601.parseMillis(startTime.getS());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor", e);
+        }
+    }
+
+    /**
+     * Sort key of indexes StudentIdStartTime, DayStartTime and AvailableDayStartTime.
+     *
+     * <p>Partition may have more lessons with the same start time
+     * by different instructors, so instructorId is part of the key.
+     */
+    private static final class IndexKey implements Comparable<IndexKey> {
+
+        private final long startTime;
+
+        /**
+         * Null is lower than any instructorId.
+         */
+        private final String instructorId;
+
+        private IndexKey(long startTime, String instructorId) {
+            this.startTime = startTime;
+            this.instructorId = instructorId;
+        }
+
+        private static IndexKey of(Lesson lesson) {
+            return new IndexKey(millis(lesson.getStartTime()), lesson.getInstructorId());
+        }
+
+        private static IndexKey lowest(long startTime) {
+            return new IndexKey(startTime, null);
+        }
+
+        @Override
+        public int compareTo(IndexKey o) {
+            final int byTime = Long.compare(startTime, o.startTime);
+            if (byTime != 0) return byTime;
+            if (instructorId == null) return o.instructorId == null ? 0 : -1;
+            if (o.instructorId == null) return 1;
+            return instructorId.compareTo(o.instructorId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IndexKey && compareTo((IndexKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(startTime) * 31 + (instructorId != null ? instructorId.hashCode() : 0);
+        }
+    }
+}
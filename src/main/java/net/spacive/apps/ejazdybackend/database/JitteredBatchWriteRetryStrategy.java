@@ -0,0 +1,67 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry strategy for unprocessed items of BatchWriteItem.
+ *
+ * <p>Delay grows exponentially with every attempt and is
+ * randomized in range 0 to the current limit (full jitter), so
+ * retries of parallel batches do not hit the table at once.
+ */
+class JitteredBatchWriteRetryStrategy implements DynamoDBMapperConfig.BatchWriteRetryStrategy {
+
+    /**
+     * Maximum number of retries of unprocessed items.
+     */
+    private final int maxRetries;
+
+    /**
+     * Delay limit of the first retry in milliseconds.
+     */
+    private final long baseDelay;
+
+    /**
+     * Upper bound of the delay in milliseconds.
+     */
+    private final long maxDelay;
+
+    /**
+     * Constructor.
+     *
+     * @param maxRetries maximum number of retries.
+     * @param baseDelay delay limit of the first retry in milliseconds.
+     * @param maxDelay upper bound of the delay in milliseconds.
+     */
+    JitteredBatchWriteRetryStrategy(int maxRetries, long baseDelay, long maxDelay) {
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxRetryOnUnprocessedItems(Map<String, List<WriteRequest>> batchWriteItemInput) {
+        return maxRetries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDelayBeforeRetryUnprocessedItems(
+            Map<String, List<WriteRequest>> unprocessedItems,
+            int retriesAttempted) {
+
+        // cap the shift, delay is bounded by maxDelay anyway
+        final long limit = Math.min(maxDelay, baseDelay << Math.min(retriesAttempted, 20));
+        return ThreadLocalRandom.current().nextLong(limit + 1);
+    }
+}
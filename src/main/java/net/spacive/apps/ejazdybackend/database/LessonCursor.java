@@ -0,0 +1,91 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Codec of opaque pagination cursors.
+ *
+ * <p>Cursor is the LastEvaluatedKey returned by DynamoDB
+ * serialized to JSON and encoded as URL safe base64, so it
+ * can be passed in query string without escaping.
+ *
+ * <p>All key attributes of Lesson table and its indexes are
+ * strings, so only string attributes are supported.
+ */
+public final class LessonCursor {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final TypeReference<Map<String, String>> mapType =
+            new TypeReference<Map<String, String>>() {};
+
+    /**
+     * Constructor.
+     */
+    private LessonCursor() {
+    }
+
+    /**
+     * Encode last evaluated key to cursor.
+     *
+     * @param lastEvaluatedKey key returned by DynamoDB, may be null.
+     * @return cursor string or null if there is no next page.
+     */
+    public static String encode(Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+
+        final Map<String, String> plain = new TreeMap<>();
+        lastEvaluatedKey.forEach((name, value) -> {
+            if (value.getS() == null) {
+                throw new IllegalArgumentException("unsupported key attribute type: " + name);
+            }
+            plain.put(name, value.getS());
+        });
+
+        try {
+            return Base64.getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(mapper.writeValueAsBytes(plain));
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot encode cursor", e);
+        }
+    }
+
+    /**
+     * Decode cursor to exclusive start key.
+     *
+     * @param cursor cursor string, may be null.
+     * @return exclusive start key or null if cursor is null or empty.
+     * @throws IllegalArgumentException if cursor is malformed.
+     */
+    public static Map<String, AttributeValue> decode(String cursor) {
+        if (cursor == null || cursor.length() == 0) {
+            return null;
+        }
+
+        final Map<String, String> plain;
+        try {
+            plain = mapper.readValue(
+                    Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII)),
+                    mapType
+            );
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor", e);
+        }
+
+        final Map<String, AttributeValue> key = new HashMap<>();
+        plain.forEach((name, value) -> key.put(name, new AttributeValue(value)));
+        return key;
+    }
+}
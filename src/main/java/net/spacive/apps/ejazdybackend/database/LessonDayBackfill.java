@@ -0,0 +1,150 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics.Operation;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One time job which sets day of lessons written before
+ * index DayStartTime existed.
+ *
+ * <p>Lessons without day are found by paginated scan. Free
+ * lessons get availableDay too, so that they appear in sparse
+ * index AvailableDayStartTime. Every lesson is updated by single
+ * conditional update, lessons deleted or booked meanwhile are
+ * not recreated nor offered as free. The job can be stopped
+ * and run again, lessons which already have day are skipped.
+ *
+ * <p>Enabled by property dynamo.backfill-lesson-days, runs
+ * when the application starts.
+ */
+@Component
+@Profile("!memory")
+@ConditionalOnProperty(prefix = "dynamo", name = "backfill-lesson-days", havingValue = "true")
+public class LessonDayBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LessonDayBackfill.class.getName());
+
+    /**
+     * reference to low level dynamo db client.
+     */
+    private final AmazonDynamoDB dynamoDB;
+
+    /**
+     * Metrics of DynamoDB operations.
+     */
+    private final DynamoMetrics metrics;
+
+    /**
+     * Constructor.
+     * @param dynamoDB injected param.
+     * @param metrics injected param.
+     */
+    @Autowired
+    public LessonDayBackfill(@Qualifier("dynamoDB") AmazonDynamoDB dynamoDB, DynamoMetrics metrics) {
+        this.dynamoDB = dynamoDB;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("backfill of lesson days started");
+
+        final Map<String, String> names = new HashMap<>();
+        names.put("#day", "day");
+
+        Map<String, AttributeValue> startKey = null;
+        long updated = 0;
+        long available = 0;
+
+        do {
+            final ScanRequest request = new ScanRequest()
+                    .withTableName(LessonRequests.LESSON_TABLE)
+                    .withFilterExpression("attribute_not_exists(#day)")
+                    .withProjectionExpression("instructorId, startTime, studentId")
+                    .withExpressionAttributeNames(names)
+                    .withExclusiveStartKey(startKey);
+
+            final ScanResult result = metrics.record(
+                    Operation.SCAN_LESSONS_WITHOUT_DAY,
+                    () -> dynamoDB.scan(request),
+                    ScanResult::getCount
+            );
+
+            for (Map<String, AttributeValue> item : result.getItems()) {
+                final String day = Lesson.dayOf(Iso8601.parse(item.get("startTime").getS()));
+                final Map<String, AttributeValue> key = new HashMap<>();
+                key.put("instructorId", item.get("instructorId"));
+                key.put("startTime", item.get("startTime"));
+
+                if (!item.containsKey("studentId") && setDay(key, day, true)) {
+                    available++;
+                } else {
+                    setDay(key, day, false);
+                }
+                updated++;
+            }
+
+            startKey = result.getLastEvaluatedKey();
+        } while (startKey != null && !startKey.isEmpty());
+
+        log.info("backfill of lesson days finished, {} lessons updated, {} of them free", updated, available);
+    }
+
+    /**
+     * Set day of single lesson which still exists.
+     *
+     * @param key primary key of the lesson.
+     * @param day day of start time, yyyy-MM-dd.
+     * @param free true to set availableDay too, only if lesson is still free.
+     * @return false if lesson was deleted, or booked when free is true.
+     */
+    private boolean setDay(Map<String, AttributeValue> key, String day, boolean free) {
+        final UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(LessonRequests.LESSON_TABLE)
+                .withKey(key)
+                .withExpressionAttributeNames(Collections.singletonMap("#day", "day"));
+
+        if (free) {
+            final Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":day", new AttributeValue(day));
+            values.put(":availableDay", new AttributeValue(day));
+
+            request.withUpdateExpression("SET #day = :day, availableDay = :availableDay")
+                    .withConditionExpression("attribute_exists(instructorId) AND attribute_not_exists(studentId)")
+                    .withExpressionAttributeValues(values);
+        } else {
+            request.withUpdateExpression("SET #day = :day")
+                    .withConditionExpression("attribute_exists(instructorId)")
+                    .withExpressionAttributeValues(Collections.singletonMap(":day", new AttributeValue(day)));
+        }
+
+        return metrics.record(Operation.BACKFILL_DAY, () -> {
+            try {
+                dynamoDB.updateItem(request);
+                return true;
+            } catch (ConditionalCheckFailedException e) {
+                return false;
+            }
+        }, done -> done ? 1 : 0, key.get("instructorId").getS(), day);
+    }
+}
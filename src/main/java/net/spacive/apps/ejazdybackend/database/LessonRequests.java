@@ -0,0 +1,463 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Builders of low level DynamoDB requests on Lesson table.
+ *
+ * <p>Shared by blocking and asynchronous DAO, so both
+ * send exactly the same requests.
+ */
+final class LessonRequests {
+
+    /**
+     * Name of the table of lessons.
+     */
+    static final String LESSON_TABLE =
+            Lesson.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    /**
+     * Name of the index of lessons by student.
+     */
+    static final String STUDENT_INDEX = "StudentIdStartTime";
+
+    /**
+     * Name of the sparse index of free lessons by day.
+     */
+    static final String AVAILABLE_INDEX = "AvailableDayStartTime";
+
+    /**
+     * Name of the index of all lessons by day.
+     */
+    static final String DAY_INDEX = "DayStartTime";
+
+    /**
+     * Constructor.
+     */
+    private LessonRequests() {
+    }
+
+    /**
+     * Set day of lesson, hash key of index DayStartTime,
+     * before the lesson is written.
+     *
+     * @param lesson lesson to write.
+     * @return the same lesson.
+     */
+    static Lesson withDay(Lesson lesson) {
+        if (lesson.getStartTime() != null) {
+            lesson.setDay(Lesson.dayOf(lesson.getStartTime()));
+        }
+        return lesson;
+    }
+
+    /**
+     * Primary key of lesson in low level representation.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @return key attributes.
+     */
+    static Map<String, AttributeValue> lessonKey(String instructorId, Instant startTime) {
+        checkValidId(instructorId);
+
+        final Map<String, AttributeValue> key = new HashMap<>();
+        key.put("instructorId", new AttributeValue(instructorId));
+        key.put("startTime", new AttributeValue(Iso8601.format(startTime)));
+        return key;
+    }
+
+    /**
+     * Request fetching single lesson.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @return get item request.
+     */
+    static GetItemRequest getLesson(String instructorId, Instant startTime) {
+        return new GetItemRequest()
+                .withTableName(LESSON_TABLE)
+                .withKey(lessonKey(instructorId, startTime))
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Request deleting single lesson.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @return delete item request returning ALL_OLD.
+     */
+    static DeleteItemRequest deleteLesson(String instructorId, Instant startTime) {
+        return new DeleteItemRequest()
+                .withTableName(LESSON_TABLE)
+                .withKey(lessonKey(instructorId, startTime))
+                .withReturnValues(ReturnValue.ALL_OLD)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Conditional update registering student to free lesson.
+     *
+     * <p>Lesson is removed from index AvailableDayStartTime.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of student.
+     * @param studentName name of the student.
+     * @return update request returning ALL_NEW.
+     */
+    static UpdateItemRequest registerStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String studentName) {
+
+        checkValidId(studentId);
+
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":studentId", new AttributeValue(studentId));
+        values.put(":studentName", new AttributeValue(studentName));
+
+        return new UpdateItemRequest()
+                .withTableName(LESSON_TABLE)
+                .withKey(lessonKey(instructorId, startTime))
+                .withUpdateExpression("SET studentId = :studentId, studentName = :studentName REMOVE availableDay")
+                .withConditionExpression(
+                        "attribute_exists(instructorId) AND attribute_not_exists(studentId)"
+                )
+                .withExpressionAttributeValues(values)
+                .withReturnValues(ReturnValue.ALL_NEW)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Conditional update unregistering student from lesson
+     * nobody waits for.
+     *
+     * <p>Lesson is put back to index AvailableDayStartTime.
+     * If waitlist is not empty, the condition fails and
+     * promoteWaitlist has to be used.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @return update request returning ALL_NEW.
+     */
+    static UpdateItemRequest unregisterStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId) {
+
+        return unregisterStudent(instructorId, startTime, studentId, Collections.emptyList());
+    }
+
+    /**
+     * Conditional update unregistering student from lesson
+     * and clearing its waitlist, used when none of waiting
+     * students can be promoted.
+     *
+     * <p>The condition fails if waitlist is not exactly the
+     * same, so student which joined meanwhile is never dropped.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @param waitlist waitlist as it was read, empty if nobody waits.
+     * @return update request returning ALL_NEW.
+     */
+    static UpdateItemRequest unregisterStudent(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            List<String> waitlist) {
+
+        checkValidId(studentId);
+
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":studentId", new AttributeValue(studentId));
+        values.put(":availableDay", new AttributeValue(Lesson.dayOf(startTime)));
+
+        final UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(LESSON_TABLE)
+                .withKey(lessonKey(instructorId, startTime))
+                .withReturnValues(ReturnValue.ALL_NEW)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+        if (waitlist.isEmpty()) {
+            values.put(":zero", new AttributeValue().withN("0"));
+
+            return request
+                    .withUpdateExpression("REMOVE studentId, studentName SET availableDay = :availableDay")
+                    .withConditionExpression(
+                            "studentId = :studentId AND (attribute_not_exists(waitlist) OR size(waitlist) = :zero)"
+                    )
+                    .withExpressionAttributeValues(values);
+        }
+
+        final StringBuilder condition = new StringBuilder("studentId = :studentId AND size(waitlist) = :size");
+        values.put(":size", new AttributeValue().withN(Integer.toString(waitlist.size())));
+
+        for (int position = 0; position < waitlist.size(); position++) {
+            condition.append(" AND waitlist[").append(position).append("] = :waiting").append(position);
+            values.put(":waiting" + position, new AttributeValue(waitlist.get(position)));
+        }
+
+        return request
+                .withUpdateExpression("REMOVE studentId, studentName, waitlist, waitlistNames "
+                        + "SET availableDay = :availableDay")
+                .withConditionExpression(condition.toString())
+                .withExpressionAttributeValues(values);
+    }
+
+    /**
+     * Conditional update replacing registered student by
+     * student of waitlist.
+     *
+     * <p>Students before the position, which cannot be promoted,
+     * keep waiting. Lesson stays out of index AvailableDayStartTime,
+     * so it is never offered as free in between.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @param nextId an unique id of the promoted waiting student.
+     * @param nextName name of the promoted waiting student.
+     * @param position position of the promoted student in waitlist, as it was read.
+     * @return update request returning ALL_NEW.
+     */
+    static UpdateItemRequest promoteWaitlist(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String nextId,
+            String nextName,
+            int position) {
+
+        checkValidId(studentId);
+
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":studentId", new AttributeValue(studentId));
+        values.put(":nextId", new AttributeValue(nextId));
+        values.put(":nextName", new AttributeValue(nextName));
+
+        return new UpdateItemRequest()
+                .withTableName(LESSON_TABLE)
+                .withKey(lessonKey(instructorId, startTime))
+                .withUpdateExpression("SET studentId = :nextId, studentName = :nextName "
+                        + "REMOVE waitlist[" + position + "], waitlistNames[" + position + "]")
+                .withConditionExpression("studentId = :studentId AND waitlist[" + position + "] = :nextId")
+                .withExpressionAttributeValues(values)
+                .withReturnValues(ReturnValue.ALL_NEW)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Conditional update appending student to waitlist of
+     * lesson booked by another student.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of waiting student.
+     * @param studentName name of the student.
+     * @param maxWaitlist maximum length of waitlist.
+     * @return update request returning ALL_NEW.
+     */
+    static UpdateItemRequest joinWaitlist(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            String studentName,
+            int maxWaitlist) {
+
+        checkValidId(studentId);
+
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":studentId", new AttributeValue(studentId));
+        values.put(":studentIds", new AttributeValue().withL(new AttributeValue(studentId)));
+        values.put(":studentNames", new AttributeValue().withL(new AttributeValue(studentName)));
+        values.put(":empty", new AttributeValue().withL(Collections.emptyList()));
+        values.put(":max", new AttributeValue().withN(Integer.toString(maxWaitlist)));
+
+        return new UpdateItemRequest()
+                .withTableName(LESSON_TABLE)
+                .withKey(lessonKey(instructorId, startTime))
+                .withUpdateExpression("SET waitlist = list_append(if_not_exists(waitlist, :empty), :studentIds), "
+                        + "waitlistNames = list_append(if_not_exists(waitlistNames, :empty), :studentNames)")
+                .withConditionExpression("attribute_exists(studentId) AND studentId <> :studentId AND "
+                        + "(attribute_not_exists(waitlist) OR "
+                        + "(size(waitlist) < :max AND NOT contains(waitlist, :studentId)))")
+                .withExpressionAttributeValues(values)
+                .withReturnValues(ReturnValue.ALL_NEW)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Conditional update removing student from waitlist.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of waiting student.
+     * @param position position of the student in waitlist, as it was read.
+     * @return update request returning ALL_NEW.
+     */
+    static UpdateItemRequest leaveWaitlist(
+            String instructorId,
+            Instant startTime,
+            String studentId,
+            int position) {
+
+        checkValidId(studentId);
+
+        return new UpdateItemRequest()
+                .withTableName(LESSON_TABLE)
+                .withKey(lessonKey(instructorId, startTime))
+                .withUpdateExpression("REMOVE waitlist[" + position + "], waitlistNames[" + position + "]")
+                .withConditionExpression("waitlist[" + position + "] = :studentId")
+                .withExpressionAttributeValues(
+                        Collections.singletonMap(":studentId", new AttributeValue(studentId))
+                )
+                .withReturnValues(ReturnValue.ALL_NEW)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Query of single page of lessons by instructor.
+     *
+     * <p>If only from is set, lessons since from are queried.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param from optional starting date.
+     * @param to optional ending date.
+     * @param pageSize maximum number of lessons.
+     * @param cursor cursor of the page, null for the first one.
+     * @return query request.
+     */
+    static QueryRequest instructorQuery(
+            String instructorId,
+            Instant from,
+            Instant to,
+            int pageSize,
+            String cursor) {
+
+        checkValidId(instructorId);
+
+        return query("instructorId", instructorId, from, to, pageSize, cursor)
+                .withTableName(LESSON_TABLE);
+    }
+
+    /**
+     * Query of single page of lessons by student on index StudentIdStartTime.
+     *
+     * <p>If only from is set, lessons since from are queried.
+     *
+     * @param studentId an unique id of student.
+     * @param from optional starting date.
+     * @param to optional ending date.
+     * @param pageSize maximum number of lessons.
+     * @param cursor cursor of the page, null for the first one.
+     * @return query request.
+     */
+    static QueryRequest studentQuery(
+            String studentId,
+            Instant from,
+            Instant to,
+            int pageSize,
+            String cursor) {
+
+        checkValidId(studentId);
+
+        return query("studentId", studentId, from, to, pageSize, cursor)
+                .withTableName(LESSON_TABLE)
+                .withIndexName(STUDENT_INDEX);
+    }
+
+    /**
+     * Build query by hash key and optional startTime range.
+     *
+     * @param hashKeyName name of the hash key attribute.
+     * @param hashKey value of the hash key.
+     * @param from optional starting date.
+     * @param to optional ending date.
+     * @param pageSize maximum number of lessons.
+     * @param cursor cursor of the page, null for the first one.
+     * @return query request without table and index.
+     */
+    private static QueryRequest query(
+            String hashKeyName,
+            String hashKey,
+            Instant from,
+            Instant to,
+            int pageSize,
+            String cursor) {
+
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":hashKey", new AttributeValue(hashKey));
+
+        String keyCondition = hashKeyName + " = :hashKey";
+
+        if (from != null) {
+            values.put(":from", new AttributeValue(Iso8601.format(from)));
+
+            if (to != null) {
+                values.put(":to", new AttributeValue(Iso8601.format(to)));
+                keyCondition += " AND startTime BETWEEN :from AND :to";
+            } else {
+                keyCondition += " AND startTime >= :from";
+            }
+        }
+
+        return new QueryRequest()
+                .withKeyConditionExpression(keyCondition)
+                .withExpressionAttributeValues(values)
+                .withLimit(pageSize)
+                .withExclusiveStartKey(LessonCursor.decode(cursor))
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Resolve requested page size.
+     *
+     * @param config dynamo configuration.
+     * @param limit requested page size, may be null.
+     * @return page size within configured bounds.
+     */
+    static int pageSize(DynamoConfiguration config, Integer limit) {
+        if (limit == null) {
+            return config.getPageSize();
+        }
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        return Math.min(limit, config.getMaxPageSize());
+    }
+
+    /**
+     * Check format of id
+     *
+     * <p>If the format is invalid, method will cause
+     * runtime exception.
+     *
+     * @param id
+     */
+    static void checkValidId(String id) {
+        if (id == null) throw new IllegalArgumentException("ID cannot be null");
+        if (id.length() == 0) throw new IllegalArgumentException("ID cannot be empty string");
+        UUID.fromString(id);
+    }
+}
@@ -0,0 +1,332 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Storage of lessons.
+ *
+ * <p>Lessons are partitioned by instructorId and sorted by
+ * startTime inside of the partition. Lessons of student are
+ * accessible by index StudentIdStartTime, sorted by startTime.
+ * Lessons of all instructors are accessible by index DayStartTime
+ * and free lessons by sparse index AvailableDayStartTime, both
+ * partitioned by day of startTime, which is set by the store.
+ *
+ * <p>Aggregate of completed hours is kept per student. Booking
+ * changes of lessons which are already counted in it adjust
+ * the aggregate, the rest is folded in by readers.
+ *
+ * <p>Implementations are selected by spring profile:
+ * DynamoDao by default, InMemoryLessonStore with profile memory.
+ *
+ * @see DynamoDao
+ * @see InMemoryLessonStore
+ */
+public interface LessonStore {
+
+    /**
+     * Get list of lessons by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @return list of lessons.
+     */
+    List<Lesson> getLessonsByInstructor(String instructorId);
+
+    /**
+     * Get single page of lessons by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    LessonPage getLessonsByInstructor(String instructorId, Integer limit, String cursor);
+
+    /**
+     * Get list of lessons by instructor since date.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param since the date since which the lessons should be fetched.
+     * @return list of lessons.
+     */
+    List<Lesson> getLessonsByInstructorSince(String instructorId, Instant since);
+
+    /**
+     * Get single page of lessons by instructor since date.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param since the date since which the lessons should be fetched.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    LessonPage getLessonsByInstructorSince(String instructorId, Instant since, Integer limit, String cursor);
+
+    /**
+     * Get list of lessons within the date range by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param from starting date.
+     * @param to ending date.
+     * @return list of lessons.
+     */
+    List<Lesson> getLessonsByInstructorRange(String instructorId, Instant from, Instant to);
+
+    /**
+     * Get single page of lessons within the date range by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param from starting date.
+     * @param to ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    LessonPage getLessonsByInstructorRange(
+            String instructorId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor);
+
+    /**
+     * Get list of lessons by student.
+     *
+     * @param studentId an unique id of student.
+     * @return list of lessons.
+     */
+    List<Lesson> getLessonsByStudent(String studentId);
+
+    /**
+     * Get lessons for which the student waits.
+     *
+     * <p>Waitlist is not indexed, so the lessons may be found
+     * by a separate record of the student. Meant for rare
+     * operations, such as deletion of student.
+     *
+     * @param studentId an unique id of student.
+     * @return list of lessons.
+     */
+    List<Lesson> getLessonsWaitedByStudent(String studentId);
+
+    /**
+     * Get single page of lessons by student.
+     *
+     * @param studentId an unique id of student.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    LessonPage getLessonsByStudent(String studentId, Integer limit, String cursor);
+
+    /**
+     * Get list of lessons by student since date.
+     *
+     * @param studentId an unique id of student.
+     * @param since the date since which the lessons should be fetched.
+     * @return list of lessons.
+     */
+    List<Lesson> getLessonsByStudentSince(String studentId, Instant since);
+
+    /**
+     * Get single page of lessons by student since date.
+     *
+     * @param studentId an unique id of student.
+     * @param since the date since which the lessons should be fetched.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    LessonPage getLessonsByStudentSince(String studentId, Instant since, Integer limit, String cursor);
+
+    /**
+     * Get list of lessons within the date range by student.
+     *
+     * @param studentId an unique id of student.
+     * @param from starting date.
+     * @param to ending date.
+     * @return list of lessons.
+     */
+    List<Lesson> getLessonsByStudentRange(String studentId, Instant from, Instant to);
+
+    /**
+     * Get single page of lessons within the date range by student.
+     *
+     * @param studentId an unique id of student.
+     * @param from starting date.
+     * @param to ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons.
+     */
+    LessonPage getLessonsByStudentRange(
+            String studentId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor);
+
+    /**
+     * Get single page of lessons of all instructors which start on single day.
+     *
+     * @param day day bucket of index DayStartTime, yyyy-MM-dd.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons sorted by start time.
+     */
+    LessonPage getLessonsByDay(String day, Integer limit, String cursor);
+
+    /**
+     * Get single page of lessons of all instructors which start
+     * on single day within the date range.
+     *
+     * @param day day bucket of index DayStartTime, yyyy-MM-dd.
+     * @param from starting date.
+     * @param to ending date.
+     * @param limit maximum number of lessons, default page size if null.
+     * @param cursor cursor returned with previous page, null for the first page.
+     * @return page of lessons sorted by start time.
+     */
+    LessonPage getLessonsByDayRange(String day, Instant from, Instant to, Integer limit, String cursor);
+
+    /**
+     * Get free lessons of all instructors which start on single
+     * day within the date range.
+     *
+     * @param day day bucket of index AvailableDayStartTime, yyyy-MM-dd.
+     * @param from starting date.
+     * @param to ending date.
+     * @return list of lessons sorted by start time.
+     */
+    List<Lesson> getAvailableLessons(String day, Instant from, Instant to);
+
+    /**
+     * Get details of single lesson by instructor.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @return lesson instance or null if it does not exist.
+     */
+    Lesson getLessonByInstructor(String instructorId, Instant startTime);
+
+    /**
+     * Get details of single lesson by student.
+     *
+     * @param studentId an unique id of student.
+     * @param startTime start time of the lesson.
+     * @return lesson instance or null if it does not exist.
+     */
+    Lesson getLessonByStudent(String studentId, Instant startTime);
+
+    /**
+     * Create new lesson, if it does not exist yet.
+     *
+     * @param lesson lesson which should be created.
+     * @return true if lesson was created, false if it already exists.
+     */
+    boolean createLesson(Lesson lesson);
+
+    /**
+     * Delete multiple lessons.
+     *
+     * @param lessons lessons which should be deleted.
+     * @return lessons which could not be deleted.
+     */
+    List<Lesson> batchDeleteLessons(List<Lesson> lessons);
+
+    /**
+     * Delete lesson.
+     *
+     * @param lesson lesson which should be deleted.
+     */
+    void deleteLesson(Lesson lesson);
+
+    /**
+     * Update lesson, it is created if it does not exist.
+     *
+     * <p>if ignoreNullAttrs is true, corresponding null
+     * params in lesson will be unchanged.
+     *
+     * @param lesson lesson which should be updated.
+     * @param ignoreNullAttrs ignore null attributes.
+     */
+    void updateLesson(Lesson lesson, boolean ignoreNullAttrs);
+
+    /**
+     * Atomically register student to free lesson.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of student.
+     * @param studentName name of the student.
+     * @return updated lesson or null if lesson does not exist
+     * or another student is already registered to it.
+     */
+    Lesson registerStudent(String instructorId, Instant startTime, String studentId, String studentName);
+
+    /**
+     * Atomically unregister student from lesson.
+     *
+     * <p>If somebody waits for the lesson, the first waiting
+     * student is registered by the same atomic write, so the
+     * lesson is never free in between. Waiting students with
+     * dynamo.max-student-bookings future lessons are skipped and
+     * keep waiting. If none of waiting students can be registered,
+     * the lesson is freed and its waitlist is cleared.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of currently registered student.
+     * @return updated lesson or null if lesson does not exist
+     * or the student is not registered to it.
+     */
+    Lesson unregisterStudent(String instructorId, Instant startTime, String studentId);
+
+    /**
+     * Atomically append student to waitlist of lesson booked
+     * by another student.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of student.
+     * @param studentName name of the student.
+     * @return updated lesson or null if lesson does not exist, is free,
+     * the student is registered or waits already, or waitlist is full.
+     */
+    Lesson joinWaitlist(String instructorId, Instant startTime, String studentId, String studentName);
+
+    /**
+     * Atomically remove student from waitlist of lesson.
+     *
+     * @param instructorId an unique id of instructor.
+     * @param startTime start time of the lesson.
+     * @param studentId an unique id of waiting student.
+     * @return updated lesson or null if lesson does not exist
+     * or the student does not wait for it.
+     */
+    Lesson leaveWaitlist(String instructorId, Instant startTime, String studentId);
+
+    /**
+     * Get aggregate of completed hours of student, read consistently.
+     *
+     * @param studentId an unique id of student.
+     * @return aggregate, empty one with revision 0 if it does not exist yet.
+     */
+    CompletedHours getCompletedHours(String studentId);
+
+    /**
+     * Atomically add duration of lessons after the watermark of
+     * aggregate and move the watermark.
+     *
+     * @param hours aggregate as it was read.
+     * @param millis duration of lessons after the old watermark up to the new one.
+     * @param watermark new watermark.
+     * @return true if advanced, false if aggregate was written since it was read.
+     */
+    boolean advanceCompletedHours(CompletedHours hours, long millis, Instant watermark);
+}
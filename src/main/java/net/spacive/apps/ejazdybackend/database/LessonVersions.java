@@ -0,0 +1,90 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of lesson partitions.
+ *
+ * <p>Every write of lesson bumps version of partition of its
+ * instructor and of its student, so lessons of user cannot
+ * change without change of the version. Versions are used as
+ * ETags of lesson listings.
+ *
+ * <p>This implementation keeps versions in memory of this instance,
+ * they start with new epoch after restart. It is used with
+ * InMemoryLessonStore, whose lessons are never written by another
+ * instance. Versions of lessons in DynamoDB are persisted by
+ * LessonVersionsTable.
+ *
+ * @see LessonVersionsTable
+ */
+@Component
+@Profile("memory")
+public class LessonVersions {
+
+    /**
+     * Epoch of versions, distinguishes versions before and after restart.
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Versions by id of instructor or student.
+     */
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Current version of lessons of user.
+     *
+     * @param userId an unique id of instructor or student.
+     * @return version, changes after every write of user's lessons.
+     */
+    public String version(String userId) {
+        final AtomicLong version = versions.get(userId);
+        return epoch + "." + (version != null ? version.get() : 0);
+    }
+
+    /**
+     * Bump versions of instructor and student of lesson.
+     *
+     * @param lesson written lesson, may be null.
+     */
+    void bump(Lesson lesson) {
+        if (lesson != null) {
+            bump(lesson.getInstructorId());
+            bump(lesson.getStudentId());
+        }
+    }
+
+    /**
+     * Bump version of user.
+     *
+     * @param userId an unique id of instructor or student, may be null.
+     */
+    void bump(String userId) {
+        if (userId != null) {
+            versions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Bump versions of users without blocking.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param userIds ids of instructors or students, may be null.
+     * @return future completed when all versions are bumped.
+     */
+    CompletableFuture<Void> bumpAsync(AmazonDynamoDBAsync dynamoDBAsync, String... userIds) {
+        for (String userId : userIds) {
+            bump(userId);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+}
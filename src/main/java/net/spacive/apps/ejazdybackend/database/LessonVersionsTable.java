@@ -0,0 +1,139 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Access to table LessonVersion, versions of lesson
+ * partitions persisted in DynamoDB.
+ *
+ * <p>Version of user is a counter, which is incremented by
+ * UpdateItem after every write of user's lessons. Versions are
+ * shared by all instances and survive restarts, so ETags of
+ * lesson listings are valid in deployment with several
+ * instances. Version is read consistently, so listing confirmed
+ * by ETag costs single GetItem instead of query.
+ */
+@Component
+@Profile("!memory")
+public class LessonVersionsTable extends LessonVersions {
+
+    /**
+     * Name of the table of versions.
+     */
+    static final String VERSIONS_TABLE = "LessonVersion";
+
+    /**
+     * reference to low level dynamo db client.
+     */
+    private final AmazonDynamoDB dynamoDB;
+
+    /**
+     * Metrics of DynamoDB operations.
+     */
+    private final DynamoMetrics metrics;
+
+    /**
+     * Constructor.
+     * @param dynamoDB injected param.
+     * @param metrics injected param.
+     */
+    @Autowired
+    public LessonVersionsTable(
+            @Qualifier("dynamoDB") AmazonDynamoDB dynamoDB,
+            DynamoMetrics metrics) {
+
+        this.dynamoDB = dynamoDB;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Current version of lessons of user, read consistently.
+     *
+     * @param userId an unique id of instructor or student.
+     * @return version, changes after every write of user's lessons.
+     */
+    @Override
+    public String version(String userId) {
+        final Map<String, AttributeValue> item = metrics.record(
+                Operation.GET_LESSON_VERSION,
+                () -> dynamoDB.getItem(new GetItemRequest()
+                        .withTableName(VERSIONS_TABLE)
+                        .withKey(key(userId))
+                        .withConsistentRead(true)).getItem(),
+                found -> found != null ? 1 : 0,
+                userId
+        );
+
+        return item != null && item.get("version") != null ? item.get("version").getN() : "0";
+    }
+
+    /**
+     * Bump version of user.
+     *
+     * @param userId an unique id of instructor or student, may be null.
+     */
+    @Override
+    void bump(String userId) {
+        if (userId != null) {
+            metrics.record(
+                    Operation.BUMP_LESSON_VERSION,
+                    () -> dynamoDB.updateItem(bumpRequest(userId)) != null,
+                    bumped -> 1,
+                    userId
+            );
+        }
+    }
+
+    /**
+     * Bump versions of users by concurrent updates.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param userIds ids of instructors or students, may be null.
+     * @return future completed when all versions are bumped.
+     */
+    @Override
+    CompletableFuture<Void> bumpAsync(AmazonDynamoDBAsync dynamoDBAsync, String... userIds) {
+        return CompletableFuture.allOf(Arrays.stream(userIds)
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(userId -> AsyncCalls.updateItem(
+                        dynamoDBAsync,
+                        metrics,
+                        Operation.BUMP_LESSON_VERSION,
+                        bumpRequest(userId),
+                        userId
+                ))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Increment of version of user, the item is created by
+     * the first increment.
+     */
+    private static UpdateItemRequest bumpRequest(String userId) {
+        return new UpdateItemRequest()
+                .withTableName(VERSIONS_TABLE)
+                .withKey(key(userId))
+                .withUpdateExpression("ADD version :one")
+                .withExpressionAttributeValues(Collections.singletonMap(":one", new AttributeValue().withN("1")));
+    }
+
+    private static Map<String, AttributeValue> key(String userId) {
+        return Collections.singletonMap("userId", new AttributeValue(userId));
+    }
+}
@@ -0,0 +1,395 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics.Operation;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.StudentBookings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Access to table StudentBookings, counters of future
+ * bookings of students and their waitlists.
+ *
+ * <p>Key of lesson is added by conditional update, which is
+ * written in single TransactWriteItems with registration of
+ * the lesson, so concurrent bookings of one student never
+ * exceed dynamo.max-student-bookings and nothing has to be
+ * released when registration fails. Unregistration and
+ * promotion from waitlist move keys in the same way. Only
+ * deletion of lesson releases its key by separate update.
+ *
+ * <p>Lessons which already started are not counted. Their keys are
+ * removed only when the limit is reached, so booking costs no reads.
+ *
+ * <p>Keys of lessons for which the student waits are written by the
+ * same transactions as waitlist of the lesson. Keys of lessons which
+ * were deleted meanwhile are removed when they are read.
+ *
+ * <p>Bookings are not written if the limit is 0.
+ *
+ * @see StudentBookings
+ * @see Transactions
+ */
+@Component
+@Profile("!memory")
+public class StudentBookingsTable {
+
+    /**
+     * Name of the table of counters.
+     */
+    static final String BOOKINGS_TABLE =
+            StudentBookings.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    /**
+     * reference to dynamo db mapper, used only for conversion
+     * of items to counters.
+     */
+    private final DynamoDBMapper dbMapper;
+
+    /**
+     * reference to low level dynamo db client.
+     */
+    private final AmazonDynamoDB dynamoDB;
+
+    /**
+     * Reference to dynamo configuration, used for the limit.
+     */
+    private final DynamoConfiguration config;
+
+    /**
+     * Metrics of DynamoDB operations.
+     */
+    private final DynamoMetrics metrics;
+
+    /**
+     * Constructor.
+     * @param dbMapper injected param.
+     * @param dynamoDB injected param.
+     * @param config injected param.
+     * @param metrics injected param.
+     */
+    @Autowired
+    public StudentBookingsTable(
+            DynamoDBMapper dbMapper,
+            @Qualifier("dynamoDB") AmazonDynamoDB dynamoDB,
+            DynamoConfiguration config,
+            DynamoMetrics metrics) {
+
+        this.dbMapper = dbMapper;
+        this.dynamoDB = dynamoDB;
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Release booking of deleted lesson.
+     *
+     * @param lesson the lesson with instructorId and startTime.
+     * @param studentId an unique id of student, may be null.
+     */
+    void release(Lesson lesson, String studentId) {
+        if (studentId != null && counted(lesson)) {
+            metrics.record(
+                    Operation.RELEASE_BOOKING,
+                    () -> dynamoDB.updateItem(releaseRequest(lesson, studentId)) != null,
+                    released -> 1,
+                    studentId, lesson.getStartTime()
+            );
+        }
+    }
+
+    /**
+     * Release bookings of several lessons of one student by
+     * single update, such as lessons deleted by batch.
+     *
+     * @param studentId an unique id of student, may be null.
+     * @param lessons lessons with instructorId and startTime.
+     */
+    void releaseAll(String studentId, List<Lesson> lessons) {
+        final List<String> released = lessons.stream()
+                .filter(this::counted)
+                .map(StudentBookings::keyOf)
+                .collect(Collectors.toList());
+
+        if (studentId != null && !released.isEmpty()) {
+            metrics.record(
+                    Operation.RELEASE_BOOKING,
+                    () -> dynamoDB.updateItem(change("DELETE", "bookings", studentId, released)) != null,
+                    removed -> released.size(),
+                    studentId
+            );
+        }
+    }
+
+    /**
+     * Keys of lessons for which the student waits, read consistently.
+     *
+     * @param studentId an unique id of student.
+     * @return keys of lessons, see StudentBookings.keyOf.
+     */
+    List<String> waitlisted(String studentId) {
+        final GetItemRequest request = bookingsRequest(studentId);
+
+        final Map<String, AttributeValue> item = metrics.record(
+                Operation.GET_STUDENT_BOOKINGS,
+                () -> dynamoDB.getItem(request).getItem(),
+                found -> found != null ? 1 : 0,
+                studentId
+        );
+
+        final StudentBookings bookings = item != null
+                ? dbMapper.marshallIntoObject(StudentBookings.class, item)
+                : null;
+
+        return bookings != null && bookings.getWaitlisted() != null
+                ? new ArrayList<>(bookings.getWaitlisted())
+                : Collections.emptyList();
+    }
+
+    /**
+     * Remove keys of lessons for which the student does not wait,
+     * such as deleted lessons.
+     *
+     * @param studentId an unique id of student.
+     * @param keys keys of lessons.
+     */
+    void removeWaitlisted(String studentId, List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        // removing keys is idempotent, no condition needed
+        metrics.record(
+                Operation.REMOVE_WAITLISTED_LESSONS,
+                () -> dynamoDB.updateItem(change("DELETE", "waitlisted", studentId, keys)) != null,
+                removed -> keys.size(),
+                studentId
+        );
+    }
+
+    /**
+     * Remove keys of lessons which already started.
+     *
+     * @param studentId an unique id of student.
+     * @return true if some key was removed.
+     */
+    boolean removeStarted(String studentId) {
+        final GetItemRequest request = bookingsRequest(studentId);
+
+        final Map<String, AttributeValue> item = metrics.record(
+                Operation.GET_STUDENT_BOOKINGS,
+                () -> dynamoDB.getItem(request).getItem(),
+                found -> found != null ? 1 : 0,
+                studentId
+        );
+
+        final List<String> started = started(item);
+        if (started.isEmpty()) {
+            return false;
+        }
+
+        // removing keys of started lessons is idempotent, no condition needed
+        metrics.record(
+                Operation.REMOVE_STARTED_BOOKINGS,
+                () -> dynamoDB.updateItem(change("DELETE", "bookings", studentId, started)) != null,
+                removed -> started.size(),
+                studentId
+        );
+        return true;
+    }
+
+    /**
+     * Asynchronous variant of removeStarted.
+     *
+     * @param dynamoDBAsync asynchronous client.
+     * @param studentId an unique id of student.
+     * @return future true if some key was removed.
+     */
+    CompletableFuture<Boolean> removeStartedAsync(AmazonDynamoDBAsync dynamoDBAsync, String studentId) {
+        return AsyncCalls.getItem(dynamoDBAsync, metrics, Operation.GET_STUDENT_BOOKINGS,
+                bookingsRequest(studentId), studentId)
+                .thenCompose(result -> {
+                    final List<String> started = started(result.getItem());
+                    if (started.isEmpty()) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+
+                    return AsyncCalls.updateItem(dynamoDBAsync, metrics, Operation.REMOVE_STARTED_BOOKINGS,
+                            change("DELETE", "bookings", studentId, started), studentId)
+                            .thenApply(removed -> true);
+                });
+    }
+
+    /**
+     * Consistent read of counter of student.
+     *
+     * @param studentId an unique id of student.
+     * @return the read.
+     */
+    private static GetItemRequest bookingsRequest(String studentId) {
+        return new GetItemRequest()
+                .withTableName(BOOKINGS_TABLE)
+                .withKey(key(studentId))
+                .withConsistentRead(true);
+    }
+
+    /**
+     * Keys of lessons which already started.
+     *
+     * @param item item of counter, may be null.
+     * @return keys of started lessons.
+     */
+    private List<String> started(Map<String, AttributeValue> item) {
+        final StudentBookings bookings = item != null
+                ? dbMapper.marshallIntoObject(StudentBookings.class, item)
+                : null;
+
+        if (bookings == null || bookings.getBookings() == null) {
+            return Collections.emptyList();
+        }
+
+        final Instant now = Instant.now();
+        return bookings.getBookings().stream()
+                .filter(booking -> !StudentBookings.startTimeOf(booking).isAfter(now))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Whether booking of lesson is counted.
+     *
+     * @param lesson the lesson.
+     * @return true if limit is enabled and lesson has not started.
+     */
+    boolean counted(Lesson lesson) {
+        return config.getMaxStudentBookings() > 0
+                && lesson.getStartTime() != null
+                && lesson.getStartTime().isAfter(Instant.now());
+    }
+
+    /**
+     * Conditional ADD of key of lesson, which fails if the
+     * student has too many future bookings. Key which the
+     * student holds already is added again.
+     *
+     * @param lesson the lesson with instructorId and startTime.
+     * @param studentId an unique id of student.
+     * @return the update.
+     */
+    UpdateItemRequest reserveRequest(Lesson lesson, String studentId) {
+        final List<String> keys = Collections.singletonList(StudentBookings.keyOf(lesson));
+        return limited(change("ADD", "bookings", studentId, keys), lesson);
+    }
+
+    /**
+     * Unconditional DELETE of key of lesson.
+     *
+     * @param lesson the lesson with instructorId and startTime.
+     * @param studentId an unique id of student.
+     * @return the update.
+     */
+    UpdateItemRequest releaseRequest(Lesson lesson, String studentId) {
+        return change("DELETE", "bookings", studentId, Collections.singletonList(StudentBookings.keyOf(lesson)));
+    }
+
+    /**
+     * Update of student promoted from waitlist, which removes key
+     * of lesson from waitlisted and adds it to bookings, if the
+     * lesson is counted, with the same condition as reserveRequest.
+     *
+     * @param lesson the lesson with instructorId and startTime.
+     * @param studentId an unique id of promoted student.
+     * @return the update.
+     */
+    UpdateItemRequest promoteRequest(Lesson lesson, String studentId) {
+        final UpdateItemRequest request = change("DELETE", "waitlisted", studentId,
+                Collections.singletonList(StudentBookings.keyOf(lesson)));
+
+        return counted(lesson)
+                ? limited(request.withUpdateExpression("ADD bookings :keys " + request.getUpdateExpression()), lesson)
+                : request;
+    }
+
+    /**
+     * Unconditional ADD of key of lesson to waitlisted.
+     *
+     * @param lesson the lesson with instructorId and startTime.
+     * @param studentId an unique id of waiting student.
+     * @return the update.
+     */
+    UpdateItemRequest waitRequest(Lesson lesson, String studentId) {
+        return change("ADD", "waitlisted", studentId, Collections.singletonList(StudentBookings.keyOf(lesson)));
+    }
+
+    /**
+     * Unconditional DELETE of key of lesson from waitlisted.
+     *
+     * @param lesson the lesson with instructorId and startTime.
+     * @param studentId an unique id of student which stops waiting.
+     * @return the update.
+     */
+    UpdateItemRequest leaveRequest(Lesson lesson, String studentId) {
+        return change("DELETE", "waitlisted", studentId, Collections.singletonList(StudentBookings.keyOf(lesson)));
+    }
+
+    /**
+     * Add condition on the limit of bookings to update of set bookings.
+     *
+     * @param request update adding key of lesson.
+     * @param lesson the lesson with instructorId and startTime.
+     * @return the same update.
+     */
+    private UpdateItemRequest limited(UpdateItemRequest request, Lesson lesson) {
+        final Map<String, AttributeValue> values = new HashMap<>(request.getExpressionAttributeValues());
+        values.put(":booking", new AttributeValue(StudentBookings.keyOf(lesson)));
+        values.put(":max", new AttributeValue().withN(Integer.toString(config.getMaxStudentBookings())));
+
+        return request
+                .withConditionExpression("attribute_not_exists(bookings)"
+                        + " OR size(bookings) < :max OR contains(bookings, :booking)")
+                .withExpressionAttributeValues(values);
+    }
+
+    /**
+     * Unconditional change of set of keys.
+     *
+     * @param action ADD or DELETE.
+     * @param set bookings or waitlisted.
+     * @param studentId an unique id of student.
+     * @param bookings keys of lessons.
+     * @return the update.
+     */
+    private static UpdateItemRequest change(String action, String set, String studentId, List<String> bookings) {
+        return new UpdateItemRequest()
+                .withTableName(BOOKINGS_TABLE)
+                .withKey(key(studentId))
+                .withUpdateExpression(action + " " + set + " :keys")
+                .withExpressionAttributeValues(Collections.singletonMap(":keys", keys(bookings)));
+    }
+
+    private static Map<String, AttributeValue> key(String studentId) {
+        return Collections.singletonMap("studentId", new AttributeValue(studentId));
+    }
+
+    private static AttributeValue keys(List<String> bookings) {
+        return new AttributeValue().withSS(bookings);
+    }
+}
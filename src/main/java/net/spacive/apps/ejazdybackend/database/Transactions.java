@@ -0,0 +1,214 @@
+package net.spacive.apps.ejazdybackend.database;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnValuesOnConditionCheckFailure;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.Update;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builders and execution of TransactWriteItems, which write
+ * a lesson together with counters of bookings and waitlisted
+ * lessons of students.
+ *
+ * <p>Transaction is either written as a whole or cancelled,
+ * reasons of cancellation are returned per item in the order
+ * of the items. Transaction cancelled for other reason than
+ * failed condition, such as conflict with another transaction,
+ * fails as any other error.
+ */
+final class Transactions {
+
+    /**
+     * Code of cancellation reason of item whose condition failed.
+     */
+    static final String CONDITION_FAILED = "ConditionalCheckFailed";
+
+    /**
+     * Code of cancellation reason of item which did not fail.
+     */
+    static final String NONE = "None";
+
+    private Transactions() {
+    }
+
+    /**
+     * Transaction of several updates, which reports consumed capacity.
+     *
+     * @param updates items of the transaction.
+     * @return the transaction.
+     */
+    static TransactWriteItemsRequest request(TransactWriteItem... updates) {
+        return new TransactWriteItemsRequest()
+                .withTransactItems(updates)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+    }
+
+    /**
+     * Transaction of several updates, which reports consumed capacity.
+     *
+     * @param updates items of the transaction.
+     * @return the transaction.
+     */
+    static TransactWriteItemsRequest request(List<TransactWriteItem> updates) {
+        return request(updates.toArray(new TransactWriteItem[0]));
+    }
+
+    /**
+     * Transaction promoting waiting student at position.
+     *
+     * <p>Key of the lesson is moved from waitlisted lessons to
+     * bookings of the promoted student and, if the lesson is
+     * counted, released from bookings of the registered student.
+     *
+     * @param bookings counters of bookings.
+     * @param current lesson as it was read.
+     * @param studentId an unique id of currently registered student.
+     * @param position position of the promoted student in waitlist.
+     * @return the transaction, counter of the promoted student is its second item.
+     */
+    static TransactWriteItemsRequest promote(
+            StudentBookingsTable bookings,
+            Lesson current,
+            String studentId,
+            int position) {
+
+        final String nextId = current.getWaitlist().get(position);
+        final List<TransactWriteItem> items = new ArrayList<>();
+
+        items.add(update(LessonRequests.promoteWaitlist(
+                current.getInstructorId(),
+                current.getStartTime(),
+                studentId,
+                nextId,
+                current.getWaitlistNames().get(position),
+                position
+        )));
+        items.add(update(bookings.promoteRequest(current, nextId)));
+        if (bookings.counted(current)) {
+            items.add(update(bookings.releaseRequest(current, studentId)));
+        }
+
+        return request(items);
+    }
+
+    /**
+     * Transaction unregistering student and clearing waitlist
+     * of which nobody can be promoted.
+     *
+     * @param bookings counters of bookings.
+     * @param current lesson as it was read.
+     * @param studentId an unique id of currently registered student.
+     * @return the transaction.
+     */
+    static TransactWriteItemsRequest clear(StudentBookingsTable bookings, Lesson current, String studentId) {
+        final List<TransactWriteItem> items = new ArrayList<>();
+
+        items.add(update(LessonRequests.unregisterStudent(
+                current.getInstructorId(),
+                current.getStartTime(),
+                studentId,
+                current.getWaitlist()
+        )));
+        if (bookings.counted(current)) {
+            items.add(update(bookings.releaseRequest(current, studentId)));
+        }
+        for (String waitingId : current.getWaitlist()) {
+            items.add(update(bookings.leaveRequest(current, waitingId)));
+        }
+
+        return request(items);
+    }
+
+    /**
+     * Item of transaction with the same update as single UpdateItem.
+     *
+     * <p>Transaction returns no values on success, the item as it
+     * was is returned in cancellation reason if its condition fails.
+     *
+     * @param request the update, its return values are ignored.
+     * @return item of transaction.
+     */
+    static TransactWriteItem update(UpdateItemRequest request) {
+        return new TransactWriteItem().withUpdate(new Update()
+                .withTableName(request.getTableName())
+                .withKey(request.getKey())
+                .withUpdateExpression(request.getUpdateExpression())
+                .withConditionExpression(request.getConditionExpression())
+                .withExpressionAttributeValues(request.getExpressionAttributeValues())
+                .withReturnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD));
+    }
+
+    /**
+     * Execute transaction.
+     *
+     * @param dynamoDB blocking client.
+     * @param request the transaction.
+     * @return empty list if written, otherwise reasons of cancellation per item.
+     */
+    static List<CancellationReason> write(AmazonDynamoDB dynamoDB, TransactWriteItemsRequest request) {
+        try {
+            dynamoDB.transactWriteItems(request);
+            return Collections.emptyList();
+        } catch (TransactionCanceledException e) {
+            return reasons(e);
+        }
+    }
+
+    /**
+     * Reasons of transaction cancelled by failed conditions.
+     *
+     * @param e the cancellation.
+     * @return reasons per item.
+     * @throws TransactionCanceledException if some item failed for other reason.
+     */
+    static List<CancellationReason> reasons(TransactionCanceledException e) {
+        final List<CancellationReason> reasons = e.getCancellationReasons() != null
+                ? e.getCancellationReasons()
+                : Collections.emptyList();
+
+        final boolean conditional = reasons.stream()
+                .anyMatch(reason -> CONDITION_FAILED.equals(reason.getCode()));
+        final boolean other = reasons.stream()
+                .anyMatch(reason -> !Arrays.asList(NONE, CONDITION_FAILED).contains(reason.getCode()));
+
+        if (!conditional || other) {
+            throw e;
+        }
+        return reasons;
+    }
+
+    /**
+     * Whether condition of item failed.
+     *
+     * @param reasons reasons of cancellation, empty if written.
+     * @param index index of the item in transaction.
+     * @return true if the condition of the item failed.
+     */
+    static boolean failed(List<CancellationReason> reasons, int index) {
+        return index < reasons.size() && CONDITION_FAILED.equals(reasons.get(index).getCode());
+    }
+
+    /**
+     * Item as it was, when its condition failed.
+     *
+     * @param reasons reasons of cancellation, empty if written.
+     * @param index index of the item in transaction.
+     * @return the item or null if it does not exist or did not fail.
+     */
+    static Map<String, AttributeValue> item(List<CancellationReason> reasons, int index) {
+        return failed(reasons, index) ? reasons.get(index).getItem() : null;
+    }
+}
@@ -0,0 +1,139 @@
+package net.spacive.apps.ejazdybackend.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverted;
+
+import java.time.Instant;
+
+/**
+ * This class is a model of aggregate in DynamoDB table
+ * CompletedHours, one item per student.
+ *
+ * <p>Aggregate holds total duration of lessons of the student
+ * which started before the watermark. Lessons after the
+ * watermark are folded in when hours are read.
+ */
+@DynamoDBTable(tableName="CompletedHours")
+public class CompletedHours {
+
+    /**
+     * An unique id of the student, the hash key.
+     */
+    private String studentId;
+
+    /**
+     * Total duration of lessons before the watermark in milliseconds.
+     */
+    private long completedMillis;
+
+    /**
+     * Start time of lessons up to which completedMillis is
+     * counted, null if no lesson was counted yet.
+     */
+    private Instant watermark;
+
+    /**
+     * Incremented by every write of the aggregate, so that
+     * concurrent writes can be detected.
+     */
+    private long revision;
+
+    @DynamoDBHashKey
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    @DynamoDBAttribute
+    public long getCompletedMillis() {
+        return completedMillis;
+    }
+
+    public void setCompletedMillis(long completedMillis) {
+        this.completedMillis = completedMillis;
+    }
+
+    @DynamoDBAttribute
+    @DynamoDBTypeConverted(converter = InstantConverter.class)
+    public Instant getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(Instant watermark) {
+        this.watermark = watermark;
+    }
+
+    @DynamoDBAttribute
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public CompletedHours withStudentId(String studentId) {
+        this.studentId = studentId;
+        return this;
+    }
+
+    public CompletedHours withCompletedMillis(long completedMillis) {
+        this.completedMillis = completedMillis;
+        return this;
+    }
+
+    public CompletedHours withWatermark(Instant watermark) {
+        this.watermark = watermark;
+        return this;
+    }
+
+    public CompletedHours withRevision(long revision) {
+        this.revision = revision;
+        return this;
+    }
+
+    /**
+     * Duration of lesson counted in the aggregate.
+     *
+     * @param lesson the lesson.
+     * @return milliseconds between start and stop, 0 if stop is not after start.
+     */
+    public static long durationOf(Lesson lesson) {
+        if (lesson.getStartTime() == null || lesson.getStopTime() == null) {
+            return 0;
+        }
+
+        final long duration = lesson.getStopTime().toEpochMilli() - lesson.getStartTime().toEpochMilli();
+        return duration > 0 ? duration : 0;
+    }
+
+    /**
+     * Whether lesson is already counted in completedMillis.
+     *
+     * @param startTime start time of the lesson.
+     * @return true if the lesson is not after the watermark.
+     */
+    public boolean covers(Instant startTime) {
+        return watermark != null && !startTime.isAfter(watermark);
+    }
+
+    /**
+     * To string
+     *
+     * @return to string
+     */
+    @Override
+    public String toString() {
+        return "CompletedHours{" +
+                "studentId='" + studentId + '\'' +
+                ", completedMillis=" + completedMillis +
+                ", watermark='" + watermark + '\'' +
+                ", revision=" + revision +
+                '}';
+    }
+}
@@ -0,0 +1,26 @@
+package net.spacive.apps.ejazdybackend.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverter;
+
+import java.time.Instant;
+
+/**
+ * Converter of instants stored in DynamoDB.
+ *
+ * <p>Instants are stored as ISO8601 strings in UTC with
+ * milliseconds, the same as Calendar and Date are stored
+ * by DynamoDBMapper, so existing items are readable and
+ * string order of keys is the order of time.
+ */
+public class InstantConverter implements DynamoDBTypeConverter<String, Instant> {
+
+    @Override
+    public String convert(Instant instant) {
+        return Iso8601.format(instant);
+    }
+
+    @Override
+    public Instant unconvert(String value) {
+        return Iso8601.parse(value);
+    }
+}
@@ -0,0 +1,89 @@
+package net.spacive.apps.ejazdybackend.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * JSON representation of instants in lessons.
+ *
+ * <p>Instants are written as yyyy-MM-ddTHH:mm:ss.SSS+0000,
+ * which is how dates were written by default date format.
+ * Strings in ISO8601 and numbers of milliseconds since
+ * epoch are accepted.
+ */
+public final class InstantJson {
+
+    /**
+     * Zone written after date and time.
+     */
+    private static final char[] ZONE = {'+', '0', '0', '0', '0'};
+
+    /**
+     * Constructor.
+     */
+    private InstantJson() {
+    }
+
+    /**
+     * Serializer of instants, formats into buffer of the thread.
+     */
+    public static class Serializer extends StdScalarSerializer<Instant> {
+
+        private static final ThreadLocal<char[]> buffer =
+                ThreadLocal.withInitial(() -> new char[Iso8601.LOCAL_LENGTH + ZONE.length]);
+
+        public Serializer() {
+            super(Instant.class);
+        }
+
+        @Override
+        public void serialize(Instant value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            final char[] chars = buffer.get();
+            final int end = Iso8601.formatTo(value.toEpochMilli(), chars, 0);
+            System.arraycopy(ZONE, 0, chars, end, ZONE.length);
+            gen.writeString(chars, 0, chars.length);
+        }
+    }
+
+    /**
+     * Deserializer of instants.
+     */
+    public static class Deserializer extends StdScalarDeserializer<Instant> {
+
+        public Deserializer() {
+            super(Instant.class);
+        }
+
+        @Override
+        public Instant deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            final JsonToken token = p.getCurrentToken();
+
+            if (token == JsonToken.VALUE_STRING) {
+                final String text = p.getText().trim();
+                try {
+                    return Iso8601.parse(text);
+                } catch (IllegalArgumentException e) {
+                    return (Instant) ctxt.handleWeirdStringValue(_valueClass, text, e.getMessage());
+                }
+            }
+
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                final long millis = p.getLongValue();
+                if (millis < Iso8601.MIN_MILLIS || millis > Iso8601.MAX_MILLIS) {
+                    return (Instant) ctxt.handleWeirdNumberValue(_valueClass, millis, "year out of range 0000-9999");
+                }
+                return Instant.ofEpochMilli(millis);
+            }
+
+            return (Instant) ctxt.handleUnexpectedToken(_valueClass, p);
+        }
+    }
+}
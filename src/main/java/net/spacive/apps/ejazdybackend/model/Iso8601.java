@@ -0,0 +1,280 @@
+package net.spacive.apps.ejazdybackend.model;
+
+import java.time.Instant;
+
+/**
+ * Conversions between instants and ISO8601 strings.
+ *
+ * <p>Instants are formatted in UTC with milliseconds, e.g.
+ * 2018-05-01T10:00:00.000Z, which is the format of dates
+ * stored in DynamoDB. Only years 0000 - 9999 are supported.
+ *
+ * <p>Both directions work directly on digits without any
+ * calendar or formatter object, parsing allocates nothing
+ * but the result.
+ */
+public final class Iso8601 {
+
+    /**
+     * Milliseconds of 0000-01-01T00:00:00.000Z.
+     */
+    public static final long MIN_MILLIS = -62167219200000L;
+
+    /**
+     * Milliseconds of 9999-12-31T23:59:59.999Z.
+     */
+    public static final long MAX_MILLIS = 253402300799999L;
+
+    /**
+     * Length of date and time without zone, yyyy-MM-ddTHH:mm:ss.SSS.
+     */
+    public static final int LOCAL_LENGTH = 23;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /**
+     * Days from 0000-03-01 to 1970-01-01.
+     */
+    private static final long DAYS_0000_TO_1970 = 719468L;
+
+    private static final int DAYS_PER_ERA = 146097;
+
+    /**
+     * Constructor.
+     */
+    private Iso8601() {
+    }
+
+    /**
+     * Format instant in UTC.
+     *
+     * @param instant the instant.
+     * @return string yyyy-MM-ddTHH:mm:ss.SSSZ.
+     */
+    public static String format(Instant instant) {
+        return format(instant.toEpochMilli());
+    }
+
+    /**
+     * Format milliseconds since epoch in UTC.
+     *
+     * @param millis milliseconds since epoch.
+     * @return string yyyy-MM-ddTHH:mm:ss.SSSZ.
+     */
+    public static String format(long millis) {
+        final char[] buffer = new char[LOCAL_LENGTH + 1];
+        formatTo(millis, buffer, 0);
+        buffer[LOCAL_LENGTH] = 'Z';
+        return new String(buffer);
+    }
+
+    /**
+     * Write date and time in UTC without zone to buffer.
+     *
+     * @param millis milliseconds since epoch.
+     * @param buffer the buffer, LOCAL_LENGTH chars are written.
+     * @param offset position of the first char.
+     * @return position after the last written char.
+     */
+    public static int formatTo(long millis, char[] buffer, int offset) {
+        if (millis < MIN_MILLIS || millis > MAX_MILLIS) {
+            throw new IllegalArgumentException("year of " + millis + " is out of range 0000-9999");
+        }
+
+        final long epochDay = Math.floorDiv(millis, MILLIS_PER_DAY);
+        final int millisOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+
+        // civil date of day since epoch, years start at March
+        final long days = epochDay + DAYS_0000_TO_1970;
+        final long era = Math.floorDiv(days, DAYS_PER_ERA);
+        final int dayOfEra = (int) (days - era * DAYS_PER_ERA);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        final int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        int pos = offset;
+        pos = digits(year, 4, buffer, pos);
+        buffer[pos++] = '-';
+        pos = digits(month, 2, buffer, pos);
+        buffer[pos++] = '-';
+        pos = digits(day, 2, buffer, pos);
+        buffer[pos++] = 'T';
+        pos = digits(millisOfDay / 3600000, 2, buffer, pos);
+        buffer[pos++] = ':';
+        pos = digits(millisOfDay / 60000 % 60, 2, buffer, pos);
+        buffer[pos++] = ':';
+        pos = digits(millisOfDay / 1000 % 60, 2, buffer, pos);
+        buffer[pos++] = '.';
+        return digits(millisOfDay % 1000, 3, buffer, pos);
+    }
+
+    /**
+     * Parse ISO8601 date to instant.
+     *
+     * @param text the date.
+     * @return the instant.
+     * @see #parseMillis(CharSequence)
+     */
+    public static Instant parse(CharSequence text) {
+        return Instant.ofEpochMilli(parseMillis(text));
+    }
+
+    /**
+     * Parse ISO8601 date to milliseconds since epoch.
+     *
+     * <p>Accepted format is yyyy-MM-dd[THH:mm[:ss[.S]]][zone],
+     * where fraction of second has any number of digits, but
+     * only milliseconds are kept. Zone is Z, +HH, +HHmm or +HH:mm,
+     * if it is missing, UTC is used.
+     *
+     * @param text the date.
+     * @return milliseconds since epoch.
+     * @throws IllegalArgumentException if the date is not valid.
+     */
+    public static long parseMillis(CharSequence text) {
+        final int length = text.length();
+
+        final int year = parseDigits(text, 0, 4);
+        expect(text, 4, '-');
+        final int month = parseDigits(text, 5, 2);
+        expect(text, 7, '-');
+        final int day = parseDigits(text, 8, 2);
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millis = 0;
+        int pos = 10;
+
+        if (pos < length && (text.charAt(pos) == 'T' || text.charAt(pos) == 't')) {
+            hour = parseDigits(text, 11, 2);
+            expect(text, 13, ':');
+            minute = parseDigits(text, 14, 2);
+            pos = 16;
+
+            if (pos < length && text.charAt(pos) == ':') {
+                second = parseDigits(text, 17, 2);
+                pos = 19;
+
+                if (pos < length && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+                    final int start = ++pos;
+                    while (pos < length && isDigit(text.charAt(pos))) {
+                        if (pos - start < 3) {
+                            millis = millis * 10 + text.charAt(pos) - '0';
+                        }
+                        pos++;
+                    }
+
+                    if (pos == start) throw invalid(text);
+                    for (int digits = pos - start; digits < 3; digits++) {
+                        millis *= 10;
+                    }
+                }
+            }
+        }
+
+        int offsetSeconds = 0;
+
+        if (pos < length) {
+            final char zone = text.charAt(pos);
+
+            if (zone == 'Z' || zone == 'z') {
+                pos++;
+            } else if (zone == '+' || zone == '-') {
+                final int offsetHours = parseDigits(text, pos + 1, 2);
+                int offsetMinutes = 0;
+                pos += 3;
+
+                if (pos < length) {
+                    if (text.charAt(pos) == ':') pos++;
+                    offsetMinutes = parseDigits(text, pos, 2);
+                    pos += 2;
+                }
+
+                if (offsetHours > 18 || offsetMinutes > 59) throw invalid(text);
+                offsetSeconds = (zone == '-' ? -1 : 1) * (offsetHours * 3600 + offsetMinutes * 60);
+            } else {
+                throw invalid(text);
+            }
+        }
+
+        if (pos != length
+                || month < 1 || month > 12
+                || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            throw invalid(text);
+        }
+
+        final long seconds = epochDay(year, month, day) * 86400L
+                + hour * 3600 + minute * 60 + second - offsetSeconds;
+
+        return seconds * 1000L + millis;
+    }
+
+    /**
+     * Days since epoch of civil date.
+     *
+     * @param year the year.
+     * @param month month 1 - 12.
+     * @param day day of month.
+     * @return days since 1970-01-01.
+     */
+    private static long epochDay(int year, int month, int day) {
+        final int shiftedYear = month <= 2 ? year - 1 : year;
+        final long era = Math.floorDiv(shiftedYear, 400);
+        final int yearOfEra = (int) (shiftedYear - era * 400);
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                final boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(int value, int count, char[] buffer, int offset) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + count;
+    }
+
+    private static int parseDigits(CharSequence text, int offset, int count) {
+        if (offset + count > text.length()) throw invalid(text);
+
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            final char c = text.charAt(i);
+            if (!isDigit(c)) throw invalid(text);
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    private static void expect(CharSequence text, int offset, char expected) {
+        if (offset >= text.length() || text.charAt(offset) != expected) throw invalid(text);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text) {
+        return new IllegalArgumentException("invalid ISO8601 date: " + text);
+    }
+}
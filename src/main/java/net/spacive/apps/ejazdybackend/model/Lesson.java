@@ -1,8 +1,12 @@
 package net.spacive.apps.ejazdybackend.model;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -26,14 +30,19 @@ public class Lesson {
      * <p>Must be unique for specified instructor, because
      * it is the range key.
      *
-     * <p>In global secondary index StudentIdStartTime it is the range key too.
+     * <p>In global secondary indexes StudentIdStartTime,
+     * AvailableDayStartTime and DayStartTime it is the range key too.
      */
-    private Calendar startTime;
+    @JsonSerialize(using = InstantJson.Serializer.class)
+    @JsonDeserialize(using = InstantJson.Deserializer.class)
+    private Instant startTime;
 
     /**
      * A time when this lesson ends.
      */
-    private Calendar stopTime;
+    @JsonSerialize(using = InstantJson.Serializer.class)
+    @JsonDeserialize(using = InstantJson.Deserializer.class)
+    private Instant stopTime;
 
     /**
      * An unique id of registered student to this lesson.
@@ -42,6 +51,25 @@ public class Lesson {
      */
     private String studentId;
 
+    /**
+     * Day of startTime in UTC, yyyy-MM-dd.
+     *
+     * <p>This param is the hash key of index DayStartTime,
+     * it is set by the store whenever lesson is written.
+     */
+    @JsonIgnore
+    private String day;
+
+    /**
+     * Day of startTime in UTC, yyyy-MM-dd, set only while no
+     * student is registered to this lesson.
+     *
+     * <p>This param is the hash key of sparse index
+     * AvailableDayStartTime, which holds only free lessons.
+     */
+    @JsonIgnore
+    private String availableDay;
+
     /**
      * Name of the instructor - used only in UI for viewing data.
      */
@@ -52,6 +80,18 @@ public class Lesson {
      */
     private String studentName;
 
+    /**
+     * Unique ids of students waiting for this lesson, in order
+     * of arrival, the first one is promoted when registered
+     * student unregisters.
+     */
+    private List<String> waitlist;
+
+    /**
+     * Names of waiting students, in the same order as waitlist.
+     */
+    private List<String> waitlistNames;
+
     @DynamoDBHashKey
     public String getInstructorId() {
         return instructorId;
@@ -61,12 +101,13 @@ public class Lesson {
     }
 
     @DynamoDBRangeKey
-    @DynamoDBIndexRangeKey(globalSecondaryIndexName = "StudentIdStartTime")
-    public Calendar getStartTime() {
+    @DynamoDBIndexRangeKey(globalSecondaryIndexNames = {"StudentIdStartTime", "AvailableDayStartTime", "DayStartTime"})
+    @DynamoDBTypeConverted(converter = InstantConverter.class)
+    public Instant getStartTime() {
         return startTime;
     }
 
-    public void setStartTime(Calendar startTime) {
+    public void setStartTime(Instant startTime) {
         this.startTime = startTime;
     }
 
@@ -79,12 +120,35 @@ public class Lesson {
         this.studentId = studentId;
     }
 
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = "DayStartTime")
+    @JsonIgnore
+    public String getDay() {
+        return day;
+    }
+
+    @JsonIgnore
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = "AvailableDayStartTime")
+    @JsonIgnore
+    public String getAvailableDay() {
+        return availableDay;
+    }
+
+    @JsonIgnore
+    public void setAvailableDay(String availableDay) {
+        this.availableDay = availableDay;
+    }
+
     @DynamoDBAttribute
-    public Calendar getStopTime() {
+    @DynamoDBTypeConverted(converter = InstantConverter.class)
+    public Instant getStopTime() {
         return stopTime;
     }
 
-    public void setStopTime(Calendar stopTime) {
+    public void setStopTime(Instant stopTime) {
         this.stopTime = stopTime;
     }
 
@@ -106,6 +170,24 @@ public class Lesson {
         this.studentName = studentName;
     }
 
+    @DynamoDBAttribute
+    public List<String> getWaitlist() {
+        return waitlist;
+    }
+
+    public void setWaitlist(List<String> waitlist) {
+        this.waitlist = waitlist;
+    }
+
+    @DynamoDBAttribute
+    public List<String> getWaitlistNames() {
+        return waitlistNames;
+    }
+
+    public void setWaitlistNames(List<String> waitlistNames) {
+        this.waitlistNames = waitlistNames;
+    }
+
     public Lesson withInstructorId(String instructorId) {
         this.instructorId = instructorId;
         return this;
@@ -116,16 +198,26 @@ public class Lesson {
         return this;
     }
 
-    public Lesson withStartTime(Calendar startTime) {
+    public Lesson withStartTime(Instant startTime) {
         this.startTime = startTime;
         return this;
     }
 
-    public Lesson withStopTime(Calendar stopTime) {
+    public Lesson withStopTime(Instant stopTime) {
         this.stopTime = stopTime;
         return this;
     }
 
+    public Lesson withDay(String day) {
+        this.day = day;
+        return this;
+    }
+
+    public Lesson withAvailableDay(String availableDay) {
+        this.availableDay = availableDay;
+        return this;
+    }
+
     public Lesson withInstructorName(String instructorName) {
         this.instructorName = instructorName;
         return this;
@@ -136,6 +228,29 @@ public class Lesson {
         return this;
     }
 
+    public Lesson withWaitlist(List<String> waitlist) {
+        this.waitlist = waitlist;
+        return this;
+    }
+
+    public Lesson withWaitlistNames(List<String> waitlistNames) {
+        this.waitlistNames = waitlistNames;
+        return this;
+    }
+
+    /**
+     * Day bucket of lesson in indexes DayStartTime and AvailableDayStartTime.
+     *
+     * <p>Buckets are UTC dates and are stored with lessons, so
+     * the zone cannot change without rewriting all lessons.
+     *
+     * @param startTime start time of the lesson.
+     * @return day of start time in UTC, yyyy-MM-dd.
+     */
+    public static String dayOf(Instant startTime) {
+        return Iso8601.format(startTime).substring(0, 10);
+    }
+
     /**
      * Classic equals method.
      *
@@ -151,8 +266,23 @@ public class Lesson {
                 Objects.equals(startTime, lesson.startTime) &&
                 Objects.equals(stopTime, lesson.stopTime) &&
                 Objects.equals(studentId, lesson.studentId) &&
+                Objects.equals(day, lesson.day) &&
+                Objects.equals(availableDay, lesson.availableDay) &&
                 Objects.equals(instructorName, lesson.instructorName) &&
-                Objects.equals(studentName, lesson.studentName);
+                Objects.equals(studentName, lesson.studentName) &&
+                Objects.equals(waitlist, lesson.waitlist) &&
+                Objects.equals(waitlistNames, lesson.waitlistNames);
+    }
+
+    /**
+     * Classic hashCode method, consistent with equals.
+     *
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(instructorId, startTime, stopTime, studentId, day, availableDay, instructorName, studentName,
+                waitlist, waitlistNames);
     }
 
     /**
@@ -167,8 +297,12 @@ public class Lesson {
                 ", startTime='" + startTime + '\'' +
                 ", stopTime='" + stopTime + '\'' +
                 ", studentId='" + studentId + '\'' +
+                ", day='" + day + '\'' +
+                ", availableDay='" + availableDay + '\'' +
                 ", instructorName='" + instructorName + '\'' +
                 ", studentName='" + studentName + '\'' +
+                ", waitlist=" + waitlist +
+                ", waitlistNames=" + waitlistNames +
                 '}';
     }
 }
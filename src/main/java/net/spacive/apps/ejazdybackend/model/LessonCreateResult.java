@@ -0,0 +1,50 @@
+package net.spacive.apps.ejazdybackend.model;
+
+/**
+ * This class is a POJO model for result of creation
+ * of single lesson in batch.
+ *
+ * <p>This type is immutable.
+ */
+public class LessonCreateResult {
+
+    /**
+     * Possible results of lesson creation.
+     */
+    public enum Status {
+        CREATED,
+        ALREADY_EXISTS,
+        OVERLAPS,
+        INVALID,
+        FAILED
+    }
+
+    /**
+     * The lesson.
+     */
+    private final Lesson lesson;
+
+    /**
+     * Result of creation.
+     */
+    private final Status status;
+
+    /**
+     * Constructor.
+     *
+     * @param lesson the lesson.
+     * @param status result of creation.
+     */
+    public LessonCreateResult(Lesson lesson, Status status) {
+        this.lesson = lesson;
+        this.status = status;
+    }
+
+    public Lesson getLesson() {
+        return lesson;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,41 @@
+package net.spacive.apps.ejazdybackend.model;
+
+import java.util.List;
+
+/**
+ * This class is a POJO model for single page of lessons.
+ *
+ * <p>This type is immutable.
+ */
+public class LessonPage {
+
+    /**
+     * Lessons on this page.
+     */
+    private final List<Lesson> items;
+
+    /**
+     * Opaque cursor pointing to the next page,
+     * null if this is the last page.
+     */
+    private final String nextCursor;
+
+    /**
+     * Constructor.
+     *
+     * @param items lessons on this page.
+     * @param nextCursor cursor of the next page or null.
+     */
+    public LessonPage(List<Lesson> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Lesson> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,164 @@
+package net.spacive.apps.ejazdybackend.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a POJO model of weekly recurring lessons,
+ * which are expanded to single lessons when published.
+ *
+ * <p>Dates are ISO local dates yyyy-MM-dd and times are
+ * local times HH:mm, both in the time zone of the series.
+ */
+public class LessonSeries {
+
+    /**
+     * Lessons of single week.
+     */
+    private List<Slot> slots = new ArrayList<>();
+
+    /**
+     * First day of the series, inclusive.
+     */
+    private String from;
+
+    /**
+     * Last day of the series, inclusive.
+     */
+    private String to;
+
+    /**
+     * Days without lessons, such as holidays.
+     */
+    private List<String> exclusions = new ArrayList<>();
+
+    /**
+     * Time zone id of dates and times, UTC if not set.
+     */
+    private String zone;
+
+    public List<Slot> getSlots() {
+        return slots;
+    }
+
+    public void setSlots(List<Slot> slots) {
+        this.slots = slots;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public List<String> getExclusions() {
+        return exclusions;
+    }
+
+    public void setExclusions(List<String> exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    public LessonSeries withSlot(Slot slot) {
+        this.slots.add(slot);
+        return this;
+    }
+
+    public LessonSeries withFrom(String from) {
+        this.from = from;
+        return this;
+    }
+
+    public LessonSeries withTo(String to) {
+        this.to = to;
+        return this;
+    }
+
+    public LessonSeries withExclusion(String exclusion) {
+        this.exclusions.add(exclusion);
+        return this;
+    }
+
+    public LessonSeries withZone(String zone) {
+        this.zone = zone;
+        return this;
+    }
+
+    /**
+     * Single lesson of the weekly pattern.
+     */
+    public static class Slot {
+
+        /**
+         * Day of week, such as MONDAY.
+         */
+        private String dayOfWeek;
+
+        /**
+         * Local time when lessons start, HH:mm.
+         */
+        private String startTime;
+
+        /**
+         * Local time when lessons end, HH:mm.
+         */
+        private String stopTime;
+
+        public String getDayOfWeek() {
+            return dayOfWeek;
+        }
+
+        public void setDayOfWeek(String dayOfWeek) {
+            this.dayOfWeek = dayOfWeek;
+        }
+
+        public String getStartTime() {
+            return startTime;
+        }
+
+        public void setStartTime(String startTime) {
+            this.startTime = startTime;
+        }
+
+        public String getStopTime() {
+            return stopTime;
+        }
+
+        public void setStopTime(String stopTime) {
+            this.stopTime = stopTime;
+        }
+
+        public Slot withDayOfWeek(String dayOfWeek) {
+            this.dayOfWeek = dayOfWeek;
+            return this;
+        }
+
+        public Slot withStartTime(String startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+
+        public Slot withStopTime(String stopTime) {
+            this.stopTime = stopTime;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package net.spacive.apps.ejazdybackend.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * This class is a model of booking counter in DynamoDB table
+ * StudentBookings, one item per student.
+ *
+ * <p>Counter holds keys of lessons booked by the student, which
+ * had not started when they were booked. Keys of lessons which
+ * started meanwhile are removed lazily, when the limit is reached.
+ *
+ * <p>Keys of lessons for which the student waits are held too,
+ * so that they are found without scan of table Lesson.
+ */
+@DynamoDBTable(tableName="StudentBookings")
+public class StudentBookings {
+
+    /**
+     * An unique id of the student, the hash key.
+     */
+    private String studentId;
+
+    /**
+     * Keys of booked lessons, see keyOf.
+     */
+    private Set<String> bookings;
+
+    /**
+     * Keys of lessons on whose waitlist the student is, see keyOf.
+     */
+    private Set<String> waitlisted;
+
+    @DynamoDBHashKey
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    @DynamoDBAttribute
+    public Set<String> getBookings() {
+        return bookings;
+    }
+
+    public void setBookings(Set<String> bookings) {
+        this.bookings = bookings;
+    }
+
+    @DynamoDBAttribute
+    public Set<String> getWaitlisted() {
+        return waitlisted;
+    }
+
+    public void setWaitlisted(Set<String> waitlisted) {
+        this.waitlisted = waitlisted;
+    }
+
+    public StudentBookings withStudentId(String studentId) {
+        this.studentId = studentId;
+        return this;
+    }
+
+    public StudentBookings withBookings(Set<String> bookings) {
+        this.bookings = bookings;
+        return this;
+    }
+
+    public StudentBookings withWaitlisted(Set<String> waitlisted) {
+        this.waitlisted = waitlisted;
+        return this;
+    }
+
+    /**
+     * Key of booked lesson, start time first so that
+     * it can be parsed without knowing the instructor.
+     *
+     * @param lesson the lesson with instructorId and startTime.
+     * @return startTime#instructorId.
+     */
+    public static String keyOf(Lesson lesson) {
+        return Iso8601.format(lesson.getStartTime()) + "#" + lesson.getInstructorId();
+    }
+
+    /**
+     * Booked lesson with instructorId and startTime.
+     *
+     * @param key key of the lesson.
+     * @return lesson with primary key only.
+     */
+    public static Lesson lessonOf(String key) {
+        return new Lesson()
+                .withStartTime(startTimeOf(key))
+                .withInstructorId(key.substring(key.indexOf('#') + 1));
+    }
+
+    /**
+     * Start time of booked lesson.
+     *
+     * @param key key of the lesson.
+     * @return start time.
+     */
+    public static Instant startTimeOf(String key) {
+        return Iso8601.parse(key.substring(0, key.indexOf('#')));
+    }
+
+    /**
+     * To string
+     *
+     * @return to string
+     */
+    @Override
+    public String toString() {
+        return "StudentBookings{" +
+                "studentId='" + studentId + '\'' +
+                ", bookings=" + bookings +
+                ", waitlisted=" + waitlisted +
+                '}';
+    }
+}
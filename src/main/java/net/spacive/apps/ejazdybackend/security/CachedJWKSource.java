@@ -0,0 +1,213 @@
+package net.spacive.apps.ejazdybackend.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.spacive.apps.ejazdybackend.config.CognitoConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cache of JWK set used for verification of jwts.
+ *
+ * <p>The set is loaded at startup and refreshed in background.
+ * When a key with unknown id is requested, the set is fetched
+ * on demand, at most once per minimal refresh interval. If a
+ * fetch fails, previously loaded keys are still served.
+ */
+@Component
+public class CachedJWKSource implements JWKSource<SecurityContext> {
+
+    private static final Logger log = LoggerFactory.getLogger(CachedJWKSource.class.getName());
+
+    /**
+     * Maximum size of JWK set document in bytes.
+     */
+    private static final int SIZE_LIMIT = 50 * 1024;
+
+    /**
+     * Cognito configuration properties.
+     */
+    private final CognitoConfiguration properties;
+
+    /**
+     * Url of JWK set.
+     */
+    private final URL jwksUrl;
+
+    /**
+     * Currently loaded JWK set.
+     */
+    private volatile JWKSet jwkSet = new JWKSet();
+
+    /**
+     * Time of last successful fetch in milliseconds, 0 if none.
+     */
+    private volatile long loadedAt = 0;
+
+    /**
+     * Time of last fetch attempt in milliseconds, 0 if none.
+     */
+    private volatile long attemptedAt = 0;
+
+    /**
+     * Latency of successful fetches.
+     */
+    private final Timer fetchSuccessTimer;
+
+    /**
+     * Latency of failed fetches.
+     */
+    private final Timer fetchFailureTimer;
+
+    /**
+     * Scheduler of background refresh.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param properties injected CognitoConfiguration.
+     * @param meterRegistry injected registry of metrics.
+     * @throws IOException if url of JWK set is invalid.
+     */
+    @Autowired
+    public CachedJWKSource(CognitoConfiguration properties, MeterRegistry meterRegistry) throws IOException {
+        this.properties = properties;
+        this.jwksUrl = new URL(properties.getJwksUrl());
+
+        this.fetchSuccessTimer = Timer.builder("auth.jwks.fetch")
+                .description("latency of JWK set fetch")
+                .tag("result", "success")
+                .register(meterRegistry);
+        this.fetchFailureTimer = Timer.builder("auth.jwks.fetch")
+                .description("latency of JWK set fetch")
+                .tag("result", "failure")
+                .register(meterRegistry);
+
+        Gauge.builder("auth.jwks.age", this, source -> source.loadedAt == 0
+                        ? Double.NaN
+                        : (System.currentTimeMillis() - source.loadedAt) / 1000.0)
+                .description("seconds since last successful fetch of JWK set")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load JWK set and start background refresh.
+     */
+    @PostConstruct
+    public void start() {
+        refresh();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long interval = properties.getJwksRefreshInterval();
+        scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop background refresh.
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> keys = jwkSelector.select(jwkSet);
+
+        if (keys.isEmpty() && !jwkSelector.getMatcher().getKeyIDs().isEmpty()) {
+            // unknown key id, keys might be rotated
+            refreshOnDemand();
+            keys = jwkSelector.select(jwkSet);
+        }
+
+        return keys != null ? keys : Collections.emptyList();
+    }
+
+    /**
+     * Fetch JWK set unless it was attempted within minimal refresh interval.
+     *
+     * <p>Concurrent callers wait for single fetch.
+     */
+    private synchronized void refreshOnDemand() {
+        final long minInterval = TimeUnit.SECONDS.toMillis(properties.getJwksMinRefreshInterval());
+        if (System.currentTimeMillis() - attemptedAt >= minInterval) {
+            refresh();
+        }
+    }
+
+    /**
+     * Fetch JWK set, keep the current one if fetch fails.
+     *
+     * @return true if JWK set was fetched.
+     */
+    public synchronized boolean refresh() {
+        final long start = System.nanoTime();
+        attemptedAt = System.currentTimeMillis();
+
+        try {
+            jwkSet = JWKSet.parse(fetch());
+            loadedAt = System.currentTimeMillis();
+            fetchSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (Exception e) {
+            fetchFailureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("cannot fetch JWK set from " + jwksUrl + ", serving "
+                    + jwkSet.getKeys().size() + " cached keys", e);
+            return false;
+        }
+    }
+
+    /**
+     * Download JWK set document.
+     *
+     * @return content of the document.
+     * @throws IOException if download fails.
+     */
+    private String fetch() throws IOException {
+        URLConnection connection = jwksUrl.openConnection();
+        connection.setConnectTimeout(properties.getJwksTimeout());
+        connection.setReadTimeout(properties.getJwksTimeout());
+
+        try (InputStream in = connection.getInputStream()) {
+            final String content = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+            if (content.length() > SIZE_LIMIT) {
+                throw new IOException("JWK set exceeds size limit");
+            }
+            return content;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package net.spacive.apps.ejazdybackend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.jwk.source.RemoteJWKSet;
 import com.nimbusds.jose.proc.JWSKeySelector;
 import com.nimbusds.jose.proc.JWSVerificationKeySelector;
 import com.nimbusds.jwt.JWT;
@@ -9,6 +11,9 @@ import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.JWTParser;
 import com.nimbusds.jwt.proc.ConfigurableJWTProcessor;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import net.spacive.apps.ejazdybackend.config.CognitoConfiguration;
 import net.spacive.apps.ejazdybackend.model.CognitoUser;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,10 +29,16 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class is spring boot filter implementation.
@@ -35,6 +46,10 @@ import java.util.List;
  * <p>It is responsible for jwt verification and
  * user authorization based on groups claim.
  *
+ * <p>Verified tokens are cached by their hash until they
+ * expire, so repeated requests with the same token skip
+ * signature verification and claims parsing.
+ *
  * @author  Juraj Haluska
  */
 @Component
@@ -61,22 +76,72 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private CognitoConfiguration properties;
 
     /**
-     * cached key set from @see nimbusds.
+     * Locally cached key set.
+     */
+    private CachedJWKSource jwkSource;
+
+    /**
+     * Jwt processor shared by all requests, it is thread safe
+     * once configured.
+     */
+    private final ConfigurableJWTProcessor jwtProcessor;
+
+    /**
+     * Cache of verified tokens, key is hash of the token.
+     */
+    private final Cache<String, CachedAuthentication> tokenCache;
+
+    /**
+     * Used for measuring cpu time of authentication.
+     */
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Cpu time of requests authenticated from cache.
      */
-    private RemoteJWKSet remoteJWKSet;
+    private final Timer cacheHitTimer;
 
+    /**
+     * Cpu time of requests which had to be verified.
+     */
+    private final Timer cacheMissTimer;
 
     /**
      * Constructor.
      *
      * @param properties injected CognitoConfiguration.
-     * @throws MalformedURLException if url of key store is invalid.
+     * @param jwkSource injected cache of keys.
+     * @param meterRegistry injected registry of metrics.
      */
     @Autowired
-    public JwtAuthFilter(CognitoConfiguration properties) throws MalformedURLException {
-        URL JWKUrl = new URL(properties.getIssuer() + properties.getKeyStorePath());
-        this.remoteJWKSet = new RemoteJWKSet(JWKUrl);
+    public JwtAuthFilter(
+            CognitoConfiguration properties,
+            CachedJWKSource jwkSource,
+            MeterRegistry meterRegistry) {
+
+        this.jwkSource = jwkSource;
         this.properties = properties;
+
+        JWSKeySelector keySelector = new JWSVerificationKeySelector(JWSAlgorithm.RS256, jwkSource);
+        this.jwtProcessor = new DefaultJWTProcessor();
+        this.jwtProcessor.setJWSKeySelector(keySelector);
+
+        this.tokenCache = Caffeine.newBuilder()
+                .maximumSize(properties.getTokenCacheSize())
+                .expireAfter(new UntilTokenExpires())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, tokenCache, "verifiedTokens");
+
+        this.cacheHitTimer = Timer.builder("auth.jwt.cpu")
+                .description("cpu time spent by authentication of request")
+                .tag("cache", "hit")
+                .register(meterRegistry);
+        this.cacheMissTimer = Timer.builder("auth.jwt.cpu")
+                .description("cpu time spent by authentication of request")
+                .tag("cache", "miss")
+                .register(meterRegistry);
     }
 
     /**
@@ -88,19 +153,50 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             HttpServletResponse res,
             FilterChain chain) throws IOException, ServletException {
 
-        String header = req.getHeader(AUTH_HEADER_STRING).replace(AUTH_BEARER_STRING, "");
+        String header = req.getHeader(AUTH_HEADER_STRING);
+
+        if (header != null) {
+            final long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+            final String token = header.replace(AUTH_BEARER_STRING, "").trim();
+            final String tokenHash = hash(token);
+
+            CachedAuthentication cached = tokenCache.getIfPresent(tokenHash);
+            final Timer timer;
+
+            if (cached != null) {
+                timer = cacheHitTimer;
+            } else {
+                timer = cacheMissTimer;
+                cached = verify(token);
+
+                if (cached != null) {
+                    tokenCache.put(tokenHash, cached);
+                }
+            }
+
+            if (cached != null) {
+                SecurityContextHolder.getContext().setAuthentication(cached.authentication);
+            }
+
+            timer.record(threadMXBean.getCurrentThreadCpuTime() - cpuStart, TimeUnit.NANOSECONDS);
+        }
+
+        chain.doFilter(req, res);
+    }
 
+    /**
+     * Verify token and build authentication of its user.
+     *
+     * @param token jwt string.
+     * @return authentication or null if the token is not valid.
+     */
+    private CachedAuthentication verify(String token) {
         try {
-            JWT jwt = JWTParser.parse(header);
+            JWT jwt = JWTParser.parse(token);
 
             // check if issuer is our user pool
             if (properties.getIssuer().equals(jwt.getJWTClaimsSet().getIssuer())) {
 
-                JWSKeySelector keySelector = new JWSVerificationKeySelector(JWSAlgorithm.RS256, remoteJWKSet);
-
-                ConfigurableJWTProcessor jwtProcessor = new DefaultJWTProcessor();
-                jwtProcessor.setJWSKeySelector(keySelector);
-
                 // check token
                 JWTClaimsSet claimsSet = jwtProcessor.process(jwt, null);
 
@@ -130,13 +226,71 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                         authorities
                 );
 
-                SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+                return new CachedAuthentication(authenticationToken, claimsSet.getExpirationTime());
             }
 
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        chain.doFilter(req, res);
+        return null;
+    }
+
+    /**
+     * Hash of the token, raw tokens are not kept in memory.
+     *
+     * @param token jwt string.
+     * @return base64 encoded SHA-256 of the token.
+     */
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(
+                    digest.digest(token.getBytes(StandardCharsets.US_ASCII))
+            );
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Verified authentication together with its expiration.
+     */
+    private static final class CachedAuthentication {
+
+        private final UsernamePasswordAuthenticationToken authentication;
+
+        private final Date expirationTime;
+
+        private CachedAuthentication(UsernamePasswordAuthenticationToken authentication, Date expirationTime) {
+            this.authentication = authentication;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /**
+     * Expires cached tokens at their exp claim, tokens
+     * without exp are not cached at all.
+     */
+    private static final class UntilTokenExpires implements Expiry<String, CachedAuthentication> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedAuthentication value, long currentTime) {
+            if (value.expirationTime == null) {
+                return 0;
+            }
+            long millis = value.expirationTime.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedAuthentication value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedAuthentication value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
-}
\ No newline at end of file
+}
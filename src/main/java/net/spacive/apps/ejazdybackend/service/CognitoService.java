@@ -2,6 +2,10 @@ package net.spacive.apps.ejazdybackend.service;
 
 import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
 import com.amazonaws.services.cognitoidp.model.*;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import net.spacive.apps.ejazdybackend.config.CognitoConfiguration;
 import net.spacive.apps.ejazdybackend.model.CognitoUser;
 import org.apache.http.HttpStatus;
@@ -12,6 +16,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class is entry point of this application to
@@ -34,16 +39,36 @@ public class CognitoService {
      */
     private final CognitoConfiguration config;
 
+    /**
+     * Cache of users by their unique id.
+     *
+     * <p>Concurrent misses of the same user are loaded
+     * by single request to cognito.
+     */
+    private final Cache<String, CognitoUser> userCache;
+
     /**
      * CognitoService constructor.
      *
      * @param cognito injected cognito provider from AWS SDK.
      * @param config cognito configuration POJO.
+     * @param meterRegistry registry of metrics.
      */
     @Autowired
-    public CognitoService(AWSCognitoIdentityProvider cognito, CognitoConfiguration config) {
+    public CognitoService(
+            AWSCognitoIdentityProvider cognito,
+            CognitoConfiguration config,
+            MeterRegistry meterRegistry) {
+
         this.cognito = cognito;
         this.config = config;
+        this.userCache = Caffeine.newBuilder()
+                .expireAfterWrite(config.getUserCacheTtl(), TimeUnit.SECONDS)
+                .maximumSize(config.getUserCacheSize())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, userCache, "cognitoUsers");
     }
 
     /**
@@ -111,6 +136,8 @@ public class CognitoService {
                 .withUserPoolId(config.getPoolId());
 
         AdminDeleteUserResult result = cognito.adminDeleteUser(request);
+        userCache.invalidate(user.getId());
+
         if (result.getSdkHttpMetadata().getHttpStatusCode() == HttpStatus.SC_OK) {
             return user;
         } else {
@@ -133,6 +160,7 @@ public class CognitoService {
                 .withUserPoolId(config.getPoolId());
 
         cognito.adminAddUserToGroup(request);
+        userCache.invalidate(cognitoUser.getId());
 
         return new CognitoUser.Builder()
                 .withId(cognitoUser.getId())
@@ -151,11 +179,13 @@ public class CognitoService {
      * Convertor between UserType which is AWS SDK implemenation
      * and CognitoUser.
      *
+     * <p>Package-private, so it can be benchmarked.
+     *
      * @param user user returned by AWS SDK.
      * @param userGroup name of the group.
      * @return new instance of CognitoUser.
      */
-    private CognitoUser userTypeToCognitoUser(UserType user, String userGroup) {
+    static CognitoUser userTypeToCognitoUser(UserType user, String userGroup) {
         final CognitoUser.Builder builder = new CognitoUser.Builder();
 
         // process attributes
@@ -199,10 +229,23 @@ public class CognitoService {
     /**
      * Get user from cognito user pool.
      *
+     * <p>Users are cached, so repeated calls do not hit
+     * cognito API rate limits.
+     *
      * @param uuid an unique id of the user.
      * @return an instance of the user.
      */
     public CognitoUser getUser(String uuid) {
+        return userCache.get(uuid, this::fetchUser);
+    }
+
+    /**
+     * Fetch user from cognito user pool.
+     *
+     * @param uuid an unique id of the user.
+     * @return an instance of the user or null if it does not exist.
+     */
+    private CognitoUser fetchUser(String uuid) {
         ListUsersRequest request = new ListUsersRequest()
                 .withFilter(
                         String.format("sub = \"%s\"", uuid)
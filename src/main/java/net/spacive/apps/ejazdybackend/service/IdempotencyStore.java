@@ -0,0 +1,251 @@
+package net.spacive.apps.ejazdybackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.spacive.apps.ejazdybackend.config.IdempotencyConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Outcomes of requests with header Idempotency-Key.
+ *
+ * <p>Result of the first request with a key is kept for
+ * idempotency.ttl seconds and returned to retries
+ * of the same request without executing it again. Retries
+ * which arrive while the first request is still running wait
+ * for its result up to idempotency.wait-timeout seconds.
+ * Failures are not recorded, so the request is executed
+ * again when it is retried.
+ *
+ * <p>Keys are scoped by user. Key reused for another request
+ * of the same user is rejected.
+ *
+ * <p>Outcomes are kept in memory of this instance only.
+ */
+@Service
+public class IdempotencyStore {
+
+    /**
+     * Outcomes by user id and key.
+     */
+    private final Cache<String, Outcome> outcomes;
+
+    /**
+     * Maximum time of waiting for the first request in seconds.
+     */
+    private final long waitTimeout;
+
+    /**
+     * Fails asynchronous retries which waited too long.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param config idempotency configuration.
+     * @param meterRegistry registry of metrics.
+     */
+    @Autowired
+    public IdempotencyStore(IdempotencyConfiguration config, MeterRegistry meterRegistry) {
+        this.outcomes = Caffeine.newBuilder()
+                .expireAfterWrite(config.getTtl(), TimeUnit.SECONDS)
+                .maximumSize(config.getCacheSize())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, outcomes, "idempotencyKeys");
+
+        this.waitTimeout = config.getWaitTimeout();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop timeouts of waiting retries.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Execute request once per key.
+     *
+     * @param userId an unique id of calling user.
+     * @param key value of Idempotency-Key, request is always executed if null.
+     * @param request description of the request, such as method, path and body.
+     * @param action execution of the request.
+     * @param <T> type of result.
+     * @return result of the first execution.
+     * @throws Exception if the request failed or key was used for another request.
+     */
+    public <T> T execute(String userId, String key, String request, Callable<T> action) throws Exception {
+        if (key == null) {
+            return action.call();
+        }
+
+        final Outcome outcome = new Outcome(request);
+        final Outcome recorded = record(userId, key, outcome);
+
+        if (recorded != outcome) {
+            try {
+                return cast(recorded.result.get(waitTimeout, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                throw cause(e);
+            } catch (TimeoutException e) {
+                throw stillRunning();
+            }
+        }
+
+        try {
+            final T result = action.call();
+            outcome.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            fail(userId, key, outcome, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Asynchronous variant of execute.
+     *
+     * @param userId an unique id of calling user.
+     * @param key value of Idempotency-Key, request is always executed if null.
+     * @param request description of the request, such as method, path and body.
+     * @param action execution of the request.
+     * @param <T> type of result.
+     * @return future result of the first execution.
+     * @throws Exception if the request failed or key was used for another request.
+     * @see #execute(String, String, String, Callable)
+     */
+    public <T> CompletableFuture<T> executeAsync(
+            String userId,
+            String key,
+            String request,
+            Callable<CompletableFuture<T>> action) throws Exception {
+
+        if (key == null) {
+            return action.call();
+        }
+
+        final Outcome outcome = new Outcome(request);
+        final Outcome recorded = record(userId, key, outcome);
+
+        if (recorded != outcome) {
+            return await(recorded);
+        }
+
+        final CompletableFuture<T> result;
+        try {
+            result = action.call();
+        } catch (Throwable e) {
+            fail(userId, key, outcome, e);
+            throw e;
+        }
+
+        return result.whenComplete((value, e) -> {
+            if (e == null) {
+                outcome.result.complete(value);
+            } else {
+                fail(userId, key, outcome, e);
+            }
+        });
+    }
+
+    /**
+     * Record outcome of key, if the key is not used yet.
+     *
+     * @return outcome recorded before or the new one.
+     * @throws Exception if key was used for another request.
+     */
+    private Outcome record(String userId, String key, Outcome outcome) throws Exception {
+        final Outcome recorded = outcomes.asMap().putIfAbsent(userId + " " + key, outcome);
+
+        if (recorded == null) {
+            return outcome;
+        } else if (!recorded.request.equals(outcome.request)) {
+            throw new Exception("idempotency key was used for another request");
+        } else {
+            return recorded;
+        }
+    }
+
+    /**
+     * Wait for result of the first request, at most waitTimeout seconds.
+     */
+    private <T> CompletableFuture<T> await(Outcome recorded) {
+        final CompletableFuture<T> result = recorded.result.thenApply(IdempotencyStore::<T>cast);
+        final ScheduledFuture<?> timeout = scheduler.schedule(
+                () -> result.completeExceptionally(stillRunning()),
+                waitTimeout,
+                TimeUnit.SECONDS
+        );
+
+        result.whenComplete((value, e) -> timeout.cancel(false));
+        return result;
+    }
+
+    private static Exception stillRunning() {
+        return new Exception("request with the same idempotency key is still running");
+    }
+
+    /**
+     * Forget failed execution, so that it can be retried,
+     * and fail retries waiting for it.
+     */
+    private void fail(String userId, String key, Outcome outcome, Throwable e) {
+        outcomes.asMap().remove(userId + " " + key, outcome);
+        outcome.result.completeExceptionally(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object result) {
+        return (T) result;
+    }
+
+    private static Exception cause(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception ? (Exception) cause : e;
+    }
+
+    /**
+     * Outcome of request with a key.
+     */
+    private static final class Outcome {
+
+        /**
+         * Description of the request.
+         */
+        private final String request;
+
+        /**
+         * Result, completed when the first execution succeeds.
+         */
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Outcome(String request) {
+            this.request = request;
+        }
+    }
+}
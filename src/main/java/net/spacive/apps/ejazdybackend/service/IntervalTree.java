@@ -0,0 +1,212 @@
+package net.spacive.apps.ejazdybackend.service;
+
+/**
+ * Interval tree of half open intervals [start, stop) with
+ * unique starts.
+ *
+ * <p>AVL tree sorted by start, every node holds maximum stop
+ * of its subtree, so overlap is found in O(log n).
+ *
+ * <p>This class is not thread safe.
+ */
+final class IntervalTree {
+
+    private Node root;
+
+    /**
+     * Put interval, replace stop of interval with the same start.
+     *
+     * @param start start of the interval.
+     * @param stop end of the interval, exclusive.
+     */
+    void put(long start, long stop) {
+        root = put(root, start, stop);
+    }
+
+    /**
+     * Remove interval.
+     *
+     * @param start start of the interval.
+     */
+    void remove(long start) {
+        root = remove(root, start);
+    }
+
+    /**
+     * Whether interval with the start exists.
+     *
+     * @param start start of the interval.
+     * @return true if it exists.
+     */
+    boolean contains(long start) {
+        Node node = root;
+        while (node != null && node.start != start) {
+            node = start < node.start ? node.left : node.right;
+        }
+        return node != null;
+    }
+
+    /**
+     * Whether any interval overlaps [start, stop).
+     *
+     * <p>Empty interval overlaps intervals which contain its start,
+     * except of the one starting at the same time.
+     *
+     * @param start start of the interval.
+     * @param stop end of the interval, exclusive.
+     * @return true if some interval overlaps.
+     */
+    boolean overlaps(long start, long stop) {
+        Node node = root;
+
+        while (node != null) {
+            if (node.start < stop && start < node.stop) {
+                return true;
+            }
+
+            // if no interval of the left subtree overlaps although some
+            // ends after start, the rest starts too late to overlap
+            if (node.left != null && node.left.maxStop > start) {
+                node = node.left;
+            } else if (node.start < stop) {
+                node = node.right;
+            } else {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    private Node put(Node node, long start, long stop) {
+        if (node == null) {
+            return new Node(start, stop);
+        }
+
+        if (start < node.start) {
+            node.left = put(node.left, start, stop);
+        } else if (start > node.start) {
+            node.right = put(node.right, start, stop);
+        } else {
+            node.stop = stop;
+        }
+
+        return balance(node);
+    }
+
+    private Node remove(Node node, long start) {
+        if (node == null) {
+            return null;
+        }
+
+        if (start < node.start) {
+            node.left = remove(node.left, start);
+        } else if (start > node.start) {
+            node.right = remove(node.right, start);
+        } else {
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+
+            Node next = node.right;
+            while (next.left != null) {
+                next = next.left;
+            }
+
+            node.right = removeFirst(node.right);
+            next.left = node.left;
+            next.right = node.right;
+            node = next;
+        }
+
+        return balance(node);
+    }
+
+    private Node removeFirst(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+
+        node.left = removeFirst(node.left);
+        return balance(node);
+    }
+
+    private Node balance(Node node) {
+        update(node);
+        final int factor = height(node.left) - height(node.right);
+
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+
+        return node;
+    }
+
+    private Node rotateLeft(Node node) {
+        final Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private Node rotateRight(Node node) {
+        final Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+
+        long maxStop = node.stop;
+        if (node.left != null) maxStop = Math.max(maxStop, node.left.maxStop);
+        if (node.right != null) maxStop = Math.max(maxStop, node.right.maxStop);
+        node.maxStop = maxStop;
+    }
+
+    private static int height(Node node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static final class Node {
+
+        private final long start;
+
+        private long stop;
+
+        /**
+         * Maximum stop of the subtree.
+         */
+        private long maxStop;
+
+        private int height = 1;
+
+        private Node left;
+
+        private Node right;
+
+        private Node(long start, long stop) {
+            this.start = start;
+            this.stop = stop;
+            this.maxStop = stop;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package net.spacive.apps.ejazdybackend.service;
+
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.LessonStore;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Intervals of lessons of instructors, used to reject overlapping
+ * lessons without querying DynamoDB.
+ *
+ * <p>Time is split to windows of dynamo.interval-window-days.
+ * Windows are loaded lazily by single range query, when lesson
+ * in them is created for the first time, and kept current by
+ * writes of LessonService. Lessons of instructor are checked and
+ * written under lock of the instructor, so two overlapping lessons
+ * cannot be created concurrently by this instance.
+ *
+ * <p>Loaded windows are dropped after dynamo.interval-ttl seconds,
+ * which bounds how long lessons written by other instances may be
+ * missed. Lessons longer than single window are not guaranteed
+ * to be found.
+ */
+final class LessonIntervals {
+
+    /**
+     * Reference to storage of lessons.
+     */
+    private final LessonStore lessonStore;
+
+    /**
+     * Length of single window in milliseconds.
+     */
+    private final long windowMillis;
+
+    /**
+     * Time to live of loaded windows in milliseconds.
+     */
+    private final long ttlMillis;
+
+    /**
+     * Intervals by instructorId.
+     */
+    private final ConcurrentMap<String, Instructor> instructors = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param lessonStore storage of lessons.
+     * @param config dynamo configuration.
+     */
+    LessonIntervals(LessonStore lessonStore, DynamoConfiguration config) {
+        this.lessonStore = lessonStore;
+        this.windowMillis = config.getIntervalWindowDays() * 86400000L;
+        this.ttlMillis = config.getIntervalTtl() * 1000L;
+    }
+
+    /**
+     * Run action with intervals of instructor, under lock of the instructor.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @param action action which reads and writes lessons of the instructor.
+     * @param <T> type of result.
+     * @return result of the action.
+     */
+    <T> T withInstructor(String instructorId, Function<Instructor, T> action) {
+        final Instructor instructor = instructors.computeIfAbsent(instructorId, Instructor::new);
+
+        synchronized (instructor) {
+            return action.apply(instructor);
+        }
+    }
+
+    /**
+     * End of interval of lesson in milliseconds.
+     *
+     * @param lesson the lesson.
+     * @return stop time, start time if stop time is not set or is before it.
+     */
+    private static long stopOf(Lesson lesson) {
+        final long start = lesson.getStartTime().toEpochMilli();
+        return lesson.getStopTime() != null ? Math.max(start, lesson.getStopTime().toEpochMilli()) : start;
+    }
+
+    /**
+     * Intervals of lessons of single instructor.
+     *
+     * <p>Methods must be called by the action of withInstructor.
+     */
+    final class Instructor {
+
+        private final String instructorId;
+
+        private final IntervalTree tree = new IntervalTree();
+
+        /**
+         * Loaded windows, relative to firstWindow.
+         */
+        private final BitSet windows = new BitSet();
+
+        private long firstWindow;
+
+        /**
+         * When the first window was loaded, in milliseconds.
+         */
+        private long loadedAt;
+
+        private Instructor(String instructorId) {
+            this.instructorId = instructorId;
+        }
+
+        /**
+         * Load windows which may contain lessons overlapping
+         * lessons starting in the date range.
+         *
+         * <p>Missing windows are loaded by single range query.
+         *
+         * @param from start of the first lesson.
+         * @param to stop of the last lesson, may be null.
+         */
+        void load(Instant from, Instant to) {
+            final long now = System.currentTimeMillis();
+            if (!windows.isEmpty() && now - loadedAt > ttlMillis) {
+                invalidate();
+            }
+
+            // lessons starting in the previous window may still overlap
+            final long first = Math.floorDiv(from.toEpochMilli(), windowMillis) - 1;
+            final long stop = to != null ? Math.max(from.toEpochMilli(), to.toEpochMilli()) : from.toEpochMilli();
+            final long last = Math.floorDiv(stop, windowMillis);
+
+            if (windows.isEmpty()) {
+                firstWindow = first;
+                loadedAt = now;
+            } else if (first < firstWindow) {
+                shift(first);
+            }
+
+            final int firstMissing = windows.nextClearBit((int) (first - firstWindow));
+            if (firstMissing > last - firstWindow) {
+                return;
+            }
+
+            int lastMissing = (int) (last - firstWindow);
+            while (windows.get(lastMissing)) {
+                lastMissing--;
+            }
+
+            lessonStore.getLessonsByInstructorRange(
+                    instructorId,
+                    Instant.ofEpochMilli((firstWindow + firstMissing) * windowMillis),
+                    Instant.ofEpochMilli((firstWindow + lastMissing + 1) * windowMillis - 1)
+            ).forEach(this::add);
+
+            windows.set(firstMissing, lastMissing + 1);
+        }
+
+        /**
+         * Whether lesson with the same start time exists.
+         *
+         * @param lesson the lesson.
+         * @return true if start time is taken.
+         */
+        boolean contains(Lesson lesson) {
+            return tree.contains(lesson.getStartTime().toEpochMilli());
+        }
+
+        /**
+         * Whether lesson overlaps other lesson of the instructor.
+         *
+         * @param lesson the lesson.
+         * @return true if it overlaps.
+         */
+        boolean overlaps(Lesson lesson) {
+            return tree.overlaps(lesson.getStartTime().toEpochMilli(), stopOf(lesson));
+        }
+
+        /**
+         * Add written lesson.
+         *
+         * @param lesson the lesson.
+         */
+        void add(Lesson lesson) {
+            tree.put(lesson.getStartTime().toEpochMilli(), stopOf(lesson));
+        }
+
+        /**
+         * Remove deleted lesson.
+         *
+         * @param startTime start time of the lesson.
+         */
+        void remove(Instant startTime) {
+            tree.remove(startTime.toEpochMilli());
+        }
+
+        /**
+         * Drop all loaded windows, they are loaded again when needed.
+         */
+        void invalidate() {
+            tree.clear();
+            windows.clear();
+        }
+
+        /**
+         * Move start of bit set of loaded windows to earlier window.
+         */
+        private void shift(long first) {
+            final int by = (int) (firstWindow - first);
+            final BitSet shifted = new BitSet();
+            windows.stream().forEach(i -> shifted.set(i + by));
+
+            windows.clear();
+            windows.or(shifted);
+            firstWindow = first;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.spacive.apps.ejazdybackend.service;
+
+import net.spacive.apps.ejazdybackend.model.Lesson;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of lists of lessons sorted by start time.
+ *
+ * <p>Heap holds the next lesson of every list, so each lesson
+ * is taken in O(log k) and merged lessons are produced one by
+ * one without copying and sorting all of them.
+ */
+final class LessonMerge implements Iterator<Lesson> {
+
+    /**
+     * Heads of lists which are not exhausted, ordered by
+     * start time of the head and by order of the list.
+     */
+    private final PriorityQueue<Head> heads;
+
+    /**
+     * Constructor.
+     *
+     * @param lists lists of lessons, each sorted by start time.
+     */
+    LessonMerge(List<? extends Iterable<Lesson>> lists) {
+        heads = new PriorityQueue<>(Math.max(1, lists.size()));
+
+        for (int i = 0; i < lists.size(); i++) {
+            final Iterator<Lesson> iterator = lists.get(i).iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(i, iterator));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Lesson next() {
+        final Head head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+
+        final Lesson lesson = head.lesson;
+        if (head.advance()) {
+            heads.add(head);
+        }
+        return lesson;
+    }
+
+    /**
+     * Current lesson of single list.
+     */
+    private static final class Head implements Comparable<Head> {
+
+        /**
+         * Order of the list, breaks ties of equal start times.
+         */
+        private final int list;
+
+        private final Iterator<Lesson> rest;
+
+        private Lesson lesson;
+
+        private long startTime;
+
+        private Head(int list, Iterator<Lesson> rest) {
+            this.list = list;
+            this.rest = rest;
+            advance();
+        }
+
+        /**
+         * Move to the next lesson of the list.
+         *
+         * @return false if the list is exhausted.
+         */
+        private boolean advance() {
+            if (!rest.hasNext()) {
+                return false;
+            }
+
+            lesson = rest.next();
+            startTime = lesson.getStartTime().toEpochMilli();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Head o) {
+            final int byTime = Long.compare(startTime, o.startTime);
+            return byTime != 0 ? byTime : Integer.compare(list, o.list);
+        }
+    }
+}
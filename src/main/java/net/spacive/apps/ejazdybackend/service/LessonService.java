@@ -1,13 +1,49 @@
 package net.spacive.apps.ejazdybackend.service;
 
-import net.spacive.apps.ejazdybackend.database.DynamoDao;
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.config.Utils;
+import net.spacive.apps.ejazdybackend.database.AsyncDynamoDao;
+import net.spacive.apps.ejazdybackend.database.LessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
 import net.spacive.apps.ejazdybackend.model.CognitoUser;
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
 import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonCreateResult;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import net.spacive.apps.ejazdybackend.model.LessonSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.util.Calendar;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * This class is an implementation of the lesson service.
@@ -17,10 +53,42 @@ import java.util.List;
 @Service
 public class LessonService {
 
+    private static final Logger log = LoggerFactory.getLogger(LessonService.class.getName());
+
+    /**
+     * Reference to storage of lessons.
+     */
+    private final LessonStore lessonStore;
+
+    /**
+     * Reference to AsyncDynamoDao, null if dynamo.async is not enabled.
+     */
+    private final AsyncDynamoDao asyncDynamoDao;
+
+    /**
+     * Executor for parallel DynamoDB requests.
+     */
+    private final ExecutorService dynamoExecutor;
+
+    /**
+     * Reference to dynamo configuration.
+     */
+    private final DynamoConfiguration dynamoConfig;
+
     /**
-     * Reference to DynamoDao.
+     * Reference to calendar configuration.
      */
-    private final DynamoDao dynamoDao;
+    private final CalendarConfiguration calendarConfig;
+
+    /**
+     * Versions of lessons of users, used for ETags.
+     */
+    private final LessonVersions lessonVersions;
+
+    /**
+     * Intervals of lessons of instructors, used for overlap detection.
+     */
+    private final LessonIntervals lessonIntervals;
 
     /**
      * Respresents the lenght of the day in milliseconds.
@@ -32,31 +100,259 @@ public class LessonService {
      */
     private final static double milisToHoursRat = 3600000;
 
+    /**
+     * How many times watermark of completed hours is tried
+     * to be moved, if the aggregate is changed concurrently.
+     */
+    private final static int hoursAttempts = 3;
+
     /**
      * LessonService constructor.
      *
-     * @param dynamoDao injected DynamoDao.
+     * @param lessonStore injected storage of lessons.
+     * @param asyncDynamoDao injected AsyncDynamoDao, present if dynamo.async is enabled.
+     * @param dynamoExecutor injected executor for DynamoDB requests.
+     * @param dynamoConfig injected dynamo configuration.
+     * @param calendarConfig injected calendar configuration.
+     * @param lessonVersions injected versions of lessons.
      */
     @Autowired
-    public LessonService(DynamoDao dynamoDao) {
-        this.dynamoDao = dynamoDao;
+    public LessonService(
+            LessonStore lessonStore,
+            Optional<AsyncDynamoDao> asyncDynamoDao,
+            @Qualifier("dynamoExecutor") ExecutorService dynamoExecutor,
+            DynamoConfiguration dynamoConfig,
+            CalendarConfiguration calendarConfig,
+            LessonVersions lessonVersions) {
+
+        this.lessonStore = lessonStore;
+        this.asyncDynamoDao = asyncDynamoDao.orElse(null);
+        this.dynamoExecutor = dynamoExecutor;
+        this.dynamoConfig = dynamoConfig;
+        this.calendarConfig = calendarConfig;
+        this.lessonVersions = lessonVersions;
+        this.lessonIntervals = new LessonIntervals(lessonStore, dynamoConfig);
     }
 
+    /**
+     * Create lesson by instructor.
+     *
+     * <p>Lesson which overlaps other lesson of the instructor is
+     * rejected by interval index of the instructor, without
+     * querying DynamoDB unless the window of the lesson is not
+     * loaded yet.
+     *
+     * @param instructor instructor which creates the lesson.
+     * @param lesson lesson to create.
+     * @return created lesson, null if it already exists or overlaps other lesson.
+     */
     public Lesson createLessonByInstructor(CognitoUser instructor, Lesson lesson) {
 
-        final Lesson newLesson = new Lesson()
+        final Lesson newLesson = newLessonOf(instructor, lesson);
+
+        if (newLesson.getStartTime() == null) {
+            return lessonStore.createLesson(newLesson) ? newLesson : null;
+        }
+
+        return lessonIntervals.withInstructor(instructor.getId(), intervals -> {
+            intervals.load(newLesson.getStartTime(), newLesson.getStopTime());
+
+            if (intervals.contains(newLesson) || intervals.overlaps(newLesson)) {
+                return null;
+            }
+
+            if (lessonStore.createLesson(newLesson)) {
+                intervals.add(newLesson);
+                return newLesson;
+            } else {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Create multiple lessons by instructor.
+     *
+     * <p>Existing and overlapping lessons are found by interval
+     * index of the instructor, missing windows of which are loaded
+     * by single range query. The rest is written by conditional
+     * puts in parallel on dynamo executor, so lessons created
+     * meanwhile by another instance are never overwritten and
+     * are reported as ALREADY_EXISTS.
+     *
+     * @param instructor instructor which creates lessons.
+     * @param lessons lessons to create.
+     * @return result for every lesson, in the same order.
+     */
+    public List<LessonCreateResult> createLessonsByInstructor(CognitoUser instructor, List<Lesson> lessons) {
+
+        final List<Lesson> newLessons = new ArrayList<>(lessons.size());
+        Instant from = null;
+        Instant to = null;
+
+        for (Lesson lesson : lessons) {
+            final Lesson newLesson = newLessonOf(instructor, lesson);
+            newLessons.add(newLesson);
+
+            final Instant startTime = newLesson.getStartTime();
+            if (startTime != null) {
+                final Instant stopTime = newLesson.getStopTime() != null ? newLesson.getStopTime() : startTime;
+                if (from == null || startTime.isBefore(from)) from = startTime;
+                if (to == null || stopTime.isAfter(to)) to = stopTime;
+            }
+        }
+
+        final List<LessonCreateResult.Status> statuses = new ArrayList<>(newLessons.size());
+        final Instant first = from;
+        final Instant last = to;
+
+        lessonIntervals.withInstructor(instructor.getId(), intervals -> {
+            if (first != null) {
+                intervals.load(first, last);
+            }
+
+            final List<Lesson> toCreate = new ArrayList<>(newLessons.size());
+            final List<Integer> positions = new ArrayList<>(newLessons.size());
+
+            for (Lesson newLesson : newLessons) {
+                if (newLesson.getStartTime() == null) {
+                    statuses.add(LessonCreateResult.Status.INVALID);
+                } else if (intervals.contains(newLesson)) {
+                    statuses.add(LessonCreateResult.Status.ALREADY_EXISTS);
+                } else if (intervals.overlaps(newLesson)) {
+                    statuses.add(LessonCreateResult.Status.OVERLAPS);
+                } else {
+                    positions.add(statuses.size());
+                    statuses.add(LessonCreateResult.Status.CREATED);
+                    toCreate.add(newLesson);
+                    intervals.add(newLesson);
+                }
+            }
+
+            final List<LessonCreateResult.Status> created = createInParallel(toCreate);
+            for (int i = 0; i < created.size(); i++) {
+                if (created.get(i) != LessonCreateResult.Status.CREATED) {
+                    intervals.remove(toCreate.get(i).getStartTime());
+                    statuses.set(positions.get(i), created.get(i));
+                }
+            }
+
+            // lessons written by another instance are missing in the index
+            if (created.contains(LessonCreateResult.Status.ALREADY_EXISTS)) {
+                intervals.invalidate();
+            }
+            return null;
+        });
+
+        final List<LessonCreateResult> results = new ArrayList<>(newLessons.size());
+        for (int i = 0; i < newLessons.size(); i++) {
+            results.add(new LessonCreateResult(newLessons.get(i), statuses.get(i)));
+        }
+
+        return results;
+    }
+
+    /**
+     * Publish weekly recurring series of lessons by instructor.
+     *
+     * <p>Series is expanded to lessons on the server, every day
+     * of the date range which is not excluded gets lessons of slots
+     * of its day of week. Lessons are created as by
+     * createLessonsByInstructor, so collisions are found by at
+     * most single range query and lessons are written in parallel.
+     *
+     * @param instructor instructor which creates lessons.
+     * @param series weekly pattern with date range.
+     * @return result for every lesson, sorted by start time.
+     * @throws IllegalArgumentException if series is invalid or has
+     * more than dynamo.max-series-lessons lessons.
+     */
+    public List<LessonCreateResult> createLessonSeriesByInstructor(CognitoUser instructor, LessonSeries series) {
+        return createLessonsByInstructor(instructor, expand(series));
+    }
+
+    /**
+     * Expand series to lessons.
+     *
+     * @param series weekly pattern with date range.
+     * @return lessons sorted by start time.
+     */
+    private List<Lesson> expand(LessonSeries series) {
+        final LocalDate from;
+        final LocalDate to;
+        final ZoneId zone;
+        final Set<LocalDate> exclusions = new HashSet<>();
+        final Map<DayOfWeek, List<LocalTime[]>> slots = new EnumMap<>(DayOfWeek.class);
+
+        try {
+            from = LocalDate.parse(series.getFrom());
+            to = LocalDate.parse(series.getTo());
+            zone = series.getZone() != null ? ZoneId.of(series.getZone()) : ZoneOffset.UTC;
+
+            for (String exclusion : series.getExclusions()) {
+                exclusions.add(LocalDate.parse(exclusion));
+            }
+
+            for (LessonSeries.Slot slot : series.getSlots()) {
+                final LocalTime start = LocalTime.parse(slot.getStartTime());
+                final LocalTime stop = LocalTime.parse(slot.getStopTime());
+
+                if (!stop.isAfter(start)) {
+                    throw new IllegalArgumentException("slot has to stop after it starts");
+                }
+
+                slots.computeIfAbsent(DayOfWeek.valueOf(slot.getDayOfWeek()), day -> new ArrayList<>())
+                        .add(new LocalTime[] {start, stop});
+            }
+        } catch (DateTimeException | NullPointerException e) {
+            throw new IllegalArgumentException("invalid series", e);
+        }
+
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to cannot be before from");
+        }
+
+        final List<Lesson> lessons = new ArrayList<>();
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            if (exclusions.contains(date)) {
+                continue;
+            }
+
+            for (LocalTime[] slot : slots.getOrDefault(date.getDayOfWeek(), Collections.emptyList())) {
+                if (lessons.size() == dynamoConfig.getMaxSeriesLessons()) {
+                    throw new IllegalArgumentException("series cannot have more than "
+                            + dynamoConfig.getMaxSeriesLessons() + " lessons");
+                }
+
+                lessons.add(new Lesson()
+                        .withStartTime(ZonedDateTime.of(date, slot[0], zone).toInstant())
+                        .withStopTime(ZonedDateTime.of(date, slot[1], zone).toInstant()));
+            }
+        }
+
+        lessons.sort(Comparator.comparing(Lesson::getStartTime));
+        return lessons;
+    }
+
+    /**
+     * Copy lesson sent by instructor to new lesson owned by him.
+     *
+     * <p>New lesson is free, so it is put to index of available lessons.
+     *
+     * @param instructor owner of the lesson.
+     * @param lesson lesson sent by instructor.
+     * @return new lesson instance.
+     */
+    private Lesson newLessonOf(CognitoUser instructor, Lesson lesson) {
+        return new Lesson()
                 .withInstructorId(instructor.getId())
                 .withStartTime(lesson.getStartTime())
                 .withStopTime(lesson.getStopTime())
+                .withAvailableDay(lesson.getStartTime() != null ? Lesson.dayOf(lesson.getStartTime()) : null)
                 .withInstructorName(
                         instructor.getFirstName() + " " + instructor.getLastName()
                 );
-
-        if (dynamoDao.createLesson(newLesson)) {
-            return newLesson;
-        } else {
-            return null;
-        }
     }
 
     /**
@@ -69,24 +365,88 @@ public class LessonService {
      * <p>Start time is the range key in DynamoDB and it must
      * be unique among lessons of particular instructor.
      *
+     * <p>Registration is atomic, if more students register to
+     * the same lesson concurrently, only one of them succeeds.
+     * Student can have at most dynamo.max-student-bookings
+     * lessons which have not started yet.
+     *
      * @param student an unique id of the student.
      * @param instructorId an unique id of the instructor.
      * @param startTime beginning time of the lesson.
      * @return lesson instance to which the student was registered.
+     * @throws Exception if another student is already registered to it
+     * or the student has too many future lessons.
+     */
+    public Lesson registerStudentToLesson(CognitoUser student, String instructorId, Instant startTime) throws Exception {
+        Lesson registeredLesson = lessonStore.registerStudent(
+                instructorId,
+                startTime,
+                student.getId(),
+                student.getFirstName() + " " + student.getLastName()
+        );
+
+        if (registeredLesson != null) {
+            return registeredLesson;
+        }
+
+        // registration failed, find out why
+        throw registrationFailure(lessonStore.getLessonByInstructor(instructorId, startTime));
+    }
+
+    /**
+     * Asynchronous variant of registerStudentToLesson.
+     *
+     * <p>If dynamo.async is not enabled, registration is done
+     * synchronously and completed future is returned.
+     *
+     * @param student an unique id of the student.
+     * @param instructorId an unique id of the instructor.
+     * @param startTime beginning time of the lesson.
+     * @return future lesson instance to which the student was registered.
      * @throws Exception if another student is already registered to it.
+     * @see #registerStudentToLesson(CognitoUser, String, Instant)
      */
-    public Lesson registerStudentToLesson(CognitoUser student, String instructorId, Calendar startTime) throws Exception {
-        Lesson fetchedLesson = dynamoDao.getLessonByInstructor(instructorId, startTime);
+    public CompletableFuture<Lesson> registerStudentToLessonAsync(
+            CognitoUser student,
+            String instructorId,
+            Instant startTime) throws Exception {
 
-        if (fetchedLesson.getStudentId() == null || fetchedLesson.getStudentId().length() == 0) {
+        if (asyncDynamoDao == null) {
+            return CompletableFuture.completedFuture(
+                    registerStudentToLesson(student, instructorId, startTime)
+            );
+        }
 
-            fetchedLesson.withStudentId(student.getId());
-            fetchedLesson.withStudentName(student.getFirstName() + " " + student.getLastName());
+        return unwrapped(asyncDynamoDao.registerStudent(
+                instructorId,
+                startTime,
+                student.getId(),
+                student.getFirstName() + " " + student.getLastName()
+        ).thenCompose(registeredLesson -> {
+            if (registeredLesson != null) {
+                return CompletableFuture.completedFuture(registeredLesson);
+            }
 
-            dynamoDao.updateLesson(fetchedLesson, true);
-            return fetchedLesson;
+            // registration failed, find out why
+            return asyncDynamoDao.getLessonByInstructor(instructorId, startTime)
+                    .thenCompose(fetchedLesson -> failed(registrationFailure(fetchedLesson)));
+        }));
+    }
+
+    /**
+     * Reason why registration to lesson failed.
+     *
+     * @param fetchedLesson lesson fetched after failed registration, may be null.
+     * @return exception describing the failure.
+     */
+    private static Exception registrationFailure(Lesson fetchedLesson) {
+        if (fetchedLesson == null) {
+            return new Exception("lesson does not exist");
+        } else if (fetchedLesson.getStudentId() == null) {
+            // free lesson is refused only by limit of bookings
+            return new Exception("student has too many future lessons");
         } else {
-            throw new Exception("lesson is already registered to another student: "
+            return new Exception("lesson is already registered to another student: "
                 + fetchedLesson.getStudentId() + "/" + fetchedLesson.getStudentName()
             );
         }
@@ -95,11 +455,12 @@ public class LessonService {
     /**
      * Unregister student from lesson.
      *
-     * <p>Force mode will delete any student from specified
-     * lesson and ignore 24h before lesson.
+     * <p>Force mode ignores 24h before lesson restriction.
      *
-     * <p>No force mode will delete student from lesson if this student
-     * is actually registered to it.
+     * <p>Student is deleted from lesson only if this student
+     * is actually registered to it. Check and update are done
+     * atomically. If somebody waits for the lesson, the first
+     * waiting student is registered instead.
      *
      * <p>Start time is the range key in DynamoDB.
      *
@@ -108,34 +469,223 @@ public class LessonService {
      * @param startTime beginning time of the lesson.
      * @param force force delete mode.
      * @return lesson instance from which the student was unregistered.
-     * @throws Exception (no force only) if the lesson specified belongs to another student.
+     * @throws Exception if the lesson specified belongs to another student.
      */
-    public Lesson unregisterStudentFromLesson(String studentId, String instructorId, Calendar startTime, boolean force) throws Exception {
-        Lesson fetchedLesson = dynamoDao.getLessonByInstructor(instructorId, startTime);
+    public Lesson unregisterStudentFromLesson(String studentId, String instructorId, Instant startTime, boolean force) throws Exception {
 
         // 24 hours before lesson begins
-        Calendar actual = Calendar.getInstance();    // actual time
-        Calendar shift24 = (Calendar) fetchedLesson.getStartTime().clone();
-        shift24.setTimeInMillis(
-                // shift lesson start - 24h
-                shift24.getTimeInMillis() - dayInMilis
-        );
+        final long shift24 = startTime.toEpochMilli() - dayInMilis;
 
-        if (actual.after(shift24) && !force) {
+        if (System.currentTimeMillis() > shift24 && !force) {
             // disable unregistration
-            return fetchedLesson;
+            return lessonStore.getLessonByInstructor(instructorId, startTime);
         }
 
-        if (fetchedLesson.getStudentId().equals(studentId) || force) {
-            fetchedLesson.setStudentId(null);
-            fetchedLesson.setStudentName(null);
-            dynamoDao.updateLesson(fetchedLesson, false);
-            return fetchedLesson;
+        Lesson unregisteredLesson = lessonStore.unregisterStudent(instructorId, startTime, studentId);
+
+        if (unregisteredLesson != null) {
+            return unregisteredLesson;
         } else {
             throw new Exception("lesson belongs another student");
         }
     }
 
+    /**
+     * Asynchronous variant of unregisterStudentFromLesson.
+     *
+     * <p>If dynamo.async is not enabled, unregistration is done
+     * synchronously and completed future is returned.
+     *
+     * @param studentId an unique id of the student.
+     * @param instructorId an unique id of the instructor.
+     * @param startTime beginning time of the lesson.
+     * @param force force delete mode.
+     * @return future lesson instance from which the student was unregistered.
+     * @throws Exception if the lesson specified belongs to another student.
+     * @see #unregisterStudentFromLesson(String, String, Instant, boolean)
+     */
+    public CompletableFuture<Lesson> unregisterStudentFromLessonAsync(
+            String studentId,
+            String instructorId,
+            Instant startTime,
+            boolean force) throws Exception {
+
+        if (asyncDynamoDao == null) {
+            return CompletableFuture.completedFuture(
+                    unregisterStudentFromLesson(studentId, instructorId, startTime, force)
+            );
+        }
+
+        // 24 hours before lesson begins
+        final long shift24 = startTime.toEpochMilli() - dayInMilis;
+
+        if (System.currentTimeMillis() > shift24 && !force) {
+            // disable unregistration
+            return unwrapped(asyncDynamoDao.getLessonByInstructor(instructorId, startTime));
+        }
+
+        return unwrapped(asyncDynamoDao.unregisterStudent(instructorId, startTime, studentId)
+                .thenCompose(unregisteredLesson -> unregisteredLesson != null
+                        ? CompletableFuture.completedFuture(unregisteredLesson)
+                        : failed(new Exception("lesson belongs another student"))
+                ));
+    }
+
+    /**
+     * Put student on waitlist of lesson booked by another student.
+     *
+     * <p>Student is registered to the lesson automatically, when
+     * the registered student and all students waiting before
+     * unregister. Student with too many future bookings is not
+     * registered then and keeps waiting. Free lesson is registered
+     * immediately.
+     *
+     * @param student the student.
+     * @param instructorId an unique id of the instructor.
+     * @param startTime beginning time of the lesson.
+     * @return lesson with the student on waitlist or registered.
+     * @throws Exception if lesson does not exist, is registered
+     * to the student or waitlist is full.
+     */
+    public Lesson joinWaitlist(CognitoUser student, String instructorId, Instant startTime) throws Exception {
+        final Lesson waitingLesson = lessonStore.joinWaitlist(
+                instructorId,
+                startTime,
+                student.getId(),
+                student.getFirstName() + " " + student.getLastName()
+        );
+
+        if (waitingLesson != null) {
+            return waitingLesson;
+        }
+
+        // joining failed, find out why
+        final Lesson fetchedLesson = lessonStore.getLessonByInstructor(instructorId, startTime);
+
+        if (fetchedLesson == null) {
+            throw new Exception("lesson does not exist");
+        } else if (fetchedLesson.getStudentId() == null) {
+            return registerStudentToLesson(student, instructorId, startTime);
+        } else if (student.getId().equals(fetchedLesson.getStudentId())) {
+            throw new Exception("lesson is already registered to the student");
+        } else if (fetchedLesson.getWaitlist() != null && fetchedLesson.getWaitlist().contains(student.getId())) {
+            return fetchedLesson;
+        } else {
+            throw new Exception("waitlist is full");
+        }
+    }
+
+    /**
+     * Remove student from waitlist of lesson.
+     *
+     * @param studentId an unique id of the student.
+     * @param instructorId an unique id of the instructor.
+     * @param startTime beginning time of the lesson.
+     * @return lesson without the student on waitlist.
+     * @throws Exception if the student does not wait for the lesson.
+     */
+    public Lesson leaveWaitlist(String studentId, String instructorId, Instant startTime) throws Exception {
+        final Lesson lesson = lessonStore.leaveWaitlist(instructorId, startTime, studentId);
+
+        if (lesson != null) {
+            return lesson;
+        } else {
+            throw new Exception("student does not wait for the lesson");
+        }
+    }
+
+    /**
+     * Unregister student from all his lessons.
+     *
+     * <p>Student is removed from waitlists first, so that he
+     * is not promoted to any lesson meanwhile. Lessons are updated
+     * in parallel by conditional updates, lessons from which
+     * the student was already unregistered are skipped.
+     *
+     * @param studentId an unique id of the student.
+     * @return lessons from which the student could not be unregistered.
+     */
+    public List<Lesson> unregisterStudentFromAllLessons(String studentId) {
+        final List<Lesson> failed = inParallel(
+                lessonStore.getLessonsWaitedByStudent(studentId),
+                lesson -> lessonStore.leaveWaitlist(lesson.getInstructorId(), lesson.getStartTime(), studentId),
+                "remove student " + studentId + " from waitlist of"
+        );
+
+        failed.addAll(inParallel(
+                lessonStore.getLessonsByStudent(studentId),
+                lesson -> lessonStore.unregisterStudent(lesson.getInstructorId(), lesson.getStartTime(), studentId),
+                "unregister student " + studentId + " from"
+        ));
+
+        return failed;
+    }
+
+    /**
+     * Create lessons by conditional puts in parallel on dynamo executor.
+     *
+     * @param lessons lessons which should be created.
+     * @return status of every lesson, in the same order. ALREADY_EXISTS
+     * if the lesson exists, FAILED if it could not be written.
+     */
+    private List<LessonCreateResult.Status> createInParallel(List<Lesson> lessons) {
+        final List<CompletableFuture<LessonCreateResult.Status>> futures = new ArrayList<>(lessons.size());
+
+        for (Lesson lesson : lessons) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return lessonStore.createLesson(lesson)
+                            ? LessonCreateResult.Status.CREATED
+                            : LessonCreateResult.Status.ALREADY_EXISTS;
+                } catch (Exception e) {
+                    log.warn("cannot create lesson " +
+                            lesson.getInstructorId() + "/" + lesson.getStartTime(), e);
+                    return LessonCreateResult.Status.FAILED;
+                }
+            }, dynamoExecutor));
+        }
+
+        final List<LessonCreateResult.Status> statuses = new ArrayList<>(futures.size());
+        futures.forEach(future -> statuses.add(future.join()));
+
+        return statuses;
+    }
+
+    /**
+     * Update lessons in parallel on dynamo executor.
+     *
+     * @param lessons lessons which should be updated.
+     * @param update update of single lesson.
+     * @param description description of the update for log.
+     * @return lessons which could not be updated.
+     */
+    private List<Lesson> inParallel(List<Lesson> lessons, Consumer<Lesson> update, String description) {
+        final List<CompletableFuture<Lesson>> futures = new ArrayList<>(lessons.size());
+
+        for (Lesson lesson : lessons) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    update.accept(lesson);
+                    return null;
+                } catch (Exception e) {
+                    log.warn("cannot " + description + " lesson " +
+                            lesson.getInstructorId() + "/" + lesson.getStartTime(), e);
+                    return lesson;
+                }
+            }, dynamoExecutor));
+        }
+
+        final List<Lesson> failed = new ArrayList<>();
+        futures.forEach(future -> {
+            Lesson lesson = future.join();
+            if (lesson != null) {
+                failed.add(lesson);
+            }
+        });
+
+        return failed;
+    }
+
     /**
      * List all lessons of specified student.
      *
@@ -143,7 +693,7 @@ public class LessonService {
      * @return list of lessons.
      */
     public List<Lesson> getLessonsByStudent(String studentId) {
-        return dynamoDao.getLessonsByStudent(studentId);
+        return lessonStore.getLessonsByStudent(studentId);
     }
 
     /**
@@ -153,7 +703,7 @@ public class LessonService {
      * @return list of lessons.
      */
     public List<Lesson> getLessonsByInstructor(String instructorId) {
-        return dynamoDao.getLessonsByInstructor(instructorId);
+        return lessonStore.getLessonsByInstructor(instructorId);
     }
 
     /**
@@ -164,8 +714,8 @@ public class LessonService {
      * @param since since when date.
      * @return list of lessons.
      */
-    public List<Lesson> getLessonsByInstructorSince(String instructorId, Calendar since) {
-        return dynamoDao.getLessonsByInstructorSince(instructorId, since);
+    public List<Lesson> getLessonsByInstructorSince(String instructorId, Instant since) {
+        return lessonStore.getLessonsByInstructorSince(instructorId, since);
     }
 
     /**
@@ -176,8 +726,8 @@ public class LessonService {
      * @param since since when date.
      * @return list of lessons.
      */
-    public List<Lesson> getLessonsByStudentSince(String studentId, Calendar since) {
-        return dynamoDao.getLessonsByStudentSince(studentId, since);
+    public List<Lesson> getLessonsByStudentSince(String studentId, Instant since) {
+        return lessonStore.getLessonsByStudentSince(studentId, since);
     }
 
     /**
@@ -191,10 +741,10 @@ public class LessonService {
      */
     public List<Lesson> getLessonsByInstructorRange(
             String instructorId,
-            Calendar from,
-            Calendar to) {
+            Instant from,
+            Instant to) {
 
-        return dynamoDao.getLessonsByInstructorRange(instructorId, from, to);
+        return lessonStore.getLessonsByInstructorRange(instructorId, from, to);
     }
 
     /**
@@ -208,10 +758,408 @@ public class LessonService {
      */
     public List<Lesson> getLessonsByStudentRange(
             String studentId,
-            Calendar from,
-            Calendar to) {
+            Instant from,
+            Instant to) {
+
+        return lessonStore.getLessonsByStudentRange(studentId, from, to);
+    }
+
+    /**
+     * List lessons of several instructors within date range,
+     * merged into single calendar sorted by start time.
+     *
+     * <p>Range of every instructor is queried in parallel on
+     * executor for DynamoDB requests, so latency is close to the
+     * slowest query. Sorted results are merged by k-way merge.
+     * Lessons with the same start time keep order of instructors.
+     *
+     * @param instructorIds unique ids of instructors, duplicates are ignored.
+     * @param from starting by date.
+     * @param to ending by date.
+     * @return list of lessons sorted by start time.
+     * @throws IllegalArgumentException if there are more instructors
+     * than calendar.max-instructors.
+     */
+    public List<Lesson> getLessonsByInstructorsRange(
+            Collection<String> instructorIds,
+            Instant from,
+            Instant to) {
+
+        final Set<String> ids = new LinkedHashSet<>(instructorIds);
+
+        if (ids.size() > calendarConfig.getMaxInstructors()) {
+            throw new IllegalArgumentException("calendar cannot have more than "
+                    + calendarConfig.getMaxInstructors() + " instructors");
+        }
+
+        final List<CompletableFuture<List<Lesson>>> futures = new ArrayList<>(ids.size());
+        for (String instructorId : ids) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> lessonStore.getLessonsByInstructorRange(instructorId, from, to),
+                    dynamoExecutor
+            ));
+        }
+
+        final List<List<Lesson>> lists = new ArrayList<>(futures.size());
+        int total = 0;
+        for (CompletableFuture<List<Lesson>> future : futures) {
+            final List<Lesson> lessons = joinUnwrapped(future);
+            lists.add(lessons);
+            total += lessons.size();
+        }
+
+        final List<Lesson> merged = new ArrayList<>(total);
+        new LessonMerge(lists).forEachRemaining(merged::add);
+        return merged;
+    }
+
+    /**
+     * List free lessons of all instructors within date range.
+     *
+     * <p>Every day of the range is single query on sparse index
+     * of free lessons, so booked lessons are never read and
+     * instructors do not have to be listed first. Days are UTC
+     * dates of start time, they are queried in parallel on dynamo
+     * executor and concatenated in order.
+     *
+     * @param from starting by date.
+     * @param to ending by date.
+     * @return list of lessons sorted by start time.
+     * @throws IllegalArgumentException if the range is empty or
+     * longer than dynamo.max-available-days.
+     */
+    public List<Lesson> getAvailableLessons(Instant from, Instant to) {
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("to must be after from");
+        }
+
+        final long firstDay = Math.floorDiv(from.toEpochMilli(), dayInMilis);
+        final long lastDay = Math.floorDiv(to.toEpochMilli(), dayInMilis);
+
+        if (lastDay - firstDay >= dynamoConfig.getMaxAvailableDays()) {
+            throw new IllegalArgumentException("range cannot be longer than "
+                    + dynamoConfig.getMaxAvailableDays() + " days");
+        }
+
+        final List<CompletableFuture<List<Lesson>>> futures = new ArrayList<>();
+        for (long day = firstDay; day <= lastDay; day++) {
+            final String bucket = Lesson.dayOf(Instant.ofEpochMilli(day * dayInMilis));
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> lessonStore.getAvailableLessons(bucket, from, to),
+                    dynamoExecutor
+            ));
+        }
+
+        final List<Lesson> lessons = new ArrayList<>();
+        for (CompletableFuture<List<Lesson>> future : futures) {
+            lessons.addAll(joinUnwrapped(future));
+        }
+
+        return lessons;
+    }
+
+    /**
+     * Single page of daily schedule of the school, lessons of all
+     * instructors which start on specified day.
+     *
+     * <p>Day is single query on index DayStartTime, optionally
+     * narrowed to the date range within the day.
+     *
+     * @param day day in UTC, yyyy-MM-dd or any ISO8601 date within the day.
+     * @param from optional starting by date, null for whole day.
+     * @param to optional ending by date, null for whole day.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons sorted by start time.
+     * @throws IllegalArgumentException if day is not a valid date.
+     */
+    public LessonPage getLessonsByDay(
+            String day,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        final String bucket = Lesson.dayOf(Utils.parseISOString(day));
+
+        if (from == null || to == null) {
+            return lessonStore.getLessonsByDay(bucket, limit, cursor);
+        }
+
+        return lessonStore.getLessonsByDayRange(bucket, from, to, limit, cursor);
+    }
+
+    /**
+     * Single page of lessons of specified student.
+     *
+     * @param studentId an unique id of the student.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    public LessonPage getLessonsByStudent(String studentId, Integer limit, String cursor) {
+        return lessonStore.getLessonsByStudent(studentId, limit, cursor);
+    }
+
+    /**
+     * Single page of lessons of specified instructor.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    public LessonPage getLessonsByInstructor(String instructorId, Integer limit, String cursor) {
+        return lessonStore.getLessonsByInstructor(instructorId, limit, cursor);
+    }
+
+    /**
+     * Single page of lessons of specified instructor since
+     * specified date.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @param since since when date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    public LessonPage getLessonsByInstructorSince(
+            String instructorId,
+            Instant since,
+            Integer limit,
+            String cursor) {
+
+        return lessonStore.getLessonsByInstructorSince(instructorId, since, limit, cursor);
+    }
+
+    /**
+     * Single page of lessons of specified student since
+     * specified date.
+     *
+     * @param studentId an unique id of the student.
+     * @param since since when date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    public LessonPage getLessonsByStudentSince(
+            String studentId,
+            Instant since,
+            Integer limit,
+            String cursor) {
+
+        return lessonStore.getLessonsByStudentSince(studentId, since, limit, cursor);
+    }
+
+    /**
+     * Single page of lessons of specified instructor within
+     * date range.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @param from starting by date.
+     * @param to ending by date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    public LessonPage getLessonsByInstructorRange(
+            String instructorId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return lessonStore.getLessonsByInstructorRange(instructorId, from, to, limit, cursor);
+    }
+
+    /**
+     * Single page of lessons of specified student within
+     * date range.
+     *
+     * @param studentId an unique id of the student.
+     * @param from starting by date.
+     * @param to ending by date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    public LessonPage getLessonsByStudentRange(
+            String studentId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        return lessonStore.getLessonsByStudentRange(studentId, from, to, limit, cursor);
+    }
+
+    /**
+     * Single page of lessons of specified instructor, fetched
+     * asynchronously if dynamo.async is enabled.
+     *
+     * <p>If only from is set, lessons since from are listed.
+     * If none of from and to is set, all lessons are listed.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @param from optional starting by date.
+     * @param to optional ending by date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return future page of lessons.
+     */
+    public CompletableFuture<LessonPage> getLessonsByInstructorAsync(
+            String instructorId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        if (asyncDynamoDao != null) {
+            return unwrapped(asyncDynamoDao.getLessonsByInstructor(instructorId, from, to, limit, cursor));
+        }
+
+        return CompletableFuture.completedFuture(instructorPage(instructorId, from, to, limit, cursor));
+    }
+
+    /**
+     * Single page of lessons of specified student, fetched
+     * asynchronously if dynamo.async is enabled.
+     *
+     * <p>If only from is set, lessons since from are listed.
+     * If none of from and to is set, all lessons are listed.
+     *
+     * @param studentId an unique id of the student.
+     * @param from optional starting by date.
+     * @param to optional ending by date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return future page of lessons.
+     */
+    public CompletableFuture<LessonPage> getLessonsByStudentAsync(
+            String studentId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        if (asyncDynamoDao != null) {
+            return unwrapped(asyncDynamoDao.getLessonsByStudent(studentId, from, to, limit, cursor));
+        }
+
+        return CompletableFuture.completedFuture(studentPage(studentId, from, to, limit, cursor));
+    }
+
+    /**
+     * ETag of listing of lessons of specified user.
+     *
+     * <p>ETag changes whenever any lesson of the user is written,
+     * so unchanged listing can be confirmed by single read of the
+     * version instead of query. It has to be taken before the lessons are fetched,
+     * so it is never newer than the listing.
+     *
+     * @param userId an unique id of instructor or student.
+     * @param query query string of the listing, may be null.
+     * @return weak ETag or null if dynamo.lesson-etags is disabled.
+     */
+    public String getLessonsETag(String userId, String query) {
+        if (!dynamoConfig.isLessonEtags()) {
+            return null;
+        }
+
+        final int hash = (userId + "?" + query).hashCode();
+        return "W/\"" + lessonVersions.version(userId) + "-" + Integer.toHexString(hash) + "\"";
+    }
+
+    /**
+     * All lessons of specified instructor, fetched page by page
+     * while they are iterated.
+     *
+     * <p>Only the current page is held in memory, so even whole
+     * history of instructor can be streamed to client.
+     *
+     * <p>If only from is set, lessons since from are listed.
+     * If none of from and to is set, all lessons are listed.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @param from optional starting by date.
+     * @param to optional ending by date.
+     * @return lazily fetched pages of lessons.
+     */
+    public Iterable<LessonPage> getAllLessonPagesByInstructor(String instructorId, Instant from, Instant to) {
+        final int pageSize = dynamoConfig.getMaxPageSize();
+        return () -> new PageIterator(cursor -> instructorPage(instructorId, from, to, pageSize, cursor));
+    }
+
+    /**
+     * All lessons of specified student, fetched page by page
+     * while they are iterated.
+     *
+     * <p>Only the current page is held in memory, so even whole
+     * history of student can be streamed to client.
+     *
+     * <p>If only from is set, lessons since from are listed.
+     * If none of from and to is set, all lessons are listed.
+     *
+     * @param studentId an unique id of the student.
+     * @param from optional starting by date.
+     * @param to optional ending by date.
+     * @return lazily fetched pages of lessons.
+     */
+    public Iterable<LessonPage> getAllLessonPagesByStudent(String studentId, Instant from, Instant to) {
+        final int pageSize = dynamoConfig.getMaxPageSize();
+        return () -> new PageIterator(cursor -> studentPage(studentId, from, to, pageSize, cursor));
+    }
+
+    /**
+     * Single page of lessons of instructor, fetched by blocking store.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @param from optional starting by date.
+     * @param to optional ending by date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    private LessonPage instructorPage(
+            String instructorId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
+
+        if (from == null) {
+            return getLessonsByInstructor(instructorId, limit, cursor);
+        } else if (to == null) {
+            return getLessonsByInstructorSince(instructorId, from, limit, cursor);
+        } else {
+            return getLessonsByInstructorRange(instructorId, from, to, limit, cursor);
+        }
+    }
+
+    /**
+     * Single page of lessons of student, fetched by blocking store.
+     *
+     * @param studentId an unique id of the student.
+     * @param from optional starting by date.
+     * @param to optional ending by date.
+     * @param limit page size, default if null.
+     * @param cursor cursor of the page, null for the first one.
+     * @return page of lessons.
+     */
+    private LessonPage studentPage(
+            String studentId,
+            Instant from,
+            Instant to,
+            Integer limit,
+            String cursor) {
 
-        return dynamoDao.getLessonsByStudentRange(studentId, from, to);
+        if (from == null) {
+            return getLessonsByStudent(studentId, limit, cursor);
+        } else if (to == null) {
+            return getLessonsByStudentSince(studentId, from, limit, cursor);
+        } else {
+            return getLessonsByStudentRange(studentId, from, to, limit, cursor);
+        }
     }
 
     /**
@@ -221,45 +1169,188 @@ public class LessonService {
      * @param startTime startTime which is unique across instructors lessons.
      * @return an instance of the deleted lesson.
      */
-    public Lesson deleteLesson(String instructorId, Calendar startTime) {
+    public Lesson deleteLesson(String instructorId, Instant startTime) {
         Lesson toDelete = new Lesson()
                 .withInstructorId(instructorId)
                 .withStartTime(startTime);
 
-        dynamoDao.deleteLesson(toDelete);
-        return toDelete;
+        return lessonIntervals.withInstructor(instructorId, intervals -> {
+            lessonStore.deleteLesson(toDelete);
+            intervals.remove(startTime);
+            return toDelete;
+        });
+    }
+
+    /**
+     * Permanently will delete all lessons of instructor.
+     *
+     * @param instructorId an unique id of the instructor.
+     * @return lessons which could not be deleted.
+     */
+    public List<Lesson> deleteAllLessonsOfInstructor(String instructorId) {
+        final List<Lesson> failed = lessonIntervals.withInstructor(instructorId, intervals -> {
+            final List<Lesson> lessons = new ArrayList<>(lessonStore.getLessonsByInstructor(instructorId));
+            intervals.invalidate();
+            return lessonStore.batchDeleteLessons(lessons);
+        });
+
+        failed.forEach(lesson -> log.warn("cannot delete lesson " +
+                lesson.getInstructorId() + "/" + lesson.getStartTime()));
+
+        return failed;
     }
 
     /**
      * Get amount of completed hours by student.
      *
+     * <p>Aggregate of the student holds duration of lessons up to
+     * its watermark, so only lessons started since the watermark
+     * are queried. Index of lessons of student is eventually
+     * consistent, so only lessons started more than dynamo.index-lag
+     * seconds ago are folded into the aggregate, by conditional
+     * write which moves the watermark there. Later lessons are
+     * added to the result without being stored. If the aggregate
+     * was changed meanwhile, it is read again.
+     *
      * @param studentId an unique id of the student.
      * @return amount of hours.
      */
     public Double getHoursCompletedByStudent(String studentId) {
 
-        Calendar from = Calendar.getInstance();
-        from.setTimeInMillis(0);
+        long milisTotal = 0;
+
+        for (int attempt = 0; attempt < hoursAttempts; attempt++) {
+            final CompletedHours hours = lessonStore.getCompletedHours(studentId);
+            final Instant now = Instant.now();
+            final Instant settled = now.minusSeconds(dynamoConfig.getIndexLag());
+            final Instant from = hours.getWatermark() != null
+                    ? hours.getWatermark().plusMillis(1)
+                    : Instant.EPOCH;
 
-        List<Lesson> lessons = getLessonsByStudentRange(
-                studentId,
-                from,
-                Calendar.getInstance()
-        );
+            final List<Lesson> lessons = from.isAfter(now)
+                    ? Collections.emptyList()
+                    : getLessonsByStudentRange(studentId, from, now);
 
-        long milisTotal = 0;
+            // sum up durations of new lessons in miliseconds, lessons
+            // which may still be missing from index are not stored
+            long milisNew = 0;
+            long milisTail = 0;
+            int folded = 0;
+            for (Lesson l: lessons) {
+                if (l.getStartTime().isAfter(settled)) {
+                    milisTail += CompletedHours.durationOf(l);
+                } else {
+                    milisNew += CompletedHours.durationOf(l);
+                    folded++;
+                }
+            }
 
-        // sum up durations of lessons in miliseconds
-        for (Lesson l: lessons) {
-            long start = l.getStartTime().getTimeInMillis();
-            long stop = l.getStopTime().getTimeInMillis();
+            milisTotal = hours.getCompletedMillis() + milisNew + milisTail;
 
-            if (stop > start) {
-                milisTotal += stop - start;
+            if (folded == 0 || lessonStore.advanceCompletedHours(hours, milisNew, settled)) {
+                break;
             }
         }
 
-        // convert to hours
+        // convert to hours, the last sum is returned even if
+        // the watermark could not be moved
         return milisTotal / milisToHoursRat;
     }
+
+    /**
+     * Iterator fetching next page when the previous one is consumed.
+     */
+    private static final class PageIterator implements Iterator<LessonPage> {
+
+        /**
+         * Fetches page by its cursor.
+         */
+        private final Function<String, LessonPage> fetch;
+
+        private String cursor;
+
+        private LessonPage next;
+
+        private boolean done;
+
+        private PageIterator(Function<String, LessonPage> fetch) {
+            this.fetch = fetch;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                next = fetch.apply(cursor);
+                cursor = next.getNextCursor();
+                done = cursor == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public LessonPage next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final LessonPage page = next;
+            next = null;
+            return page;
+        }
+    }
+
+    /**
+     * Future completed exceptionally.
+     *
+     * @param e cause of the failure.
+     * @param <T> type of the future.
+     * @return failed future.
+     */
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * Wait for the future and rethrow the original cause
+     * of failure instead of CompletionException.
+     *
+     * @param future future to wait for.
+     * @param <T> type of the future.
+     * @return value of the future.
+     */
+    private static <T> T joinUnwrapped(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Copy of the future which fails with the original cause
+     * instead of CompletionException, so that errors are
+     * reported the same way as in synchronous methods.
+     *
+     * @param future future to unwrap.
+     * @param <T> type of the future.
+     * @return unwrapped future.
+     */
+    private static <T> CompletableFuture<T> unwrapped(CompletableFuture<T> future) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+            } else if (e instanceof CompletionException && e.getCause() != null) {
+                result.completeExceptionally(e.getCause());
+            } else {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
 }
@@ -73,26 +73,21 @@ public class UserService {
     /**
      * Permanently will delete a student from the system.
      *
+     * <p>User is deleted from cognito only if he was
+     * unregistered from all his lessons.
+     *
      * @param uuid an unique id of the student.
      * @return an instance of deleted student.
+     * @throws Exception if the student could not be unregistered from some lessons.
      */
-    public CognitoUser deleteStudent(String uuid) {
+    public CognitoUser deleteStudent(String uuid) throws Exception {
 
         // unregister student from lessons
-        List<Lesson> lessons = lessonService.getLessonsByStudent(uuid);
-        lessons.forEach(l -> {
-            try {
-                lessonService.unregisterStudentFromLesson(
-                        uuid,
-                        l.getInstructorId(),
-                        l.getStartTime(),
-                        true
-
-                );
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
+        List<Lesson> failed = lessonService.unregisterStudentFromAllLessons(uuid);
+        if (!failed.isEmpty()) {
+            throw new Exception("student could not be unregistered from "
+                    + failed.size() + " lessons, student was not deleted");
+        }
 
         CognitoUser student = cognitoService.getUser(uuid);
         return cognitoService.deleteUser(student);
@@ -101,14 +96,21 @@ public class UserService {
     /**
      * Permanently will delete an instructor from the system.
      *
+     * <p>User is deleted from cognito only if all his
+     * lessons were deleted.
+     *
      * @param uuid an unique id of the instructor.
      * @return an instance of deleted instructor.
+     * @throws Exception if some lessons of the instructor could not be deleted.
      */
-    public CognitoUser deleteInstructor(String uuid) {
+    public CognitoUser deleteInstructor(String uuid) throws Exception {
 
         // delete all lessons of this instructor
-        List<Lesson> lessons = lessonService.getLessonsByInstructor(uuid);
-        lessons.forEach(l -> lessonService.deleteLesson(uuid, l.getStartTime()));
+        List<Lesson> failed = lessonService.deleteAllLessonsOfInstructor(uuid);
+        if (!failed.isEmpty()) {
+            throw new Exception(failed.size()
+                    + " lessons could not be deleted, instructor was not deleted");
+        }
 
         CognitoUser user = cognitoService.getUser(uuid);
 
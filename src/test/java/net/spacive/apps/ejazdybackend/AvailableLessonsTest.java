@@ -0,0 +1,90 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.CognitoUser;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AvailableLessonsTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void availableLessonsAcrossDays() {
+        final CognitoUser first = new CognitoUser.Builder().withId(instructor).build();
+        final CognitoUser second = new CognitoUser.Builder().withId(UUID.randomUUID().toString()).build();
+
+        lessonService.createLessonByInstructor(first, new Lesson().withStartTime(time(0)));
+        lessonService.createLessonByInstructor(second, new Lesson().withStartTime(time(1)));
+        lessonService.createLessonByInstructor(first, new Lesson().withStartTime(time(14)));
+        lessonService.createLessonByInstructor(second, new Lesson().withStartTime(time(20)));
+        lessonService.createLessonByInstructor(first, new Lesson().withStartTime(time(40)));
+
+        store.registerStudent(second.getId(), time(1), UUID.randomUUID().toString(), "student");
+        final String student = UUID.randomUUID().toString();
+        store.registerStudent(instructor, time(14), student, "student");
+        store.unregisterStudent(instructor, time(14), student);
+
+        final List<Instant> available = new ArrayList<>();
+        lessonService.getAvailableLessons(time(0), time(20)).forEach(l -> available.add(l.getStartTime()));
+
+        Assert.assertEquals(3, available.size());
+        Assert.assertEquals(time(0), available.get(0));
+        Assert.assertEquals(time(14), available.get(1));
+        Assert.assertEquals(time(20), available.get(2));
+
+        try {
+            lessonService.getAvailableLessons(time(0), time(24 * 40));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            lessonService.getAvailableLessons(time(1), time(1));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
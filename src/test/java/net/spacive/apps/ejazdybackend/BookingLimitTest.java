@@ -0,0 +1,116 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.CognitoUser;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BookingLimitTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void futureBookingsLimited() throws Exception {
+        final CognitoUser student = student("busy");
+        final int limit = new DynamoConfiguration().getMaxStudentBookings();
+        final Instant tomorrow = Instant.now().plus(1, ChronoUnit.DAYS);
+
+        for (int i = 0; i <= limit; i++) {
+            store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(tomorrow.plus(i, ChronoUnit.HOURS)));
+        }
+        for (int i = 0; i < limit; i++) {
+            lessonService.registerStudentToLesson(student, instructor, tomorrow.plus(i, ChronoUnit.HOURS));
+        }
+
+        try {
+            lessonService.registerStudentToLesson(student, instructor, tomorrow.plus(limit, ChronoUnit.HOURS));
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertEquals("student has too many future lessons", e.getMessage());
+        }
+
+        // past lessons are not counted, unregistration frees the slot
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(0)));
+        Assert.assertNotNull(lessonService.registerStudentToLesson(student, instructor, time(0)));
+        lessonService.unregisterStudentFromLesson(student.getId(), instructor, tomorrow, true);
+        Assert.assertNotNull(lessonService.registerStudentToLesson(student, instructor, tomorrow.plus(limit, ChronoUnit.HOURS)));
+    }
+
+    @Test
+    public void promotionSkipsStudentWithTooManyBookings() throws Exception {
+        final CognitoUser busy = student("busy");
+        final CognitoUser free = student("free");
+        final CognitoUser leaving = student("leaving");
+        final int limit = new DynamoConfiguration().getMaxStudentBookings();
+        final Instant tomorrow = Instant.now().plus(1, ChronoUnit.DAYS);
+
+        for (int i = 0; i <= limit; i++) {
+            store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(tomorrow.plus(i, ChronoUnit.HOURS)));
+        }
+        for (int i = 0; i < limit; i++) {
+            lessonService.registerStudentToLesson(busy, instructor, tomorrow.plus(i, ChronoUnit.HOURS));
+        }
+
+        final Instant contested = tomorrow.plus(limit, ChronoUnit.HOURS);
+        lessonService.registerStudentToLesson(leaving, instructor, contested);
+        lessonService.joinWaitlist(busy, instructor, contested);
+        lessonService.joinWaitlist(free, instructor, contested);
+
+        final Lesson promoted = lessonService.unregisterStudentFromLesson(leaving.getId(), instructor, contested, true);
+        Assert.assertEquals(free.getId(), promoted.getStudentId());
+        Assert.assertEquals(Collections.singletonList(busy.getId()), promoted.getWaitlist());
+
+        // nobody else can be promoted, the lesson is freed
+        final Lesson freed = lessonService.unregisterStudentFromLesson(free.getId(), instructor, contested, true);
+        Assert.assertNull(freed.getStudentId());
+        Assert.assertNull(freed.getWaitlist());
+    }
+
+    private static CognitoUser student(String firstName) {
+        return new CognitoUser.Builder()
+                .withId(UUID.randomUUID().toString())
+                .withFirstName(firstName)
+                .withLastName("student")
+                .build();
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
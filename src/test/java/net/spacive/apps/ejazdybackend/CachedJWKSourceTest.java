@@ -0,0 +1,84 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.CognitoConfiguration;
+import net.spacive.apps.ejazdybackend.security.CachedJWKSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+
+public class CachedJWKSourceTest {
+
+    private File jwksFile;
+
+    private CachedJWKSource jwkSource;
+
+    @Before
+    public void setUp() throws Exception {
+        jwksFile = File.createTempFile("jwks", ".json");
+        writeKeys("key-1");
+
+        CognitoConfiguration config = new CognitoConfiguration();
+        config.setJwksUrl(jwksFile.toURI().toURL().toString());
+        config.setJwksMinRefreshInterval(0);
+
+        jwkSource = new CachedJWKSource(config, new SimpleMeterRegistry());
+        jwkSource.start();
+    }
+
+    @After
+    public void tearDown() {
+        jwkSource.stop();
+        jwksFile.delete();
+    }
+
+    @Test
+    public void preloadedKey() {
+        Assert.assertEquals(1, jwkSource.get(selectorOf("key-1"), null).size());
+    }
+
+    @Test
+    public void unknownKeyIdIsFetchedOnDemand() throws Exception {
+        writeKeys("key-2");
+
+        Assert.assertEquals(1, jwkSource.get(selectorOf("key-2"), null).size());
+        Assert.assertTrue(jwkSource.get(selectorOf("key-1"), null).isEmpty());
+    }
+
+    @Test
+    public void staleKeysAreServedIfFetchFails() {
+        Assert.assertTrue(jwksFile.delete());
+
+        Assert.assertFalse(jwkSource.refresh());
+        Assert.assertEquals(1, jwkSource.get(selectorOf("key-1"), null).size());
+    }
+
+    private JWKSelector selectorOf(String keyId) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+    }
+
+    private void writeKeys(String keyId) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+
+        RSAKey key = new RSAKey.Builder((RSAPublicKey) generator.generateKeyPair().getPublic())
+                .keyID(keyId)
+                .build();
+
+        Files.write(
+                jwksFile.toPath(),
+                new JWKSet(key).toJSONObject().toString().getBytes(StandardCharsets.UTF_8)
+        );
+    }
+}
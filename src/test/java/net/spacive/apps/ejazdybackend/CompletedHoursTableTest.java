@@ -0,0 +1,291 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.AsyncDynamoDao;
+import net.spacive.apps.ejazdybackend.database.CompletedHoursTable;
+import net.spacive.apps.ejazdybackend.database.DynamoDao;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.database.StudentBookingsTable;
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CompletedHoursTableTest {
+
+    private static final long HOUR = 3600000;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private AmazonDynamoDB dynamoDB;
+
+    private AmazonDynamoDBAsync dynamoDBAsync;
+
+    private DynamoDao dynamoDao;
+
+    private AsyncDynamoDao asyncDynamoDao;
+
+    @Before
+    public void setUp() {
+        dynamoDB = mock(AmazonDynamoDB.class);
+        dynamoDBAsync = mock(AmazonDynamoDBAsync.class);
+
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final DynamoDBMapper mapper = new DynamoDBMapper(dynamoDB);
+        final DynamoMetrics metrics = new DynamoMetrics(new SimpleMeterRegistry(), config);
+        final CompletedHoursTable hours = new CompletedHoursTable(mapper, dynamoDB, metrics);
+        final StudentBookingsTable bookings = new StudentBookingsTable(mapper, dynamoDB, config, metrics);
+
+        dynamoDao = new DynamoDao(mapper, dynamoDB, config, metrics, new LessonVersions(), hours, bookings);
+        asyncDynamoDao = new AsyncDynamoDao(dynamoDBAsync, mapper, config, metrics, new LessonVersions(), hours, bookings);
+
+        when(dynamoDB.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(new BatchWriteItemResult().withUnprocessedItems(Collections.emptyMap()));
+    }
+
+    @Test
+    public void batchDeleteAdjustsOncePerStudent() {
+        final String first = UUID.randomUUID().toString();
+        final String second = UUID.randomUUID().toString();
+
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(new UpdateItemResult());
+
+        Assert.assertTrue(dynamoDao.batchDeleteLessons(Arrays.asList(
+                lesson(first, 10),
+                lesson(first, 5),
+                lesson(second, 3),
+                lesson(null, 2)
+        )).isEmpty());
+
+        final List<UpdateItemRequest> updates = updates();
+        Assert.assertEquals(2, updates.size());
+
+        final UpdateItemRequest firstUpdate = updateOf(updates, first);
+        Assert.assertEquals("watermark >= :startTime", firstUpdate.getConditionExpression());
+        Assert.assertEquals(Long.toString(-2 * HOUR), firstUpdate.getExpressionAttributeValues().get(":millis").getN());
+        Assert.assertEquals(Iso8601.format(hoursAgo(5)),
+                firstUpdate.getExpressionAttributeValues().get(":startTime").getS());
+
+        Assert.assertEquals(Long.toString(-HOUR),
+                updateOf(updates, second).getExpressionAttributeValues().get(":millis").getN());
+    }
+
+    @Test
+    public void watermarkBehindAppliesOnlyCoveredLessons() {
+        final String student = UUID.randomUUID().toString();
+
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenAnswer(invocation -> {
+            final UpdateItemRequest request = invocation.getArgument(0);
+            if ("watermark >= :startTime".equals(request.getConditionExpression())) {
+                throw new ConditionalCheckFailedException("watermark behind");
+            }
+            return new UpdateItemResult();
+        });
+        when(dynamoDB.getItem(any(GetItemRequest.class))).thenReturn(new GetItemResult().withItem(item(
+                "studentId", new AttributeValue(student),
+                "completedMillis", new AttributeValue().withN(Long.toString(4 * HOUR)),
+                "watermark", new AttributeValue(Iso8601.format(hoursAgo(7))),
+                "revision", new AttributeValue().withN("5")
+        )));
+
+        dynamoDao.batchDeleteLessons(Arrays.asList(lesson(student, 10), lesson(student, 5)));
+
+        final List<UpdateItemRequest> updates = updates();
+        Assert.assertEquals(2, updates.size());
+
+        final UpdateItemRequest revised = updates.get(1);
+        Assert.assertEquals("revision = :revision", revised.getConditionExpression());
+        Assert.assertEquals("ADD completedMillis :millis, revision :one", revised.getUpdateExpression());
+        Assert.assertEquals("5", revised.getExpressionAttributeValues().get(":revision").getN());
+        Assert.assertEquals(Long.toString(-HOUR), revised.getExpressionAttributeValues().get(":millis").getN());
+    }
+
+    @Test
+    public void adjustmentAttemptsBounded() {
+        final String first = UUID.randomUUID().toString();
+        final String second = UUID.randomUUID().toString();
+
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenAnswer(invocation -> {
+            final UpdateItemRequest request = invocation.getArgument(0);
+            if ("CompletedHours".equals(request.getTableName())
+                    && first.equals(request.getKey().get("studentId").getS())) {
+                throw new ConditionalCheckFailedException("aggregate keeps changing");
+            }
+            return new UpdateItemResult();
+        });
+        when(dynamoDB.getItem(any(GetItemRequest.class))).thenReturn(new GetItemResult().withItem(item(
+                "studentId", new AttributeValue(first),
+                "watermark", new AttributeValue(Iso8601.format(now)),
+                "revision", new AttributeValue().withN("5")
+        )));
+
+        try {
+            dynamoDao.batchDeleteLessons(Arrays.asList(lesson(first, 10), lesson(second, 3)));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        final List<UpdateItemRequest> updates = updates();
+        // watermark update and three attempts from read revision
+        Assert.assertEquals(4, updates.stream()
+                .filter(request -> first.equals(request.getKey().get("studentId").getS()))
+                .count());
+
+        // the other student is adjusted anyway
+        Assert.assertEquals(Long.toString(-HOUR),
+                updateOf(updates, second).getExpressionAttributeValues().get(":millis").getN());
+    }
+
+    @Test
+    public void watermarkAdvancedOnlyFromReadRevision() {
+        final String student = UUID.randomUUID().toString();
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(new UpdateItemResult());
+
+        Assert.assertTrue(dynamoDao.advanceCompletedHours(
+                new CompletedHours().withStudentId(student), HOUR, hoursAgo(1)));
+        Assert.assertTrue(dynamoDao.advanceCompletedHours(
+                new CompletedHours().withStudentId(student).withRevision(7), 2 * HOUR, now));
+
+        final List<UpdateItemRequest> updates = updates();
+        Assert.assertEquals("SET watermark = :watermark ADD completedMillis :millis, revision :one",
+                updates.get(0).getUpdateExpression());
+        Assert.assertEquals("attribute_not_exists(studentId)", updates.get(0).getConditionExpression());
+        Assert.assertEquals(Iso8601.format(hoursAgo(1)),
+                updates.get(0).getExpressionAttributeValues().get(":watermark").getS());
+
+        Assert.assertEquals("revision = :revision", updates.get(1).getConditionExpression());
+        Assert.assertEquals("7", updates.get(1).getExpressionAttributeValues().get(":revision").getN());
+        Assert.assertEquals(Long.toString(2 * HOUR), updates.get(1).getExpressionAttributeValues().get(":millis").getN());
+
+        // aggregate written meanwhile
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenThrow(new ConditionalCheckFailedException("revision"));
+        Assert.assertFalse(dynamoDao.advanceCompletedHours(
+                new CompletedHours().withStudentId(student).withRevision(7), HOUR, now));
+    }
+
+    @Test
+    public void futureLessonsOnlyReleaseBookings() {
+        final String student = UUID.randomUUID().toString();
+
+        dynamoDao.batchDeleteLessons(Arrays.asList(lesson(student, -24), lesson(student, -48)));
+
+        Assert.assertTrue(updates().isEmpty());
+
+        final ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDB).updateItem(captor.capture());
+        Assert.assertEquals("DELETE bookings :keys", captor.getValue().getUpdateExpression());
+        Assert.assertEquals(2, captor.getValue().getExpressionAttributeValues().get(":keys").getSS().size());
+    }
+
+    @Test
+    public void asyncUnregistrationAdjustsByAsyncClient() throws Exception {
+        final String student = UUID.randomUUID().toString();
+        final Lesson started = lesson(student, 3);
+
+        when(dynamoDBAsync.updateItemAsync(any(UpdateItemRequest.class), any())).thenAnswer(invocation -> {
+            final UpdateItemRequest request = invocation.getArgument(0);
+            final AsyncHandler<UpdateItemRequest, UpdateItemResult> handler = invocation.getArgument(1);
+
+            if ("Lesson".equals(request.getTableName())) {
+                handler.onSuccess(request, new UpdateItemResult().withAttributes(item(
+                        "instructorId", new AttributeValue(instructor),
+                        "startTime", new AttributeValue(Iso8601.format(started.getStartTime())),
+                        "stopTime", new AttributeValue(Iso8601.format(started.getStopTime()))
+                )));
+            } else if ("watermark >= :startTime".equals(request.getConditionExpression())) {
+                handler.onError(new ConditionalCheckFailedException("watermark behind"));
+            } else {
+                handler.onSuccess(request, new UpdateItemResult());
+            }
+            return null;
+        });
+
+        Assert.assertNotNull(asyncDynamoDao.unregisterStudent(instructor, started.getStartTime(), student).get());
+
+        final ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDBAsync, atLeastOnce()).updateItemAsync(captor.capture(), any());
+        final List<String> expressions = captor.getAllValues().stream()
+                .filter(request -> "CompletedHours".equals(request.getTableName()))
+                .map(UpdateItemRequest::getUpdateExpression)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(Arrays.asList("ADD completedMillis :millis, revision :one", "ADD revision :one"), expressions);
+        verify(dynamoDB, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    /**
+     * One hour lesson which started some hours ago.
+     */
+    private Lesson lesson(String studentId, int startedHoursAgo) {
+        return new Lesson()
+                .withInstructorId(instructor)
+                .withStartTime(hoursAgo(startedHoursAgo))
+                .withStopTime(hoursAgo(startedHoursAgo - 1))
+                .withStudentId(studentId);
+    }
+
+    private Instant hoursAgo(int hours) {
+        return now.minus(hours, ChronoUnit.HOURS);
+    }
+
+    private List<UpdateItemRequest> updates() {
+        final ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDB, atLeastOnce()).updateItem(captor.capture());
+
+        return captor.getAllValues().stream()
+                .filter(request -> "CompletedHours".equals(request.getTableName()))
+                .collect(Collectors.toList());
+    }
+
+    private static UpdateItemRequest updateOf(List<UpdateItemRequest> updates, String studentId) {
+        return updates.stream()
+                .filter(request -> studentId.equals(request.getKey().get("studentId").getS()))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+
+    private static Map<String, AttributeValue> item(Object... attributes) {
+        final Map<String, AttributeValue> item = new HashMap<>();
+        for (int i = 0; i < attributes.length; i += 2) {
+            item.put((String) attributes[i], (AttributeValue) attributes[i + 1]);
+        }
+        return item;
+    }
+}
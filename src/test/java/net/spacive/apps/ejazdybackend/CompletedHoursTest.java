@@ -0,0 +1,100 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.CompletedHours;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class CompletedHoursTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void hoursFoldedIntoAggregate() {
+        final String student = UUID.randomUUID().toString();
+        for (int i = 0; i < 3; i++) {
+            store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(i)).withStopTime(time(i + 1)));
+        }
+        store.registerStudent(instructor, time(0), student, "student");
+        store.registerStudent(instructor, time(1), student, "student");
+
+        Assert.assertEquals(2.0, lessonService.getHoursCompletedByStudent(student), 0);
+        final CompletedHours hours = store.getCompletedHours(student);
+        Assert.assertEquals(2 * 3600000L, hours.getCompletedMillis());
+        Assert.assertTrue(hours.covers(time(2)));
+
+        // booking changes of counted lessons adjust the aggregate
+        store.registerStudent(instructor, time(2), student, "student");
+        Assert.assertEquals(3 * 3600000L, store.getCompletedHours(student).getCompletedMillis());
+        store.unregisterStudent(instructor, time(0), student);
+        Assert.assertEquals(2 * 3600000L, store.getCompletedHours(student).getCompletedMillis());
+        Assert.assertFalse(store.advanceCompletedHours(hours, 3600000L, Instant.now()));
+
+        // lessons which have not started yet are not counted
+        final Instant tomorrow = Instant.now().plus(1, ChronoUnit.DAYS);
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(tomorrow)
+                .withStopTime(tomorrow.plus(1, ChronoUnit.HOURS)));
+        store.registerStudent(instructor, tomorrow, student, "student");
+
+        Assert.assertEquals(2.0, lessonService.getHoursCompletedByStudent(student), 0);
+        Assert.assertEquals(2 * 3600000L, store.getCompletedHours(student).getCompletedMillis());
+    }
+
+    @Test
+    public void recentLessonsCountedButNotFolded() {
+        final String student = UUID.randomUUID().toString();
+        final Instant recent = Instant.now().minusSeconds(10);
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(0)).withStopTime(time(1)));
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(recent)
+                .withStopTime(recent.plus(1, ChronoUnit.HOURS)));
+        store.registerStudent(instructor, time(0), student, "student");
+        store.registerStudent(instructor, recent, student, "student");
+
+        Assert.assertEquals(2.0, lessonService.getHoursCompletedByStudent(student), 0);
+
+        // the recent lesson may be missing from index yet, watermark stays behind it
+        final CompletedHours hours = store.getCompletedHours(student);
+        Assert.assertEquals(3600000L, hours.getCompletedMillis());
+        Assert.assertFalse(hours.covers(recent));
+        Assert.assertEquals(2.0, lessonService.getHoursCompletedByStudent(student), 0);
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
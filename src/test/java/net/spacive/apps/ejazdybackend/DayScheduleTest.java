@@ -0,0 +1,84 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class DayScheduleTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void dayScheduleInPages() {
+        final String second = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 14; i += 2) {
+            store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(i)));
+            store.createLesson(new Lesson().withInstructorId(second).withStartTime(time(i)));
+        }
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(14)));
+        store.updateLesson(new Lesson().withInstructorId(second).withStartTime(time(12)).withStudentName("s"), true);
+
+        final List<Lesson> schedule = new ArrayList<>();
+        String cursor = null;
+        do {
+            final LessonPage page = lessonService.getLessonsByDay("2018-05-01", null, null, 3, cursor);
+            schedule.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        Assert.assertEquals(14, schedule.size());
+        for (int i = 1; i < schedule.size(); i++) {
+            Assert.assertFalse(schedule.get(i).getStartTime().isBefore(schedule.get(i - 1).getStartTime()));
+        }
+        Assert.assertTrue(schedule.stream().anyMatch(l -> second.equals(l.getInstructorId())
+                && time(12).equals(l.getStartTime())
+                && "s".equals(l.getStudentName())));
+
+        final LessonPage range = lessonService.getLessonsByDay(
+                "2018-05-01T15:00:00.000Z", time(4), time(6), null, null);
+        Assert.assertEquals(4, range.getItems().size());
+        Assert.assertNull(range.getNextCursor());
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
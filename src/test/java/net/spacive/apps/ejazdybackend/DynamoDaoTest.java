@@ -11,8 +11,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.IntStream;
@@ -44,7 +44,7 @@ public class DynamoDaoTest {
     @Test
     public void createAndDeleteLesson() {
         final String instructor = UUID.randomUUID().toString();
-        final Calendar startTime = Calendar.getInstance();
+        final Instant startTime = Instant.now();
 
         Lesson newLesson = new Lesson()
                 .withInstructorId(instructor)
@@ -85,7 +85,7 @@ public class DynamoDaoTest {
 
         final String instructor = UUID.randomUUID().toString();
         final String student = UUID.randomUUID().toString();
-        final Calendar startTime = Calendar.getInstance();
+        final Instant startTime = Instant.now();
 
         Lesson newLesson = new Lesson()
                 .withInstructorId(instructor)
@@ -143,11 +143,11 @@ public class DynamoDaoTest {
 
         String instructorId = UUID.randomUUID().toString();
 
-        List<Calendar> startTimes = new ArrayList<>();
+        List<Instant> startTimes = new ArrayList<>();
 
         // generate lessonCount lessons
         IntStream.range(0, lessonCount).forEach(n -> {
-            startTimes.add(Calendar.getInstance());
+            startTimes.add(Instant.now());
             dynamoDao.createLesson(
                     new Lesson()
                             .withInstructorId(instructorId)
@@ -175,11 +175,11 @@ public class DynamoDaoTest {
         final String instructorId = UUID.randomUUID().toString();
         final String studentId = UUID.randomUUID().toString();
 
-        List<Calendar> startTimes = new ArrayList<>();
+        List<Instant> startTimes = new ArrayList<>();
 
         // generate lessonCount lessons
         IntStream.range(0, lessonCount).forEach(n -> {
-            startTimes.add(Calendar.getInstance());
+            startTimes.add(Instant.now());
             dynamoDao.createLesson(
                     new Lesson()
                             .withInstructorId(instructorId)
@@ -204,7 +204,7 @@ public class DynamoDaoTest {
     @Test
     public void getLessonByInstructor() {
         final String instructorId = UUID.randomUUID().toString();
-        final Calendar startTime = Calendar.getInstance();
+        final Instant startTime = Instant.now();
 
         final Lesson newLesson = new Lesson()
                 .withInstructorId(instructorId)
@@ -226,7 +226,7 @@ public class DynamoDaoTest {
     public void getLessonByStudent() {
         final String instructorId = UUID.randomUUID().toString();
         final String studentId = UUID.randomUUID().toString();
-        final Calendar startTime = Calendar.getInstance();
+        final Instant startTime = Instant.now();
 
         final Lesson newLesson = new Lesson()
                 .withInstructorId(instructorId)
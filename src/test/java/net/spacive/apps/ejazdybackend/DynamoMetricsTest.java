@@ -0,0 +1,91 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.amazonaws.Response;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.ConsumedCapacityHandler;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class DynamoMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    private DynamoMetrics metrics;
+
+    private ConsumedCapacityHandler handler;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new DynamoMetrics(registry, new DynamoConfiguration());
+        handler = new ConsumedCapacityHandler();
+    }
+
+    @Test
+    public void recordsLatencyItemsAndCapacity() {
+        final List<Lesson> lessons = metrics.record(DynamoMetrics.Operation.QUERY_BY_STUDENT_RANGE, () -> {
+            // two pages of lazily loaded query
+            respond(new QueryResult().withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(1.5)));
+            respond(new QueryResult().withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(0.5)));
+            return Arrays.asList(new Lesson(), new Lesson());
+        }, List::size, "id");
+
+        Assert.assertEquals(2, lessons.size());
+        Assert.assertEquals(1, registry.get("dynamo.operation")
+                .tag("operation", "queryByStudentRange")
+                .tag("index", "StudentIdStartTime")
+                .timer().count());
+        Assert.assertEquals(2.0, registry.get("dynamo.operation.items")
+                .tag("operation", "queryByStudentRange")
+                .summary().totalAmount(), 0);
+        Assert.assertEquals(2.0, registry.get("dynamo.consumed.capacity")
+                .tag("operation", "queryByStudentRange")
+                .tag("capacity", "read")
+                .counter().count(), 0);
+    }
+
+    @Test
+    public void capacityIsCountedPerOperation() {
+        metrics.record(DynamoMetrics.Operation.BATCH_DELETE_LESSONS, () -> {
+            respond(new BatchWriteItemResult().withConsumedCapacity(
+                    new ConsumedCapacity().withCapacityUnits(25.0),
+                    new ConsumedCapacity().withCapacityUnits(5.0)
+            ));
+            return Collections.<Lesson>emptyList();
+        }, failed -> 30, "30 lessons");
+
+        // capacity of previous operation must not leak into this one
+        metrics.record(DynamoMetrics.Operation.DELETE_LESSON, () -> null, deleted -> 1, "id");
+
+        Assert.assertEquals(30.0, registry.get("dynamo.consumed.capacity")
+                .tag("operation", "batchDeleteLessons")
+                .tag("capacity", "write")
+                .counter().count(), 0);
+        Assert.assertEquals(0.0, registry.get("dynamo.consumed.capacity")
+                .tag("operation", "deleteLesson")
+                .counter().count(), 0);
+    }
+
+    @Test
+    public void consumedCapacityIsRequested() {
+        final QueryRequest request = (QueryRequest) handler.beforeExecution(new QueryRequest());
+
+        Assert.assertEquals("TOTAL", request.getReturnConsumedCapacity());
+    }
+
+    private void respond(Object result) {
+        handler.afterResponse(null, new Response<>(result, null));
+    }
+}
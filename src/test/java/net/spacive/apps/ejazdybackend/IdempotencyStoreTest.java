@@ -0,0 +1,145 @@
+package net.spacive.apps.ejazdybackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.IdempotencyConfiguration;
+import net.spacive.apps.ejazdybackend.service.IdempotencyStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class IdempotencyStoreTest {
+
+    private IdempotencyStore store;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        final IdempotencyConfiguration config = new IdempotencyConfiguration();
+        config.setWaitTimeout(1);
+
+        store = new IdempotencyStore(config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void retryGetsFirstResult() throws Exception {
+        final String first = store.execute("user", "key", "POST /a", () -> "result " + executions.incrementAndGet());
+        final String retry = store.execute("user", "key", "POST /a", () -> "result " + executions.incrementAndGet());
+
+        Assert.assertEquals("result 1", first);
+        Assert.assertEquals(first, retry);
+        Assert.assertEquals(1, executions.get());
+
+        // keys are scoped by user, requests without key always execute
+        store.execute("another", "key", "POST /a", executions::incrementAndGet);
+        store.execute("user", null, "POST /a", executions::incrementAndGet);
+        store.execute("user", null, "POST /a", executions::incrementAndGet);
+        Assert.assertEquals(4, executions.get());
+    }
+
+    @Test
+    public void failureIsNotRecorded() throws Exception {
+        try {
+            store.execute("user", "key", "POST /a", () -> {
+                executions.incrementAndGet();
+                throw new Exception("throttled");
+            });
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertEquals("throttled", e.getMessage());
+        }
+
+        Assert.assertEquals(Integer.valueOf(2), store.execute("user", "key", "POST /a", executions::incrementAndGet));
+    }
+
+    @Test
+    public void keyOfAnotherRequestRejected() throws Exception {
+        store.execute("user", "key", "POST /a", executions::incrementAndGet);
+
+        try {
+            store.execute("user", "key", "POST /b", executions::incrementAndGet);
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertEquals(1, executions.get());
+        }
+    }
+
+    @Test
+    public void concurrentRetryWaitsForFirstRequest() throws Exception {
+        final CompletableFuture<String> pending = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = store.executeAsync("user", "key", "POST /a", () -> pending);
+        final CompletableFuture<String> retry = store.executeAsync("user", "key", "POST /a",
+                () -> CompletableFuture.completedFuture("second"));
+
+        Assert.assertFalse(retry.isDone());
+        pending.complete("first");
+        Assert.assertEquals("first", first.get());
+        Assert.assertEquals("first", retry.get());
+
+        // failed request can be retried
+        final CompletableFuture<String> failed = new CompletableFuture<>();
+        final CompletableFuture<String> firstFailed = store.executeAsync("user", "other", "POST /a", () -> failed);
+        failed.completeExceptionally(new Exception("throttled"));
+
+        try {
+            firstFailed.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals("throttled", e.getCause().getMessage());
+        }
+
+        Assert.assertEquals("again", store.executeAsync("user", "other", "POST /a",
+                () -> CompletableFuture.completedFuture("again")).get());
+    }
+
+    @Test
+    public void errorFailsWaitingRetry() throws Exception {
+        final AtomicReference<CompletableFuture<String>> retry = new AtomicReference<>();
+
+        try {
+            store.executeAsync("user", "key", "POST /a", () -> {
+                retry.set(store.executeAsync("user", "key", "POST /a",
+                        () -> CompletableFuture.completedFuture("second")));
+                throw new StackOverflowError();
+            });
+            Assert.fail();
+        } catch (StackOverflowError e) {
+            // expected
+        }
+
+        try {
+            retry.get().get(1, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof StackOverflowError);
+        }
+
+        Assert.assertEquals("again", store.execute("user", "key", "POST /a", () -> "again"));
+    }
+
+    @Test
+    public void retryWaitsAtMostTimeout() throws Exception {
+        store.executeAsync("user", "key", "POST /a", CompletableFuture::new);
+
+        try {
+            store.executeAsync("user", "key", "POST /a", () -> CompletableFuture.completedFuture("second")).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals("request with the same idempotency key is still running", e.getCause().getMessage());
+        }
+
+        try {
+            store.execute("user", "key", "POST /a", () -> "second");
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertEquals("request with the same idempotency key is still running", e.getMessage());
+        }
+    }
+}
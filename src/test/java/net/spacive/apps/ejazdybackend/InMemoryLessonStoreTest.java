@@ -0,0 +1,82 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class InMemoryLessonStoreTest {
+
+    private InMemoryLessonStore store;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    private final String student = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        store = new InMemoryLessonStore(new DynamoConfiguration(), new LessonVersions());
+    }
+
+    @Test
+    public void createLessonOnlyOnce() {
+        final Lesson lesson = new Lesson()
+                .withInstructorId(instructor)
+                .withStartTime(time(1));
+
+        Assert.assertTrue(store.createLesson(lesson));
+        Assert.assertFalse(store.createLesson(lesson));
+        Assert.assertEquals(lesson, store.getLessonByInstructor(instructor, time(1)));
+    }
+
+    @Test
+    public void registerAndUnregisterStudent() {
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(1)));
+
+        Assert.assertNotNull(store.registerStudent(instructor, time(1), student, "John Doe"));
+        Assert.assertNull(store.registerStudent(instructor, time(1), UUID.randomUUID().toString(), "Jane Doe"));
+        Assert.assertEquals(1, store.getLessonsByStudent(student).size());
+
+        Assert.assertNull(store.unregisterStudent(instructor, time(1), UUID.randomUUID().toString()));
+        Assert.assertNotNull(store.unregisterStudent(instructor, time(1), student));
+        Assert.assertTrue(store.getLessonsByStudent(student).isEmpty());
+        Assert.assertNull(store.registerStudent(instructor, time(2), student, "John Doe"));
+    }
+
+    @Test
+    public void pagesOfRange() {
+        for (int i = 0; i < 10; i++) {
+            store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(i)));
+        }
+
+        final List<Lesson> fetched = new ArrayList<>();
+        String cursor = null;
+        do {
+            final LessonPage page = store.getLessonsByInstructorRange(instructor, time(2), time(7), 4, cursor);
+            fetched.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        Assert.assertEquals(6, fetched.size());
+        Assert.assertEquals(time(2).toEpochMilli(), fetched.get(0).getStartTime().toEpochMilli());
+        Assert.assertEquals(time(7).toEpochMilli(), fetched.get(5).getStartTime().toEpochMilli());
+    }
+
+    @Test(expected = Exception.class)
+    public void getLessonsByNoUUIDInstructor() {
+        store.getLessonsByInstructor("i wanna an exception");
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
@@ -0,0 +1,73 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class InstructorCalendarTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void calendarMergedByStartTime() {
+        final String second = UUID.randomUUID().toString();
+        final String third = UUID.randomUUID().toString();
+
+        for (int i = 0; i < 12; i++) {
+            final String owner = i % 3 == 0 ? instructor : i % 3 == 1 ? second : third;
+            store.createLesson(new Lesson().withInstructorId(owner).withStartTime(time(i)));
+        }
+        store.createLesson(new Lesson().withInstructorId(second).withStartTime(time(3)));
+
+        final List<Lesson> calendar = lessonService.getLessonsByInstructorsRange(
+                Arrays.asList(instructor, second, third, second), time(2), time(9));
+
+        Assert.assertEquals(9, calendar.size());
+        for (int i = 1; i < calendar.size(); i++) {
+            Assert.assertFalse(calendar.get(i).getStartTime().isBefore(calendar.get(i - 1).getStartTime()));
+        }
+        Assert.assertEquals(instructor, calendar.get(1).getInstructorId());
+        Assert.assertEquals(second, calendar.get(2).getInstructorId());
+        Assert.assertEquals(time(3), calendar.get(2).getStartTime());
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
@@ -0,0 +1,78 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.amazonaws.util.DateUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Random;
+
+public class Iso8601Test {
+
+    @Test
+    public void sameFormatAsDateUtils() {
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            final long millis = Iso8601.MIN_MILLIS
+                    + (long) (random.nextDouble() * (Iso8601.MAX_MILLIS - Iso8601.MIN_MILLIS));
+
+            final String expected = DateUtils.formatISO8601Date(new Date(millis));
+            Assert.assertEquals(expected, Iso8601.format(millis));
+            Assert.assertEquals(millis, Iso8601.parseMillis(expected));
+        }
+
+        Assert.assertEquals("0000-01-01T00:00:00.000Z", Iso8601.format(Iso8601.MIN_MILLIS));
+        Assert.assertEquals("9999-12-31T23:59:59.999Z", Iso8601.format(Iso8601.MAX_MILLIS));
+    }
+
+    @Test
+    public void parseVariants() {
+        final long millis = 1525168800000L;
+
+        Assert.assertEquals(millis, Iso8601.parseMillis("2018-05-01T10:00:00.000Z"));
+        Assert.assertEquals(millis, Iso8601.parseMillis("2018-05-01T10:00:00Z"));
+        Assert.assertEquals(millis, Iso8601.parseMillis("2018-05-01T10:00Z"));
+        Assert.assertEquals(millis, Iso8601.parseMillis("2018-05-01T12:00:00.000+02:00"));
+        Assert.assertEquals(millis, Iso8601.parseMillis("2018-05-01T12:00:00.000+0200"));
+        Assert.assertEquals(millis, Iso8601.parseMillis("2018-05-01T09:00:00.000-01"));
+        Assert.assertEquals(millis + 123, Iso8601.parseMillis("2018-05-01T10:00:00.123456Z"));
+        Assert.assertEquals(millis + 500, Iso8601.parseMillis("2018-05-01T10:00:00.5"));
+        Assert.assertEquals(millis - 36000000L, Iso8601.parseMillis("2018-05-01"));
+    }
+
+    @Test
+    public void invalidDates() {
+        final String[] invalid = {
+                "", "2018", "2018-5-01", "2018-02-29", "2018-13-01", "2018-05-01T24:00Z",
+                "2018-05-01T10:00:00.Z", "2018-05-01T10:00:00.000+2", "2018-05-01T10:00:00.000Zx"
+        };
+
+        for (String date : invalid) {
+            try {
+                Iso8601.parseMillis(date);
+                Assert.fail(date);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void lessonJson() throws Exception {
+        final ObjectMapper mapper = new ObjectMapper();
+
+        final String json = mapper.writeValueAsString(new Lesson()
+                .withStartTime(Instant.ofEpochMilli(1525168800000L)));
+        Assert.assertTrue(json, json.contains("\"startTime\":\"2018-05-01T10:00:00.000+0000\""));
+
+        final Lesson fromString = mapper.readValue("{\"startTime\":\"2018-05-01T10:00:00.000+0000\"}", Lesson.class);
+        final Lesson fromNumber = mapper.readValue("{\"startTime\":1525168800000}", Lesson.class);
+        Assert.assertEquals(Instant.ofEpochMilli(1525168800000L), fromString.getStartTime());
+        Assert.assertEquals(Instant.ofEpochMilli(1525168800000L), fromNumber.getStartTime());
+    }
+}
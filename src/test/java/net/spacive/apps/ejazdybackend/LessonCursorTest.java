@@ -0,0 +1,38 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import net.spacive.apps.ejazdybackend.database.LessonCursor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class LessonCursorTest {
+
+    @Test
+    public void encodeAndDecode() {
+        final Map<String, AttributeValue> key = new HashMap<>();
+        key.put("instructorId", new AttributeValue(UUID.randomUUID().toString()));
+        key.put("startTime", new AttributeValue("2018-05-01T10:00:00.000Z"));
+
+        final String cursor = LessonCursor.encode(key);
+
+        Assert.assertNotNull(cursor);
+        Assert.assertEquals(key, LessonCursor.decode(cursor));
+    }
+
+    @Test
+    public void lastPageHasNoCursor() {
+        Assert.assertNull(LessonCursor.encode(null));
+        Assert.assertNull(LessonCursor.encode(new HashMap<>()));
+        Assert.assertNull(LessonCursor.decode(null));
+        Assert.assertNull(LessonCursor.decode(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeMalformedCursor() {
+        LessonCursor.decode("i wanna an exception");
+    }
+}
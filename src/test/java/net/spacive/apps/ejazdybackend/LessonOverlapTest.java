@@ -0,0 +1,112 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.CognitoUser;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonCreateResult;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LessonOverlapTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void overlappingLessonsRejected() {
+        final CognitoUser user = new CognitoUser.Builder().withId(instructor).build();
+        final Instant ten = time(0);
+
+        Assert.assertNotNull(lessonService.createLessonByInstructor(user, new Lesson()
+                .withStartTime(ten).withStopTime(ten.plus(90, ChronoUnit.MINUTES))));
+        Assert.assertNull(lessonService.createLessonByInstructor(user, new Lesson()
+                .withStartTime(ten.plus(60, ChronoUnit.MINUTES)).withStopTime(ten.plus(120, ChronoUnit.MINUTES))));
+        Assert.assertNotNull(lessonService.createLessonByInstructor(user, new Lesson()
+                .withStartTime(ten.plus(90, ChronoUnit.MINUTES)).withStopTime(ten.plus(150, ChronoUnit.MINUTES))));
+
+        // lesson written directly to store is loaded with its window
+        store.createLesson(new Lesson().withInstructorId(instructor)
+                .withStartTime(time(24 * 30)).withStopTime(time(24 * 30 + 2)));
+
+        final List<LessonCreateResult> results = lessonService.createLessonsByInstructor(user, Arrays.asList(
+                new Lesson().withStartTime(time(24 * 30 + 1)).withStopTime(time(24 * 30 + 3)),
+                new Lesson().withStartTime(time(24 * 30 + 2)).withStopTime(time(24 * 30 + 3)),
+                new Lesson().withStartTime(time(24 * 30 + 2)).withStopTime(time(24 * 30 + 4)),
+                new Lesson().withStartTime(ten).withStopTime(ten.plus(30, ChronoUnit.MINUTES))
+        ));
+
+        Assert.assertEquals(LessonCreateResult.Status.OVERLAPS, results.get(0).getStatus());
+        Assert.assertEquals(LessonCreateResult.Status.CREATED, results.get(1).getStatus());
+        Assert.assertEquals(LessonCreateResult.Status.ALREADY_EXISTS, results.get(2).getStatus());
+        Assert.assertEquals(LessonCreateResult.Status.ALREADY_EXISTS, results.get(3).getStatus());
+
+        // deleted lesson frees its interval
+        lessonService.deleteLesson(instructor, ten);
+        Assert.assertNotNull(lessonService.createLessonByInstructor(user, new Lesson()
+                .withStartTime(ten.plus(30, ChronoUnit.MINUTES)).withStopTime(ten.plus(90, ChronoUnit.MINUTES))));
+    }
+
+    @Test
+    public void lessonCreatedMeanwhileIsNotOverwritten() {
+        final CognitoUser user = new CognitoUser.Builder().withId(instructor).build();
+
+        Assert.assertNotNull(lessonService.createLessonByInstructor(user, new Lesson()
+                .withStartTime(time(0)).withStopTime(time(1))));
+
+        // window is loaded already, lesson of another instance is not in it
+        store.createLesson(new Lesson().withInstructorId(instructor)
+                .withStartTime(time(2)).withStopTime(time(3)).withStudentId(instructor));
+
+        final List<LessonCreateResult> results = lessonService.createLessonsByInstructor(user, Arrays.asList(
+                new Lesson().withStartTime(time(2)).withStopTime(time(3)),
+                new Lesson().withStartTime(time(4)).withStopTime(time(5))
+        ));
+
+        Assert.assertEquals(LessonCreateResult.Status.ALREADY_EXISTS, results.get(0).getStatus());
+        Assert.assertEquals(LessonCreateResult.Status.CREATED, results.get(1).getStatus());
+        Assert.assertEquals(instructor, store.getLessonByInstructor(instructor, time(2)).getStudentId());
+
+        // index is loaded again with the existing lesson
+        Assert.assertNull(lessonService.createLessonByInstructor(user, new Lesson()
+                .withStartTime(time(2).plus(30, ChronoUnit.MINUTES)).withStopTime(time(3))));
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
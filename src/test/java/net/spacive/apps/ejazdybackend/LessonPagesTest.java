@@ -0,0 +1,97 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonPage;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LessonPagesTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        config.setMaxPageSize(4);
+        config.setLessonEtags(true);
+
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void allPagesInOrder() {
+        for (int i = 0; i < 10; i++) {
+            store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(i)));
+        }
+
+        final List<Lesson> fetched = new ArrayList<>();
+        int pages = 0;
+        for (LessonPage page : lessonService.getAllLessonPagesByInstructor(instructor, time(1), null)) {
+            fetched.addAll(page.getItems());
+            pages++;
+        }
+
+        Assert.assertEquals(3, pages);
+        Assert.assertEquals(9, fetched.size());
+        for (int i = 0; i < fetched.size(); i++) {
+            Assert.assertEquals(time(i + 1).toEpochMilli(), fetched.get(i).getStartTime().toEpochMilli());
+        }
+    }
+
+    @Test
+    public void noLessons() {
+        for (LessonPage page : lessonService.getAllLessonPagesByStudent(UUID.randomUUID().toString(), null, null)) {
+            Assert.assertTrue(page.getItems().isEmpty());
+        }
+    }
+
+    @Test
+    public void etagChangesOnlyWithLessons() {
+        final String student = UUID.randomUUID().toString();
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(0)));
+
+        final String instructorEtag = lessonService.getLessonsETag(instructor, null);
+        final String studentEtag = lessonService.getLessonsETag(student, null);
+        Assert.assertEquals(instructorEtag, lessonService.getLessonsETag(instructor, null));
+        Assert.assertNotEquals(instructorEtag, lessonService.getLessonsETag(instructor, "limit=2"));
+
+        store.registerStudent(instructor, time(0), student, "student");
+
+        Assert.assertNotEquals(instructorEtag, lessonService.getLessonsETag(instructor, null));
+        Assert.assertNotEquals(studentEtag, lessonService.getLessonsETag(student, null));
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}
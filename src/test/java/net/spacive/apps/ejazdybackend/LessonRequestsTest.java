@@ -0,0 +1,254 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.AsyncDynamoDao;
+import net.spacive.apps.ejazdybackend.database.CompletedHoursTable;
+import net.spacive.apps.ejazdybackend.database.DynamoDao;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics;
+import net.spacive.apps.ejazdybackend.database.LessonCursor;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.database.StudentBookingsTable;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LessonRequestsTest {
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    private final String student = UUID.randomUUID().toString();
+
+    private final Instant startTime = Instant.parse("2030-05-01T10:00:00Z");
+
+    private DynamoConfiguration config;
+
+    private AmazonDynamoDB dynamoDB;
+
+    private AmazonDynamoDBAsync dynamoDBAsync;
+
+    private DynamoDao dynamoDao;
+
+    private AsyncDynamoDao asyncDynamoDao;
+
+    @Before
+    public void setUp() {
+        dynamoDB = mock(AmazonDynamoDB.class);
+        dynamoDBAsync = mock(AmazonDynamoDBAsync.class);
+
+        config = new DynamoConfiguration();
+        config.setMaxStudentBookings(0);
+        config.setMaxWaitlist(3);
+        config.setMaxPageSize(4);
+
+        final DynamoDBMapper mapper = new DynamoDBMapper(dynamoDB);
+        final DynamoMetrics metrics = new DynamoMetrics(new SimpleMeterRegistry(), config);
+        final CompletedHoursTable hours = new CompletedHoursTable(mapper, dynamoDB, metrics);
+        final StudentBookingsTable bookings = new StudentBookingsTable(mapper, dynamoDB, config, metrics);
+
+        dynamoDao = new DynamoDao(mapper, dynamoDB, config, metrics, new LessonVersions(), hours, bookings);
+        asyncDynamoDao = new AsyncDynamoDao(dynamoDBAsync, mapper, config, metrics, new LessonVersions(), hours, bookings);
+    }
+
+    @Test
+    public void registrationOnlyOfFreeLesson() {
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(lessonResult(student));
+
+        Assert.assertEquals(student, dynamoDao.registerStudent(instructor, startTime, student, "student").getStudentId());
+
+        final UpdateItemRequest register = updates().get(0);
+        Assert.assertEquals("SET studentId = :studentId, studentName = :studentName REMOVE availableDay",
+                register.getUpdateExpression());
+        Assert.assertEquals("attribute_exists(instructorId) AND attribute_not_exists(studentId)",
+                register.getConditionExpression());
+        Assert.assertEquals(ReturnValue.ALL_NEW.toString(), register.getReturnValues());
+        Assert.assertEquals(Iso8601.format(startTime), register.getKey().get("startTime").getS());
+    }
+
+    @Test
+    public void unregistrationFallsBackToPromotion() {
+        final String next = UUID.randomUUID().toString();
+
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenAnswer(invocation -> {
+            final UpdateItemRequest request = invocation.getArgument(0);
+            if (request.getConditionExpression().contains("size(waitlist) = :zero")) {
+                throw new ConditionalCheckFailedException("somebody waits");
+            }
+            return lessonResult(next);
+        });
+        when(dynamoDB.getItem(any(GetItemRequest.class))).thenReturn(new GetItemResult().withItem(item(
+                "instructorId", new AttributeValue(instructor),
+                "startTime", new AttributeValue(Iso8601.format(startTime)),
+                "studentId", new AttributeValue(student),
+                "waitlist", new AttributeValue().withL(new AttributeValue(next)),
+                "waitlistNames", new AttributeValue().withL(new AttributeValue("next"))
+        )), new GetItemResult().withItem(lessonResult(next).getAttributes()));
+
+        Assert.assertEquals(next, dynamoDao.unregisterStudent(instructor, startTime, student).getStudentId());
+
+        final List<UpdateItemRequest> updates = updates();
+        Assert.assertEquals("REMOVE studentId, studentName SET availableDay = :availableDay",
+                updates.get(0).getUpdateExpression());
+        Assert.assertEquals("2030-05-01", updates.get(0).getExpressionAttributeValues().get(":availableDay").getS());
+
+        final UpdateItemRequest promote = updates.get(1);
+        Assert.assertEquals("SET studentId = :nextId, studentName = :nextName REMOVE waitlist[0], waitlistNames[0]",
+                promote.getUpdateExpression());
+        Assert.assertEquals("studentId = :studentId AND waitlist[0] = :nextId", promote.getConditionExpression());
+        Assert.assertEquals(next, promote.getExpressionAttributeValues().get(":nextId").getS());
+
+        final ArgumentCaptor<GetItemRequest> read = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDB, atLeastOnce()).getItem(read.capture());
+        Assert.assertTrue(read.getAllValues().stream().allMatch(GetItemRequest::getConsistentRead));
+    }
+
+    @Test
+    public void waitlistJoinedUpToLimit() {
+        when(dynamoDB.getItem(any(GetItemRequest.class)))
+                .thenReturn(new GetItemResult().withItem(lessonResult(student).getAttributes()));
+
+        dynamoDao.joinWaitlist(instructor, startTime, UUID.randomUUID().toString(), "waiting");
+
+        final UpdateItemRequest join = updates().get(0);
+        Assert.assertTrue(join.getConditionExpression().contains("size(waitlist) < :max"));
+        Assert.assertTrue(join.getConditionExpression().contains("NOT contains(waitlist, :studentId)"));
+        Assert.assertEquals("3", join.getExpressionAttributeValues().get(":max").getN());
+    }
+
+    @Test
+    public void waitlistLeftAtReadPosition() {
+        final String waiting = UUID.randomUUID().toString();
+
+        when(dynamoDB.getItem(any(GetItemRequest.class))).thenReturn(new GetItemResult().withItem(item(
+                "instructorId", new AttributeValue(instructor),
+                "startTime", new AttributeValue(Iso8601.format(startTime)),
+                "studentId", new AttributeValue(student),
+                "waitlist", new AttributeValue().withL(
+                        new AttributeValue(UUID.randomUUID().toString()), new AttributeValue(waiting)),
+                "waitlistNames", new AttributeValue().withL(new AttributeValue("first"), new AttributeValue("second"))
+        )));
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenReturn(lessonResult(student));
+
+        dynamoDao.leaveWaitlist(instructor, startTime, waiting);
+
+        final UpdateItemRequest leave = updates().get(0);
+        Assert.assertEquals("REMOVE waitlist[1], waitlistNames[1]", leave.getUpdateExpression());
+        Assert.assertEquals("waitlist[1] = :studentId", leave.getConditionExpression());
+    }
+
+    @Test
+    public void invalidIdRejectedBeforeRequest() {
+        try {
+            dynamoDao.registerStudent(instructor, startTime, "not an id", "student");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void pageQueryOfRange() throws Exception {
+        final Map<String, AttributeValue> lastKey = item(
+                "instructorId", new AttributeValue(instructor),
+                "startTime", new AttributeValue(Iso8601.format(startTime))
+        );
+
+        when(dynamoDBAsync.queryAsync(any(QueryRequest.class), any())).thenAnswer(invocation -> {
+            final AsyncHandler<QueryRequest, QueryResult> handler = invocation.getArgument(1);
+            handler.onSuccess(invocation.getArgument(0), new QueryResult()
+                    .withItems(Collections.emptyList())
+                    .withLastEvaluatedKey(lastKey));
+            return null;
+        });
+
+        final Instant to = startTime.plus(1, ChronoUnit.DAYS);
+        final String cursor = asyncDynamoDao.getLessonsByInstructor(instructor, startTime, to, 10, null)
+                .get().getNextCursor();
+        asyncDynamoDao.getLessonsByInstructor(instructor, startTime, to, null, cursor).get();
+
+        final ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(dynamoDBAsync, atLeastOnce()).queryAsync(captor.capture(), any());
+        final List<QueryRequest> queries = captor.getAllValues();
+
+        Assert.assertEquals("instructorId = :hashKey AND startTime BETWEEN :from AND :to",
+                queries.get(0).getKeyConditionExpression());
+        Assert.assertEquals(Iso8601.format(to), queries.get(0).getExpressionAttributeValues().get(":to").getS());
+        Assert.assertEquals(Integer.valueOf(4), queries.get(0).getLimit());
+        Assert.assertNull(queries.get(0).getExclusiveStartKey());
+
+        Assert.assertEquals(Integer.valueOf(config.getPageSize()), queries.get(1).getLimit());
+        Assert.assertEquals(lastKey, queries.get(1).getExclusiveStartKey());
+        Assert.assertEquals(lastKey, LessonCursor.decode(cursor));
+    }
+
+    private UpdateItemResult lessonResult(String studentId) {
+        return new UpdateItemResult().withAttributes(item(
+                "instructorId", new AttributeValue(instructor),
+                "startTime", new AttributeValue(Iso8601.format(startTime)),
+                "studentId", new AttributeValue(studentId)
+        ));
+    }
+
+    /**
+     * Updates of lesson, single ones followed by those in transactions.
+     */
+    private List<UpdateItemRequest> updates() {
+        final ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDB, atLeast(0)).updateItem(captor.capture());
+        final ArgumentCaptor<TransactWriteItemsRequest> transactions = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDB, atLeast(0)).transactWriteItems(transactions.capture());
+
+        return Stream.concat(captor.getAllValues().stream(), transactions.getAllValues().stream()
+                .flatMap(request -> request.getTransactItems().stream())
+                .map(TransactWriteItem::getUpdate)
+                .map(update -> new UpdateItemRequest()
+                        .withTableName(update.getTableName())
+                        .withUpdateExpression(update.getUpdateExpression())
+                        .withConditionExpression(update.getConditionExpression())
+                        .withExpressionAttributeValues(update.getExpressionAttributeValues())))
+                .filter(request -> "Lesson".equals(request.getTableName()))
+                .collect(Collectors.toList());
+    }
+
+    private static Map<String, AttributeValue> item(Object... attributes) {
+        final Map<String, AttributeValue> item = new HashMap<>();
+        for (int i = 0; i < attributes.length; i += 2) {
+            item.put((String) attributes[i], (AttributeValue) attributes[i + 1]);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,81 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.CognitoUser;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.LessonCreateResult;
+import net.spacive.apps.ejazdybackend.model.LessonSeries;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LessonSeriesTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void weeklySeriesExpanded() {
+        final CognitoUser user = new CognitoUser.Builder().withId(instructor).build();
+
+        // already taken slot on monday 2018-05-07 10:00 Bratislava time
+        store.createLesson(new Lesson().withInstructorId(instructor)
+                .withStartTime(Instant.parse("2018-05-07T08:00:00Z"))
+                .withStopTime(Instant.parse("2018-05-07T09:30:00Z")));
+
+        final LessonSeries series = new LessonSeries()
+                .withFrom("2018-05-01")
+                .withTo("2018-05-31")
+                .withZone("Europe/Bratislava")
+                .withExclusion("2018-05-08")
+                .withSlot(new LessonSeries.Slot().withDayOfWeek("MONDAY").withStartTime("10:00").withStopTime("11:30"))
+                .withSlot(new LessonSeries.Slot().withDayOfWeek("TUESDAY").withStartTime("14:00").withStopTime("15:30"));
+
+        final List<LessonCreateResult> results = lessonService.createLessonSeriesByInstructor(user, series);
+
+        // 4 mondays and 5 tuesdays, one tuesday excluded
+        Assert.assertEquals(8, results.size());
+        Assert.assertEquals(Instant.parse("2018-05-01T12:00:00Z"), results.get(0).getLesson().getStartTime());
+        Assert.assertEquals(LessonCreateResult.Status.ALREADY_EXISTS, results.get(1).getStatus());
+        Assert.assertEquals(8, store.getLessonsByInstructor(instructor).size());
+
+        try {
+            lessonService.createLessonSeriesByInstructor(user, series.withTo("2030-05-31"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
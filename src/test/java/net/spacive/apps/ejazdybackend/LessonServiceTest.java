@@ -10,7 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
-import java.util.Calendar;
+import java.time.Instant;
 import java.util.UUID;
 
 @RunWith(SpringRunner.class)
@@ -26,8 +26,8 @@ public class LessonServiceTest {
         // create new lesson
         CognitoUser instructor = createRandomInstructor();
 
-        final Calendar startTime = Calendar.getInstance();
-        final Calendar stopTime = Calendar.getInstance();
+        final Instant startTime = Instant.now();
+        final Instant stopTime = Instant.now();
 
         final Lesson toCreateLesson = new Lesson()
                 .withStartTime(startTime)
@@ -73,8 +73,8 @@ public class LessonServiceTest {
         CognitoUser student = createRandomStudent();
 
         final Lesson toCreateLesson = new Lesson()
-                .withStartTime(Calendar.getInstance())
-                .withStopTime(Calendar.getInstance());
+                .withStartTime(Instant.now())
+                .withStopTime(Instant.now());
 
         // create lesson
         Lesson createdLesson = lessonService.createLessonByInstructor(
@@ -118,8 +118,8 @@ public class LessonServiceTest {
         CognitoUser student = createRandomStudent();
 
         final Lesson toCreateLesson = new Lesson()
-                .withStartTime(Calendar.getInstance())
-                .withStopTime(Calendar.getInstance());
+                .withStartTime(Instant.now())
+                .withStopTime(Instant.now());
 
         // create lesson
         Lesson createdLesson = lessonService.createLessonByInstructor(
@@ -0,0 +1,104 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.CompletedHoursTable;
+import net.spacive.apps.ejazdybackend.database.DynamoDao;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics;
+import net.spacive.apps.ejazdybackend.database.LessonVersionsTable;
+import net.spacive.apps.ejazdybackend.database.StudentBookingsTable;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LessonVersionsTableTest {
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    private AmazonDynamoDB dynamoDB;
+
+    private LessonVersionsTable versions;
+
+    private DynamoDao dynamoDao;
+
+    @Before
+    public void setUp() {
+        dynamoDB = mock(AmazonDynamoDB.class);
+
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final DynamoDBMapper mapper = new DynamoDBMapper(dynamoDB);
+        final DynamoMetrics metrics = new DynamoMetrics(new SimpleMeterRegistry(), config);
+
+        versions = new LessonVersionsTable(dynamoDB, metrics);
+        dynamoDao = new DynamoDao(mapper, dynamoDB, config, metrics, versions,
+                new CompletedHoursTable(mapper, dynamoDB, metrics),
+                new StudentBookingsTable(mapper, dynamoDB, config, metrics));
+    }
+
+    @Test
+    public void versionIsPersistedCounter() {
+        when(dynamoDB.getItem(any(GetItemRequest.class)))
+                .thenReturn(new GetItemResult())
+                .thenReturn(new GetItemResult().withItem(Collections.singletonMap("version", new AttributeValue().withN("7"))));
+
+        Assert.assertEquals("0", versions.version(instructor));
+        Assert.assertEquals("7", versions.version(instructor));
+
+        final ArgumentCaptor<GetItemRequest> captor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDB, times(2)).getItem(captor.capture());
+        Assert.assertEquals("LessonVersion", captor.getValue().getTableName());
+        Assert.assertEquals(instructor, captor.getValue().getKey().get("userId").getS());
+        Assert.assertTrue(captor.getValue().getConsistentRead());
+    }
+
+    @Test
+    public void createdLessonBumpsVersionOfInstructor() {
+        final AtomicInteger lessonWrites = new AtomicInteger();
+        when(dynamoDB.updateItem(any(UpdateItemRequest.class))).thenAnswer(invocation -> {
+            final UpdateItemRequest request = invocation.getArgument(0);
+            if ("Lesson".equals(request.getTableName()) && lessonWrites.incrementAndGet() > 1) {
+                throw new ConditionalCheckFailedException("exists");
+            }
+            return new UpdateItemResult();
+        });
+
+        final Instant startTime = Instant.parse("2030-05-01T10:00:00Z");
+        Assert.assertTrue(dynamoDao.createLesson(new Lesson().withInstructorId(instructor).withStartTime(startTime)));
+        Assert.assertFalse(dynamoDao.createLesson(new Lesson().withInstructorId(instructor).withStartTime(startTime)));
+
+        final ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDB, times(3)).updateItem(captor.capture());
+        final List<UpdateItemRequest> bumps = captor.getAllValues().stream()
+                .filter(request -> "LessonVersion".equals(request.getTableName()))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1, bumps.size());
+        Assert.assertEquals(instructor, bumps.get(0).getKey().get("userId").getS());
+        Assert.assertEquals("ADD version :one", bumps.get(0).getUpdateExpression());
+        verify(dynamoDB, never()).getItem(any(GetItemRequest.class));
+    }
+}
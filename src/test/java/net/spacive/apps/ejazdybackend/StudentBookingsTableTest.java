@@ -0,0 +1,384 @@
+package net.spacive.apps.ejazdybackend;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.Update;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.AsyncDynamoDao;
+import net.spacive.apps.ejazdybackend.database.CompletedHoursTable;
+import net.spacive.apps.ejazdybackend.database.DynamoDao;
+import net.spacive.apps.ejazdybackend.database.DynamoMetrics;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.database.StudentBookingsTable;
+import net.spacive.apps.ejazdybackend.model.Iso8601;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.model.StudentBookings;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StudentBookingsTableTest {
+
+    private static final String FAILED = "ConditionalCheckFailed";
+
+    private static final String NONE = "None";
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    private final String student = UUID.randomUUID().toString();
+
+    private final String next = UUID.randomUUID().toString();
+
+    private final Instant startTime = Instant.now().plus(2, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+
+    private final String booking = StudentBookings.keyOf(new Lesson().withInstructorId(instructor).withStartTime(startTime));
+
+    /**
+     * Lesson returned by failed condition of transaction.
+     */
+    private Map<String, AttributeValue> waitingLesson;
+
+    private AmazonDynamoDB dynamoDB;
+
+    private DynamoDao dynamoDao;
+
+    private AsyncDynamoDao asyncDynamoDao;
+
+    private AmazonDynamoDBAsync dynamoDBAsync;
+
+    @Before
+    public void setUp() {
+        dynamoDB = mock(AmazonDynamoDB.class);
+
+        final DynamoConfiguration config = new DynamoConfiguration();
+        config.setMaxStudentBookings(2);
+
+        final DynamoDBMapper mapper = new DynamoDBMapper(dynamoDB);
+        final DynamoMetrics metrics = new DynamoMetrics(new SimpleMeterRegistry(), config);
+
+        final CompletedHoursTable hours = new CompletedHoursTable(mapper, dynamoDB, metrics);
+        final StudentBookingsTable bookings = new StudentBookingsTable(mapper, dynamoDB, config, metrics);
+
+        dynamoDao = new DynamoDao(mapper, dynamoDB, config, metrics, new LessonVersions(), hours, bookings);
+
+        dynamoDBAsync = mock(AmazonDynamoDBAsync.class);
+        asyncDynamoDao = new AsyncDynamoDao(dynamoDBAsync, mapper, config, metrics, new LessonVersions(), hours, bookings);
+    }
+
+    @Test
+    public void registrationAndBookingAreOneTransaction() {
+        transactions(new String[0]);
+        items(lesson(student), null);
+
+        Assert.assertEquals(student, dynamoDao.registerStudent(instructor, startTime, student, "student").getStudentId());
+
+        final TransactWriteItemsRequest request = transactions().get(0);
+        final Update lesson = request.getTransactItems().get(0).getUpdate();
+        final Update reserve = request.getTransactItems().get(1).getUpdate();
+
+        Assert.assertEquals("Lesson", lesson.getTableName());
+        Assert.assertTrue(lesson.getConditionExpression().contains("attribute_not_exists(studentId)"));
+        Assert.assertEquals("StudentBookings", reserve.getTableName());
+        Assert.assertEquals("ADD bookings :keys", reserve.getUpdateExpression());
+        Assert.assertEquals("2", reserve.getExpressionAttributeValues().get(":max").getN());
+        Assert.assertEquals(booking, reserve.getExpressionAttributeValues().get(":booking").getS());
+        verify(dynamoDB, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    public void takenLessonLeavesNothingToRelease() {
+        transactions(new String[]{FAILED, NONE});
+
+        Assert.assertNull(dynamoDao.registerStudent(instructor, startTime, student, "student"));
+        Assert.assertEquals(1, transactions().size());
+        verify(dynamoDB, never()).updateItem(any(UpdateItemRequest.class));
+        verify(dynamoDB, never()).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    public void limitRefusesWithoutTouchingLesson() {
+        final String future = StudentBookings.keyOf(new Lesson().withInstructorId(instructor)
+                .withStartTime(startTime.plus(1, ChronoUnit.DAYS)));
+
+        transactions(new String[]{NONE, FAILED});
+        items(null, bookings(future, future + "x"));
+
+        Assert.assertNull(dynamoDao.registerStudent(instructor, startTime, student, "student"));
+        Assert.assertEquals(1, transactions().size());
+        verify(dynamoDB, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    public void limitIsRetriedWithoutStartedBookings() {
+        final String started = StudentBookings.keyOf(new Lesson().withInstructorId(instructor)
+                .withStartTime(Instant.now().minus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS)));
+
+        transactions(new String[]{NONE, FAILED}, new String[0]);
+        items(lesson(student), bookings(started, booking + "x"));
+
+        Assert.assertNotNull(dynamoDao.registerStudent(instructor, startTime, student, "student"));
+        Assert.assertEquals(2, transactions().size());
+
+        final ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDB).updateItem(captor.capture());
+        Assert.assertEquals(Collections.singletonList(started),
+                captor.getValue().getExpressionAttributeValues().get(":keys").getSS());
+    }
+
+    @Test
+    public void promotionSkipsStudentWithTooManyBookings() {
+        final String refused = UUID.randomUUID().toString();
+        final String future = StudentBookings.keyOf(new Lesson().withInstructorId(instructor)
+                .withStartTime(startTime.plus(1, ChronoUnit.DAYS)));
+
+        // unregistration, promotion of refused student, promotion of next student
+        transactions(new String[]{FAILED, NONE}, new String[]{NONE, FAILED, NONE}, new String[0]);
+        items(lesson(next), bookings(future, future + "x"));
+        waiting(refused, next);
+
+        Assert.assertEquals(next, dynamoDao.unregisterStudent(instructor, startTime, student).getStudentId());
+
+        final List<TransactWriteItemsRequest> requests = transactions();
+        Assert.assertEquals(3, requests.size());
+
+        final Update promotion = requests.get(2).getTransactItems().get(0).getUpdate();
+        Assert.assertTrue(promotion.getUpdateExpression().contains("REMOVE waitlist[1], waitlistNames[1]"));
+        Assert.assertEquals(next, requests.get(2).getTransactItems().get(1).getUpdate()
+                .getKey().get("studentId").getS());
+        Assert.assertEquals("DELETE bookings :keys", requests.get(2).getTransactItems().get(2).getUpdate()
+                .getUpdateExpression());
+    }
+
+    @Test
+    public void unregistrationClearsWaitlistIfNobodyCanBePromoted() {
+        final String future = StudentBookings.keyOf(new Lesson().withInstructorId(instructor)
+                .withStartTime(startTime.plus(1, ChronoUnit.DAYS)));
+
+        transactions(new String[]{FAILED, NONE}, new String[]{NONE, FAILED, NONE}, new String[0]);
+        items(lesson(null), bookings(future, future + "x"));
+        waiting(next);
+
+        Assert.assertNull(dynamoDao.unregisterStudent(instructor, startTime, student).getStudentId());
+
+        final Update unregistration = transactions().get(2).getTransactItems().get(0).getUpdate();
+        Assert.assertTrue(unregistration.getUpdateExpression().contains("waitlist, waitlistNames"));
+        Assert.assertEquals(next, unregistration.getExpressionAttributeValues().get(":waiting0").getS());
+
+        final Update leave = transactions().get(2).getTransactItems().get(2).getUpdate();
+        Assert.assertEquals(next, leave.getKey().get("studentId").getS());
+        Assert.assertEquals("DELETE waitlisted :keys", leave.getUpdateExpression());
+    }
+
+    @Test
+    public void joinedWaitlistIsRecordedByTheSameTransaction() {
+        transactions(new String[0]);
+        items(lesson(next), null);
+
+        Assert.assertNotNull(dynamoDao.joinWaitlist(instructor, startTime, student, "student"));
+
+        final TransactWriteItemsRequest request = transactions().get(0);
+        final Update wait = request.getTransactItems().get(1).getUpdate();
+
+        Assert.assertTrue(request.getTransactItems().get(0).getUpdate().getUpdateExpression().contains("waitlist"));
+        Assert.assertEquals(student, wait.getKey().get("studentId").getS());
+        Assert.assertEquals("ADD waitlisted :keys", wait.getUpdateExpression());
+        Assert.assertEquals(Collections.singletonList(booking), wait.getExpressionAttributeValues().get(":keys").getSS());
+    }
+
+    @Test
+    public void waitedLessonsAreReadByKeysOfStudent() {
+        final String stale = StudentBookings.keyOf(new Lesson().withInstructorId(instructor)
+                .withStartTime(startTime.plus(1, ChronoUnit.DAYS)));
+
+        final Map<String, AttributeValue> waited = lesson(next);
+        waited.put("waitlist", new AttributeValue().withL(new AttributeValue(student)));
+        items(null, item(
+                "studentId", new AttributeValue(student),
+                "waitlisted", new AttributeValue().withSS(booking, stale)
+        ));
+        when(dynamoDB.batchGetItem(any(BatchGetItemRequest.class))).thenReturn(new BatchGetItemResult()
+                .withResponses(Collections.singletonMap("Lesson", Collections.singletonList(waited))));
+
+        final List<Lesson> lessons = dynamoDao.getLessonsWaitedByStudent(student);
+        Assert.assertEquals(1, lessons.size());
+        Assert.assertEquals(startTime, lessons.get(0).getStartTime());
+
+        final ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDB).updateItem(captor.capture());
+        Assert.assertEquals("DELETE waitlisted :keys", captor.getValue().getUpdateExpression());
+        Assert.assertEquals(Collections.singletonList(stale),
+                captor.getValue().getExpressionAttributeValues().get(":keys").getSS());
+        verify(dynamoDB, never()).scan(any(ScanRequest.class));
+    }
+
+    @Test
+    public void asyncRegistrationUsesAsyncClient() throws Exception {
+        final Iterator<String[]> outcomes = Collections.singletonList(new String[]{FAILED, NONE}).iterator();
+
+        when(dynamoDBAsync.transactWriteItemsAsync(any(TransactWriteItemsRequest.class), any())).thenAnswer(invocation -> {
+            final AsyncHandler<TransactWriteItemsRequest, TransactWriteItemsResult> handler = invocation.getArgument(1);
+            handler.onError(cancellation(outcomes.next()));
+            return null;
+        });
+
+        Assert.assertNull(asyncDynamoDao.registerStudent(instructor, startTime, student, "student").get());
+
+        verify(dynamoDBAsync, times(1)).transactWriteItemsAsync(any(TransactWriteItemsRequest.class), any());
+        verify(dynamoDBAsync, never()).updateItemAsync(any(UpdateItemRequest.class), any());
+        verify(dynamoDB, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    public void asyncPromotionMovesBooking() throws Exception {
+        final Iterator<String[]> outcomes = Arrays.asList(new String[]{FAILED, NONE}, new String[0]).iterator();
+        waiting(next);
+
+        when(dynamoDBAsync.transactWriteItemsAsync(any(TransactWriteItemsRequest.class), any())).thenAnswer(invocation -> {
+            final AsyncHandler<TransactWriteItemsRequest, TransactWriteItemsResult> handler = invocation.getArgument(1);
+            final String[] codes = outcomes.next();
+
+            if (codes.length == 0) {
+                handler.onSuccess(invocation.getArgument(0), new TransactWriteItemsResult());
+            } else {
+                handler.onError(cancellation(codes));
+            }
+            return null;
+        });
+        when(dynamoDBAsync.getItemAsync(any(GetItemRequest.class), any())).thenAnswer(invocation -> {
+            final AsyncHandler<GetItemRequest, GetItemResult> handler = invocation.getArgument(1);
+            handler.onSuccess(invocation.getArgument(0), new GetItemResult().withItem(lesson(next)));
+            return null;
+        });
+
+        Assert.assertEquals(next, asyncDynamoDao.unregisterStudent(instructor, startTime, student).get().getStudentId());
+
+        final ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDBAsync, times(2)).transactWriteItemsAsync(captor.capture(), any());
+        final Map<String, String> changes = captor.getAllValues().get(1).getTransactItems().stream()
+                .map(TransactWriteItem::getUpdate)
+                .filter(update -> "StudentBookings".equals(update.getTableName()))
+                .collect(Collectors.toMap(
+                        update -> update.getKey().get("studentId").getS(),
+                        Update::getUpdateExpression
+                ));
+
+        Assert.assertEquals("DELETE bookings :keys", changes.get(student));
+        Assert.assertEquals("ADD bookings :keys DELETE waitlisted :keys", changes.get(next));
+        verify(dynamoDB, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    /**
+     * Outcomes of consecutive transactions, empty codes if written.
+     */
+    private void transactions(String[]... outcomes) {
+        final Iterator<String[]> iterator = Arrays.asList(outcomes).iterator();
+
+        when(dynamoDB.transactWriteItems(any(TransactWriteItemsRequest.class))).thenAnswer(invocation -> {
+            final String[] codes = iterator.next();
+            if (codes.length > 0) {
+                throw cancellation(codes);
+            }
+            return new TransactWriteItemsResult();
+        });
+    }
+
+    /**
+     * Students waiting for the lesson returned by failed condition.
+     */
+    private void waiting(String... studentIds) {
+        final Map<String, AttributeValue> lesson = lesson(student);
+        lesson.put("waitlist", new AttributeValue().withL(Arrays.stream(studentIds)
+                .map(AttributeValue::new)
+                .collect(Collectors.toList())));
+        lesson.put("waitlistNames", new AttributeValue().withL(Arrays.stream(studentIds)
+                .map(id -> new AttributeValue("waiting"))
+                .collect(Collectors.toList())));
+
+        waitingLesson = lesson;
+    }
+
+    private TransactionCanceledException cancellation(String[] codes) {
+        return new TransactionCanceledException("cancelled").withCancellationReasons(Arrays.stream(codes)
+                .map(code -> new CancellationReason()
+                        .withCode(code)
+                        .withItem(FAILED.equals(code) && waitingLesson != null ? waitingLesson : null))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Lesson and counter of bookings read consistently.
+     */
+    private void items(Map<String, AttributeValue> lesson, Map<String, AttributeValue> bookings) {
+        when(dynamoDB.getItem(any(GetItemRequest.class))).thenAnswer(invocation -> {
+            final GetItemRequest request = invocation.getArgument(0);
+            return new GetItemResult().withItem("Lesson".equals(request.getTableName()) ? lesson : bookings);
+        });
+    }
+
+    private List<TransactWriteItemsRequest> transactions() {
+        final ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDB, atLeastOnce()).transactWriteItems(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private Map<String, AttributeValue> lesson(String studentId) {
+        final Map<String, AttributeValue> lesson = item(
+                "instructorId", new AttributeValue(instructor),
+                "startTime", new AttributeValue(Iso8601.format(startTime))
+        );
+        if (studentId != null) {
+            lesson.put("studentId", new AttributeValue(studentId));
+        }
+        return lesson;
+    }
+
+    private Map<String, AttributeValue> bookings(String... keys) {
+        return item(
+                "studentId", new AttributeValue(student),
+                "bookings", new AttributeValue().withSS(keys)
+        );
+    }
+
+    private static Map<String, AttributeValue> item(Object... attributes) {
+        final Map<String, AttributeValue> item = new HashMap<>();
+        for (int i = 0; i < attributes.length; i += 2) {
+            item.put((String) attributes[i], (AttributeValue) attributes[i + 1]);
+        }
+        return item;
+    }
+}
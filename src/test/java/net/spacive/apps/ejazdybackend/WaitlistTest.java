@@ -0,0 +1,141 @@
+package net.spacive.apps.ejazdybackend;
+
+import net.spacive.apps.ejazdybackend.config.CalendarConfiguration;
+import net.spacive.apps.ejazdybackend.config.DynamoConfiguration;
+import net.spacive.apps.ejazdybackend.database.InMemoryLessonStore;
+import net.spacive.apps.ejazdybackend.database.LessonVersions;
+import net.spacive.apps.ejazdybackend.model.CognitoUser;
+import net.spacive.apps.ejazdybackend.model.Lesson;
+import net.spacive.apps.ejazdybackend.service.LessonService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class WaitlistTest {
+
+    private InMemoryLessonStore store;
+
+    private LessonService lessonService;
+
+    private ExecutorService executor;
+
+    private final String instructor = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() {
+        final DynamoConfiguration config = new DynamoConfiguration();
+        final LessonVersions versions = new LessonVersions();
+
+        store = new InMemoryLessonStore(config, versions);
+        executor = Executors.newSingleThreadExecutor();
+        lessonService = new LessonService(store, Optional.empty(), executor, config, new CalendarConfiguration(), versions);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void waitlistPromotedOnUnregistration() throws Exception {
+        final CognitoUser first = student("first");
+        final CognitoUser second = student("second");
+        final CognitoUser third = student("third");
+        final Instant start = Instant.now().plus(3, ChronoUnit.DAYS);
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(start)
+                .withStopTime(start.plus(1, ChronoUnit.HOURS)));
+
+        // joining free lesson registers the student
+        Assert.assertEquals(first.getId(), lessonService.joinWaitlist(first, instructor, start).getStudentId());
+        lessonService.joinWaitlist(second, instructor, start);
+        final Lesson waiting = lessonService.joinWaitlist(third, instructor, start);
+        Assert.assertEquals(Arrays.asList(second.getId(), third.getId()), waiting.getWaitlist());
+        Assert.assertEquals(waiting, lessonService.joinWaitlist(third, instructor, start));
+
+        try {
+            lessonService.joinWaitlist(first, instructor, start);
+            Assert.fail();
+        } catch (Exception e) {
+            // registered already
+        }
+
+        // the first waiting student takes the lesson, it is never free
+        final Lesson promoted = lessonService.unregisterStudentFromLesson(first.getId(), instructor, start, false);
+        Assert.assertEquals(second.getId(), promoted.getStudentId());
+        Assert.assertEquals("second student", promoted.getStudentName());
+        Assert.assertNull(promoted.getAvailableDay());
+        Assert.assertEquals(Arrays.asList(third.getId()), promoted.getWaitlist());
+        Assert.assertTrue(lessonService.getLessonsByStudent(first.getId()).isEmpty());
+        Assert.assertEquals(1, lessonService.getLessonsByStudent(second.getId()).size());
+
+        Assert.assertTrue(lessonService.leaveWaitlist(third.getId(), instructor, start).getWaitlist().isEmpty());
+        try {
+            lessonService.leaveWaitlist(third.getId(), instructor, start);
+            Assert.fail();
+        } catch (Exception e) {
+            // not waiting
+        }
+
+        // lesson is free again once nobody waits
+        Assert.assertNull(lessonService.unregisterStudentFromLesson(second.getId(), instructor, start, false).getStudentId());
+    }
+
+    @Test
+    public void deletedStudentLeavesWaitlists() throws Exception {
+        final CognitoUser first = student("first");
+        final CognitoUser deleted = student("deleted");
+        final Instant start = Instant.now().plus(3, ChronoUnit.DAYS);
+        for (int i = 0; i < 2; i++) {
+            store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(start.plus(i, ChronoUnit.HOURS)));
+        }
+
+        lessonService.registerStudentToLesson(first, instructor, start);
+        lessonService.joinWaitlist(deleted, instructor, start);
+        lessonService.registerStudentToLesson(deleted, instructor, start.plus(1, ChronoUnit.HOURS));
+
+        Assert.assertTrue(lessonService.unregisterStudentFromAllLessons(deleted.getId()).isEmpty());
+        Assert.assertTrue(lessonService.getLessonsByStudent(deleted.getId()).isEmpty());
+        Assert.assertTrue(store.getLessonsWaitedByStudent(deleted.getId()).isEmpty());
+
+        // deleted student is never promoted
+        Assert.assertNull(lessonService.unregisterStudentFromLesson(first.getId(), instructor, start, false).getStudentId());
+    }
+
+    @Test
+    public void waitlistLimited() throws Exception {
+        store.createLesson(new Lesson().withInstructorId(instructor).withStartTime(time(0)));
+        store.registerStudent(instructor, time(0), UUID.randomUUID().toString(), "student");
+
+        for (int i = 0; i < new DynamoConfiguration().getMaxWaitlist(); i++) {
+            lessonService.joinWaitlist(student("waiting"), instructor, time(0));
+        }
+
+        try {
+            lessonService.joinWaitlist(student("late"), instructor, time(0));
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertEquals("waitlist is full", e.getMessage());
+        }
+    }
+
+    private static CognitoUser student(String firstName) {
+        return new CognitoUser.Builder()
+                .withId(UUID.randomUUID().toString())
+                .withFirstName(firstName)
+                .withLastName("student")
+                .build();
+    }
+
+    private static Instant time(int hour) {
+        return Instant.ofEpochMilli(1525168800000L + hour * 3600000L);
+    }
+}